@@ -1,18 +1,23 @@
 package parallelmc.parallelutils;
 
-import com.mysql.cj.jdbc.MysqlConnectionPoolDataSource;
 import com.mysql.cj.jdbc.MysqlDataSource;
 import org.bukkit.*;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 import parallelmc.parallelutils.commands.*;
+import parallelmc.parallelutils.database.ConnectionPool;
+import parallelmc.parallelutils.database.DatabaseExecutor;
+import parallelmc.parallelutils.database.PoolStats;
+import parallelmc.parallelutils.database.WriteBehindStore;
 import parallelmc.parallelutils.events.OnMenuInteract;
 import parallelmc.parallelutils.util.BukkitTools;
+import parallelmc.parallelutils.util.ExpiringMap;
 import parallelmc.parallelutils.util.GUIManager;
+import parallelmc.parallelutils.util.PlaceholderCache;
+import parallelmc.parallelutils.util.TimingWheel;
 import parallelmc.parallelutils.versionchecker.UpdateChecker;
 
 import javax.annotation.Nullable;
-import javax.sql.DataSource;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
@@ -36,7 +41,13 @@ public final class ParallelUtils extends JavaPlugin {
 
 	FileConfiguration config;
 
-	private DataSource dataSource;
+	private ConnectionPool connectionPool;
+
+	private DatabaseExecutor databaseExecutor;
+
+	private PlaceholderCache placeholderCache;
+
+	private final TimingWheel timingWheel = new TimingWheel(512);
 
 	private final List<String> loadedList = new ArrayList<>();
 
@@ -90,6 +101,8 @@ public final class ParallelUtils extends JavaPlugin {
 
 		Bukkit.getLogger().setLevel(LOG_LEVEL);
 
+		placeholderCache = PlaceholderCache.fromConfig(config.getConfigurationSection("placeholder-cache"));
+
 
 		// Check version
 		String github_token = config.getString("github_token");
@@ -168,6 +181,8 @@ public final class ParallelUtils extends JavaPlugin {
 		addCommand("modules", new ParallelModulesCommand(this));
 		addCommand("unload", new ParallelUnloadCommand(this));
 		addCommand("reload", new ParallelReloadCommand(this));
+		addCommand("database", new ParallelDatabaseCommand(this));
+		addCommand("placeholders", new ParallelPlaceholdersCommand(this));
 
 		getCommand("parallelutils").setExecutor(commands);
 		getCommand("parallelutils").setTabCompleter(commands);
@@ -175,6 +190,8 @@ public final class ParallelUtils extends JavaPlugin {
 		getCommand("pu").setTabCompleter(commands);
 
 		Bukkit.getPluginManager().registerEvents(new OnMenuInteract(), this);
+		Bukkit.getPluginManager().registerEvents(placeholderCache, this);
+		timingWheel.start(this);
 
 		// Setup modules
 
@@ -209,6 +226,18 @@ public final class ParallelUtils extends JavaPlugin {
 		});
 		registeredModules = new HashMap<>();
 		loadedModules = false;
+
+		timingWheel.stop();
+
+		// Modules may flush data on disable, so the executor and pool have to outlive them
+		if (databaseExecutor != null) {
+			databaseExecutor.shutdown(config.getLong("sql.executor.shutdown-timeout", 30000));
+			databaseExecutor = null;
+		}
+		if (connectionPool != null) {
+			connectionPool.close();
+			connectionPool = null;
+		}
 	}
 
 	private void loadModules() {
@@ -483,7 +512,7 @@ public final class ParallelUtils extends JavaPlugin {
 
 
 	/**
-	 * Opens a database connection with the given details and stores it to dbConn
+	 * Creates the pooled data source with the given details and stores it to connectionPool
 	 * @param host The host address of the database
 	 * @param port The port of the database
 	 * @param database The database of the database
@@ -496,7 +525,7 @@ public final class ParallelUtils extends JavaPlugin {
 	private boolean createDataSource(String host, int port, String database, String username, String password)
 			throws SQLException, ClassNotFoundException {
 
-		MysqlDataSource dataSource = new MysqlConnectionPoolDataSource();
+		MysqlDataSource dataSource = new MysqlDataSource();
 
 		dataSource.setServerName(host);
 		dataSource.setPort(port);
@@ -507,43 +536,49 @@ public final class ParallelUtils extends JavaPlugin {
 		dataSource.setMaxReconnects(1);
 		dataSource.setConnectTimeout(5000);
 
-		this.dataSource = dataSource;
-
-		Connection conn = testAndGetConnection(dataSource);
+		int minSize = config.getInt("sql.pool.min-size", 2);
+		int maxSize = config.getInt("sql.pool.max-size", 10);
+		long idleTimeout = config.getLong("sql.pool.idle-timeout", 600000);
+		long validationInterval = config.getLong("sql.pool.validation-interval", 30000);
+		long leakThreshold = config.getLong("sql.pool.leak-detection-threshold", 0);
+		long connectionTimeout = config.getLong("sql.pool.connection-timeout", 5000);
 
-		return conn != null;
-	}
+		if (connectionPool != null) {
+			connectionPool.close();
+		}
 
-	/**
-	 * Creates a new database Connection from the given DataSource and tests if it is valid
-	 * @param dataSource The DataSource to create from
-	 * @return The Connection created from the DataSource
-	 * @throws SQLException Thrown when DataSource#getConnection encounters a database access error
-	 */
-	@Nullable
-	private Connection testAndGetConnection(DataSource dataSource) throws SQLException {
-		Connection conn = dataSource.getConnection();
+		this.connectionPool = new ConnectionPool(dataSource, minSize, maxSize, idleTimeout, validationInterval,
+				leakThreshold, connectionTimeout);
 
-		if (!conn.isValid(1000)) {
-			log(Level.WARNING, "Unable to establish database connection");
-			return null;
+		try (Connection conn = connectionPool.getConnection()) {
+			if (!conn.isValid(1000)) {
+				log(Level.WARNING, "Unable to establish database connection");
+				return false;
+			}
 		}
-		return conn;
+
+		log(Level.INFO, "Created database connection pool (min " + minSize + ", max " + maxSize + ")");
+
+		int threads = config.getInt("sql.executor.threads", Math.max(1, maxSize / 2));
+		int queueLimit = config.getInt("sql.executor.queue-limit", 10000);
+		this.databaseExecutor = new DatabaseExecutor(this, connectionPool, Math.min(threads, maxSize), queueLimit);
+
+		return true;
 	}
 
 	/**
-	 * Returns a DB connection object for ParallelUtils
+	 * Borrows a DB connection from the ParallelUtils connection pool.
+	 * The connection has auto-commit disabled and MUST be closed to return it to the pool
 	 * @return the DB Connection object
 	 */
 	@Nullable
 	public Connection getDbConn() {
+		if (connectionPool == null) {
+			log(Level.WARNING, "Unable to retrieve database Connection. Connection pool is not initialized");
+			return null;
+		}
 		try {
-			Connection connection = testAndGetConnection(dataSource);
-
-			if (connection == null) return null;
-
-			connection.setAutoCommit(false);
-			return connection;
+			return connectionPool.getConnection();
 		} catch (SQLException throwables) {
 			log(Level.WARNING, "Unable to retrieve database Connection. SQL Exception");
 			throwables.printStackTrace();
@@ -551,6 +586,63 @@ public final class ParallelUtils extends JavaPlugin {
 		}
 	}
 
+	/**
+	 * Returns the shared executor for running database work off of the main thread
+	 * @return the DatabaseExecutor, or null if the database is not initialized
+	 */
+	@Nullable
+	public DatabaseExecutor getDbExecutor() {
+		return databaseExecutor;
+	}
+
+	/**
+	 * Creates a WriteBehindStore using the flush interval and threshold from the config
+	 * @param module The name of the module that owns the store
+	 * @param writer Writes the changed rows
+	 * @return The new WriteBehindStore
+	 */
+	public <K, V> WriteBehindStore<K, V> createWriteBehindStore(String module, WriteBehindStore.Writer<K, V> writer) {
+		long interval = config.getLong("sql.write-behind.flush-interval", 600);
+		int threshold = config.getInt("sql.write-behind.flush-threshold", 500);
+		return new WriteBehindStore<>(this, databaseExecutor, module, writer, interval, threshold);
+	}
+
+	/**
+	 * Returns the shared cache for PlaceholderAPI lookups
+	 * @return the PlaceholderCache
+	 */
+	public PlaceholderCache getPlaceholderCache() {
+		return placeholderCache;
+	}
+
+	/**
+	 * Returns the shared timing wheel, for timeouts that don't need a scheduler task each
+	 * @return the TimingWheel
+	 */
+	public TimingWheel getTimingWheel() {
+		return timingWheel;
+	}
+
+	/**
+	 * Creates a map whose entries expire on the shared timing wheel
+	 * @param <K> The type of the keys
+	 * @param <V> The type of the values
+	 * @return The new ExpiringMap
+	 */
+	public <K, V> ExpiringMap<K, V> createExpiringMap() {
+		return new ExpiringMap<>(timingWheel);
+	}
+
+	/**
+	 * Returns a snapshot of the database connection pool usage
+	 * @return the current PoolStats, or null if the pool is not initialized
+	 */
+	@Nullable
+	public PoolStats getDbPoolStats() {
+		if (connectionPool == null) return null;
+		return connectionPool.getStats();
+	}
+
 	/**
 	 * Registers a ParallelModule with ParallelUtils
 	 * @param module The module object
@@ -0,0 +1,66 @@
+package parallelmc.parallelutils.commands;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.commands.permissions.ParallelPermission;
+import parallelmc.parallelutils.database.PoolStats;
+
+import java.util.List;
+
+/**
+ * A command that shows the current state of the database connection pool
+ * Usage: /pu database
+ */
+public class ParallelDatabaseCommand extends ParallelCommand {
+
+	private final ParallelUtils puPlugin;
+
+	public ParallelDatabaseCommand(ParallelUtils puPlugin) {
+		super("database", "Shows database connection pool statistics", new ParallelPermission("parallelutils.database"));
+		this.puPlugin = puPlugin;
+	}
+
+	@Override
+	public boolean execute(@NotNull CommandSender sender, @NotNull Command command, @NotNull String[] args) {
+		if (!hasPermissions(sender)) return true;
+
+		PoolStats stats = puPlugin.getDbPoolStats();
+
+		if (stats == null) {
+			sender.sendMessage(Component.text("The database connection pool is not running", NamedTextColor.RED));
+			return true;
+		}
+
+		TextComponent.Builder builder = Component.text()
+				.append(Component.text("--------- ", NamedTextColor.YELLOW))
+				.append(Component.text("Database Pool"))
+				.append(Component.text(" --------------------\n", NamedTextColor.YELLOW))
+				.append(line("Active", stats.active() + " / " + stats.maxSize()))
+				.append(line("Idle", String.valueOf(stats.idle())))
+				.append(line("Open", String.valueOf(stats.total())))
+				.append(line("Checkouts", String.valueOf(stats.borrows())))
+				.append(line("Timeouts", String.valueOf(stats.timeouts())))
+				.append(line("Avg wait", stats.avgWaitMicros() + "µs"))
+				.append(line("Max wait", stats.maxWaitMicros() + "µs"));
+
+		sender.sendMessage(builder.build());
+
+		return true;
+	}
+
+	private Component line(String label, String value) {
+		return Component.text(label + ": ", NamedTextColor.GREEN)
+				.append(Component.text(value, NamedTextColor.WHITE))
+				.append(Component.newline());
+	}
+
+	@Override
+	public List<String> getTabComplete(@NotNull CommandSender sender, @NotNull String[] args) {
+		return null;
+	}
+}
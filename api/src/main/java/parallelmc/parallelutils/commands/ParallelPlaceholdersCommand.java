@@ -0,0 +1,72 @@
+package parallelmc.parallelutils.commands;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.commands.permissions.ParallelPermission;
+import parallelmc.parallelutils.util.PlaceholderStats;
+
+import java.util.List;
+
+/**
+ * A command that shows how well the placeholder cache is working, or clears it
+ * Usage: /pu placeholders [reset|clear]
+ */
+public class ParallelPlaceholdersCommand extends ParallelCommand {
+
+	private final ParallelUtils puPlugin;
+
+	public ParallelPlaceholdersCommand(ParallelUtils puPlugin) {
+		super("placeholders", "Shows placeholder cache statistics", new ParallelPermission("parallelutils.placeholders"));
+		this.puPlugin = puPlugin;
+	}
+
+	@Override
+	public boolean execute(@NotNull CommandSender sender, @NotNull Command command, @NotNull String[] args) {
+		if (!hasPermissions(sender)) return true;
+
+		if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+			puPlugin.getPlaceholderCache().resetStats();
+			sender.sendMessage(Component.text("Reset placeholder cache statistics", NamedTextColor.GREEN));
+			return true;
+		}
+		if (args.length > 1 && args[1].equalsIgnoreCase("clear")) {
+			puPlugin.getPlaceholderCache().invalidateAll();
+			sender.sendMessage(Component.text("Cleared the placeholder cache", NamedTextColor.GREEN));
+			return true;
+		}
+
+		PlaceholderStats stats = puPlugin.getPlaceholderCache().getStats();
+		long total = stats.hits() + stats.misses();
+		String hitRate = total == 0 ? "-" : (stats.hits() * 100 / total) + "%";
+
+		TextComponent.Builder builder = Component.text()
+				.append(Component.text("--------- ", NamedTextColor.YELLOW))
+				.append(Component.text("Placeholder Cache"))
+				.append(Component.text(" --------------------\n", NamedTextColor.YELLOW))
+				.append(line("Hits", String.valueOf(stats.hits())))
+				.append(line("Misses", String.valueOf(stats.misses())))
+				.append(line("Hit rate", hitRate))
+				.append(line("Cached values", String.valueOf(stats.cached())))
+				.append(line("Players", String.valueOf(stats.players())));
+
+		sender.sendMessage(builder.build());
+
+		return true;
+	}
+
+	private Component line(String label, String value) {
+		return Component.text(label + ": ", NamedTextColor.GREEN)
+				.append(Component.text(value, NamedTextColor.WHITE))
+				.append(Component.newline());
+	}
+
+	@Override
+	public List<String> getTabComplete(@NotNull CommandSender sender, @NotNull String[] args) {
+		return List.of("reset", "clear");
+	}
+}
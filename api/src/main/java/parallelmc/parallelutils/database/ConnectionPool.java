@@ -0,0 +1,428 @@
+package parallelmc.parallelutils.database;
+
+import parallelmc.parallelutils.ParallelUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * A small, bounded pool of physical database connections.
+ * Connections handed out by {@link #getConnection()} are returned to the pool when they are closed, so callers
+ * should keep using try-with-resources exactly as they would with an unpooled connection.
+ */
+public class ConnectionPool {
+
+	private static final long HOUSEKEEPING_PERIOD = 30000;
+
+	private final DataSource source;
+
+	private final int minSize;
+	private final int maxSize;
+	private final long idleTimeout;
+	private final long validationInterval;
+	private final long leakThreshold;
+	private final long connectionTimeout;
+
+	// Each borrowed connection holds one permit, which keeps the number of physical connections at or below maxSize
+	private final Semaphore permits;
+
+	// Most recently returned connections are at the head so that the tail can be evicted once it sits idle
+	private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+	private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger total = new AtomicInteger();
+
+	private final LongAdder borrows = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder totalWaitNanos = new LongAdder();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	private final ScheduledExecutorService housekeeper;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a new ConnectionPool and opens {@code minSize} connections
+	 * @param source The DataSource used to open physical connections
+	 * @param minSize The number of connections to keep open even when idle
+	 * @param maxSize The maximum number of connections that may be open at once
+	 * @param idleTimeout How long, in milliseconds, a connection above minSize may sit idle before it is closed
+	 * @param validationInterval How long, in milliseconds, a connection may sit idle before it is validated on borrow
+	 * @param leakThreshold How long, in milliseconds, a connection may be borrowed before a leak is reported. 0 disables
+	 * @param connectionTimeout How long, in milliseconds, to wait for a connection before giving up
+	 */
+	public ConnectionPool(DataSource source, int minSize, int maxSize, long idleTimeout, long validationInterval,
+	                      long leakThreshold, long connectionTimeout) {
+		this.source = source;
+		this.maxSize = Math.max(1, maxSize);
+		this.minSize = Math.max(0, Math.min(minSize, this.maxSize));
+		this.idleTimeout = idleTimeout;
+		this.validationInterval = validationInterval;
+		this.leakThreshold = leakThreshold;
+		this.connectionTimeout = connectionTimeout;
+
+		this.permits = new Semaphore(this.maxSize, true);
+
+		this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "ParallelUtils-DB-Housekeeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		fill();
+		housekeeper.scheduleWithFixedDelay(this::housekeep, HOUSEKEEPING_PERIOD, HOUSEKEEPING_PERIOD, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Borrows a connection from the pool, opening a new one if none are idle and the pool is not full.
+	 * The returned connection has auto-commit disabled and is returned to the pool when closed.
+	 * @return A pooled Connection
+	 * @throws SQLException if the pool is closed, no connection became available in time, or a new connection
+	 * could not be opened
+	 */
+	public Connection getConnection() throws SQLException {
+		if (closed) throw new SQLException("Connection pool is closed");
+
+		long start = System.nanoTime();
+		try {
+			if (!permits.tryAcquire(connectionTimeout, TimeUnit.MILLISECONDS)) {
+				timeouts.increment();
+				throw new SQLTimeoutException("Timed out after " + connectionTimeout + "ms waiting for a database connection");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection", e);
+		}
+		recordWait(System.nanoTime() - start);
+
+		try {
+			PooledConnection pooled = takeIdle();
+			if (pooled == null) {
+				pooled = open();
+			}
+			// Filling in a stack trace is expensive, so none of the leak bookkeeping is done unless leaks are reported
+			if (leakThreshold > 0) {
+				pooled.borrowedAt = System.currentTimeMillis();
+				pooled.borrowSite = new Throwable("Connection borrowed here");
+				pooled.leakReported = false;
+			}
+			borrowed.add(pooled);
+			borrows.increment();
+			return pooled.newHandle();
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the current pool usage
+	 * @return The current PoolStats
+	 */
+	public PoolStats getStats() {
+		int idleCount;
+		synchronized (idle) {
+			idleCount = idle.size();
+		}
+		long count = borrows.sum();
+		long avgWait = count == 0 ? 0 : totalWaitNanos.sum() / count / 1000;
+		return new PoolStats(borrowed.size(), idleCount, total.get(), maxSize, count, timeouts.sum(),
+				avgWait, maxWaitNanos.get() / 1000);
+	}
+
+	/**
+	 * Closes every idle connection and stops the pool from handing out new ones.
+	 * Connections that are still borrowed are closed when they are returned.
+	 */
+	public void close() {
+		closed = true;
+		housekeeper.shutdownNow();
+
+		List<PooledConnection> toClose;
+		synchronized (idle) {
+			toClose = new ArrayList<>(idle);
+			idle.clear();
+		}
+		toClose.forEach(this::discard);
+
+		if (!borrowed.isEmpty()) {
+			ParallelUtils.log(Level.WARNING, "Closing connection pool with " + borrowed.size() + " connections still in use");
+		}
+	}
+
+	private PooledConnection takeIdle() {
+		long now = System.currentTimeMillis();
+		while (true) {
+			PooledConnection pooled;
+			synchronized (idle) {
+				pooled = idle.pollFirst();
+			}
+			if (pooled == null) return null;
+
+			// Only pay for a validation round-trip when the connection has been sitting around for a while
+			if (now - pooled.lastUsed < validationInterval || isAlive(pooled)) {
+				return pooled;
+			}
+			discard(pooled);
+		}
+	}
+
+	private PooledConnection open() throws SQLException {
+		Connection conn = source.getConnection();
+		conn.setAutoCommit(false);
+		total.incrementAndGet();
+		return new PooledConnection(conn);
+	}
+
+	private boolean isAlive(PooledConnection pooled) {
+		try {
+			return pooled.physical.isValid(1);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private void release(PooledConnection pooled) {
+		borrowed.remove(pooled);
+		try {
+			if (closed || pooled.physical.isClosed()) {
+				discard(pooled);
+				return;
+			}
+			// Anything the borrower did not commit is thrown away so the next borrower starts clean.
+			// With auto-commit on everything is already committed, and a borrower that only ran queries has nothing
+			// to throw away, so neither needs the extra round-trip of a rollback
+			if (pooled.physical.getAutoCommit()) {
+				pooled.physical.setAutoCommit(false);
+			}
+			else if (pooled.uncommitted) {
+				pooled.physical.rollback();
+			}
+			pooled.uncommitted = false;
+			pooled.lastUsed = System.currentTimeMillis();
+			synchronized (idle) {
+				idle.addFirst(pooled);
+			}
+		} catch (SQLException e) {
+			discard(pooled);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private void discard(PooledConnection pooled) {
+		total.decrementAndGet();
+		try {
+			pooled.physical.close();
+		} catch (SQLException ignored) { }
+	}
+
+	private void recordWait(long nanos) {
+		totalWaitNanos.add(nanos);
+		maxWaitNanos.accumulateAndGet(nanos, Math::max);
+	}
+
+	private void fill() {
+		while (!closed && total.get() < minSize && permits.tryAcquire()) {
+			try {
+				PooledConnection pooled = open();
+				synchronized (idle) {
+					idle.addLast(pooled);
+				}
+			} catch (SQLException e) {
+				ParallelUtils.log(Level.WARNING, "Unable to open pooled database connection: " + e.getMessage());
+				return;
+			} finally {
+				permits.release();
+			}
+		}
+	}
+
+	private void housekeep() {
+		try {
+			long now = System.currentTimeMillis();
+
+			List<PooledConnection> evicted = new ArrayList<>();
+			synchronized (idle) {
+				Iterator<PooledConnection> it = idle.descendingIterator();
+				while (it.hasNext() && total.get() - evicted.size() > minSize) {
+					PooledConnection pooled = it.next();
+					if (now - pooled.lastUsed < idleTimeout) break;
+					it.remove();
+					evicted.add(pooled);
+				}
+			}
+			evicted.forEach(this::discard);
+
+			fill();
+
+			if (leakThreshold > 0) {
+				for (PooledConnection pooled : borrowed) {
+					if (!pooled.leakReported && now - pooled.borrowedAt > leakThreshold) {
+						pooled.leakReported = true;
+						ParallelUtils.log(Level.WARNING, "Possible database connection leak. Connection has been borrowed for "
+								+ (now - pooled.borrowedAt) + "ms");
+						if (pooled.borrowSite != null) {
+							pooled.borrowSite.printStackTrace();
+						}
+					}
+				}
+			}
+		} catch (Exception e) {
+			ParallelUtils.log(Level.WARNING, "Error while maintaining connection pool");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * A physical connection along with the bookkeeping the pool needs for it
+	 */
+	private class PooledConnection {
+		private final Connection physical;
+		private volatile long lastUsed = System.currentTimeMillis();
+		private volatile long borrowedAt;
+		private volatile Throwable borrowSite;
+		private volatile boolean leakReported;
+		// set when a statement that may change data runs, and cleared when the changes are committed or rolled back
+		private boolean uncommitted;
+
+		private PooledConnection(Connection physical) {
+			this.physical = physical;
+		}
+
+		/**
+		 * Creates a new proxy for this connection. A fresh proxy per borrow means a stale reference kept after
+		 * close() cannot touch the connection once someone else has borrowed it.
+		 */
+		private Connection newHandle() {
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+					new Handle(this));
+		}
+	}
+
+	/**
+	 * Forwards calls to the physical connection, returning it to the pool on close and closing any
+	 * statements the borrower forgot about
+	 */
+	private class Handle implements InvocationHandler {
+		private final PooledConnection pooled;
+		private final List<Statement> statements = new ArrayList<>();
+		private boolean returned = false;
+
+		private Handle(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close" -> {
+					if (!returned) {
+						returned = true;
+						for (Statement s : statements) {
+							try {
+								s.close();
+							} catch (SQLException ignored) { }
+						}
+						statements.clear();
+						release(pooled);
+					}
+					return null;
+				}
+				case "isClosed" -> {
+					return returned || pooled.physical.isClosed();
+				}
+				case "equals" -> {
+					return proxy == args[0];
+				}
+				case "hashCode" -> {
+					return System.identityHashCode(proxy);
+				}
+				case "toString" -> {
+					return "PooledConnection[" + pooled.physical + "]";
+				}
+			}
+
+			if (returned) throw new SQLException("Connection has already been returned to the pool");
+
+			try {
+				Object result = method.invoke(pooled.physical, args);
+				switch (method.getName()) {
+					case "commit", "rollback" -> pooled.uncommitted = false;
+					// turning auto-commit on commits whatever was pending
+					case "setAutoCommit" -> {
+						if ((Boolean) args[0]) pooled.uncommitted = false;
+					}
+				}
+				if (result instanceof Statement statement) {
+					// Statements closed by the borrower are dropped here so a long-lived handle doesn't hold on to them
+					statements.removeIf(Handle::isClosed);
+					statements.add(statement);
+					return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{method.getReturnType()},
+							new StatementHandle(pooled, statement));
+				}
+				return result;
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+		private static boolean isClosed(Statement statement) {
+			try {
+				return statement.isClosed();
+			} catch (SQLException e) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Forwards calls to a statement, noting when it runs anything other than a query so the connection is only
+	 * rolled back when it may have uncommitted changes
+	 */
+	private static class StatementHandle implements InvocationHandler {
+		private final PooledConnection pooled;
+		private final Statement statement;
+
+		private StatementHandle(PooledConnection pooled, Statement statement) {
+			this.pooled = pooled;
+			this.statement = statement;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "equals" -> {
+					return proxy == args[0];
+				}
+				case "hashCode" -> {
+					return System.identityHashCode(proxy);
+				}
+				case "toString" -> {
+					return statement.toString();
+				}
+				case "executeQuery" -> { }
+				default -> {
+					// execute() may run anything, so it is counted as a change like executeUpdate() and executeBatch()
+					if (method.getName().startsWith("execute")) {
+						pooled.uncommitted = true;
+					}
+				}
+			}
+			try {
+				return method.invoke(statement, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
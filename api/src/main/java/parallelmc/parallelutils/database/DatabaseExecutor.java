@@ -0,0 +1,258 @@
+package parallelmc.parallelutils.database;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import parallelmc.parallelutils.ParallelUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Runs database work off of the main server thread.
+ * Every task borrows a connection from the {@link ConnectionPool}, is committed if it completes normally and rolled
+ * back if it throws. Tasks submitted under the same module name run one at a time in submission order, so a module
+ * never sees its own writes reordered, and a module with a large backlog cannot starve the others of workers.
+ */
+public class DatabaseExecutor {
+
+	/**
+	 * A unit of database work that produces a result
+	 * @param <T> The type of the result
+	 */
+	@FunctionalInterface
+	public interface SqlFunction<T> {
+		T apply(Connection conn) throws SQLException;
+	}
+
+	/**
+	 * A unit of database work that produces no result
+	 */
+	@FunctionalInterface
+	public interface SqlConsumer {
+		void accept(Connection conn) throws SQLException;
+	}
+
+	private final Plugin plugin;
+	private final ConnectionPool pool;
+	private final int queueLimit;
+
+	private final ThreadPoolExecutor workers;
+	private final ConcurrentHashMap<String, ModuleQueue> queues = new ConcurrentHashMap<>();
+
+	private final Executor mainThread;
+
+	private volatile boolean shutdown = false;
+
+	/**
+	 * Creates a new DatabaseExecutor
+	 * @param plugin The plugin used to schedule callbacks on the main thread
+	 * @param pool The pool to borrow connections from
+	 * @param threads The number of worker threads. This should not be larger than the maximum pool size
+	 * @param queueLimit The maximum number of pending tasks per module before new tasks are rejected
+	 */
+	public DatabaseExecutor(Plugin plugin, ConnectionPool pool, int threads, int queueLimit) {
+		this.plugin = plugin;
+		this.pool = pool;
+		this.queueLimit = queueLimit;
+
+		AtomicInteger count = new AtomicInteger();
+		// Java 17 has no virtual threads, and JDBC drivers pin carrier threads anyway, so use a small fixed pool
+		this.workers = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+			Thread thread = new Thread(r, "ParallelUtils-DB-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		this.mainThread = r -> {
+			if (Bukkit.isPrimaryThread()) {
+				r.run();
+			} else if (plugin.isEnabled()) {
+				Bukkit.getScheduler().runTask(plugin, r);
+			} else {
+				// The scheduler refuses tasks from disabled plugins, so during shutdown just run the callback here
+				r.run();
+			}
+		};
+	}
+
+	/**
+	 * Runs a task that returns a value on a database worker
+	 * @param module The name of the module submitting the task. Tasks from the same module run in order
+	 * @param task The task to run
+	 * @return A CompletableFuture completed with the task's result on a database worker thread
+	 */
+	public <T> CompletableFuture<T> supply(String module, SqlFunction<T> task) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+
+		if (shutdown) {
+			future.completeExceptionally(new RejectedExecutionException("DatabaseExecutor has been shut down"));
+			return future;
+		}
+
+		ModuleQueue queue = queues.computeIfAbsent(module, ModuleQueue::new);
+		if (!queue.offer(() -> execute(module, task, future))) {
+			future.completeExceptionally(new RejectedExecutionException("Database queue for " + module + " is full"));
+		}
+		return future;
+	}
+
+	/**
+	 * Runs a task that returns nothing on a database worker
+	 * @param module The name of the module submitting the task. Tasks from the same module run in order
+	 * @param task The task to run
+	 * @return A CompletableFuture completed on a database worker thread once the task has been committed
+	 */
+	public CompletableFuture<Void> run(String module, SqlConsumer task) {
+		return supply(module, conn -> {
+			task.accept(conn);
+			return null;
+		});
+	}
+
+	/**
+	 * Runs a task on a database worker and passes the result to one of the callbacks on the main thread
+	 * @param module The name of the module submitting the task
+	 * @param task The task to run
+	 * @param onSuccess Called on the main thread with the result of the task
+	 * @param onFailure Called on the main thread with the exception if the task failed
+	 */
+	public <T> void supply(String module, SqlFunction<T> task, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+		supply(module, task).whenCompleteAsync((result, ex) -> {
+			if (ex == null) {
+				onSuccess.accept(result);
+			} else {
+				onFailure.accept(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+			}
+		}, mainThread);
+	}
+
+	/**
+	 * An Executor that runs tasks on the main server thread. Pass this to the {@code *Async} methods of
+	 * CompletableFuture to get back onto the main thread after database work completes
+	 * @return The main thread Executor
+	 */
+	public Executor mainThread() {
+		return mainThread;
+	}
+
+	/**
+	 * Returns the number of tasks waiting to run for the given module
+	 * @param module The name of the module
+	 * @return The number of pending tasks
+	 */
+	public int getPending(String module) {
+		ModuleQueue queue = queues.get(module);
+		return queue == null ? 0 : queue.size();
+	}
+
+	/**
+	 * Stops accepting new tasks and waits for queued tasks to finish
+	 * @param timeoutMillis The maximum time to wait, in milliseconds
+	 */
+	public void shutdown(long timeoutMillis) {
+		shutdown = true;
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+
+		// Module queues resubmit themselves as they drain, so wait for them to empty before closing the worker pool
+		try {
+			while (queues.values().stream().anyMatch(q -> q.size() > 0 || q.isRunning())) {
+				if (System.currentTimeMillis() > deadline) break;
+				Thread.sleep(10);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		workers.shutdown();
+		try {
+			long remaining = Math.max(0, deadline - System.currentTimeMillis());
+			if (!workers.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+				List<Runnable> dropped = workers.shutdownNow();
+				ParallelUtils.log(Level.WARNING, "DatabaseExecutor did not finish in time. Dropped " + dropped.size() + " queued tasks");
+			}
+		} catch (InterruptedException e) {
+			workers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private <T> void execute(String module, SqlFunction<T> task, CompletableFuture<T> future) {
+		try (Connection conn = pool.getConnection()) {
+			try {
+				T result = task.apply(conn);
+				conn.commit();
+				future.complete(result);
+			} catch (SQLException | RuntimeException e) {
+				conn.rollback();
+				throw e;
+			}
+		} catch (Throwable e) {
+			ParallelUtils.log(Level.WARNING, "Database task for " + module + " failed: " + e.getMessage());
+			future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * A FIFO of tasks for a single module. At most one task from each queue is on a worker at any time
+	 */
+	private class ModuleQueue {
+		private final String module;
+		private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+		private boolean running = false;
+
+		private ModuleQueue(String module) {
+			this.module = module;
+		}
+
+		private synchronized boolean offer(Runnable task) {
+			if (tasks.size() >= queueLimit) {
+				ParallelUtils.log(Level.WARNING, "Database queue for " + module + " is full. Rejecting task");
+				return false;
+			}
+			tasks.addLast(task);
+			if (!running) {
+				running = true;
+				workers.execute(this::runNext);
+			}
+			return true;
+		}
+
+		private void runNext() {
+			Runnable task;
+			synchronized (this) {
+				task = tasks.pollFirst();
+				if (task == null) {
+					running = false;
+					return;
+				}
+			}
+
+			try {
+				task.run();
+			} finally {
+				synchronized (this) {
+					if (tasks.isEmpty()) {
+						running = false;
+					} else {
+						// Go to the back of the worker queue so other modules get a turn
+						workers.execute(this::runNext);
+					}
+				}
+			}
+		}
+
+		private synchronized int size() {
+			return tasks.size();
+		}
+
+		private synchronized boolean isRunning() {
+			return running;
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package parallelmc.parallelutils.database;
+
+/**
+ * A snapshot of the state of a {@link ConnectionPool}
+ * @param active The number of connections currently borrowed
+ * @param idle The number of connections sitting in the pool
+ * @param total The number of physical connections currently open
+ * @param maxSize The maximum number of physical connections the pool will open
+ * @param borrows The total number of successful checkouts
+ * @param timeouts The total number of checkouts that gave up waiting for a connection
+ * @param avgWaitMicros The average time spent waiting for a connection, in microseconds
+ * @param maxWaitMicros The longest time spent waiting for a connection, in microseconds
+ */
+public record PoolStats(int active, int idle, int total, int maxSize, long borrows, long timeouts,
+                        long avgWaitMicros, long maxWaitMicros) { }
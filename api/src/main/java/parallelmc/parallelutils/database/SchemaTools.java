@@ -0,0 +1,110 @@
+package parallelmc.parallelutils.database;
+
+import parallelmc.parallelutils.ParallelUtils;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * A set of utilities for upgrading existing database tables
+ */
+public class SchemaTools {
+
+	// numbers the rows of a table being rebuilt so the newest of each set of duplicates can be found
+	private static final String ROW_COLUMN = "PU_RowNumber";
+
+	/**
+	 * Makes sure a table has a unique key over the given columns so that INSERT ... ON DUPLICATE KEY UPDATE works.
+	 * If the key is missing the table is rebuilt with the key, keeping one row of each set of duplicates
+	 * @param conn The connection to use
+	 * @param table The name of the table
+	 * @param keyName The name of the unique key
+	 * @param orderBy An ORDER BY clause deciding which duplicate row is kept, or null to keep the newest row
+	 * @param columns The columns of the unique key
+	 * @throws SQLException if a database access error occurs
+	 */
+	public static void ensureUniqueKey(Connection conn, String table, String keyName, String orderBy, String... columns)
+			throws SQLException {
+		if (hasIndex(conn, table, keyName)) return;
+
+		ParallelUtils.log(Level.WARNING, "Table " + table + " is missing unique key " + keyName + ". Rebuilding...");
+
+		String cols = String.join(", ", columns);
+		String tmp = table + "_tmp";
+		String old = table + "_old";
+		try (Statement statement = conn.createStatement()) {
+			// left behind if an earlier rebuild failed part way through
+			if (hasColumn(conn, table, ROW_COLUMN)) {
+				statement.execute("ALTER TABLE " + table + " DROP COLUMN " + ROW_COLUMN);
+			}
+			statement.execute("DROP TABLE IF EXISTS " + tmp);
+			statement.execute("CREATE TABLE " + tmp + " LIKE " + table);
+			statement.execute("ALTER TABLE " + tmp + " ADD CONSTRAINT " + keyName + " UNIQUE (" + cols + ")");
+
+			String order = orderBy;
+			if (order == null) {
+				// tables without a primary key keep their rows in the order they were inserted, which is the order
+				// they are numbered in here. The rows were loaded in that order too, so the last one always won
+				statement.execute("ALTER TABLE " + table + " ADD COLUMN " + ROW_COLUMN + " BIGINT NOT NULL AUTO_INCREMENT UNIQUE");
+				order = ROW_COLUMN + " DESC";
+			}
+			String copied = String.join(", ", getColumns(conn, tmp));
+			statement.execute("INSERT IGNORE INTO " + tmp + " (" + copied + ") SELECT " + copied + " FROM " + table
+					+ " ORDER BY " + order);
+			statement.execute("RENAME TABLE " + table + " TO " + old + ", " + tmp + " TO " + table);
+			statement.execute("DROP TABLE " + old);
+		}
+	}
+
+	/**
+	 * Checks if a table has a column with the given name
+	 * @param conn The connection to use
+	 * @param table The name of the table
+	 * @param column The name of the column
+	 * @return True if the column exists
+	 * @throws SQLException if a database access error occurs
+	 */
+	public static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+		try (ResultSet columns = conn.getMetaData().getColumns(conn.getCatalog(), null, table, column)) {
+			return columns.next();
+		}
+	}
+
+	/**
+	 * Gets the names of a table's columns
+	 * @param conn The connection to use
+	 * @param table The name of the table
+	 * @return The column names, in the order they appear in the table
+	 * @throws SQLException if a database access error occurs
+	 */
+	public static List<String> getColumns(Connection conn, String table) throws SQLException {
+		List<String> names = new ArrayList<>();
+		try (ResultSet columns = conn.getMetaData().getColumns(conn.getCatalog(), null, table, null)) {
+			while (columns.next()) {
+				names.add(columns.getString("COLUMN_NAME"));
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Checks if a table has an index with the given name
+	 * @param conn The connection to use
+	 * @param table The name of the table
+	 * @param indexName The name of the index
+	 * @return True if the index exists
+	 * @throws SQLException if a database access error occurs
+	 */
+	public static boolean hasIndex(Connection conn, String table, String indexName) throws SQLException {
+		try (ResultSet indexes = conn.getMetaData().getIndexInfo(conn.getCatalog(), null, table, false, false)) {
+			while (indexes.next()) {
+				if (indexName.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,269 @@
+package parallelmc.parallelutils.database;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import parallelmc.parallelutils.ParallelUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Keeps track of rows that have changed in memory and writes them to the database in batches.
+ * Modules call {@link #markDirty(Object, Object)} or {@link #markDeleted(Object)} whenever their in-memory state
+ * changes. Repeated changes to the same key before a flush are coalesced into a single write of the latest value.
+ * Dirty rows are flushed on the {@link DatabaseExecutor} every interval, or as soon as the number of dirty rows
+ * reaches the flush threshold.
+ * @param <K> The key type of a row
+ * @param <V> The value type of a row. Values should be immutable snapshots, since they are written from another thread
+ */
+public class WriteBehindStore<K, V> {
+
+	/**
+	 * Writes batches of changed rows to the database
+	 * @param <K> The key type of a row
+	 * @param <V> The value type of a row
+	 */
+	@FunctionalInterface
+	public interface Writer<K, V> {
+
+		/**
+		 * Writes one batch of changes
+		 * @param conn The connection to write with. It is committed by the caller
+		 * @param upserts The rows to insert or update
+		 * @param deletes The keys of the rows to delete
+		 */
+		void write(Connection conn, Map<K, V> upserts, Set<K> deletes) throws SQLException;
+	}
+
+	/**
+	 * A writer for rows that map onto a single upsert statement. Rows can't be deleted, use a
+	 * {@link DeletingMapping} for that
+	 * @param <K> The key type of a row
+	 * @param <V> The value type of a row
+	 */
+	public interface Mapping<K, V> extends Writer<K, V> {
+
+		/**
+		 * @return The statement used to insert or update a single row, usually an INSERT ... ON DUPLICATE KEY UPDATE
+		 */
+		String upsertSql();
+
+		/**
+		 * Binds the parameters of {@link #upsertSql()} for a single row
+		 */
+		void bindUpsert(PreparedStatement statement, K key, V value) throws SQLException;
+
+		@Override
+		default void write(Connection conn, Map<K, V> upserts, Set<K> deletes) throws SQLException {
+			if (!deletes.isEmpty()) {
+				throw new IllegalStateException("Rows were deleted from a store that can't delete them");
+			}
+			if (!upserts.isEmpty()) {
+				try (PreparedStatement statement = conn.prepareStatement(upsertSql())) {
+					for (Map.Entry<K, V> entry : upserts.entrySet()) {
+						bindUpsert(statement, entry.getKey(), entry.getValue());
+						statement.addBatch();
+					}
+					statement.executeBatch();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A {@link Mapping} that can also delete rows with a single delete statement
+	 * @param <K> The key type of a row
+	 * @param <V> The value type of a row
+	 */
+	public interface DeletingMapping<K, V> extends Mapping<K, V> {
+
+		/**
+		 * @return The statement used to delete a single row
+		 */
+		String deleteSql();
+
+		/**
+		 * Binds the parameters of {@link #deleteSql()} for a single row
+		 */
+		void bindDelete(PreparedStatement statement, K key) throws SQLException;
+
+		@Override
+		default void write(Connection conn, Map<K, V> upserts, Set<K> deletes) throws SQLException {
+			if (!deletes.isEmpty()) {
+				try (PreparedStatement statement = conn.prepareStatement(deleteSql())) {
+					for (K key : deletes) {
+						bindDelete(statement, key);
+						statement.addBatch();
+					}
+					statement.executeBatch();
+				}
+			}
+			Mapping.super.write(conn, upserts, Set.of());
+		}
+	}
+
+	/**
+	 * The unwritten change to a row, if there is one
+	 * @param state Whether the row has changed, been deleted, or has nothing waiting to be written
+	 * @param value The new value of the row, or null unless the state is CHANGED
+	 * @param <V> The value type of a row
+	 */
+	public record Pending<V>(State state, V value) {
+
+		public enum State {
+			NONE,
+			CHANGED,
+			DELETED
+		}
+	}
+
+	// Stands in for a value to mark a key as deleted, since ConcurrentHashMap does not allow null values
+	private static final Object DELETED = new Object();
+
+	private final DatabaseExecutor executor;
+	private final String module;
+	private final Writer<K, V> writer;
+	private final int flushThreshold;
+
+	private final ConcurrentHashMap<K, Object> dirty = new ConcurrentHashMap<>();
+	private final AtomicBoolean flushing = new AtomicBoolean(false);
+	private volatile CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+
+	private final BukkitTask flushTask;
+
+	/**
+	 * Creates a new WriteBehindStore and starts its periodic flush
+	 * @param plugin The plugin used to schedule the periodic flush
+	 * @param executor The executor to write with
+	 * @param module The module name passed to the executor. Writes are ordered with the module's other database tasks
+	 * @param writer Writes the changed rows
+	 * @param flushIntervalTicks How often dirty rows are flushed, in ticks
+	 * @param flushThreshold The number of dirty rows that triggers a flush before the interval is up
+	 */
+	public WriteBehindStore(Plugin plugin, DatabaseExecutor executor, String module, Writer<K, V> writer,
+	                        long flushIntervalTicks, int flushThreshold) {
+		this.executor = executor;
+		this.module = module;
+		this.writer = writer;
+		this.flushThreshold = Math.max(1, flushThreshold);
+
+		this.flushTask = Bukkit.getScheduler().runTaskTimer(plugin, this::flush, flushIntervalTicks, flushIntervalTicks);
+	}
+
+	/**
+	 * Records the latest value of a row. It will be written on the next flush
+	 * @param key The key of the row
+	 * @param value The new value of the row
+	 */
+	public void markDirty(K key, V value) {
+		dirty.put(key, value);
+		if (dirty.size() >= flushThreshold) {
+			flush();
+		}
+	}
+
+	/**
+	 * Records that a row has been removed. It will be deleted on the next flush
+	 * @param key The key of the row
+	 */
+	public void markDeleted(K key) {
+		dirty.put(key, DELETED);
+		if (dirty.size() >= flushThreshold) {
+			flush();
+		}
+	}
+
+	/**
+	 * Checks whether a row has an unwritten change. Useful when reloading a row that may not have been flushed yet
+	 * @param key The key of the row
+	 * @return The pending change, with a state of NONE if there isn't one
+	 */
+	public Pending<V> getPending(K key) {
+		Object value = dirty.get(key);
+		if (value == null) return new Pending<>(Pending.State.NONE, null);
+		if (value == DELETED) return new Pending<>(Pending.State.DELETED, null);
+		return new Pending<>(Pending.State.CHANGED, cast(value));
+	}
+
+	/**
+	 * @return The number of rows waiting to be written
+	 */
+	public int getDirtyCount() {
+		return dirty.size();
+	}
+
+	/**
+	 * Writes every dirty row. Does nothing if a flush is already running; the rows will be picked up by the next one
+	 * @return A future that completes once this flush has been written
+	 */
+	public CompletableFuture<Void> flush() {
+		if (dirty.isEmpty() || !flushing.compareAndSet(false, true)) {
+			return inFlight;
+		}
+
+		Map<K, V> upserts = new HashMap<>();
+		Set<K> deletes = new HashSet<>();
+		Map<K, Object> taken = new HashMap<>();
+		for (Map.Entry<K, Object> entry : dirty.entrySet()) {
+			K key = entry.getKey();
+			Object value = entry.getValue();
+			// only take the row if it hasn't changed again while we were iterating
+			if (dirty.remove(key, value)) {
+				taken.put(key, value);
+				if (value == DELETED) {
+					deletes.add(key);
+				} else {
+					upserts.put(key, cast(value));
+				}
+			}
+		}
+
+		inFlight = executor.run(module, conn -> writer.write(conn, upserts, deletes))
+				.whenComplete((v, ex) -> {
+					if (ex != null) {
+						// put the rows back unless they have changed since, so the next flush tries again
+						taken.forEach(dirty::putIfAbsent);
+						ParallelUtils.log(Level.WARNING, module + ": Failed to write " + taken.size() + " rows. Will retry");
+					}
+					flushing.set(false);
+				});
+		return inFlight;
+	}
+
+	/**
+	 * Stops the periodic flush and writes everything that is still dirty, waiting at most the given time
+	 * @param timeoutMillis The maximum time to wait, in milliseconds
+	 * @return True if every row was written in time
+	 */
+	public boolean close(long timeoutMillis) {
+		flushTask.cancel();
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		try {
+			// wait for any running flush, then flush whatever is left until nothing is dirty
+			while (System.currentTimeMillis() < deadline) {
+				inFlight.handle((v, ex) -> null).get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				if (dirty.isEmpty()) return true;
+				flush();
+			}
+		} catch (Exception e) {
+			ParallelUtils.log(Level.WARNING, module + ": Interrupted while writing pending rows");
+		}
+		if (!dirty.isEmpty()) {
+			ParallelUtils.log(Level.SEVERE, module + ": " + dirty.size() + " rows were not written before shutdown!");
+		}
+		return dirty.isEmpty();
+	}
+
+	@SuppressWarnings("unchecked")
+	private V cast(Object value) {
+		return (V) value;
+	}
+}
@@ -0,0 +1,96 @@
+package parallelmc.parallelutils.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * A map whose entries are removed after a while, for things like pending invites and requests.
+ * Expiry runs on a {@link TimingWheel}, so there is no scheduler task per entry. Replacing or removing an entry cancels
+ * its expiry, so an entry that has been taken can never also expire.
+ *
+ * Like the wheel, the map is only used on the main thread
+ * @param <K> The type of the keys
+ * @param <V> The type of the values
+ */
+public class ExpiringMap<K, V> {
+
+	private record Entry<V>(V value, TimingWheel.Timeout timeout) { }
+
+	private final TimingWheel wheel;
+	private final HashMap<K, Entry<V>> entries = new HashMap<>();
+
+	/**
+	 * @param wheel The wheel used to expire entries
+	 */
+	public ExpiringMap(TimingWheel wheel) {
+		this.wheel = wheel;
+	}
+
+	/**
+	 * Adds an entry, replacing any entry already under the key without it expiring
+	 * @param key The key
+	 * @param value The value
+	 * @param ticks How long the entry lasts, in ticks
+	 * @param onExpire Called with the entry if it expires before it is removed, or null
+	 */
+	public void put(K key, V value, long ticks, @Nullable BiConsumer<K, V> onExpire) {
+		remove(key);
+		// replacing or removing the entry cancels this, so it only ever runs for the entry it was made for
+		TimingWheel.Timeout timeout = wheel.schedule(ticks, () -> {
+			entries.remove(key);
+			if (onExpire != null) {
+				onExpire.accept(key, value);
+			}
+		});
+		entries.put(key, new Entry<>(value, timeout));
+	}
+
+	/**
+	 * @param key The key
+	 * @return The value, or null if there is no entry or it has expired
+	 */
+	@Nullable
+	public V get(K key) {
+		Entry<V> entry = entries.get(key);
+		return entry == null ? null : entry.value();
+	}
+
+	/**
+	 * @param key The key
+	 * @return True if there is an entry that hasn't expired
+	 */
+	public boolean containsKey(K key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * Removes an entry and cancels its expiry
+	 * @param key The key
+	 * @return The value that was removed, or null if there was none
+	 */
+	@Nullable
+	public V remove(K key) {
+		Entry<V> entry = entries.remove(key);
+		if (entry == null)
+			return null;
+		entry.timeout().cancel();
+		return entry.value();
+	}
+
+	/**
+	 * Removes every entry without any of them expiring
+	 */
+	public void clear() {
+		entries.values().forEach(x -> x.timeout().cancel());
+		entries.clear();
+	}
+
+	/**
+	 * @return The number of entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+}
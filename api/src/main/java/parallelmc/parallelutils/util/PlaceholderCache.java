@@ -0,0 +1,183 @@
+package parallelmc.parallelutils.util;
+
+import me.clip.placeholderapi.PlaceholderAPI;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Caches the results of PlaceholderAPI expansions per player, so slow expansions only run once per interval.
+ * Each placeholder can have its own time to live in the config, and a time to live of 0 turns caching off for it,
+ * so placeholders that aren't listed keep being looked up every time unless a default is set.
+ * A player's values are dropped when they leave, and modules can drop values early when they know one has changed.
+ * Lookups that aren't for a player, such as placeholders in item lore, are cached under a shared key.
+ *
+ * The cache can be used from any thread, including the async chat thread
+ */
+public class PlaceholderCache implements Listener {
+
+	// the same pattern PlaceholderAPI uses to find placeholders
+	private static final Pattern PLACEHOLDER = Pattern.compile("[%]([^%]+)[%]");
+
+	// the key used for lookups without a player
+	private static final UUID NO_PLAYER = new UUID(0, 0);
+
+	private record Entry(String value, long expiresAt) { }
+
+	private final ConcurrentHashMap<UUID, ConcurrentHashMap<String, Entry>> values = new ConcurrentHashMap<>();
+
+	private final HashMap<String, Long> ttls = new HashMap<>();
+	private final long defaultTtl;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	private final boolean enabled;
+
+	/**
+	 * @param defaultTtl How long a value is cached for when its placeholder has no time to live of its own, in milliseconds
+	 * @param ttls The time to live of individual placeholders in milliseconds, keyed by the placeholder including its % signs
+	 */
+	public PlaceholderCache(long defaultTtl, Map<String, Long> ttls) {
+		this.defaultTtl = defaultTtl;
+		this.ttls.putAll(ttls);
+		this.enabled = Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null;
+	}
+
+	/**
+	 * Creates a cache from the placeholder-cache section of the config
+	 * @param section The config section, or null to use the defaults
+	 * @return The new cache
+	 */
+	public static PlaceholderCache fromConfig(@Nullable ConfigurationSection section) {
+		if (section == null) {
+			return new PlaceholderCache(0, Map.of());
+		}
+		HashMap<String, Long> ttls = new HashMap<>();
+		ConfigurationSection ttlSection = section.getConfigurationSection("ttls");
+		if (ttlSection != null) {
+			// placeholders are written without their % signs in the config since yaml doesn't like them as keys
+			ttlSection.getKeys(false).forEach(k -> ttls.put("%" + k + "%", ttlSection.getLong(k) * 1000L));
+		}
+		return new PlaceholderCache(section.getLong("default-ttl", 0) * 1000L, ttls);
+	}
+
+	/**
+	 * Looks up a single placeholder
+	 * @param player The player to look the placeholder up for, or null
+	 * @param placeholder The placeholder, including its % signs
+	 * @return The placeholder's value
+	 */
+	public String get(@Nullable OfflinePlayer player, @NotNull String placeholder) {
+		if (!enabled) {
+			return placeholder;
+		}
+		long ttl = ttls.getOrDefault(placeholder, defaultTtl);
+		if (ttl <= 0) {
+			misses.increment();
+			return PlaceholderAPI.setPlaceholders(player, placeholder);
+		}
+
+		ConcurrentHashMap<String, Entry> playerValues = values.computeIfAbsent(player == null ? NO_PLAYER : player.getUniqueId(),
+				k -> new ConcurrentHashMap<>());
+		long now = System.currentTimeMillis();
+		Entry entry = playerValues.get(placeholder);
+		if (entry != null && now < entry.expiresAt()) {
+			hits.increment();
+			return entry.value();
+		}
+		misses.increment();
+		String value = PlaceholderAPI.setPlaceholders(player, placeholder);
+		playerValues.put(placeholder, new Entry(value, now + ttl));
+		return value;
+	}
+
+	/**
+	 * Replaces every placeholder in some text, looking each one up through the cache
+	 * @param player The player to look the placeholders up for, or null
+	 * @param text The text containing placeholders
+	 * @return The text with its placeholders replaced
+	 */
+	public String setPlaceholders(@Nullable OfflinePlayer player, @NotNull String text) {
+		if (!enabled || text.indexOf('%') == -1) {
+			return text;
+		}
+		Matcher matcher = PLACEHOLDER.matcher(text);
+		StringBuilder out = new StringBuilder(text.length());
+		while (matcher.find()) {
+			matcher.appendReplacement(out, Matcher.quoteReplacement(get(player, matcher.group())));
+		}
+		matcher.appendTail(out);
+		return out.toString();
+	}
+
+	/**
+	 * Drops every cached value for a player
+	 * @param uuid The player's UUID
+	 */
+	public void invalidate(UUID uuid) {
+		values.remove(uuid);
+	}
+
+	/**
+	 * Drops a single cached value for a player
+	 * @param uuid The player's UUID
+	 * @param placeholder The placeholder, including its % signs
+	 */
+	public void invalidate(UUID uuid, String placeholder) {
+		ConcurrentHashMap<String, Entry> playerValues = values.get(uuid);
+		if (playerValues != null) {
+			playerValues.remove(placeholder);
+		}
+	}
+
+	/**
+	 * Drops a placeholder's cached value for every player
+	 * @param placeholder The placeholder, including its % signs
+	 */
+	public void invalidatePlaceholder(String placeholder) {
+		values.values().forEach(x -> x.remove(placeholder));
+	}
+
+	/**
+	 * Drops every cached value
+	 */
+	public void invalidateAll() {
+		values.clear();
+	}
+
+	/**
+	 * @return A snapshot of the cache's counters
+	 */
+	public PlaceholderStats getStats() {
+		int cached = values.values().stream().mapToInt(Map::size).sum();
+		return new PlaceholderStats(hits.sum(), misses.sum(), cached, values.size());
+	}
+
+	/**
+	 * Resets the hit and miss counters
+	 */
+	public void resetStats() {
+		hits.reset();
+		misses.reset();
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerQuit(PlayerQuitEvent event) {
+		invalidate(event.getPlayer().getUniqueId());
+	}
+}
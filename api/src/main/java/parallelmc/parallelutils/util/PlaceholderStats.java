@@ -0,0 +1,10 @@
+package parallelmc.parallelutils.util;
+
+/**
+ * A snapshot of the state of a {@link PlaceholderCache}
+ * @param hits The number of lookups answered from the cache
+ * @param misses The number of lookups that had to run the expansion
+ * @param cached The number of values currently cached
+ * @param players The number of players with cached values
+ */
+public record PlaceholderStats(long hits, long misses, int cached, int players) { }
@@ -0,0 +1,148 @@
+package parallelmc.parallelutils.util;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import parallelmc.parallelutils.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.logging.Level;
+
+/**
+ * A hashed timing wheel for cheap timeouts. Timeouts are dropped into one of a fixed number of slots by the tick they
+ * are due on, and a single repeating task looks at one slot per tick, so scheduling and cancelling a timeout are
+ * constant time no matter how many are pending, and thousands of timeouts still cost one scheduler task.
+ *
+ * Timeouts longer than one turn of the wheel stay in their slot until the turn they are due on.
+ * The wheel, and every callback it runs, is only used on the main thread
+ */
+public class TimingWheel {
+
+	/**
+	 * A scheduled callback that can be cancelled until it has run
+	 */
+	public static final class Timeout {
+		private final long deadline;
+		private final Runnable task;
+		private boolean done = false;
+
+		private Timeout(long deadline, Runnable task) {
+			this.deadline = deadline;
+			this.task = task;
+		}
+
+		/**
+		 * Stops the callback from running
+		 * @return True if it was cancelled, false if it had already run or been cancelled
+		 */
+		public boolean cancel() {
+			if (done)
+				return false;
+			done = true;
+			return true;
+		}
+
+		/**
+		 * @return True once the callback has run or been cancelled
+		 */
+		public boolean isDone() {
+			return done;
+		}
+	}
+
+	private final ArrayList<Timeout>[] slots;
+	private final int mask;
+	private long tick = 0;
+	private BukkitTask task;
+
+	/**
+	 * @param slots The number of slots, rounded up to a power of two. One turn of the wheel takes this many ticks
+	 */
+	@SuppressWarnings("unchecked")
+	public TimingWheel(int slots) {
+		int size = Integer.highestOneBit(Math.max(slots, 2) - 1) << 1;
+		this.slots = new ArrayList[size];
+		for (int i = 0; i < size; i++) {
+			this.slots[i] = new ArrayList<>();
+		}
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Starts turning the wheel once a tick
+	 * @param plugin The plugin the task runs under
+	 */
+	public void start(Plugin plugin) {
+		if (task == null) {
+			task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::advance, 1L, 1L);
+		}
+	}
+
+	/**
+	 * Stops the wheel and drops every pending timeout without running it
+	 */
+	public void stop() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+		for (ArrayList<Timeout> slot : slots) {
+			slot.forEach(Timeout::cancel);
+			slot.clear();
+		}
+	}
+
+	/**
+	 * Schedules a callback
+	 * @param ticks How many ticks from now to run it, at least 1
+	 * @param callback The callback
+	 * @return The timeout, which can be used to cancel the callback
+	 */
+	public Timeout schedule(long ticks, Runnable callback) {
+		long deadline = tick + Math.max(ticks, 1);
+		Timeout timeout = new Timeout(deadline, callback);
+		slots[(int)(deadline & mask)].add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * @return The number of timeouts still waiting, including cancelled ones that haven't been cleared out yet
+	 */
+	public int size() {
+		int size = 0;
+		for (ArrayList<Timeout> slot : slots) {
+			size += slot.size();
+		}
+		return size;
+	}
+
+	// moves the wheel on one tick and runs everything that is due
+	private void advance() {
+		tick++;
+		ArrayList<Timeout> slot = slots[(int)(tick & mask)];
+		if (slot.isEmpty())
+			return;
+		// callbacks may schedule new timeouts into this slot, so work on a copy
+		ArrayList<Timeout> due = new ArrayList<>();
+		slot.removeIf(x -> {
+			if (x.done)
+				return true;
+			if (x.deadline > tick)
+				return false;
+			due.add(x);
+			return true;
+		});
+		for (Timeout timeout : due) {
+			// an earlier callback this tick may have cancelled it
+			if (timeout.done)
+				continue;
+			timeout.done = true;
+			try {
+				timeout.task.run();
+			}
+			catch (Exception e) {
+				ParallelUtils.log(Level.SEVERE, "Error while running a timeout");
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package parallelmc.parallelutils.modules.chestshops;
+
+import org.bukkit.Material;
+import org.bukkit.block.Container;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+import parallelmc.parallelutils.Fakes;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clicks a shop sign over and over, the way players do while buying in bulk.
+ * The shop sells 16 torches for 2 diamonds from a single or double chest that is half full of torches, with some
+ * diamonds it has already made. The buyer carries diamonds and a few other items
+ * <ul>
+ *     <li>success: the purchase goes through and the shopping inventory is filled from the chest</li>
+ *     <li>empty: the chest has no torches left, which is known after the first click</li>
+ *     <li>broke: the buyer has no diamonds</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AttemptPurchaseBenchmark {
+
+    @Param({ "success", "empty", "broke" })
+    public String outcome;
+
+    @Param({ "27", "54" })
+    public int chestSize;
+
+    private ChestShops chestShops;
+    private Shop shop;
+    private Player buyer;
+    private Container chest;
+
+    @Setup
+    public void setup() {
+        Fakes.installServer();
+        chestShops = new ChestShops(null, List.of());
+        shop = new Shop(UUID.randomUUID(), UUID.randomUUID(), null, null, Material.TORCH, 16, 2,
+                new ItemStack(Material.DIAMOND), ShopMode.BUY);
+
+        Inventory inv = Fakes.inventory(chestSize);
+        for (int slot = 0; slot < chestSize; slot++) {
+            if (slot % 2 == 0 && !outcome.equals("empty"))
+                inv.setItem(slot, new ItemStack(Material.TORCH, 64));
+            else if (slot % 9 == 1)
+                inv.setItem(slot, new ItemStack(Material.DIAMOND, 32));
+        }
+        chest = Fakes.container(inv);
+
+        buyer = Fakes.player("Buyer");
+        Inventory storage = buyer.getInventory();
+        storage.setItem(0, new ItemStack(Material.IRON_INGOT, 40));
+        storage.setItem(1, new ItemStack(Material.BREAD, 12));
+        storage.setItem(2, new ItemStack(Material.COBBLESTONE, 64));
+        if (!outcome.equals("broke")) {
+            storage.setItem(5, new ItemStack(Material.DIAMOND, 64));
+            storage.setItem(6, new ItemStack(Material.DIAMOND, 17));
+        }
+
+        ShopResult expected = switch (outcome) {
+            case "success" -> ShopResult.SUCCESS;
+            case "empty" -> ShopResult.SHOP_EMPTY;
+            default -> ShopResult.NO_CURRENCY;
+        };
+        ShopResult result = click();
+        if (result != expected)
+            throw new IllegalStateException("Expected " + expected + " but the purchase was " + result);
+    }
+
+    @Benchmark
+    public ShopResult click() {
+        ShopResult result = chestShops.attemptPurchase(buyer, shop, chest);
+        // closing the shopping inventory ends the session, as it does between clicks in game
+        chestShops.stopShopping(buyer);
+        return result;
+    }
+}
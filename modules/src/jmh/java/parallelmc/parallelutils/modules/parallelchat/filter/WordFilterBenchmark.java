@@ -0,0 +1,98 @@
+package parallelmc.parallelutils.modules.parallelchat.filter;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks chat messages against a filter built from 5000 banned words, about the size of the server's real lists.
+ * The words are made up from a fixed seed, so every run checks the same lists
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WordFilterBenchmark {
+
+    private static final int SUBSTRINGS = 4000;
+    private static final int WHOLE_WORDS = 700;
+    private static final int ALLOWED = 300;
+
+    private static final String[] CLEAN = {
+            "hey does anyone want to trade some diamonds for iron at spawn",
+            "&aWelcome &bback &cto the server everyone!",
+            "lol that was so g00d, gg wp",
+            "i c a n t believe that just happened",
+            "Is the nether portal near the shopping district still broken? I tried to use it earlier and it took me "
+                    + "somewhere in the middle of the ocean, which was not great because I had all my stuff on me",
+            "ok",
+    };
+
+    private List<String> substrings;
+    private List<String> wholeWords;
+    private List<String> allowed;
+    private WordFilter filter;
+    private String[] banned;
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(42);
+        substrings = words(rand, SUBSTRINGS);
+        wholeWords = words(rand, WHOLE_WORDS);
+        // allowed words wrap a banned word, like "class" around "ass"
+        allowed = new ArrayList<>();
+        for (int i = 0; i < ALLOWED; i++) {
+            allowed.add("x" + substrings.get(i) + "y");
+        }
+        filter = WordFilter.build(substrings, wholeWords, allowed);
+
+        // the banned words hidden in the ways players actually try to get words past the filter
+        // one with letters that have leetspeak forms, so every variant really is disguised
+        String word = substrings.stream().skip(SUBSTRINGS / 2).filter(x -> x.matches(".*[aeo].*")).findFirst().orElseThrow();
+        banned = new String[] {
+                "you are such a " + word,
+                "you are such a " + word.toUpperCase(),
+                "you are such a " + String.join(" ", word.split("")),
+                "you are such a " + word.replace('a', '4').replace('e', '3').replace('o', '0'),
+                "you are such a " + word.charAt(0) + "." + word.substring(1),
+                "&c" + wholeWords.get(WHOLE_WORDS / 2) + " &fis what you are",
+        };
+    }
+
+    @Benchmark
+    public void clean(Blackhole bh) {
+        for (String message : CLEAN) {
+            bh.consume(filter.findBanned(message));
+        }
+    }
+
+    @Benchmark
+    public void banned(Blackhole bh) {
+        for (String message : banned) {
+            bh.consume(filter.findBanned(message));
+        }
+    }
+
+    @Benchmark
+    public WordFilter build() {
+        return WordFilter.build(substrings, wholeWords, allowed);
+    }
+
+    private static List<String> words(Random rand, int count) {
+        List<String> words = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = 4 + rand.nextInt(6);
+            StringBuilder sb = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                sb.append((char) ('a' + rand.nextInt(26)));
+            }
+            words.add(sb.toString());
+        }
+        return words;
+    }
+}
@@ -0,0 +1,205 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import org.bukkit.Sound;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+import parallelmc.parallelutils.Fakes;
+import parallelmc.parallelutils.modules.parallelchat.emojis.Emoji;
+import parallelmc.parallelutils.modules.parallelchat.emojis.TokenTrie;
+import parallelmc.parallelutils.modules.parallelchat.filter.WordFilter;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sends the kinds of messages players actually send through every chat stage that works without a server:
+ * formatting, mentions and emojis, banned words, anti-caps and items.
+ * 200 players are online, 20 emojis are loaded and 5000 words are banned, made up from a fixed seed.
+ * The sender may use colors and every emoji, and holds nothing, so [item] is left as text.
+ * legacy runs the same messages through what the chat listener did before the pipeline, so the two can be compared
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ChatPipelineBenchmark {
+
+    private static final int PLAYERS = 200;
+    private static final int EMOJIS = 20;
+    private static final int BANNED_WORDS = 5000;
+    private static final int CAPS_MIN_LENGTH = 10;
+    private static final int CAPS_PERCENTAGE = 50;
+
+    private static final Pattern mention = Pattern.compile("@(\\S+)", Pattern.MULTILINE);
+    private static final Pattern caps = Pattern.compile("[A-Z]", Pattern.MULTILINE);
+    private static final Pattern emoji = Pattern.compile(":\\w+:");
+
+    private static final Map<String, String> MESSAGES = Map.of(
+            "plain", "hey does anyone want to trade some diamonds for iron at spawn",
+            "colors", "&aWelcome &bback &cto the server &#ff8800everyone!",
+            "mentions", "@Player17 and @player42 can you come to the shopping district, @Play is already here",
+            "emojis", "gg :emoji3: that was great :emoji12::emoji12: see you tomorrow :emoji7:",
+            "caps", "WHY IS THE SERVER LAGGING SO MUCH RIGHT NOW",
+            "long", "Is the nether portal near the shopping district still broken? I tried to use it earlier and it "
+                    + "took me somewhere in the middle of the ocean, which was not great because I had all my stuff "
+                    + "on me. @Player100 said they would look at it :emoji1: but that was yesterday [item]");
+
+    @Param({ "plain", "colors", "mentions", "emojis", "caps", "long" })
+    public String kind;
+
+    private ChatPipeline pipeline;
+    private Player sender;
+    private String message;
+
+    // what the old listener looked things up in
+    private HashMap<String, Player> onlineByName;
+    private HashMap<String, Emoji> emojisById;
+    private List<String> bannedWords;
+
+    @Setup
+    public void setup() {
+        Fakes.installServer();
+
+        HashMap<String, Player> online = new HashMap<>();
+        onlineByName = new HashMap<>();
+        for (int i = 0; i < PLAYERS; i++) {
+            Player player = Fakes.player("Player" + i);
+            online.put(player.getName(), player);
+            onlineByName.put(player.getName().toLowerCase(), player);
+        }
+        TokenTrie<Player> names = TokenTrie.build(online, true);
+
+        HashMap<String, Emoji> emojis = new HashMap<>();
+        HashSet<String> permissions = new HashSet<>(Set.of("parallelutils.chat.colors", "parallelutils.chat.hex"));
+        for (int i = 0; i < EMOJIS; i++) {
+            // emojis are drawn from the resource pack's private use characters
+            Emoji emoji = new Emoji("emoji" + i, ":emoji" + i + ":", String.valueOf((char) ('\uE000' + i)));
+            emojis.put(emoji.id(), emoji);
+            permissions.add("parallelutils.emoji." + emoji.name());
+        }
+        TokenTrie<Emoji> emojiTrie = TokenTrie.build(emojis, false);
+        emojisById = emojis;
+
+        // every message is clean, a banned one would be reported to the staff online
+        Random rand = new Random(42);
+        List<String> banned = new ArrayList<>(BANNED_WORDS);
+        for (int i = 0; i < BANNED_WORDS; i++) {
+            int length = 5 + rand.nextInt(5);
+            StringBuilder sb = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                sb.append((char) ('a' + rand.nextInt(26)));
+            }
+            banned.add(sb.toString());
+        }
+        WordFilter filter = WordFilter.build(banned, List.of(), List.of());
+        bannedWords = banned;
+
+        List<ChatStage> stages = new ArrayList<>(ChatPipeline.formattingStages());
+        stages.add(new MentionEmojiStage(() -> names, () -> emojiTrie));
+        stages.add(new BannedWordStage(() -> filter));
+        stages.add(new AntiCapsStage(CAPS_MIN_LENGTH, CAPS_PERCENTAGE));
+        stages.add(new ItemStage());
+        pipeline = new ChatPipeline(stages);
+
+        sender = Fakes.player("Sender", permissions);
+        message = MESSAGES.get(kind);
+        // a banned word would stop the message before the later stages, so make sure none got in by chance
+        if (filter.findBanned(message) != null)
+            throw new IllegalStateException("The " + kind + " message contains a banned word");
+    }
+
+    @Benchmark
+    public Object run() {
+        ChatContext context = new ChatContext(sender, message);
+        pipeline.run(context);
+        return context.getMessage();
+    }
+
+    // the old listener's steps that work without a server, in its order, with the chat log and chat rooms left out
+    @Benchmark
+    public Object legacy() {
+        Component msg = Component.text(message);
+        String msgStr = LegacyComponentSerializer.legacyAmpersand().serialize(msg);
+
+        if (!sender.hasPermission("parallelutils.chat.colors")) {
+            msgStr = msgStr.replaceAll("&[[0-9][a-f]]", "");
+        }
+        if (!sender.hasPermission("parallelutils.chat.hex")) {
+            msgStr = msgStr.replaceAll("&#(.{6})", "");
+        }
+        if (!sender.hasPermission("parallelutils.chat.formats")) {
+            msgStr = msgStr.replaceAll("&[[l-o]r]", "");
+        }
+        if (!sender.hasPermission("parallelutils.chat.magic")) {
+            msgStr = msgStr.replaceAll("&k", "");
+        }
+        msg = Component.text(msgStr);
+
+        Matcher mentionMatcher = mention.matcher(msgStr);
+        ArrayList<Player> mentionedPlayers = new ArrayList<>();
+        while (mentionMatcher.find()) {
+            String match = mentionMatcher.group();
+            Player matchPlayer = getPlayer(mentionMatcher.group(1));
+            if (matchPlayer != null) {
+                msg = msg.replaceText(x -> x.matchLiteral(match).replacement(Component.text(match, NamedTextColor.YELLOW)));
+                matchPlayer.playSound(matchPlayer.getLocation(), Sound.BLOCK_NOTE_BLOCK_PLING, 1f, 1f);
+                mentionedPlayers.add(matchPlayer);
+            }
+        }
+
+        Matcher emojiMatcher = emoji.matcher(msgStr);
+        while (emojiMatcher.find()) {
+            Emoji emoji = emojisById.get(emojiMatcher.group());
+            if (emoji != null && sender.hasPermission("parallelutils.emoji." + emoji.name())) {
+                msg = msg.replaceText(y -> y.matchLiteral(emoji.id()).replacement(Component.text(emoji.replacement()).hoverEvent(Component.text(emoji.id()).asHoverEvent())));
+            }
+        }
+
+        String checkSlurs = msgStr.toLowerCase();
+        for (String x : bannedWords) {
+            if (checkSlurs.contains(x))
+                return null;
+        }
+
+        if (msgStr.length() >= CAPS_MIN_LENGTH) {
+            Matcher capsMatcher = caps.matcher(msgStr);
+            double matches = 0D;
+            while (capsMatcher.find()) {
+                matches++;
+            }
+            if ((matches / (double) msgStr.length()) * 100D >= (double) CAPS_PERCENTAGE) {
+                msg = LegacyComponentSerializer.legacyAmpersand().deserialize(msgStr.toLowerCase());
+            }
+        }
+
+        // the renderer
+        return LegacyComponentSerializer.legacyAmpersand().deserialize(LegacyComponentSerializer.legacyAmpersand().serialize(msg));
+    }
+
+    // how the server found a mentioned player: by exact name, or else the online name it is the closest prefix of
+    private Player getPlayer(String name) {
+        String lower = name.toLowerCase();
+        Player found = onlineByName.get(lower);
+        if (found != null)
+            return found;
+        int delta = Integer.MAX_VALUE;
+        for (Player player : onlineByName.values()) {
+            if (player.getName().toLowerCase().startsWith(lower)) {
+                int curDelta = Math.abs(player.getName().length() - lower.length());
+                if (curDelta < delta) {
+                    found = player;
+                    delta = curDelta;
+                }
+                if (curDelta == 0)
+                    break;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,125 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+import parallelmc.parallelutils.Fakes;
+import parallelmc.parallelutils.modules.parallelchat.emojis.Emoji;
+import parallelmc.parallelutils.modules.parallelchat.emojis.TokenTrie;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds mentions and emojis in chat with 200 players online and 100 emojis loaded, and measures what a player joining
+ * and leaving costs the name trie. Names and emoji ids are made up from a fixed seed, so every run uses the same ones.
+ * The sender may use every emoji
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MentionEmojiStageBenchmark {
+
+    private static final int PLAYERS = 200;
+    private static final int EMOJIS = 100;
+
+    private HashMap<String, Player> online;
+    private TokenTrie<Player> names;
+    private MentionEmojiStage stage;
+    private Player sender;
+    private Player joining;
+
+    private String plain;
+    private String mentions;
+    private String emojis;
+    private String mixed;
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(42);
+        online = new HashMap<>();
+        while (online.size() < PLAYERS) {
+            Player player = Fakes.player(name(rand));
+            online.put(player.getName(), player);
+        }
+        names = TokenTrie.build(online, true);
+
+        HashMap<String, Emoji> loaded = new HashMap<>();
+        HashSet<String> permissions = new HashSet<>();
+        while (loaded.size() < EMOJIS) {
+            String name = word(rand, 3 + rand.nextInt(8));
+            // emojis are drawn from the resource pack's private use characters
+            Emoji emoji = new Emoji(name, ":" + name + ":", String.valueOf((char) ('\uE000' + loaded.size())));
+            loaded.put(emoji.id(), emoji);
+            permissions.add("parallelutils.emoji." + name);
+        }
+        TokenTrie<Emoji> emojiTrie = TokenTrie.build(loaded, false);
+        stage = new MentionEmojiStage(() -> names, () -> emojiTrie);
+        sender = Fakes.player("Sender", permissions);
+        joining = Fakes.player("Joining_Player");
+
+        List<String> playerNames = new ArrayList<>(new TreeSet<>(online.keySet()));
+        List<String> ids = new ArrayList<>(new TreeSet<>(loaded.keySet()));
+        plain = "hey does anyone want to trade some diamonds for iron at spawn, I'll be there at 5:30 or so";
+        mentions = "@" + playerNames.get(10) + " and @" + playerNames.get(120).toLowerCase() + " come to spawn, @"
+                + playerNames.get(50).substring(0, 3) + " is already here";
+        emojis = "gg " + ids.get(3) + " that was great " + ids.get(40) + ids.get(40) + " see you tomorrow " + ids.get(77);
+        mixed = "@" + playerNames.get(199) + " " + ids.get(0) + " did you see what @" + playerNames.get(7)
+                + " built? it's :not_an_emoji: amazing " + ids.get(99) + " @nobody_with_this_name";
+    }
+
+    @Benchmark
+    public ChatContext plain() {
+        return process(plain);
+    }
+
+    @Benchmark
+    public ChatContext mentions() {
+        return process(mentions);
+    }
+
+    @Benchmark
+    public ChatContext emojis() {
+        return process(emojis);
+    }
+
+    @Benchmark
+    public ChatContext mixed() {
+        return process(mixed);
+    }
+
+    @Benchmark
+    public TokenTrie<Player> joinAndQuit() {
+        return names.with(joining.getName(), joining).without(joining.getName());
+    }
+
+    // what every join and quit cost when the whole name trie was built again
+    @Benchmark
+    public TokenTrie<Player> rebuild() {
+        return TokenTrie.build(online, true);
+    }
+
+    private ChatContext process(String message) {
+        ChatContext context = new ChatContext(sender, message);
+        stage.process(context);
+        return context;
+    }
+
+    // player names share a lot of prefixes, like Steve, Steven and Steve_123
+    private static String name(Random rand) {
+        String[] starts = { "Steve", "Alex", "Dark", "Mine", "Craft", "Pro", "xX", "The", "Mr", "Lord" };
+        String name = starts[rand.nextInt(starts.length)] + word(rand, 1 + rand.nextInt(6));
+        if (rand.nextBoolean())
+            name += "_" + rand.nextInt(1000);
+        return name.length() > 16 ? name.substring(0, 16) : name;
+    }
+
+    private static String word(Random rand, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + rand.nextInt(26)));
+        }
+        return sb.toString();
+    }
+}
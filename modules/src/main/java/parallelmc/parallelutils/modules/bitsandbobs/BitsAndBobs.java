@@ -54,7 +54,7 @@ public class BitsAndBobs extends ParallelModule {
 
         FileConfiguration config = puPlugin.getConfig();
 
-        puPlugin.getCommand("togglepvp").setExecutor(new TogglePvpCommand());
+        puPlugin.getCommand("togglepvp").setExecutor(new TogglePvpCommand(pvpManager));
 
         manager.registerEvents(new DoorKnocker(), plugin);
         manager.registerEvents(new SpecialItems(), plugin);
@@ -10,17 +10,24 @@ import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
 import java.util.UUID;
 
 public class TogglePvpCommand implements CommandExecutor {
+
+    private final TogglePvpManager manager;
+
+    public TogglePvpCommand(TogglePvpManager manager) {
+        this.manager = manager;
+    }
+
     @Override
     public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String label, String[] args) {
         if (commandSender instanceof Player player) {
             UUID uuid = player.getUniqueId();
             if (!TogglePvpManager.pvpToggles.containsKey(uuid)) {
-                TogglePvpManager.pvpToggles.put(uuid, true);
+                manager.setPvp(uuid, true);
                 ParallelChat.sendParallelMessageTo(player, "Toggled PVP on!");
             }
             else {
                 boolean pvp = TogglePvpManager.pvpToggles.get(uuid);
-                TogglePvpManager.pvpToggles.put(uuid, !pvp);
+                manager.setPvp(uuid, !pvp);
                 // use the opposite in the lambda since it's flipped
                 ParallelChat.sendParallelMessageTo(player, "Toggled PVP " + (pvp ? "off!" : "on!"));
             }
@@ -1,74 +1,92 @@
 package parallelmc.parallelutils.modules.bitsandbobs.minimodules.togglepvp;
 
 import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.database.DatabaseExecutor;
+import parallelmc.parallelutils.database.SchemaTools;
+import parallelmc.parallelutils.database.WriteBehindStore;
 
 import java.sql.*;
 import java.util.HashMap;
 import java.util.UUID;
+import java.util.logging.Level;
 
 public class TogglePvpManager {
+    private static final String MODULE = "BitsAndBobs";
+
     private final ParallelUtils puPlugin;
+    private final DatabaseExecutor executor;
+    private WriteBehindStore<UUID, Boolean> store;
     public static HashMap<UUID, Boolean> pvpToggles = new HashMap<>();
 
     public TogglePvpManager(ParallelUtils puPlugin) {
         this.puPlugin = puPlugin;
+        this.executor = puPlugin.getDbExecutor();
     }
 
     public void init() {
         // init database
-        try (Connection conn = puPlugin.getDbConn()) {
-            if (conn == null) throw new SQLException("Unable to establish connection!");
-            Statement statement = conn.createStatement();
-            statement.setQueryTimeout(15);
-            statement.execute("""
-                    create table if not exists TogglePvp
-                    (
-                        UUID        varchar(36) not null,
-                        Pvp         tinyint     not null
-                    );""");
-            conn.commit();
-            statement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        executor.run(MODULE, conn -> {
+            try (Statement statement = conn.createStatement()) {
+                statement.setQueryTimeout(15);
+                statement.execute("""
+                        create table if not exists TogglePvp
+                        (
+                            UUID        varchar(36) not null,
+                            Pvp         tinyint     not null,
+                            constraint TogglePvp_UUID_uindex
+                                unique (UUID)
+                        );""");
+            }
+            // older tables were created without a key, so the upsert below never updated anything
+            SchemaTools.ensureUniqueKey(conn, "TogglePvp", "TogglePvp_UUID_uindex", null, "UUID");
+        });
 
         // load database into hashmap
-        try (Connection conn = puPlugin.getDbConn()) {
-            if (conn == null) throw new SQLException("Unable to establish connection!");
-            Statement statement = conn.createStatement();
-            statement.setQueryTimeout(10);
-            ResultSet results = statement.executeQuery("select * from TogglePvp");
-            while (results.next()) {
-                UUID uuid = UUID.fromString(results.getString("UUID"));
-                boolean pvp = results.getBoolean("Pvp");
-                pvpToggles.put(uuid, pvp);
+        // tasks from the same module run in order, so the table is guaranteed to exist by now
+        executor.supply(MODULE, conn -> {
+            HashMap<UUID, Boolean> loaded = new HashMap<>();
+            try (Statement statement = conn.createStatement()) {
+                statement.setQueryTimeout(10);
+                ResultSet results = statement.executeQuery("select * from TogglePvp");
+                while (results.next()) {
+                    UUID uuid = UUID.fromString(results.getString("UUID"));
+                    boolean pvp = results.getBoolean("Pvp");
+                    loaded.put(uuid, pvp);
+                }
+            }
+            return loaded;
+        }, loaded -> {
+            // anyone who toggled while we were loading keeps their new setting
+            loaded.forEach(pvpToggles::putIfAbsent);
+        }, ex -> ParallelUtils.log(Level.SEVERE, "Failed to load PVP toggles: " + ex.getMessage()));
+
+        this.store = puPlugin.createWriteBehindStore(MODULE, new WriteBehindStore.Mapping<>() {
+            @Override
+            public String upsertSql() {
+                return "INSERT INTO TogglePvp (UUID, Pvp) VALUES (?, ?) ON DUPLICATE KEY UPDATE Pvp = ?";
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+
+            @Override
+            public void bindUpsert(PreparedStatement statement, UUID key, Boolean value) throws SQLException {
+                statement.setString(1, key.toString());
+                statement.setBoolean(2, value);
+                statement.setBoolean(3, value);
+            }
+        });
+    }
+
+    /**
+     * Sets a player's PVP toggle and queues it to be saved
+     * @param uuid The player's UUID
+     * @param pvp True if the player has PVP enabled
+     */
+    public void setPvp(UUID uuid, boolean pvp) {
+        pvpToggles.put(uuid, pvp);
+        store.markDirty(uuid, pvp);
     }
 
     public void unload() {
-        // unload hashmap back into database
-        try (Connection conn = puPlugin.getDbConn()) {
-            if (conn == null) throw new SQLException("Unable to establish connection!");
-            PreparedStatement statement = conn.prepareStatement("INSERT INTO TogglePvp (UUID, Pvp) VALUES (?, ?) ON DUPLICATE KEY UPDATE Pvp = ?");
-            statement.setQueryTimeout(30);
-            this.pvpToggles.forEach((u, p) -> {
-                try {
-                    statement.setString(1, u.toString());
-                    statement.setBoolean(2, p);
-                    statement.setBoolean(3, p);
-                    statement.addBatch();
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
-            });
-            statement.executeBatch();
-            conn.commit();
-            statement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        // write out anything that changed since the last flush
+        store.close(puPlugin.getConfig().getLong("sql.write-behind.shutdown-timeout", 15000));
     }
 }
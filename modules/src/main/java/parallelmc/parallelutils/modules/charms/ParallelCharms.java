@@ -85,7 +85,7 @@ public class ParallelCharms extends ParallelModule {
 		}
 
 		// Register handlers
-		if (!registerHandler(new CharmKillMessageHandler())) {
+		if (!registerHandler(new CharmKillMessageHandler(puPlugin.getPlaceholderCache()))) {
 			ParallelUtils.log(Level.WARNING, "Could not register MESSAGE_KILL");
 		}
 		if (!registerHandler(new CharmStyleNameHandler())) {
@@ -94,7 +94,7 @@ public class ParallelCharms extends ParallelModule {
 		if (!registerHandler(new CharmParticleHandler())) {
 			ParallelUtils.log(Level.WARNING, "Could not register PARTICLE");
 		}
-		if (!registerHandler(new CharmLoreHandler())) {
+		if (!registerHandler(new CharmLoreHandler(puPlugin.getPlaceholderCache()))) {
 			ParallelUtils.log(Level.WARNING, "Could not register LORE");
 		}
 		if (!registerHandler(new CharmTestRunnableHandler())) {
@@ -1,6 +1,5 @@
 package parallelmc.parallelutils.modules.charms.data;
 
-import me.clip.placeholderapi.PlaceholderAPI;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.Bukkit;
@@ -345,7 +344,7 @@ public class Charm {
 				String[] parts = loreTotal.split("\n");
 
 				for (String s : parts) {
-					String part = PlaceholderAPI.setPlaceholders(null, s);
+					String part = puPlugin.getPlaceholderCache().setPlaceholders(null, s);
 					lore.add(MiniMessage.miniMessage().deserialize(part));
 				}
 			}
@@ -367,7 +366,7 @@ public class Charm {
 				String[] parts = loreTotal.split("\n");
 
 				for (String s : parts) {
-					String part = PlaceholderAPI.setPlaceholders(null, s);
+					String part = puPlugin.getPlaceholderCache().setPlaceholders(null, s);
 					lore.add(MiniMessage.miniMessage().deserialize(part));
 				}
 			}
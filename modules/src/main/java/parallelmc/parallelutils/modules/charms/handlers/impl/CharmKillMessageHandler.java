@@ -1,6 +1,5 @@
 package parallelmc.parallelutils.modules.charms.handlers.impl;
 
-import me.clip.placeholderapi.PlaceholderAPI;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
@@ -16,13 +15,17 @@ import parallelmc.parallelutils.modules.charms.handlers.HandlerType;
 import parallelmc.parallelutils.modules.charms.handlers.ICharmHandler;
 import parallelmc.parallelutils.modules.charms.helper.EncapsulatedType;
 import parallelmc.parallelutils.modules.charms.helper.Types;
+import parallelmc.parallelutils.util.PlaceholderCache;
 
 import java.util.HashMap;
 
 public class CharmKillMessageHandler extends ICharmHandler<PlayerDeathEvent> {
 
-	public CharmKillMessageHandler() {
+	private final PlaceholderCache placeholderCache;
+
+	public CharmKillMessageHandler(PlaceholderCache placeholderCache) {
 		super(PlayerDeathEvent.class);
+		this.placeholderCache = placeholderCache;
 	}
 
 	@Override
@@ -60,7 +63,7 @@ public class CharmKillMessageHandler extends ICharmHandler<PlayerDeathEvent> {
 
 		String miniMsg = (String) message.getVal();
 
-		String replaced = PlaceholderAPI.setPlaceholders(player, miniMsg);
+		String replaced = placeholderCache.setPlaceholders(player, miniMsg);
 
 		Component cmp = MiniMessage.builder().build().deserialize(replaced, placeholders);
 
@@ -1,6 +1,5 @@
 package parallelmc.parallelutils.modules.charms.handlers.impl;
 
-import me.clip.placeholderapi.PlaceholderAPI;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
@@ -15,6 +14,7 @@ import parallelmc.parallelutils.modules.charms.handlers.HandlerType;
 import parallelmc.parallelutils.modules.charms.handlers.ICharmApplyHandler;
 import parallelmc.parallelutils.modules.charms.helper.EncapsulatedType;
 import parallelmc.parallelutils.modules.charms.helper.Types;
+import parallelmc.parallelutils.util.PlaceholderCache;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -22,6 +22,12 @@ import java.util.List;
 
 public class CharmLoreHandler extends ICharmApplyHandler {
 
+	private final PlaceholderCache placeholders;
+
+	public CharmLoreHandler(PlaceholderCache placeholders) {
+		this.placeholders = placeholders;
+	}
+
 	@Override
 	public void apply(Player player, @NotNull ItemStack item, @NotNull CharmOptions options) {
 		ItemMeta meta = item.getItemMeta();
@@ -62,7 +68,7 @@ public class CharmLoreHandler extends ICharmApplyHandler {
 		);
 
 		for (String s : parts) {
-			String part = PlaceholderAPI.setPlaceholders(player, s);
+			String part = placeholders.setPlaceholders(player, s);
 			lore.add(MiniMessage.miniMessage().deserialize(part, resolver));
 		}
 
@@ -1,7 +1,9 @@
 package parallelmc.parallelutils.modules.chestshops;
 
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
@@ -10,8 +12,8 @@ import org.bukkit.block.Container;
 import org.bukkit.block.DoubleChest;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.DoubleChestInventory;
 import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.PluginManager;
@@ -20,29 +22,65 @@ import parallelmc.parallelutils.Constants;
 import parallelmc.parallelutils.ParallelClassLoader;
 import parallelmc.parallelutils.ParallelModule;
 import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.modules.chestshops.commands.ParallelShopFind;
+import parallelmc.parallelutils.modules.chestshops.commands.ParallelShopStats;
+import parallelmc.parallelutils.modules.chestshops.commands.ShopCommand;
+import parallelmc.parallelutils.modules.chestshops.commands.ShopCommands;
 import parallelmc.parallelutils.modules.chestshops.events.*;
 
-import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 public class ChestShops extends ParallelModule {
 
     private final HashMap<UUID, HashSet<Shop>> chestShops = new HashMap<>();
+    private final ShopIndex shopIndex = new ShopIndex();
+    private final ShopPriceIndex priceIndex = new ShopPriceIndex();
+
+    // chunks with at least one shop chest or sign in them, by world name, whether or not they are loaded
+    private final HashMap<String, LongOpenHashSet> shopChunks = new HashMap<>();
+    // chunks whose shops have been loaded (or are being loaded), by world UID
+    private final HashMap<UUID, LongOpenHashSet> loadedChunks = new HashMap<>();
+    // chunks whose shops are still being read from the database, by world UID
+    private final HashMap<UUID, LongOpenHashSet> loadingChunks = new HashMap<>();
+    // false until the chunks with shops are known, before then any chunk could have a shop in it
+    private boolean shopChunksKnown = false;
+
+    // the price index is only filled the first time something needs it
+    private CompletableFuture<ShopPriceIndex> priceIndexLoad = null;
+    // shops removed while the price index was being filled, so their old listings aren't added back
+    private final HashSet<UUID> removedWhileIndexing = new HashSet<>();
+
     private final HashMap<UUID, Inventory> shopPreviews = new HashMap<>();
     private final HashMap<UUID, ShopperData> shoppingPlayers = new HashMap<>();
+    // reverse lookups for the maps above, so inventory events don't have to search every session
+    // CraftInventory equality is by the backing container, so these match any wrapper of the same inventory
+    private final HashMap<Inventory, ShopperData> sessionsByInventory = new HashMap<>();
+    private final HashMap<Inventory, UUID> previewsByInventory = new HashMap<>();
+    private final HashMap<UUID, Set<UUID>> shoppersByShop = new HashMap<>();
+    // kept between purchases so that every click doesn't create a new inventory
+    private final HashMap<UUID, Inventory> shoppingInventories = new HashMap<>();
 
     private ParallelUtils puPlugin;
+    private ShopDatabase database;
+    private TransactionLedger ledger;
+    private ShopCommands shopCommands;
 
     private static ChestShops INSTANCE;
 
-    // 26 stacks of 64 diamonds
-    private static final int MAX_DIAMONDS = 1664;
-
     public ChestShops(ParallelClassLoader classLoader, List<String> dependents) {
         super(classLoader, dependents);
     }
 
+    // for tests, which have no plugin to enable the module with
+    ChestShops(ShopDatabase database) {
+        this(null, List.of());
+        this.database = database;
+        this.shopChunksKnown = true;
+    }
+
     @Override
     public void onLoad() {
 
@@ -67,55 +105,31 @@ public class ChestShops extends ParallelModule {
             return;
         }
 
-        try (Connection conn = puPlugin.getDbConn()) {
-            if (conn == null) throw new SQLException("Unable to establish connection!");
-            Statement statement = conn.createStatement();
-            statement.setQueryTimeout(15);
-            statement.execute("""
-                    create table if not exists ChestShops
-                    (
-                        shopID      varchar(36) not null,
-                        UUID        varchar(36) not null,
-                        World       varchar(32) not null,
-                        ChestX      int         not null,
-                        ChestY      int         not null,
-                        ChestZ      int         not null,
-                        SignX       int         not null,
-                        SignY       int         not null,
-                        SignZ       int         not null,
-                        Item        varchar(50) not null,
-                        SellAmt     int         not null,
-                        BuyAmt      int         not null,
-                        constraint ChestShops_UUID_uindex
-					        unique (shopID),
-					    PRIMARY KEY (shopID)
-                    );""");
-            conn.commit();
-            statement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        this.database = new ShopDatabase(puPlugin.getDbExecutor());
+        database.init();
+
+        this.ledger = new TransactionLedger(puPlugin, puPlugin.getDbExecutor(),
+                puPlugin.getConfig().getLong("sql.write-behind.flush-interval", 600),
+                puPlugin.getConfig().getInt("sql.write-behind.flush-threshold", 500));
 
-        // load existing player config
-        try (Connection conn = puPlugin.getDbConn()) {
-            if (conn == null) throw new SQLException("Unable to establish connection!");
-            Statement statement = conn.createStatement();
-            statement.setQueryTimeout(60);
-            ResultSet results = statement.executeQuery("select * from ChestShops");
-            while (results.next()) {
-                UUID uuid = UUID.fromString(results.getString("UUID"));
-                UUID id = UUID.fromString(results.getString("shopID"));
-                World world = puPlugin.getServer().getWorld(results.getString("World"));
-                Location chestLoc = new Location(world, results.getInt("ChestX"), results.getInt("ChestY"), results.getInt("ChestZ"));
-                Location signLoc = new Location(world, results.getInt("SignX"), results.getInt("SignY"), results.getInt("SignZ"));
-                Material item = Material.getMaterial(results.getString("Item"));
-                int sellAmt = results.getInt("SellAmt");
-                int buyAmt = results.getInt("BuyAmt");
-                addShop(uuid, id, chestLoc, signLoc, item, sellAmt, buyAmt);
+        // only find out which chunks have shops for now, the shops themselves are loaded as their chunks load
+        database.loadShopChunks().whenCompleteAsync((chunks, ex) -> {
+            shopChunksKnown = true;
+            if (ex != null) {
+                ParallelUtils.log(Level.SEVERE, "ChestShops: Failed to find the chunks with shops: " + ex.getMessage());
+                return;
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+            // keep the chunks of shops that were created while we were loading
+            chunks.forEach((world, keys) -> shopChunks.computeIfAbsent(world, k -> new LongOpenHashSet()).addAll(keys));
+            int count = 0;
+            for (World world : puPlugin.getServer().getWorlds()) {
+                for (Chunk chunk : world.getLoadedChunks()) {
+                    if (loadShopsInChunk(chunk)) count++;
+                }
+            }
+            ParallelUtils.log(Level.INFO, "ChestShops: Found shops in "
+                    + shopChunks.values().stream().mapToInt(LongOpenHashSet::size).sum() + " chunks, loading " + count + " chunks now.");
+        }, database.getExecutor().mainThread());
 
         manager.registerEvents(new OnSignText(), puPlugin);
         manager.registerEvents(new OnClickBlock(), puPlugin);
@@ -123,45 +137,27 @@ public class ChestShops extends ParallelModule {
         manager.registerEvents(new OnPreviewInteract(), puPlugin);
         manager.registerEvents(new OnShopInteract(), puPlugin);
         manager.registerEvents(new OnSignEdit(), puPlugin);
+        manager.registerEvents(new OnChunkShops(), puPlugin);
+        manager.registerEvents(new OnShopStockChange(), puPlugin);
+
+        shopCommands = new ShopCommands();
+        puPlugin.getCommand("shop").setExecutor(shopCommands);
+        puPlugin.getCommand("shop").setTabCompleter(shopCommands);
+        shopCommands.addCommand("stats", new ParallelShopStats());
+        shopCommands.addCommand("find", new ParallelShopFind());
 
         INSTANCE = this;
     }
 
     @Override
     public void onDisable() {
-        try (Connection conn = puPlugin.getDbConn()) {
-            if (conn == null) throw new SQLException("Unable to establish connection!");
-            // allow duplicate player uuids since players can have multiple shops
-            // however, shop ids should never be the same nor update their data
-            // so do nothing in that case
-            PreparedStatement statement = conn.prepareStatement("INSERT INTO ChestShops (shopID, UUID, World, ChestX, ChestY, ChestZ, SignX, SignY, SignZ, Item, SellAmt, BuyAmt) " +
-                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE shopID = shopID");
-            statement.setQueryTimeout(30);
-            this.chestShops.forEach((u, o) -> {
-                o.forEach((s) -> {
-                    try {
-                        statement.setString(1, s.id().toString());
-                        statement.setString(2, u.toString());
-                        statement.setString(3, s.chestPos().getWorld().getName());
-                        statement.setInt(4, s.chestPos().getBlockX());
-                        statement.setInt(5, s.chestPos().getBlockY());
-                        statement.setInt(6, s.chestPos().getBlockZ());
-                        statement.setInt(7, s.signPos().getBlockX());
-                        statement.setInt(8, s.signPos().getBlockY());
-                        statement.setInt(9, s.signPos().getBlockZ());
-                        statement.setString(10, s.item().toString());
-                        statement.setInt(11, s.sellAmt());
-                        statement.setInt(12, s.buyAmt());
-                        statement.addBatch();
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                    }
-                });
-            });
-            statement.executeBatch();
-            conn.commit();
-            statement.close();
-        } catch (SQLException e) {
+        ledger.close(puPlugin.getConfig().getLong("sql.write-behind.shutdown-timeout", 15000));
+
+        // every change is written as it happens, just wait for the last ones to finish
+        try {
+            database.awaitWrites().get(30, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            ParallelUtils.log(Level.SEVERE, "ChestShops: Failed to finish saving shops!");
             e.printStackTrace();
         }
     }
@@ -176,124 +172,386 @@ public class ChestShops extends ParallelModule {
         return "ChestShops";
     }
 
-    public void addShop(UUID owner, UUID id, Location chestPos, Location signPos, Material item, int sellAmt, int buyAmt) {
-        Shop shop = new Shop(owner, id, chestPos, signPos, item, sellAmt, buyAmt);
-        if (chestShops.containsKey(owner)) {
-            HashSet<Shop> shops = chestShops.get(owner);
-            shops.add(shop);
-        }
-        else {
-            HashSet<Shop> shops = new HashSet<>();
-            shops.add(shop);
-            chestShops.put(owner, shops);
-        }
+    public void addShop(UUID owner, UUID id, Location chestPos, Location signPos, Material item, int sellAmt, int buyAmt,
+                        ItemStack currency, ShopMode mode) {
+        Shop shop = new Shop(owner, id, chestPos, signPos, item, sellAmt, buyAmt, currency.asOne(), mode);
+        indexShop(shop);
+        ShopListing listing = ShopListing.of(shop);
+        priceIndex.add(listing);
+        LongOpenHashSet chunks = shopChunks.computeIfAbsent(chestPos.getWorld().getName(), k -> new LongOpenHashSet());
+        chunks.add(listing.chestChunk());
+        chunks.add(listing.signChunk());
+        // both chunks are loaded since the player is standing next to them, and any other shops in them already are
+        LongOpenHashSet loaded = loadedChunks.computeIfAbsent(chestPos.getWorld().getUID(), k -> new LongOpenHashSet());
+        loaded.add(listing.chestChunk());
+        loaded.add(listing.signChunk());
+        database.insertShop(shop);
     }
 
     public void removeShop(UUID owner, Location chestPos) {
-        HashSet<Shop> shops = chestShops.get(owner);
-        shops.removeIf(x -> x.chestPos().equals(chestPos));
-        if (shops.size() == 0)
-            chestShops.remove(owner);
+        Shop shop = shopIndex.getByChest(chestPos);
+        if (shop == null || !shop.owner().equals(owner))
+            return;
+        unindexShop(shop);
+        priceIndex.remove(shop.id());
+        if (priceIndexLoad != null && !priceIndexLoad.isDone())
+            removedWhileIndexing.add(shop.id());
+        database.deleteShop(shop.id());
     }
 
-    // ugly but no real better way to do it without storing multiple instances of shops which is a recipe for disaster
-
-    public Shop getShopFromSignPos(Location signPos) {
-        Shop out = null;
-        for (HashSet<Shop> s : chestShops.values()) {
-            Optional<Shop> r = s.stream().filter(x -> x.signPos().equals(signPos)).findFirst();
-            if (r.isPresent()) {
-                out = r.get();
-                break;
+    /**
+     * Changes what a shop trades and for how much and saves the change. The shop keeps its currency and mode.
+     * Anyone shopping there has their shopping inventory closed, since it was filled at the old price
+     * @param shop The shop to change
+     * @param item The item the shop sells
+     * @param sellAmt How many items are sold at once
+     * @param buyAmt How much currency the items cost
+     * @return The updated shop
+     */
+    public Shop updateShop(Shop shop, Material item, int sellAmt, int buyAmt) {
+        Shop updated = new Shop(shop.owner(), shop.id(), shop.chestPos(), shop.signPos(), item, sellAmt, buyAmt,
+                shop.currency(), shop.mode());
+        unindexShop(shop);
+        indexShop(updated);
+        priceIndex.add(ShopListing.of(updated));
+        priceIndex.markStockStale(updated.id());
+        Set<UUID> shoppers = shoppersByShop.get(shop.id());
+        if (shoppers != null) {
+            for (UUID uuid : List.copyOf(shoppers)) {
+                Player player = Bukkit.getPlayer(uuid);
+                if (player != null)
+                    player.closeInventory();
             }
         }
-        return out;
+        database.updateShop(updated);
+        return updated;
     }
 
-    public Shop getShopFromChestPos(Location chestPos) {
-        Shop out = null;
-        for (HashSet<Shop> s : chestShops.values()) {
-            Optional<Shop> r = s.stream().filter(x -> x.chestPos().equals(chestPos)).findFirst();
-            if (r.isPresent()) {
-                out = r.get();
-                break;
+    /**
+     * Loads the shops in a chunk if it has any that aren't loaded yet
+     * @param chunk The chunk that was loaded
+     * @return True if the chunk's shops are being loaded
+     */
+    public boolean loadShopsInChunk(Chunk chunk) {
+        World world = chunk.getWorld();
+        LongOpenHashSet chunks = shopChunks.get(world.getName());
+        long key = chunk.getChunkKey();
+        if (chunks == null || !chunks.contains(key))
+            return false;
+        if (!loadedChunks.computeIfAbsent(world.getUID(), k -> new LongOpenHashSet()).add(key))
+            return false;
+        loadingChunks.computeIfAbsent(world.getUID(), k -> new LongOpenHashSet()).add(key);
+
+        int x = chunk.getX();
+        int z = chunk.getZ();
+        database.loadChunk(world, x, z).whenCompleteAsync((loaded, ex) -> {
+            LongOpenHashSet loading = loadingChunks.get(world.getUID());
+            if (loading != null) {
+                loading.remove(key);
+                if (loading.isEmpty())
+                    loadingChunks.remove(world.getUID());
+            }
+            if (ex != null) {
+                ParallelUtils.log(Level.SEVERE, "ChestShops: Failed to load shops in chunk " + x + ", " + z + ": " + ex.getMessage());
+                LongOpenHashSet ls = loadedChunks.get(world.getUID());
+                if (ls != null) ls.remove(key);
+                return;
             }
+            // the chunk may have unloaded again while we were waiting
+            LongOpenHashSet ls = loadedChunks.get(world.getUID());
+            if (ls == null || !ls.contains(key))
+                return;
+            // shops that straddle two chunks may already be loaded from the other one, keep the copy in memory
+            // since it can have changes that haven't been written yet
+            for (Shop shop : loaded) {
+                if (shopIndex.getByChest(shop.chestPos()) == null)
+                    indexShop(shop);
+            }
+        }, database.getExecutor().mainThread());
+        return true;
+    }
+
+    /**
+     * Checks whether the shops at a location may not be loaded yet, either because the chunks with shops aren't known
+     * yet or because the location's chunk is still being read. Shop blocks there should be left alone until they are
+     * @param loc The location of a chest or sign
+     * @return True if a shop there may not be loaded yet
+     */
+    public boolean isLoadingShops(Location loc) {
+        if (!shopChunksKnown)
+            return true;
+        LongOpenHashSet loading = loadingChunks.get(loc.getWorld().getUID());
+        return loading != null && loading.contains(chunkKey(loc));
+    }
+
+    /**
+     * Drops the shops in a chunk from memory. They are loaded again from the database when the chunk loads.
+     * A shop whose sign is in a different chunk than its chest stays loaded until both chunks are unloaded
+     * @param chunk The chunk that was unloaded
+     */
+    public void unloadShopsInChunk(Chunk chunk) {
+        LongOpenHashSet ls = loadedChunks.get(chunk.getWorld().getUID());
+        if (ls == null || !ls.remove(chunk.getChunkKey()))
+            return;
+        List<Shop> shops = shopIndex.getInChunk(chunk).stream()
+                .filter(x -> !ls.contains(chunkKey(x.chestPos())) && !ls.contains(chunkKey(x.signPos())))
+                .filter(x -> !isPlayerUsingShop(x))
+                .toList();
+        shops.forEach(this::unindexShop);
+    }
+
+    private void indexShop(Shop shop) {
+        chestShops.computeIfAbsent(shop.owner(), k -> new HashSet<>()).add(shop);
+        shopIndex.add(shop);
+    }
+
+    private static long chunkKey(Location loc) {
+        return Chunk.getChunkKey(loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+    }
+
+    private void unindexShop(Shop shop) {
+        shopIndex.remove(shop);
+        HashSet<Shop> shops = chestShops.get(shop.owner());
+        if (shops == null)
+            return;
+        shops.remove(shop);
+        if (shops.size() == 0)
+            chestShops.remove(shop.owner());
+    }
+
+    public Shop getShopFromSignPos(Location signPos) {
+        return shopIndex.getBySign(signPos);
+    }
+
+    public Shop getShopFromChestPos(Location chestPos) {
+        return shopIndex.getByChest(chestPos);
+    }
+
+    /**
+     * Records a trade in the transaction ledger. The write happens later, off the main thread
+     * @param buyer The player who traded with the shop
+     * @param shop The shop traded with
+     * @param quantity How many items changed hands
+     * @param price How much currency changed hands
+     */
+    public void recordTransaction(Player buyer, Shop shop, int quantity, int price) {
+        ledger.record(new ShopTransaction(shop.id(), shop.owner(), buyer.getUniqueId(), shop.item(), quantity, price,
+                ShopTrade.currencyKey(shop.currency()), shop.mode(), System.currentTimeMillis()));
+    }
+
+    /**
+     * Returns how many of a shop's item are in its chest. The count is cached and only redone after the chest changes,
+     * and only if the chest is loaded
+     * @param listing The shop's listing
+     * @return The number of items in stock, or {@link ShopPriceIndex#UNKNOWN} if the shop has never been counted
+     */
+    public int getStock(ShopListing listing) {
+        if (!priceIndex.isStockStale(listing.id()))
+            return priceIndex.getStock(listing.id());
+        World world = Bukkit.getWorld(listing.world());
+        if (world == null || !world.isChunkLoaded(listing.x() >> 4, listing.z() >> 4))
+            return priceIndex.getStock(listing.id());
+        if (!(world.getBlockAt(listing.x(), listing.y(), listing.z()).getState(false) instanceof Container container))
+            return priceIndex.getStock(listing.id());
+        int count = 0;
+        for (ItemStack i : container.getInventory().getContents()) {
+            if (i != null && i.getType() == listing.item())
+                count += i.getAmount();
+        }
+        priceIndex.setStock(listing.id(), count);
+        return count;
+    }
+
+    /**
+     * Marks the stock of the shop using an inventory as out of date, if there is one
+     * @param inv The inventory that changed
+     */
+    public void markStockStale(Inventory inv) {
+        if (inv instanceof DoubleChestInventory dc) {
+            markStockStale(dc.getLeftSide());
+            markStockStale(dc.getRightSide());
+            return;
         }
-        return out;
+        if (inv.getType() != InventoryType.CHEST && inv.getType() != InventoryType.BARREL)
+            return;
+        Location loc = inv.getLocation();
+        if (loc == null)
+            return;
+        Shop shop = shopIndex.getByChest(loc);
+        if (shop != null)
+            priceIndex.markStockStale(shop.id());
+    }
+
+    /**
+     * @return The price index as it is now, which is empty or only has new shops until {@link #loadPriceIndex()} is done
+     */
+    public ShopPriceIndex getPriceIndex() {
+        return priceIndex;
+    }
+
+    /**
+     * Fills the price index with every shop the first time it is called, so enabling the module doesn't have to read
+     * every shop. Later calls return the same future
+     * @return A future completed on the main thread with the price index once every shop is in it
+     */
+    public CompletableFuture<ShopPriceIndex> loadPriceIndex() {
+        if (priceIndexLoad != null)
+            return priceIndexLoad;
+        CompletableFuture<ShopPriceIndex> load = new CompletableFuture<>();
+        priceIndexLoad = load;
+        database.loadListings().whenCompleteAsync((listings, ex) -> {
+            if (ex != null) {
+                ParallelUtils.log(Level.SEVERE, "ChestShops: Failed to load shop listings: " + ex.getMessage());
+                // try again the next time the index is needed
+                priceIndexLoad = null;
+                removedWhileIndexing.clear();
+                load.completeExceptionally(ex);
+                return;
+            }
+            for (ShopListing listing : listings) {
+                // don't overwrite shops that were created, changed or removed while we were loading
+                if (priceIndex.get(listing.id()) == null && !removedWhileIndexing.contains(listing.id())) {
+                    priceIndex.add(listing);
+                }
+            }
+            removedWhileIndexing.clear();
+            ParallelUtils.log(Level.INFO, "ChestShops: Indexed the prices of " + listings.size() + " shops.");
+            load.complete(priceIndex);
+        }, database.getExecutor().mainThread());
+        return load;
+    }
+
+    public ShopDatabase getDatabase() {
+        return database;
+    }
+
+    public HashMap<String, ShopCommand> getShopCommands() {
+        return shopCommands.getShopCommands();
     }
 
+    public List<Shop> getShopsInChunk(Chunk chunk) {
+        return shopIndex.getInChunk(chunk);
+    }
 
     public ShopResult attemptPurchase(Player player, Shop shop, Container chest) {
+        // one pass over the player's storage for both the free space and the currency checks
+        ItemStack currency = shop.currency();
         int empty = 0;
+        int funds = 0;
         for (ItemStack i : player.getInventory().getStorageContents()) {
             if (i == null || i.getType() == Material.AIR)
                 empty++;
+            else if (i.isSimilar(currency))
+                funds += i.getAmount();
         }
         if (empty < Math.ceil((double)shop.sellAmt() / shop.item().getMaxStackSize())) {
             return ShopResult.INVENTORY_FULL;
         }
         if (shop.buyAmt() > 0) {
-            int slot = player.getInventory().first(Material.DIAMOND);
-            if (slot == -1) {
-                return ShopResult.NO_DIAMONDS;
+            if (funds == 0) {
+                return ShopResult.NO_CURRENCY;
             }
-            ItemStack diamonds = player.getInventory().getItem(slot);
-            if (diamonds.getAmount() < shop.buyAmt()) {
+            if (funds < shop.buyAmt()) {
                 return ShopResult.INSUFFICIENT_FUNDS;
             }
         }
 
+        // skip scanning the chest at all if we already know it can't fill the order
+        if (!priceIndex.isStockStale(shop.id()) && priceIndex.getStock(shop.id()) < shop.sellAmt()) {
+            return ShopResult.SHOP_EMPTY;
+        }
+
+        // for a double chest this is the combined inventory, so the slots line up with the shopping inventory
         Inventory inv = chest.getInventory();
-        InventoryHolder holder = inv.getHolder();
-        HashMap<Integer, ? extends ItemStack> items;
-        if (holder instanceof DoubleChest dc) {
-            Chest left = (Chest)dc.getLeftSide();
-            if (left == null) {
-                ParallelUtils.log(Level.WARNING, "attemptPurchase: getLeftSide() returned null");
-                return ShopResult.ERROR;
-            }
-            Chest right = (Chest)dc.getRightSide();
-            if (right == null) {
-                ParallelUtils.log(Level.WARNING, "attemptPurchase: getRightSide() returned null");
-                return ShopResult.ERROR;
-            }
-            if (left.getInventory().containsAtLeast(new ItemStack(Material.DIAMOND), MAX_DIAMONDS - shop.buyAmt())) {
-                return ShopResult.SHOP_FULL;
-            }
-            items = left.getInventory().all(shop.item());
-            Inventory shopping = Bukkit.createInventory(null, 54, Component.text("ChestShop (Click to Buy)"));
-            items.forEach(shopping::setItem);
-            int itemAmt = 0;
-            for (ItemStack i : items.values()) {
+        Inventory shopping = getShoppingInventory(player, inv.getSize());
+        ItemStack[] contents = inv.getContents();
+        int itemAmt = 0;
+        int currencyAmt = 0;
+        for (int slot = 0; slot < contents.length; slot++) {
+            ItemStack i = contents[slot];
+            if (i == null) continue;
+            if (i.getType() == shop.item()) {
                 itemAmt += i.getAmount();
+                shopping.setItem(slot, i);
             }
-            if (inv.getContents().length == 0 || items.size() == 0 || itemAmt < shop.sellAmt()) {
-                return ShopResult.SHOP_EMPTY;
+            else if (i.isSimilar(currency)) {
+                currencyAmt += i.getAmount();
             }
-            player.openInventory(shopping);
-            shoppingPlayers.put(player.getUniqueId(), new ShopperData(shopping, inv, shop));
         }
-        else {
-            if (inv.containsAtLeast(new ItemStack(Material.DIAMOND), MAX_DIAMONDS - shop.buyAmt())) {
-                return ShopResult.SHOP_FULL;
-            }
-            items = inv.all(shop.item());
-            Inventory shopping = Bukkit.createInventory(null, InventoryType.CHEST, Component.text("ChestShop (Click to Buy)"));
-            int itemAmt = 0;
-            // would rather use two for loops than AtomicInteger tee hee
-            for (ItemStack i : items.values()) {
-                itemAmt += i.getAmount();
-            }
-            items.forEach(shopping::setItem);
-            if (inv.getContents().length == 0 || items.size() == 0 || itemAmt < shop.sellAmt()) {
-                return ShopResult.SHOP_EMPTY;
-            }
-            player.openInventory(shopping);
-            shoppingPlayers.put(player.getUniqueId(), new ShopperData(shopping, inv, shop));
+        priceIndex.setStock(shop.id(), itemAmt);
+
+        if (currencyAmt >= ShopTrade.maxCurrency(currency) - shop.buyAmt()) {
+            return ShopResult.SHOP_FULL;
+        }
+        if (itemAmt < shop.sellAmt()) {
+            return ShopResult.SHOP_EMPTY;
         }
+        player.openInventory(shopping);
+        startShopping(player, new ShopperData(shopping, inv, shop));
         return ShopResult.SUCCESS;
     }
 
+    /**
+     * Buys from the shop a player is shopping at and records the trade
+     * @param player The player buying
+     * @param data The player's shopping session
+     * @param slot The slot that was clicked
+     * @param bulk True to buy as many bundles as possible instead of one
+     * @return The outcome of the trade
+     */
+    public ShopTrade.Result buy(Player player, ShopperData data, int slot, boolean bulk) {
+        ShopTrade.Result result = ShopTrade.buy(data, player.getInventory(), slot, bulk);
+        if (result.result() == ShopResult.SUCCESS) {
+            Shop shop = data.shop();
+            recordTransaction(player, shop, result.bundles() * shop.sellAmt(), result.bundles() * shop.buyAmt());
+            markStockStale(data.chestInv());
+        }
+        return result;
+    }
+
+    /**
+     * Sells to a shop that buys items and records the trade
+     * @param player The player selling
+     * @param shop The shop to sell to
+     * @param chest The shop's chest
+     * @param bulk True to sell as many bundles as possible instead of one
+     * @return The outcome of the trade
+     */
+    public ShopTrade.Result attemptSale(Player player, Shop shop, Container chest, boolean bulk) {
+        ShopTrade.Result result = ShopTrade.sell(shop, chest.getInventory(), player.getInventory(), bulk);
+        if (result.result() == ShopResult.SUCCESS) {
+            recordTransaction(player, shop, result.bundles() * shop.sellAmt(), result.bundles() * shop.buyAmt());
+            priceIndex.markStockStale(shop.id());
+        }
+        return result;
+    }
+
+    /**
+     * Returns an empty shopping inventory for a player, reusing the one from their last purchase when it is the right size
+     * @param player The player shopping
+     * @param size The size of the shop's chest
+     * @return The cleared shopping inventory
+     */
+    private Inventory getShoppingInventory(Player player, int size) {
+        Inventory shopping = shoppingInventories.get(player.getUniqueId());
+        if (shopping == null || shopping.getSize() != size) {
+            shopping = Bukkit.createInventory(null, size, Component.text("ChestShop (Click to Buy)"));
+            shoppingInventories.put(player.getUniqueId(), shopping);
+        }
+        else {
+            shopping.clear();
+        }
+        return shopping;
+    }
+
+    /**
+     * Forgets a player's reusable shopping inventory, called when they leave
+     * @param player The player
+     */
+    public void releaseShoppingInventory(Player player) {
+        shoppingInventories.remove(player.getUniqueId());
+    }
+
     public void openShopPreview(Player player, Shop shop, Inventory chest) {
         if (chest.getHolder() instanceof DoubleChest dc) {
             Chest left = (Chest)dc.getLeftSide();
@@ -313,22 +571,49 @@ public class ChestShops extends ParallelModule {
             items = right.getInventory().all(shop.item());
             items.forEach(inv::setItem);
             player.openInventory(inv);
-            shopPreviews.put(player.getUniqueId(), inv);
+            startPreview(player, inv);
         }
         else {
             Inventory inv = Bukkit.createInventory(null, InventoryType.CHEST, Component.text("ChestShop Preview"));
             HashMap<Integer, ? extends ItemStack> items = chest.all(shop.item());
             items.forEach(inv::setItem);
             player.openInventory(inv);
-            shopPreviews.put(player.getUniqueId(), inv);
+            startPreview(player, inv);
         }
     }
 
+    private void startPreview(Player player, Inventory inv) {
+        closeShopPreview(player);
+        shopPreviews.put(player.getUniqueId(), inv);
+        previewsByInventory.put(inv, player.getUniqueId());
+    }
+
     public void closeShopPreview(Player player) {
-        shopPreviews.remove(player.getUniqueId());
+        Inventory inv = shopPreviews.remove(player.getUniqueId());
+        if (inv != null)
+            previewsByInventory.remove(inv);
+    }
+
+    private void startShopping(Player player, ShopperData data) {
+        // a player only has one session at a time, so clean up any old one first
+        stopShopping(player);
+        shoppingPlayers.put(player.getUniqueId(), data);
+        sessionsByInventory.put(data.fakeInv(), data);
+        shoppersByShop.computeIfAbsent(data.shop().id(), k -> new HashSet<>()).add(player.getUniqueId());
     }
 
-    public void stopShopping(Player player) { shoppingPlayers.remove(player.getUniqueId()); }
+    public void stopShopping(Player player) {
+        ShopperData data = shoppingPlayers.remove(player.getUniqueId());
+        if (data == null)
+            return;
+        sessionsByInventory.remove(data.fakeInv());
+        Set<UUID> shoppers = shoppersByShop.get(data.shop().id());
+        if (shoppers != null) {
+            shoppers.remove(player.getUniqueId());
+            if (shoppers.isEmpty())
+                shoppersByShop.remove(data.shop().id());
+        }
+    }
 
     public Inventory getPreviewInventory(Player player) {
         return shopPreviews.get(player.getUniqueId());
@@ -337,15 +622,15 @@ public class ChestShops extends ParallelModule {
     public ShopperData getShoppingData(Player player) { return shoppingPlayers.get(player.getUniqueId()); }
 
     public boolean previewInventoryExists(Inventory inv) {
-        return shopPreviews.containsValue(inv);
+        return previewsByInventory.containsKey(inv);
     }
 
     public boolean shopInventoryExists(Inventory inv) {
-        return shoppingPlayers.values().stream().anyMatch(x -> x.fakeInv().equals(inv));
+        return sessionsByInventory.containsKey(inv);
     }
 
     public boolean isPlayerUsingShop(Shop shop) {
-        return shoppingPlayers.values().stream().anyMatch(x -> x.shop().equals(shop));
+        return shoppersByShop.containsKey(shop.id());
     }
 
 
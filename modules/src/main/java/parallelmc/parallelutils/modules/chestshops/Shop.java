@@ -2,8 +2,11 @@ package parallelmc.parallelutils.modules.chestshops;
 
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
 
 import java.util.UUID;
 
 // keep track of both chest and sign pos to make handling certain events easier
-public record Shop(UUID owner, UUID id, Location chestPos, Location signPos, Material item, int sellAmt, int buyAmt) { }
+// currency is a single item that stacks matching it are compared against, so it can carry custom model data
+public record Shop(UUID owner, UUID id, Location chestPos, Location signPos, Material item, int sellAmt, int buyAmt,
+                   ItemStack currency, ShopMode mode) { }
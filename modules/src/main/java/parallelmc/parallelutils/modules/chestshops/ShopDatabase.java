@@ -0,0 +1,305 @@
+package parallelmc.parallelutils.modules.chestshops;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.inventory.ItemStack;
+import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.database.DatabaseExecutor;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+/**
+ * Reads and writes individual shops. Every change is written as soon as it happens, so there is nothing
+ * left to save when the module is disabled
+ */
+public class ShopDatabase {
+
+    private static final String MODULE = "ChestShops";
+
+    private final DatabaseExecutor executor;
+
+    /**
+     * @param executor The executor to read and write with
+     */
+    public ShopDatabase(DatabaseExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Creates the shop table if it doesn't exist, along with the indexes used to load shops by chunk,
+     * and the tables of the transaction ledger
+     * @return A future that completes once the tables are ready
+     */
+    public CompletableFuture<Void> init() {
+        return executor.run(MODULE, conn -> {
+            try (Statement statement = conn.createStatement()) {
+                statement.setQueryTimeout(15);
+                // a null currency means plain diamonds, which most shops use
+                statement.execute("""
+                        create table if not exists ChestShops
+                        (
+                            shopID      varchar(36) not null,
+                            UUID        varchar(36) not null,
+                            World       varchar(32) not null,
+                            ChestX      int         not null,
+                            ChestY      int         not null,
+                            ChestZ      int         not null,
+                            SignX       int         not null,
+                            SignY       int         not null,
+                            SignZ       int         not null,
+                            Item        varchar(50) not null,
+                            SellAmt     int         not null,
+                            BuyAmt      int         not null,
+                            Currency    text        null,
+                            Mode        varchar(4)  not null,
+                            constraint ChestShops_UUID_uindex
+                                unique (shopID),
+                            PRIMARY KEY (shopID),
+                            index ChestShops_World_Chest_index (World, ChestX, ChestZ),
+                            index ChestShops_World_Sign_index (World, SignX, SignZ)
+                        );""");
+            }
+            TransactionLedger.createTables(conn);
+        });
+    }
+
+    /**
+     * Finds every chunk with a shop chest or sign in it, without loading the shops themselves
+     * @return A future completed with the keys of the chunks that have shops, by world name
+     */
+    public CompletableFuture<HashMap<String, LongOpenHashSet>> loadShopChunks() {
+        return executor.supply(MODULE, conn -> {
+            HashMap<String, LongOpenHashSet> chunks = new HashMap<>();
+            try (Statement statement = conn.createStatement()) {
+                statement.setQueryTimeout(60);
+                // both halves only read the columns of their own index
+                ResultSet results = statement.executeQuery(
+                        "SELECT World, FLOOR(ChestX / 16), FLOOR(ChestZ / 16) FROM ChestShops " +
+                                "UNION SELECT World, FLOOR(SignX / 16), FLOOR(SignZ / 16) FROM ChestShops");
+                while (results.next()) {
+                    chunks.computeIfAbsent(results.getString(1), k -> new LongOpenHashSet())
+                            .add(Chunk.getChunkKey(results.getInt(2), results.getInt(3)));
+                }
+            }
+            return chunks;
+        });
+    }
+
+    /**
+     * Loads the location and price of every shop, without loading the shops themselves
+     * @return A future completed with a listing for every shop
+     */
+    public CompletableFuture<List<ShopListing>> loadListings() {
+        return executor.supply(MODULE, conn -> {
+            List<ShopListing> listings = new ArrayList<>();
+            try (Statement statement = conn.createStatement()) {
+                statement.setQueryTimeout(60);
+                ResultSet results = statement.executeQuery(
+                        "SELECT shopID, UUID, World, ChestX, ChestY, ChestZ, SignX, SignZ, Item, SellAmt, BuyAmt, Currency, Mode FROM ChestShops");
+                while (results.next()) {
+                    Material item = Material.getMaterial(results.getString("Item"));
+                    if (item == null) continue;
+                    listings.add(new ShopListing(UUID.fromString(results.getString("shopID")), UUID.fromString(results.getString("UUID")),
+                            results.getString("World"), results.getInt("ChestX"), results.getInt("ChestY"), results.getInt("ChestZ"),
+                            results.getInt("SignX"), results.getInt("SignZ"), item, results.getInt("SellAmt"), results.getInt("BuyAmt"),
+                            decodeCurrency(results.getString("Currency")), ShopMode.valueOf(results.getString("Mode"))));
+                }
+            }
+            return listings;
+        });
+    }
+
+    /**
+     * Loads every shop whose chest or sign is in the given chunk
+     * @param world The world the chunk is in
+     * @param chunkX The chunk's x coordinate
+     * @param chunkZ The chunk's z coordinate
+     * @return A future completed with the shops in the chunk
+     */
+    public CompletableFuture<List<Shop>> loadChunk(World world, int chunkX, int chunkZ) {
+        return executor.supply(MODULE, conn -> {
+            List<Shop> loaded = new ArrayList<>();
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "SELECT * FROM ChestShops WHERE World = ? AND ChestX BETWEEN ? AND ? AND ChestZ BETWEEN ? AND ? " +
+                            "UNION SELECT * FROM ChestShops WHERE World = ? AND SignX BETWEEN ? AND ? AND SignZ BETWEEN ? AND ?")) {
+                statement.setQueryTimeout(15);
+                // the same bounds for the chest and then the sign, each half of the union uses its own index
+                for (int i = 0; i < 2; i++) {
+                    statement.setString(i * 5 + 1, world.getName());
+                    statement.setInt(i * 5 + 2, chunkX << 4);
+                    statement.setInt(i * 5 + 3, (chunkX << 4) + 15);
+                    statement.setInt(i * 5 + 4, chunkZ << 4);
+                    statement.setInt(i * 5 + 5, (chunkZ << 4) + 15);
+                }
+                ResultSet results = statement.executeQuery();
+                while (results.next()) {
+                    UUID uuid = UUID.fromString(results.getString("UUID"));
+                    UUID id = UUID.fromString(results.getString("shopID"));
+                    Location chestLoc = new Location(world, results.getInt("ChestX"), results.getInt("ChestY"), results.getInt("ChestZ"));
+                    Location signLoc = new Location(world, results.getInt("SignX"), results.getInt("SignY"), results.getInt("SignZ"));
+                    Material item = Material.getMaterial(results.getString("Item"));
+                    if (item == null) {
+                        // an item removed by a server update, there is nothing left that the shop could sell
+                        ParallelUtils.log(Level.WARNING, "ChestShops: Skipping shop " + id + " at " + chestLoc.getBlockX() + ", "
+                                + chestLoc.getBlockY() + ", " + chestLoc.getBlockZ() + ", its item " + results.getString("Item") + " no longer exists");
+                        continue;
+                    }
+                    int sellAmt = results.getInt("SellAmt");
+                    int buyAmt = results.getInt("BuyAmt");
+                    ItemStack currency = decodeCurrency(results.getString("Currency"));
+                    ShopMode mode = ShopMode.valueOf(results.getString("Mode"));
+                    loaded.add(new Shop(uuid, id, chestLoc, signLoc, item, sellAmt, buyAmt, currency, mode));
+                }
+            }
+            return loaded;
+        });
+    }
+
+    /**
+     * Saves a newly created shop
+     * @param shop The shop to save
+     * @return A future that completes once the shop is saved
+     */
+    public CompletableFuture<Void> insertShop(Shop shop) {
+        return executor.run(MODULE, conn -> {
+            try (PreparedStatement statement = conn.prepareStatement("INSERT INTO ChestShops (shopID, UUID, World, ChestX, ChestY, ChestZ, SignX, SignY, SignZ, Item, SellAmt, BuyAmt, Currency, Mode) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                statement.setQueryTimeout(15);
+                statement.setString(1, shop.id().toString());
+                statement.setString(2, shop.owner().toString());
+                statement.setString(3, shop.chestPos().getWorld().getName());
+                statement.setInt(4, shop.chestPos().getBlockX());
+                statement.setInt(5, shop.chestPos().getBlockY());
+                statement.setInt(6, shop.chestPos().getBlockZ());
+                statement.setInt(7, shop.signPos().getBlockX());
+                statement.setInt(8, shop.signPos().getBlockY());
+                statement.setInt(9, shop.signPos().getBlockZ());
+                statement.setString(10, shop.item().toString());
+                statement.setInt(11, shop.sellAmt());
+                statement.setInt(12, shop.buyAmt());
+                statement.setString(13, encodeCurrency(shop.currency()));
+                statement.setString(14, shop.mode().name());
+                statement.execute();
+            }
+        });
+    }
+
+    /**
+     * Saves a change to what an existing shop sells and what it costs
+     * @param shop The updated shop
+     * @return A future that completes once the shop is updated
+     */
+    public CompletableFuture<Void> updateShop(Shop shop) {
+        return executor.run(MODULE, conn -> {
+            try (PreparedStatement statement = conn.prepareStatement(
+                    "UPDATE ChestShops SET Item = ?, SellAmt = ?, BuyAmt = ? WHERE shopID = ?")) {
+                statement.setQueryTimeout(15);
+                statement.setString(1, shop.item().toString());
+                statement.setInt(2, shop.sellAmt());
+                statement.setInt(3, shop.buyAmt());
+                statement.setString(4, shop.id().toString());
+                statement.execute();
+            }
+        });
+    }
+
+    /**
+     * Deletes a shop
+     * @param id The id of the shop
+     * @return A future that completes once the shop is deleted
+     */
+    public CompletableFuture<Void> deleteShop(UUID id) {
+        return executor.run(MODULE, conn -> {
+            try (PreparedStatement statement = conn.prepareStatement("DELETE FROM ChestShops WHERE shopID = ?")) {
+                statement.setQueryTimeout(15);
+                statement.setString(1, id.toString());
+                statement.execute();
+            }
+        });
+    }
+
+    /**
+     * Totals a single shop's sales from the daily rollup
+     * @param id The id of the shop
+     * @param days How many days back to include, including today. 0 includes every day
+     * @return A future completed with the shop's totals, one for each currency it has sold for
+     */
+    public CompletableFuture<List<ShopStats>> getShopStats(UUID id, int days) {
+        return queryStats("ChestShopDailyShop", "ShopID", id.toString(), days);
+    }
+
+    /**
+     * Totals the sales of every shop a player owns or has owned from the daily rollup
+     * @param owner The UUID of the owner
+     * @param days How many days back to include, including today. 0 includes every day
+     * @return A future completed with the owner's totals, one for each currency their shops have sold for
+     */
+    public CompletableFuture<List<ShopStats>> getOwnerStats(UUID owner, int days) {
+        return queryStats("ChestShopDailyShop", "Owner", owner.toString(), days);
+    }
+
+    /**
+     * Totals the sales of an item across every shop from the daily rollup
+     * @param item The item
+     * @param days How many days back to include, including today. 0 includes every day
+     * @return A future completed with the item's totals, one for each currency it has sold for
+     */
+    public CompletableFuture<List<ShopStats>> getItemStats(Material item, int days) {
+        return queryStats("ChestShopDailyItem", "Item", item.toString(), days);
+    }
+
+    private CompletableFuture<List<ShopStats>> queryStats(String table, String keyColumn, String key, int days) {
+        return executor.supply(MODULE, conn -> {
+            String query = "SELECT Currency, SUM(Transactions), SUM(Quantity), SUM(Revenue) FROM " + table +
+                    " WHERE " + keyColumn + " = ?" + (days > 0 ? " AND Day >= ?" : "") + " GROUP BY Currency";
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+                statement.setQueryTimeout(15);
+                statement.setString(1, key);
+                if (days > 0) {
+                    statement.setDate(2, java.sql.Date.valueOf(LocalDate.now().minusDays(days - 1)));
+                }
+                ResultSet result = statement.executeQuery();
+                List<ShopStats> stats = new ArrayList<>();
+                while (result.next()) {
+                    stats.add(new ShopStats(result.getString(1), result.getLong(2), result.getLong(3), result.getLong(4)));
+                }
+                return stats;
+            }
+        });
+    }
+
+    // plain diamonds are stored as null so that the column stays empty for most shops
+    private static String encodeCurrency(ItemStack currency) {
+        if (ShopTrade.isDefaultCurrency(currency))
+            return null;
+        return Base64.getEncoder().encodeToString(currency.serializeAsBytes());
+    }
+
+    private static ItemStack decodeCurrency(String encoded) {
+        if (encoded == null)
+            return ShopTrade.defaultCurrency();
+        return ItemStack.deserializeBytes(Base64.getDecoder().decode(encoded));
+    }
+
+    /**
+     * @return A future that completes once every write submitted before it has finished
+     */
+    public CompletableFuture<Void> awaitWrites() {
+        // tasks for a module run in order, so an empty task finishes after everything queued before it
+        return executor.run(MODULE, conn -> { });
+    }
+
+    /**
+     * @return The executor used for this database, for hopping back onto the main thread
+     */
+    public DatabaseExecutor getExecutor() {
+        return executor;
+    }
+}
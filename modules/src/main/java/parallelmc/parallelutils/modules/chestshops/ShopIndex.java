@@ -0,0 +1,171 @@
+package parallelmc.parallelutils.modules.chestshops;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.*;
+
+/**
+ * Looks up shops by the position of their sign or chest without scanning every shop.
+ * Each world keeps its shops in primitive maps keyed by the packed block position, plus a per-chunk index
+ * so every shop in a chunk can be found at once.
+ */
+public class ShopIndex {
+
+    private static class WorldIndex {
+        private final Long2ObjectOpenHashMap<Shop> bySign = new Long2ObjectOpenHashMap<>();
+        private final Long2ObjectOpenHashMap<Shop> byChest = new Long2ObjectOpenHashMap<>();
+        // a shop is listed under the chunk of its chest and the chunk of its sign, which are usually the same
+        private final Long2ObjectOpenHashMap<List<Shop>> byChunk = new Long2ObjectOpenHashMap<>();
+
+        private boolean isEmpty() {
+            return bySign.isEmpty() && byChest.isEmpty();
+        }
+    }
+
+    private final HashMap<UUID, WorldIndex> worlds = new HashMap<>();
+
+    private int size = 0;
+
+    /**
+     * Adds a shop to the index, replacing any shop already using the same sign or chest
+     * @param shop The shop to add
+     */
+    public void add(Shop shop) {
+        World world = shop.chestPos().getWorld();
+        if (world == null) return;
+        WorldIndex index = worlds.computeIfAbsent(world.getUID(), k -> new WorldIndex());
+
+        Shop replaced = index.byChest.get(blockKey(shop.chestPos()));
+        if (replaced != null) remove(replaced);
+        replaced = index.bySign.get(blockKey(shop.signPos()));
+        if (replaced != null) remove(replaced);
+
+        index.byChest.put(blockKey(shop.chestPos()), shop);
+        index.bySign.put(blockKey(shop.signPos()), shop);
+        for (long chunk : chunkKeys(shop)) {
+            index.byChunk.computeIfAbsent(chunk, k -> new ArrayList<>(1)).add(shop);
+        }
+        size++;
+    }
+
+    /**
+     * Removes a shop from the index
+     * @param shop The shop to remove
+     * @return True if the shop was in the index
+     */
+    public boolean remove(Shop shop) {
+        World world = shop.chestPos().getWorld();
+        if (world == null) return false;
+        WorldIndex index = worlds.get(world.getUID());
+        if (index == null) return false;
+
+        // only remove the entries if they still point at this shop
+        if (!index.byChest.remove(blockKey(shop.chestPos()), shop)) return false;
+        index.bySign.remove(blockKey(shop.signPos()), shop);
+        for (long chunk : chunkKeys(shop)) {
+            List<Shop> shops = index.byChunk.get(chunk);
+            if (shops != null) {
+                shops.remove(shop);
+                if (shops.isEmpty()) index.byChunk.remove(chunk);
+            }
+        }
+        size--;
+
+        if (index.isEmpty()) worlds.remove(world.getUID());
+        return true;
+    }
+
+    /**
+     * @param signPos The location of a sign
+     * @return The shop using the sign, or null if there is none
+     */
+    public Shop getBySign(Location signPos) {
+        WorldIndex index = getIndex(signPos);
+        return index == null ? null : index.bySign.get(blockKey(signPos));
+    }
+
+    /**
+     * @param chestPos The location of a chest or barrel
+     * @return The shop using the chest, or null if there is none
+     */
+    public Shop getByChest(Location chestPos) {
+        WorldIndex index = getIndex(chestPos);
+        return index == null ? null : index.byChest.get(blockKey(chestPos));
+    }
+
+    /**
+     * Returns every shop with a sign or chest in a chunk
+     * @param chunk The chunk to look in
+     * @return An unmodifiable list of the shops in the chunk
+     */
+    public List<Shop> getInChunk(Chunk chunk) {
+        WorldIndex index = worlds.get(chunk.getWorld().getUID());
+        if (index == null) return Collections.emptyList();
+        List<Shop> shops = index.byChunk.get(chunk.getChunkKey());
+        return shops == null ? Collections.emptyList() : Collections.unmodifiableList(shops);
+    }
+
+    /**
+     * Returns every shop with a sign or chest in the given range of chunks
+     * @param world The world to look in
+     * @param minChunkX The smallest chunk x coordinate, inclusive
+     * @param minChunkZ The smallest chunk z coordinate, inclusive
+     * @param maxChunkX The largest chunk x coordinate, inclusive
+     * @param maxChunkZ The largest chunk z coordinate, inclusive
+     * @return The shops in the region
+     */
+    public Set<Shop> getInRegion(World world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        WorldIndex index = worlds.get(world.getUID());
+        Set<Shop> out = new HashSet<>();
+        if (index == null) return out;
+
+        long area = (long)(maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+        if (area > index.byChunk.size()) {
+            // large regions are cheaper to answer by walking the chunks that actually have shops
+            for (Long2ObjectMap.Entry<List<Shop>> entry : index.byChunk.long2ObjectEntrySet()) {
+                long key = entry.getLongKey();
+                int x = (int)key;
+                int z = (int)(key >> 32);
+                if (x >= minChunkX && x <= maxChunkX && z >= minChunkZ && z <= maxChunkZ) {
+                    out.addAll(entry.getValue());
+                }
+            }
+            return out;
+        }
+
+        for (int x = minChunkX; x <= maxChunkX; x++) {
+            for (int z = minChunkZ; z <= maxChunkZ; z++) {
+                List<Shop> shops = index.byChunk.get(Chunk.getChunkKey(x, z));
+                if (shops != null) out.addAll(shops);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @return The number of shops in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    private WorldIndex getIndex(Location loc) {
+        World world = loc.getWorld();
+        return world == null ? null : worlds.get(world.getUID());
+    }
+
+    private static long blockKey(Location loc) {
+        return Block.getBlockKey(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+    }
+
+    private static long[] chunkKeys(Shop shop) {
+        long chest = Chunk.getChunkKey(shop.chestPos().getBlockX() >> 4, shop.chestPos().getBlockZ() >> 4);
+        long sign = Chunk.getChunkKey(shop.signPos().getBlockX() >> 4, shop.signPos().getBlockZ() >> 4);
+        return chest == sign ? new long[] { chest } : new long[] { chest, sign };
+    }
+}
@@ -0,0 +1,40 @@
+package parallelmc.parallelutils.modules.chestshops;
+
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.UUID;
+
+// a lightweight copy of a shop's location and price, kept for every shop whether or not its chunk is loaded
+// x, y and z are the chest's position, the sign is only needed to know which chunks the shop is in
+public record ShopListing(UUID id, UUID owner, String world, int x, int y, int z, int signX, int signZ, Material item,
+                          int sellAmt, int buyAmt, ItemStack currency, ShopMode mode) {
+
+    public static ShopListing of(Shop shop) {
+        return new ShopListing(shop.id(), shop.owner(), shop.chestPos().getWorld().getName(),
+                shop.chestPos().getBlockX(), shop.chestPos().getBlockY(), shop.chestPos().getBlockZ(),
+                shop.signPos().getBlockX(), shop.signPos().getBlockZ(), shop.item(), shop.sellAmt(), shop.buyAmt(), shop.currency(), shop.mode());
+    }
+
+    /**
+     * @return The price of a single item
+     */
+    public double unitPrice() {
+        return (double)buyAmt / sellAmt;
+    }
+
+    /**
+     * @return The key of the chunk the shop's chest is in
+     */
+    public long chestChunk() {
+        return Chunk.getChunkKey(x >> 4, z >> 4);
+    }
+
+    /**
+     * @return The key of the chunk the shop's sign is in, which is usually the same as the chest's
+     */
+    public long signChunk() {
+        return Chunk.getChunkKey(signX >> 4, signZ >> 4);
+    }
+}
@@ -0,0 +1,9 @@
+package parallelmc.parallelutils.modules.chestshops;
+
+// which way items flow through a shop
+public enum ShopMode {
+    // players pay the shop's currency for its items
+    BUY,
+    // players give the shop its item and are paid from the chest
+    SELL
+}
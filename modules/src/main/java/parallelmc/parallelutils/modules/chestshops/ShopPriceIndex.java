@@ -0,0 +1,160 @@
+package parallelmc.parallelutils.modules.chestshops;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.*;
+
+/**
+ * Every shop on the server grouped by the item it sells and then by its currency, cheapest first, along with the last
+ * known stock of each shop. Prices are only ever compared between shops that take the same currency.
+ * Shops that buy items from players are tracked but never listed as selling anything.
+ * Stock counts are only marked out of date when the shop's chest changes and are recounted the next time they are needed
+ */
+public class ShopPriceIndex {
+
+    /**
+     * Returned by {@link #getStock(UUID)} when a shop's stock has never been counted
+     */
+    public static final int UNKNOWN = -1;
+
+    private static final Comparator<ShopListing> BY_PRICE = Comparator.comparingDouble(ShopListing::unitPrice)
+            .thenComparing(ShopListing::id);
+
+    // item -> currency key -> listings
+    private final EnumMap<Material, HashMap<String, TreeSet<ShopListing>>> byItem = new EnumMap<>(Material.class);
+    private final HashMap<UUID, ShopListing> byId = new HashMap<>();
+    // one example of each currency in use, so a currency key can be shown to players
+    private final HashMap<String, ItemStack> currencies = new HashMap<>();
+
+    private final Object2IntOpenHashMap<UUID> stock = new Object2IntOpenHashMap<>();
+    private final HashSet<UUID> staleStock = new HashSet<>();
+
+    public ShopPriceIndex() {
+        stock.defaultReturnValue(UNKNOWN);
+    }
+
+    /**
+     * Adds a shop to the index, replacing the shop's old listing if it has one
+     * @param listing The shop's listing
+     */
+    public void add(ShopListing listing) {
+        ShopListing old = byId.put(listing.id(), listing);
+        if (old != null) {
+            removeFromItem(old);
+        }
+        String currency = ShopTrade.currencyKey(listing.currency());
+        currencies.putIfAbsent(currency, listing.currency());
+        if (listing.mode() == ShopMode.BUY) {
+            byItem.computeIfAbsent(listing.item(), k -> new HashMap<>())
+                    .computeIfAbsent(currency, k -> new TreeSet<>(BY_PRICE)).add(listing);
+        }
+    }
+
+    /**
+     * Removes a shop from the index
+     * @param id The id of the shop
+     */
+    public void remove(UUID id) {
+        ShopListing old = byId.remove(id);
+        if (old != null) {
+            removeFromItem(old);
+        }
+        stock.removeInt(id);
+        staleStock.remove(id);
+    }
+
+    /**
+     * @param id The id of a shop
+     * @return The shop's listing, or null if it isn't indexed
+     */
+    public ShopListing get(UUID id) {
+        return byId.get(id);
+    }
+
+    /**
+     * @param item The item to look for
+     * @param currency The key of the currency to look for, see {@link ShopTrade#currencyKey(ItemStack)}
+     * @return Every shop selling the item for the currency, cheapest first
+     */
+    public NavigableSet<ShopListing> getListings(Material item, String currency) {
+        HashMap<String, TreeSet<ShopListing>> byCurrency = byItem.get(item);
+        TreeSet<ShopListing> listings = byCurrency == null ? null : byCurrency.get(currency);
+        return listings == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(listings);
+    }
+
+    /**
+     * @param item The item to look for
+     * @return The keys of every currency the item is sold for
+     */
+    public Set<String> getCurrencies(Material item) {
+        HashMap<String, TreeSet<ShopListing>> byCurrency = byItem.get(item);
+        return byCurrency == null ? Collections.emptySet() : Collections.unmodifiableSet(byCurrency.keySet());
+    }
+
+    /**
+     * @param currency The key of a currency
+     * @return An example of the currency, or null if no shop has ever been indexed with it
+     */
+    public ItemStack getCurrency(String currency) {
+        ItemStack item = currencies.get(currency);
+        return item == null ? null : item.clone();
+    }
+
+    /**
+     * @param id The id of a shop
+     * @return The last counted stock of the shop, or {@link #UNKNOWN}
+     */
+    public int getStock(UUID id) {
+        return stock.getInt(id);
+    }
+
+    /**
+     * @param id The id of a shop
+     * @return True if the shop's stock needs to be counted again
+     */
+    public boolean isStockStale(UUID id) {
+        return staleStock.contains(id) || !stock.containsKey(id);
+    }
+
+    /**
+     * Stores a fresh stock count for a shop
+     * @param id The id of the shop
+     * @param amount How many of the shop's item are in its chest
+     */
+    public void setStock(UUID id, int amount) {
+        stock.put(id, amount);
+        staleStock.remove(id);
+    }
+
+    /**
+     * Marks a shop's stock as out of date. The last count is kept until it is recounted
+     * @param id The id of the shop
+     */
+    public void markStockStale(UUID id) {
+        staleStock.add(id);
+    }
+
+    /**
+     * @return The number of shops in the index
+     */
+    public int size() {
+        return byId.size();
+    }
+
+    private void removeFromItem(ShopListing listing) {
+        HashMap<String, TreeSet<ShopListing>> byCurrency = byItem.get(listing.item());
+        if (byCurrency == null) return;
+        String currency = ShopTrade.currencyKey(listing.currency());
+        TreeSet<ShopListing> listings = byCurrency.get(currency);
+        if (listings == null) return;
+        listings.remove(listing);
+        if (listings.isEmpty()) {
+            byCurrency.remove(currency);
+            if (byCurrency.isEmpty()) {
+                byItem.remove(listing.item());
+            }
+        }
+    }
+}
@@ -3,9 +3,13 @@ package parallelmc.parallelutils.modules.chestshops;
 public enum ShopResult {
     SHOP_EMPTY,
     INVENTORY_FULL,
-    NO_DIAMONDS,
+    NO_CURRENCY,
     INSUFFICIENT_FUNDS,
     SHOP_FULL,
+    NO_ITEMS,
+    NOT_ENOUGH_ITEMS,
+    SHOP_NO_SPACE,
+    SHOP_CANT_PAY,
     SUCCESS,
     ERROR
 }
@@ -0,0 +1,5 @@
+package parallelmc.parallelutils.modules.chestshops;
+
+// totals read back from the transaction rollup tables for a single currency
+// currency is the key from ShopTrade.currencyKey
+public record ShopStats(String currency, long transactions, long quantity, long revenue) { }
@@ -0,0 +1,266 @@
+package parallelmc.parallelutils.modules.chestshops;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+
+import java.util.Arrays;
+
+/**
+ * Trades between a player and a shop. Both inventories are counted once, the number of bundles that can change hands
+ * is worked out from those counts, and then everything is moved at once, so a trade either happens in full or not at all
+ */
+public class ShopTrade {
+
+    // a shop's chest always keeps at least one slot free for the items it sells
+    public static final int MAX_CURRENCY_STACKS = 26;
+
+    /**
+     * The outcome of a trade
+     * @param result Whether the trade happened, or why it didn't
+     * @param bundles How many times the shop's amounts were traded
+     * @param item The exact item that was traded, or null if the trade failed
+     */
+    public record Result(ShopResult result, int bundles, ItemStack item) {
+        private static Result failed(ShopResult result) {
+            return new Result(result, 0, null);
+        }
+    }
+
+    /**
+     * @return The currency shops use when none is given
+     */
+    public static ItemStack defaultCurrency() {
+        return new ItemStack(Material.DIAMOND);
+    }
+
+    /**
+     * @param currency A shop's currency
+     * @return True if the currency is plain diamonds
+     */
+    public static boolean isDefaultCurrency(ItemStack currency) {
+        return currency.getType() == Material.DIAMOND && !currency.hasItemMeta();
+    }
+
+    /**
+     * The key of the default currency, see {@link #currencyKey(ItemStack)}
+     */
+    public static final String DEFAULT_CURRENCY_KEY = "minecraft:diamond";
+
+    /**
+     * Gets a short key that is the same for every shop using the same currency. Prices and sales in different
+     * currencies can't be compared or added up, so they are grouped by this key
+     * @param currency A shop's currency
+     * @return The item's key for plain items, or the item's key followed by a hash of the item for items with meta
+     */
+    public static String currencyKey(ItemStack currency) {
+        String key = currency.getType().getKey().toString();
+        if (!currency.hasItemMeta())
+            return key;
+        // the serialized bytes always come out the same for the same item, so the hash doesn't change across restarts
+        return key + "#" + Integer.toHexString(Arrays.hashCode(currency.asOne().serializeAsBytes()));
+    }
+
+    /**
+     * @param currency A shop's currency
+     * @return The most currency a shop's chest is allowed to hold
+     */
+    public static int maxCurrency(ItemStack currency) {
+        return MAX_CURRENCY_STACKS * currency.getMaxStackSize();
+    }
+
+    /**
+     * @param currency A shop's currency
+     * @return The currency's custom name if it has one, otherwise its item name
+     */
+    public static Component currencyName(ItemStack currency) {
+        if (currency.hasItemMeta() && currency.getItemMeta().hasDisplayName()) {
+            return currency.getItemMeta().displayName();
+        }
+        return Component.translatable(currency.translationKey());
+    }
+
+    /**
+     * Buys from a shop the player is shopping at. A normal click buys one bundle, a bulk click buys as many as the
+     * shop's stock, the player's funds, and both inventories' free space allow
+     * @param data The player's shopping session
+     * @param player The player buying
+     * @param slot The slot of the shop's chest that was clicked
+     * @param bulk True to buy as many bundles as possible
+     * @return The outcome of the trade
+     */
+    public static Result buy(ShopperData data, PlayerInventory player, int slot, boolean bulk) {
+        Shop shop = data.shop();
+        Inventory chest = data.chestInv();
+        ItemStack[] chestContents = chest.getContents();
+        if (slot < 0 || slot >= chestContents.length || chestContents[slot] == null || chestContents[slot].getType() != shop.item())
+            return Result.failed(ShopResult.SHOP_EMPTY);
+        // only stacks exactly like the clicked one are sold, so a bundle never mixes enchantments or names
+        ItemStack item = chestContents[slot].asOne();
+        ItemStack currency = shop.currency();
+
+        int stock = 0;
+        int chestFunds = 0;
+        int fundsSpace = 0;
+        for (ItemStack i : chestContents) {
+            if (i == null || i.getType().isAir())
+                fundsSpace += currency.getMaxStackSize();
+            else if (i.isSimilar(item))
+                stock += i.getAmount();
+            else if (i.isSimilar(currency)) {
+                chestFunds += i.getAmount();
+                fundsSpace += currency.getMaxStackSize() - i.getAmount();
+            }
+        }
+
+        ItemStack[] playerContents = player.getStorageContents();
+        int funds = 0;
+        int itemSpace = 0;
+        for (ItemStack i : playerContents) {
+            if (i == null || i.getType().isAir())
+                itemSpace += item.getMaxStackSize();
+            else if (i.isSimilar(currency))
+                funds += i.getAmount();
+            else if (i.isSimilar(item))
+                itemSpace += item.getMaxStackSize() - i.getAmount();
+        }
+
+        int price = shop.buyAmt();
+        int bundles = Math.min(bulk ? Integer.MAX_VALUE : 1, stock / shop.sellAmt());
+        if (bundles == 0)
+            return Result.failed(ShopResult.SHOP_EMPTY);
+        bundles = Math.min(bundles, itemSpace / shop.sellAmt());
+        if (bundles == 0)
+            return Result.failed(ShopResult.INVENTORY_FULL);
+        if (price > 0) {
+            if (funds == 0)
+                return Result.failed(ShopResult.NO_CURRENCY);
+            bundles = Math.min(bundles, funds / price);
+            if (bundles == 0)
+                return Result.failed(ShopResult.INSUFFICIENT_FUNDS);
+            int accepts = Math.max(0, Math.min(maxCurrency(currency) - chestFunds, fundsSpace));
+            bundles = Math.min(bundles, accepts / price);
+            if (bundles == 0)
+                return Result.failed(ShopResult.SHOP_FULL);
+        }
+
+        // take from the clicked slot first, then from the rest of the chest
+        int left = take(chest, chestContents, slot, item, bundles * shop.sellAmt(), data.fakeInv());
+        for (int s = 0; s < chestContents.length && left > 0; s++) {
+            if (s != slot)
+                left = take(chest, chestContents, s, item, left, data.fakeInv());
+        }
+        left = bundles * price;
+        for (int s = 0; s < playerContents.length && left > 0; s++) {
+            left = take(player, playerContents, s, currency, left, null);
+        }
+        give(player, item, bundles * shop.sellAmt(), player.getLocation());
+        give(chest, currency, bundles * price, chest.getLocation());
+        return new Result(ShopResult.SUCCESS, bundles, item);
+    }
+
+    /**
+     * Sells to a shop that buys items. The first stack of the shop's item in the player's inventory decides exactly which
+     * item is sold. A normal click sells one bundle, a bulk click sells as many as the shop can pay for and hold
+     * @param shop The shop to sell to
+     * @param chest The shop's chest. For a double chest this should be the combined inventory
+     * @param player The player selling
+     * @param bulk True to sell as many bundles as possible
+     * @return The outcome of the trade
+     */
+    public static Result sell(Shop shop, Inventory chest, PlayerInventory player, boolean bulk) {
+        ItemStack currency = shop.currency();
+
+        ItemStack[] playerContents = player.getStorageContents();
+        ItemStack item = null;
+        int held = 0;
+        int fundsSpace = 0;
+        for (ItemStack i : playerContents) {
+            if (i == null || i.getType().isAir()) {
+                fundsSpace += currency.getMaxStackSize();
+                continue;
+            }
+            if (i.isSimilar(currency)) {
+                fundsSpace += currency.getMaxStackSize() - i.getAmount();
+                continue;
+            }
+            if (item == null && i.getType() == shop.item())
+                item = i.asOne();
+            if (item != null && i.isSimilar(item))
+                held += i.getAmount();
+        }
+        if (item == null)
+            return Result.failed(ShopResult.NO_ITEMS);
+
+        ItemStack[] chestContents = chest.getContents();
+        int chestFunds = 0;
+        int itemSpace = 0;
+        for (ItemStack i : chestContents) {
+            if (i == null || i.getType().isAir())
+                itemSpace += item.getMaxStackSize();
+            else if (i.isSimilar(currency))
+                chestFunds += i.getAmount();
+            else if (i.isSimilar(item))
+                itemSpace += item.getMaxStackSize() - i.getAmount();
+        }
+
+        int price = shop.buyAmt();
+        int bundles = Math.min(bulk ? Integer.MAX_VALUE : 1, held / shop.sellAmt());
+        if (bundles == 0)
+            return Result.failed(ShopResult.NOT_ENOUGH_ITEMS);
+        bundles = Math.min(bundles, itemSpace / shop.sellAmt());
+        if (bundles == 0)
+            return Result.failed(ShopResult.SHOP_NO_SPACE);
+        if (price > 0) {
+            bundles = Math.min(bundles, chestFunds / price);
+            if (bundles == 0)
+                return Result.failed(ShopResult.SHOP_CANT_PAY);
+            bundles = Math.min(bundles, fundsSpace / price);
+            if (bundles == 0)
+                return Result.failed(ShopResult.INVENTORY_FULL);
+        }
+
+        int left = bundles * shop.sellAmt();
+        for (int s = 0; s < playerContents.length && left > 0; s++) {
+            left = take(player, playerContents, s, item, left, null);
+        }
+        left = bundles * price;
+        for (int s = 0; s < chestContents.length && left > 0; s++) {
+            left = take(chest, chestContents, s, currency, left, null);
+        }
+        give(chest, item, bundles * shop.sellAmt(), chest.getLocation());
+        give(player, currency, bundles * price, player.getLocation());
+        return new Result(ShopResult.SUCCESS, bundles, item);
+    }
+
+    // takes up to amount matching items from one slot, returning how many are still left to take
+    private static int take(Inventory inv, ItemStack[] contents, int slot, ItemStack match, int amount, Inventory mirror) {
+        ItemStack i = contents[slot];
+        if (i == null || !i.isSimilar(match))
+            return amount;
+        int taken = Math.min(amount, i.getAmount());
+        ItemStack rest = taken == i.getAmount() ? null : i.asQuantity(i.getAmount() - taken);
+        contents[slot] = rest;
+        inv.setItem(slot, rest);
+        if (mirror != null)
+            mirror.setItem(slot, rest);
+        return amount - taken;
+    }
+
+    // adds items in full stacks so unstackable items are never merged
+    private static void give(Inventory inv, ItemStack item, int amount, Location dropAt) {
+        int max = item.getMaxStackSize();
+        while (amount > 0) {
+            int n = Math.min(amount, max);
+            // space was checked before the trade, so anything left over here is only a safety net
+            inv.addItem(item.asQuantity(n)).values().forEach(x -> {
+                if (dropAt != null)
+                    dropAt.getWorld().dropItemNaturally(dropAt, x);
+            });
+            amount -= n;
+        }
+    }
+}
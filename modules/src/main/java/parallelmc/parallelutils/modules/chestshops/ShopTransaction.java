@@ -0,0 +1,11 @@
+package parallelmc.parallelutils.modules.chestshops;
+
+import org.bukkit.Material;
+
+import java.util.UUID;
+
+// a single trade with a shop, recorded in the transaction ledger
+// owner is the shop's owner and buyer is the player who traded with the shop, whichever way the items went
+// currency is the key of the shop's currency from ShopTrade.currencyKey, since prices in different currencies can't be added up
+public record ShopTransaction(UUID shopId, UUID owner, UUID buyer, Material item, int quantity, int price, String currency,
+                              ShopMode mode, long timestamp) { }
@@ -0,0 +1,233 @@
+package parallelmc.parallelutils.modules.chestshops;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.database.DatabaseExecutor;
+
+import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * An append-only log of every shop trade.
+ * Trades are queued in memory and written in batches off the main thread. Each batch also adds the totals of its
+ * purchases to the per-shop and per-item daily rollup tables in the same transaction, so the rollups always match the log.
+ * Revenue is always kept per currency, since amounts of different currencies can't be added together.
+ * Sales to shops are only logged, since the rollups count what shops have sold
+ */
+public class TransactionLedger {
+
+    private static final String MODULE = "ChestShops";
+
+    // a running total for one row of a rollup table
+    private static class Rollup {
+        private int transactions = 0;
+        private long quantity = 0;
+        private long revenue = 0;
+    }
+
+    // a shop's owner and currency never change, so they are part of the key only to be written with the row
+    private record ShopDay(UUID shopId, UUID owner, String currency, LocalDate day) { }
+    private record ItemDay(Material item, String currency, LocalDate day) { }
+
+    private final DatabaseExecutor executor;
+    private final int flushThreshold;
+
+    // only touched on the main thread
+    private ArrayList<ShopTransaction> queued = new ArrayList<>();
+    private CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
+
+    private final BukkitTask flushTask;
+
+    /**
+     * Creates a new TransactionLedger and starts its periodic flush
+     * @param plugin The plugin used to schedule the periodic flush
+     * @param executor The executor to write with
+     * @param flushIntervalTicks How often queued transactions are written, in ticks
+     * @param flushThreshold The number of queued transactions that triggers a write before the interval is up
+     */
+    public TransactionLedger(Plugin plugin, DatabaseExecutor executor, long flushIntervalTicks, int flushThreshold) {
+        this.executor = executor;
+        this.flushThreshold = Math.max(1, flushThreshold);
+        this.flushTask = Bukkit.getScheduler().runTaskTimer(plugin, this::flush, flushIntervalTicks, flushIntervalTicks);
+    }
+
+    /**
+     * Creates the ledger and rollup tables if they don't exist
+     * @param conn The connection to use
+     * @throws SQLException if a database access error occurs
+     */
+    public static void createTables(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.setQueryTimeout(15);
+            statement.execute("""
+                    create table if not exists ChestShopTransactions
+                    (
+                        Id          bigint       not null auto_increment,
+                        ShopID      varchar(36)  not null,
+                        Buyer       varchar(36)  not null,
+                        Item        varchar(50)  not null,
+                        Quantity    int          not null,
+                        Price       int          not null,
+                        Currency    varchar(100) not null,
+                        Mode        varchar(4)   not null,
+                        Time        bigint       not null,
+                        PRIMARY KEY (Id),
+                        index ChestShopTransactions_ShopID_index (ShopID),
+                        index ChestShopTransactions_Buyer_index (Buyer)
+                    );""");
+            // the owner is kept on the rollup so an owner's sales still count after their shops are removed
+            statement.execute("""
+                    create table if not exists ChestShopDailyShop
+                    (
+                        ShopID       varchar(36)  not null,
+                        Day          date         not null,
+                        Owner        varchar(36)  not null,
+                        Currency     varchar(100) not null,
+                        Transactions int          not null,
+                        Quantity     bigint       not null,
+                        Revenue      bigint       not null,
+                        PRIMARY KEY (ShopID, Day),
+                        index ChestShopDailyShop_Owner_index (Owner, Day)
+                    );""");
+            statement.execute("""
+                    create table if not exists ChestShopDailyItem
+                    (
+                        Item         varchar(50)  not null,
+                        Day          date         not null,
+                        Currency     varchar(100) not null,
+                        Transactions int          not null,
+                        Quantity     bigint       not null,
+                        Revenue      bigint       not null,
+                        PRIMARY KEY (Item, Day, Currency)
+                    );""");
+        }
+    }
+
+    /**
+     * Queues a transaction to be written. This never touches the database, so it is safe to call from click handlers
+     * @param transaction The transaction to record
+     */
+    public void record(ShopTransaction transaction) {
+        queued.add(transaction);
+        if (queued.size() >= flushThreshold) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes every queued transaction
+     * @return A future that completes once the batch has been written
+     */
+    public CompletableFuture<Void> flush() {
+        if (queued.isEmpty()) {
+            return inFlight;
+        }
+        List<ShopTransaction> batch = queued;
+        queued = new ArrayList<>();
+
+        inFlight = executor.run(MODULE, conn -> write(conn, batch));
+        inFlight.whenCompleteAsync((v, ex) -> {
+            if (ex != null) {
+                // the whole batch was rolled back, so put it back in front of anything queued since
+                ParallelUtils.log(Level.WARNING, "ChestShops: Failed to write " + batch.size() + " transactions. Will retry");
+                queued.addAll(0, batch);
+            }
+        }, executor.mainThread());
+        return inFlight;
+    }
+
+    /**
+     * Stops the periodic flush and writes everything still queued, waiting at most the given time
+     * @param timeoutMillis The maximum time to wait, in milliseconds
+     */
+    public void close(long timeoutMillis) {
+        flushTask.cancel();
+        try {
+            flush().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            ParallelUtils.log(Level.SEVERE, "ChestShops: Failed to write shop transactions before shutdown!");
+            e.printStackTrace();
+        }
+    }
+
+    private static void write(Connection conn, List<ShopTransaction> batch) throws SQLException {
+        ZoneId zone = ZoneId.systemDefault();
+        HashMap<ShopDay, Rollup> shopRollups = new HashMap<>();
+        HashMap<ItemDay, Rollup> itemRollups = new HashMap<>();
+
+        try (PreparedStatement statement = conn.prepareStatement(
+                "INSERT INTO ChestShopTransactions (ShopID, Buyer, Item, Quantity, Price, Currency, Mode, Time) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            statement.setQueryTimeout(30);
+            for (ShopTransaction t : batch) {
+                statement.setString(1, t.shopId().toString());
+                statement.setString(2, t.buyer().toString());
+                statement.setString(3, t.item().toString());
+                statement.setInt(4, t.quantity());
+                statement.setInt(5, t.price());
+                statement.setString(6, t.currency());
+                statement.setString(7, t.mode().name());
+                statement.setLong(8, t.timestamp());
+                statement.addBatch();
+
+                if (t.mode() != ShopMode.BUY)
+                    continue;
+                LocalDate day = Instant.ofEpochMilli(t.timestamp()).atZone(zone).toLocalDate();
+                add(shopRollups.computeIfAbsent(new ShopDay(t.shopId(), t.owner(), t.currency(), day), k -> new Rollup()), t);
+                add(itemRollups.computeIfAbsent(new ItemDay(t.item(), t.currency(), day), k -> new Rollup()), t);
+            }
+            statement.executeBatch();
+        }
+
+        try (PreparedStatement statement = conn.prepareStatement(
+                "INSERT INTO ChestShopDailyShop (ShopID, Day, Transactions, Quantity, Revenue, Owner, Currency) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE Transactions = Transactions + VALUES(Transactions), " +
+                        "Quantity = Quantity + VALUES(Quantity), Revenue = Revenue + VALUES(Revenue)")) {
+            statement.setQueryTimeout(30);
+            for (var entry : shopRollups.entrySet()) {
+                statement.setString(1, entry.getKey().shopId().toString());
+                statement.setDate(2, java.sql.Date.valueOf(entry.getKey().day()));
+                bindRollup(statement, entry.getValue());
+                statement.setString(6, entry.getKey().owner().toString());
+                statement.setString(7, entry.getKey().currency());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+
+        try (PreparedStatement statement = conn.prepareStatement(
+                "INSERT INTO ChestShopDailyItem (Item, Day, Transactions, Quantity, Revenue, Currency) VALUES (?, ?, ?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE Transactions = Transactions + VALUES(Transactions), " +
+                        "Quantity = Quantity + VALUES(Quantity), Revenue = Revenue + VALUES(Revenue)")) {
+            statement.setQueryTimeout(30);
+            for (var entry : itemRollups.entrySet()) {
+                statement.setString(1, entry.getKey().item().toString());
+                statement.setDate(2, java.sql.Date.valueOf(entry.getKey().day()));
+                bindRollup(statement, entry.getValue());
+                statement.setString(6, entry.getKey().currency());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private static void add(Rollup rollup, ShopTransaction t) {
+        rollup.transactions++;
+        rollup.quantity += t.quantity();
+        rollup.revenue += t.price();
+    }
+
+    private static void bindRollup(PreparedStatement statement, Rollup rollup) throws SQLException {
+        statement.setInt(3, rollup.transactions);
+        statement.setLong(4, rollup.quantity);
+        statement.setLong(5, rollup.revenue);
+    }
+}
@@ -0,0 +1,165 @@
+package parallelmc.parallelutils.modules.chestshops.commands;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.command.Command;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import parallelmc.parallelutils.modules.chestshops.ChestShops;
+import parallelmc.parallelutils.modules.chestshops.ShopListing;
+import parallelmc.parallelutils.modules.chestshops.ShopPriceIndex;
+import parallelmc.parallelutils.modules.chestshops.ShopTrade;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public class ParallelShopFind extends ShopCommand {
+    private final String USAGE = "/shop find <item> [currency]";
+
+    private static final int MAX_RESULTS = 8;
+    // when every currency is listed, only the cheapest few of each are shown
+    private static final int RESULTS_PER_CURRENCY = 3;
+
+    public ParallelShopFind() {
+        super("find", "Lists the cheapest shops selling an item");
+    }
+
+    @Override
+    public boolean execute(@NotNull Player player, @NotNull Command command, @NotNull String[] args) {
+        if (args.length < 2) {
+            player.sendMessage(USAGE);
+            return false;
+        }
+        Material item = Material.matchMaterial(args[1]);
+        if (item == null) {
+            ParallelChat.sendParallelMessageTo(player, "Unknown item: " + args[1]);
+            return true;
+        }
+        // the index is filled the first time anyone searches, after that this completes straight away
+        ChestShops.get().loadPriceIndex().whenComplete((index, ex) -> {
+            if (ex != null) {
+                ParallelChat.sendParallelMessageTo(player, "Failed to look up shops, please try again later.");
+                return;
+            }
+            if (player.isOnline())
+                find(player, index, item, args);
+        });
+        return true;
+    }
+
+    private void find(Player player, ShopPriceIndex index, Material item, String[] args) {
+        List<String> currencies;
+        int limit;
+        if (args.length >= 3) {
+            String currency = parseCurrency(args[2]);
+            if (currency == null) {
+                ParallelChat.sendParallelMessageTo(player, "Unknown currency: " + args[2]);
+                return;
+            }
+            currencies = List.of(currency);
+            limit = MAX_RESULTS;
+        }
+        else {
+            // diamonds first, then the other currencies by how many shops use them
+            currencies = index.getCurrencies(item).stream()
+                    .sorted(Comparator.comparing((String x) -> !x.equals(ShopTrade.DEFAULT_CURRENCY_KEY))
+                            .thenComparing(x -> -index.getListings(item, x).size()))
+                    .toList();
+            limit = currencies.size() > 1 ? RESULTS_PER_CURRENCY : MAX_RESULTS;
+        }
+
+        Location loc = player.getLocation();
+        Component out = Component.text("Cheapest shops selling " + item.getKey().getKey() + ":", NamedTextColor.GREEN);
+        int found = 0;
+        for (String currency : currencies) {
+            Component section = Component.empty();
+            int inSection = 0;
+            // listings are already sorted by price, so stop as soon as we have enough that are in stock
+            for (ShopListing listing : index.getListings(item, currency)) {
+                int stock = ChestShops.get().getStock(listing);
+                if (stock != ShopPriceIndex.UNKNOWN && stock < listing.sellAmt())
+                    continue;
+                section = section.append(Component.newline()).append(formatListing(listing, stock, loc));
+                if (++inSection >= limit)
+                    break;
+            }
+            if (inSection == 0)
+                continue;
+            if (currencies.size() > 1) {
+                ItemStack example = index.getCurrency(currency);
+                Component name = example == null ? Component.text(currency) : ShopTrade.currencyName(example);
+                out = out.append(Component.newline())
+                        .append(Component.text("For ", NamedTextColor.AQUA).append(name).append(Component.text(":")));
+            }
+            out = out.append(section);
+            found += inSection;
+        }
+
+        if (found == 0) {
+            ParallelChat.sendParallelMessageTo(player, "No shops are selling " + item.getKey().getKey() + " right now.");
+            return;
+        }
+        ParallelChat.sendParallelMessageTo(player, out);
+    }
+
+    @Override
+    public List<String> getTabComplete(@NotNull Player player, @NotNull String[] args) {
+        if (args.length == 2) {
+            String prefix = args[1].toLowerCase();
+            return Arrays.stream(Material.values())
+                    .filter(Material::isItem)
+                    .map(x -> x.getKey().getKey())
+                    .filter(x -> x.startsWith(prefix))
+                    .limit(50)
+                    .toList();
+        }
+        if (args.length == 3) {
+            Material item = Material.matchMaterial(args[1]);
+            if (item == null)
+                return new ArrayList<>();
+            String prefix = args[2].toLowerCase();
+            // suggests what is indexed so far, and starts filling the index if nobody has searched yet
+            ChestShops.get().loadPriceIndex();
+            return ChestShops.get().getPriceIndex().getCurrencies(item).stream()
+                    .map(x -> x.startsWith("minecraft:") && x.indexOf('#') == -1 ? x.substring("minecraft:".length()) : x)
+                    .filter(x -> x.startsWith(prefix))
+                    .toList();
+        }
+        return new ArrayList<>();
+    }
+
+    // a plain item name, or the full key of a currency with meta as shown by tab complete
+    private String parseCurrency(String arg) {
+        if (arg.indexOf('#') != -1)
+            return arg.toLowerCase();
+        Material currency = Material.matchMaterial(arg);
+        return currency == null ? null : currency.getKey().toString();
+    }
+
+    private Component formatListing(ShopListing listing, int stock, Location loc) {
+        String owner = Bukkit.getOfflinePlayer(listing.owner()).getName();
+        Component price = listing.buyAmt() == 0 ? Component.text("Free") :
+                Component.text(listing.buyAmt() + " ").append(ShopTrade.currencyName(listing.currency()));
+        String where;
+        if (listing.world().equals(loc.getWorld().getName())) {
+            double dx = listing.x() - loc.getX();
+            double dz = listing.z() - loc.getZ();
+            where = String.format("%d, %d, %d (%dm away)", listing.x(), listing.y(), listing.z(), Math.round(Math.sqrt(dx * dx + dz * dz)));
+        }
+        else {
+            where = String.format("%d, %d, %d in %s", listing.x(), listing.y(), listing.z(), listing.world());
+        }
+        Component line = Component.text(listing.sellAmt() + "x for ", NamedTextColor.YELLOW).append(price)
+                .append(Component.text(" from " + (owner == null ? "Unknown" : owner) + " at " + where, NamedTextColor.GRAY));
+        if (stock == ShopPriceIndex.UNKNOWN)
+            line = line.append(Component.text(" (stock unknown)", NamedTextColor.DARK_GRAY));
+        return line;
+    }
+}
@@ -0,0 +1,137 @@
+package parallelmc.parallelutils.modules.chestshops.commands;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.command.Command;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.modules.chestshops.ChestShops;
+import parallelmc.parallelutils.modules.chestshops.Shop;
+import parallelmc.parallelutils.modules.chestshops.ShopDatabase;
+import parallelmc.parallelutils.modules.chestshops.ShopStats;
+import parallelmc.parallelutils.modules.chestshops.ShopTrade;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+public class ParallelShopStats extends ShopCommand {
+    private final String USAGE = "/shop stats [item <item>]";
+
+    private static final int RECENT_DAYS = 7;
+
+    public ParallelShopStats() {
+        super("stats", "Shows sales totals for the shop you are looking at, all of your shops, or an item");
+    }
+
+    @Override
+    public boolean execute(@NotNull Player player, @NotNull Command command, @NotNull String[] args) {
+        ShopDatabase database = ChestShops.get().getDatabase();
+
+        if (args.length >= 2) {
+            if (!args[1].equalsIgnoreCase("item") || args.length < 3) {
+                player.sendMessage(USAGE);
+                return false;
+            }
+            Material item = Material.matchMaterial(args[2]);
+            if (item == null) {
+                ParallelChat.sendParallelMessageTo(player, "Unknown item: " + args[2]);
+                return true;
+            }
+            sendStats(player, "Sales of " + item.getKey().getKey(),
+                    database.getItemStats(item, RECENT_DAYS), database.getItemStats(item, 0));
+            return true;
+        }
+
+        Shop shop = getTargetShop(player);
+        if (shop != null) {
+            if (!player.hasPermission("parallelutils.bypass.chestshops") && !shop.owner().equals(player.getUniqueId())) {
+                ParallelChat.sendParallelMessageTo(player, "You can only view stats for your own shops!");
+                return true;
+            }
+            sendStats(player, "Sales of this shop",
+                    database.getShopStats(shop.id(), RECENT_DAYS), database.getShopStats(shop.id(), 0));
+        }
+        else {
+            sendStats(player, "Sales of all your shops",
+                    database.getOwnerStats(player.getUniqueId(), RECENT_DAYS), database.getOwnerStats(player.getUniqueId(), 0));
+        }
+        return true;
+    }
+
+    @Override
+    public List<String> getTabComplete(@NotNull Player player, @NotNull String[] args) {
+        if (args.length == 2) {
+            return List.of("item");
+        }
+        if (args.length == 3 && args[1].equalsIgnoreCase("item")) {
+            String prefix = args[2].toLowerCase();
+            return Arrays.stream(Material.values())
+                    .filter(Material::isItem)
+                    .map(x -> x.getKey().getKey())
+                    .filter(x -> x.startsWith(prefix))
+                    .limit(50)
+                    .toList();
+        }
+        return new ArrayList<>();
+    }
+
+    private Shop getTargetShop(Player player) {
+        Block block = player.getTargetBlockExact(5);
+        if (block == null) return null;
+        Shop shop = ChestShops.get().getShopFromSignPos(block.getLocation());
+        if (shop == null) {
+            shop = ChestShops.get().getShopFromChestPos(block.getLocation());
+        }
+        return shop;
+    }
+
+    private void sendStats(Player player, String title, CompletableFuture<List<ShopStats>> recent, CompletableFuture<List<ShopStats>> total) {
+        recent.thenCombine(total, (r, t) -> Component.text(title + ":", NamedTextColor.GREEN)
+                        .append(Component.newline()).append(formatStats("Last " + RECENT_DAYS + " days", r))
+                        .append(Component.newline()).append(formatStats("All time", t)))
+                .whenCompleteAsync((msg, ex) -> {
+                    if (ex != null) {
+                        ParallelUtils.log(Level.WARNING, "ChestShops: Failed to load shop stats: " + ex.getMessage());
+                        ParallelChat.sendParallelMessageTo(player, "Failed to load shop stats. Please try again later.");
+                        return;
+                    }
+                    ParallelChat.sendParallelMessageTo(player, msg);
+                }, ChestShops.get().getDatabase().getExecutor().mainThread());
+    }
+
+    // sales and items are added up across currencies, revenue is listed separately for each one
+    private Component formatStats(String label, List<ShopStats> stats) {
+        long transactions = stats.stream().mapToLong(ShopStats::transactions).sum();
+        long quantity = stats.stream().mapToLong(ShopStats::quantity).sum();
+        Component out = Component.text(label + ": ", NamedTextColor.GRAY)
+                .append(Component.text(transactions, NamedTextColor.YELLOW)).append(Component.text(" sales, "))
+                .append(Component.text(quantity, NamedTextColor.YELLOW)).append(Component.text(" items"));
+        List<ShopStats> sorted = stats.stream()
+                .sorted(Comparator.comparing((ShopStats x) -> !x.currency().equals(ShopTrade.DEFAULT_CURRENCY_KEY))
+                        .thenComparing(x -> -x.revenue()))
+                .toList();
+        for (ShopStats s : sorted) {
+            out = out.append(Component.text(", "))
+                    .append(Component.text(s.revenue() + " ", NamedTextColor.AQUA).append(currencyName(s.currency())));
+        }
+        return out;
+    }
+
+    private Component currencyName(String currency) {
+        ItemStack example = ChestShops.get().getPriceIndex().getCurrency(currency);
+        if (example != null)
+            return ShopTrade.currencyName(example);
+        // no shop with this currency is left, so fall back to the plain item's name
+        Material material = Material.matchMaterial(currency.split("#", 2)[0]);
+        return material == null ? Component.text(currency) : Component.translatable(material.translationKey());
+    }
+}
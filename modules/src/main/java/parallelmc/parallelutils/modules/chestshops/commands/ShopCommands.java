@@ -0,0 +1,82 @@
+package parallelmc.parallelutils.modules.chestshops.commands;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+public class ShopCommands implements CommandExecutor, TabCompleter {
+
+    private final HashMap<String, ShopCommand> commandMap = new HashMap<>();
+
+    /**
+     * Adds a new command to the commandmap
+     *
+     * @param name    The name of the command
+     * @param command The command to be run when the name is called
+     * @return Returns true when the command was added successfully, false if the command already exists.
+     */
+    public boolean addCommand(String name, ShopCommand command) {
+        if (commandMap.containsKey(name.toLowerCase().strip())) {
+            return false;
+        }
+
+        commandMap.put(name.toLowerCase().strip(), command);
+
+        return true;
+    }
+
+    public HashMap<String, ShopCommand> getShopCommands() {
+        return commandMap;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        // only players can run shop commands
+        if (sender instanceof Player player) {
+            if (command.getName().equalsIgnoreCase("shop")) {
+                if (args.length == 0) {
+                    ParallelChat.sendParallelMessageTo(player, "Available shop commands: " + String.join(", ", commandMap.keySet()));
+                }
+                else {
+                    ShopCommand executingCommand = commandMap.get(args[0].toLowerCase());
+
+                    if (executingCommand != null) {
+                        executingCommand.execute(player, command, args);
+                    } else {
+                        ParallelChat.sendParallelMessageTo(player, "Unknown shop subcommand.");
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    @Nullable
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, @NotNull String[] args) {
+        ArrayList<String> list = new ArrayList<>();
+
+        if (sender instanceof Player player) {
+            String lowerName = command.getName().toLowerCase().strip();
+
+            if (lowerName.equals("shop") && args.length == 1) {
+                // List every sub-command
+                list.addAll(commandMap.keySet());
+            } else {
+                if (commandMap.containsKey(args[0].toLowerCase().strip())) {
+                    return commandMap.get(args[0].toLowerCase().strip()).getTabComplete(player, args);
+                }
+            }
+        }
+        return list;
+    }
+}
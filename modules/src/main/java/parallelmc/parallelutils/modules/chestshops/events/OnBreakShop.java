@@ -20,6 +20,11 @@ public class OnBreakShop implements Listener {
         Player player = event.getPlayer();
         Block block = event.getBlock();
         if (block.getState() instanceof Sign) {
+            if (ChestShops.get().isLoadingShops(block.getLocation())) {
+                event.setCancelled(true);
+                ParallelChat.sendParallelMessageTo(player, "The shops here are still loading, please try again in a moment.");
+                return;
+            }
             Shop s = ChestShops.get().getShopFromSignPos(block.getLocation());
             if (s == null) return;
             if (!player.hasPermission("parallelutils.bypass.chestshops") && !s.owner().equals(player.getUniqueId())) {
@@ -36,6 +41,11 @@ public class OnBreakShop implements Listener {
             ParallelChat.sendParallelMessageTo(player, "Chest shop unregistered.");
         }
         else if (block.getType() == Material.CHEST || block.getType() == Material.BARREL) {
+            if (ChestShops.get().isLoadingShops(block.getLocation())) {
+                event.setCancelled(true);
+                ParallelChat.sendParallelMessageTo(player, "The shops here are still loading, please try again in a moment.");
+                return;
+            }
             Container chest = (Container)block.getState();
             Shop s;
             InventoryHolder holder = chest.getInventory().getHolder();
@@ -0,0 +1,22 @@
+package parallelmc.parallelutils.modules.chestshops.events;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import parallelmc.parallelutils.modules.chestshops.ChestShops;
+
+public class OnChunkShops implements Listener {
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        // new chunks can't have any shops in them yet
+        if (event.isNewChunk()) return;
+        ChestShops.get().loadShopsInChunk(event.getChunk());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        ChestShops.get().unloadShopsInChunk(event.getChunk());
+    }
+}
@@ -1,5 +1,8 @@
 package parallelmc.parallelutils.modules.chestshops.events;
 
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.block.*;
 import org.bukkit.entity.Player;
@@ -12,7 +15,9 @@ import org.bukkit.inventory.InventoryHolder;
 import parallelmc.parallelutils.ParallelUtils;
 import parallelmc.parallelutils.modules.chestshops.ChestShops;
 import parallelmc.parallelutils.modules.chestshops.Shop;
+import parallelmc.parallelutils.modules.chestshops.ShopMode;
 import parallelmc.parallelutils.modules.chestshops.ShopResult;
+import parallelmc.parallelutils.modules.chestshops.ShopTrade;
 import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
 
 import java.util.logging.Level;
@@ -27,6 +32,8 @@ public class OnClickBlock implements Listener {
             if (block.getState() instanceof Sign) {
                 Shop shop = ChestShops.get().getShopFromSignPos(block.getLocation());
                 if (shop == null) {
+                    if (ChestShops.get().isLoadingShops(block.getLocation()))
+                        ParallelChat.sendParallelMessageTo(player, "The shops here are still loading, please try again in a moment.");
                     return;
                 }
                 Block c = player.getWorld().getBlockAt(shop.chestPos());
@@ -39,16 +46,30 @@ public class OnClickBlock implements Listener {
                     ParallelChat.sendParallelMessageTo(player, "Someone is already using this shop!");
                     return;
                 }
+                if (shop.mode() == ShopMode.SELL) {
+                    // selling happens straight from the sign, sneaking sells as much as possible
+                    sell(player, shop, (Container)c.getState(), player.isSneaking());
+                    return;
+                }
+                Component currency = ShopTrade.currencyName(shop.currency());
                 ShopResult result = ChestShops.get().attemptPurchase(player, shop, (Container)c.getState());
                 switch (result) {
                     case SHOP_EMPTY -> ParallelChat.sendParallelMessageTo(player, "This shop is out of stock!");
                     case INVENTORY_FULL -> ParallelChat.sendParallelMessageTo(player, "Your inventory is full!");
-                    case NO_DIAMONDS -> ParallelChat.sendParallelMessageTo(player, "You do not have any diamonds!");
-                    case INSUFFICIENT_FUNDS -> ParallelChat.sendParallelMessageTo(player, "You do not have enough diamonds to purchase this item!");
+                    case NO_CURRENCY -> ParallelChat.sendParallelMessageTo(player, Component.text("You do not have any ", NamedTextColor.GREEN)
+                            .append(currency).append(Component.text("!")));
+                    case INSUFFICIENT_FUNDS -> ParallelChat.sendParallelMessageTo(player, Component.text("You do not have enough ", NamedTextColor.GREEN)
+                            .append(currency).append(Component.text(" to purchase this item!")));
                     case SHOP_FULL -> ParallelChat.sendParallelMessageTo(player, "This chest shop cannot accept any more currency!");
                 }
             }
             else if (block.getType() == Material.CHEST || block.getType() == Material.BARREL) {
+                // the chest may belong to a shop that hasn't been loaded yet, so don't let anyone take from it
+                if (ChestShops.get().isLoadingShops(block.getLocation())) {
+                    event.setCancelled(true);
+                    ParallelChat.sendParallelMessageTo(player, "The shops here are still loading, please try again in a moment.");
+                    return;
+                }
                 if (block.getState() instanceof Container chest) {
                     Shop shop;
                     InventoryHolder holder = chest.getInventory().getHolder();
@@ -123,4 +144,30 @@ public class OnClickBlock implements Listener {
             }
         }
     }
+
+    private void sell(Player player, Shop shop, Container chest, boolean bulk) {
+        ShopTrade.Result result = ChestShops.get().attemptSale(player, shop, chest, bulk);
+        Component currency = ShopTrade.currencyName(shop.currency());
+        switch (result.result()) {
+            case NO_ITEMS, NOT_ENOUGH_ITEMS -> ParallelChat.sendParallelMessageTo(player, "You need at least " + shop.sellAmt() + " of this item to sell to this shop!");
+            case SHOP_NO_SPACE -> ParallelChat.sendParallelMessageTo(player, "This chest shop has no room for more items!");
+            case SHOP_CANT_PAY -> ParallelChat.sendParallelMessageTo(player, Component.text("This chest shop is out of ", NamedTextColor.GREEN)
+                    .append(currency).append(Component.text("!")));
+            case INVENTORY_FULL -> ParallelChat.sendParallelMessageTo(player, "Your inventory is full!");
+            case SUCCESS -> {
+                int amount = result.bundles() * shop.sellAmt();
+                int paid = result.bundles() * shop.buyAmt();
+                Component name = result.item().displayName();
+                ParallelChat.sendParallelMessageTo(player, Component.text("You sold " + amount + "x ", NamedTextColor.GREEN).append(name)
+                        .append(Component.text(" for " + paid + " ")).append(currency));
+                Player owner = Bukkit.getPlayer(shop.owner());
+                if (owner != null) {
+                    ParallelChat.sendParallelMessageTo(owner, Component.text(player.getName() + " sold " + amount + "x ", NamedTextColor.GREEN)
+                            .append(name)
+                            .append(Component.text(" to your ChestShop!")));
+                }
+            }
+            default -> ParallelChat.sendParallelMessageTo(player, "Something went wrong with this sale.");
+        }
+    }
 }
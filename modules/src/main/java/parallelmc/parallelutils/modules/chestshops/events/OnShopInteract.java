@@ -3,22 +3,19 @@ package parallelmc.parallelutils.modules.chestshops.events;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.Bukkit;
-import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.*;
 import org.bukkit.event.player.PlayerQuitEvent;
-import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
-import parallelmc.parallelutils.ParallelUtils;
 import parallelmc.parallelutils.modules.chestshops.ChestShops;
+import parallelmc.parallelutils.modules.chestshops.ShopResult;
+import parallelmc.parallelutils.modules.chestshops.ShopTrade;
 import parallelmc.parallelutils.modules.chestshops.ShopperData;
 import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
 
-import java.util.logging.Level;
-
 public class OnShopInteract implements Listener {
     // suppress supposed null pointers that the compiler doesn't recognize
     @SuppressWarnings("ConstantConditions")
@@ -26,7 +23,6 @@ public class OnShopInteract implements Listener {
     public void onShopClick(InventoryClickEvent event) {
         Player player = (Player)event.getWhoClicked();
         ShopperData data = ChestShops.get().getShoppingData(player);
-        Inventory inv = event.getClickedInventory();
         if (data != null && data.fakeInv().equals(event.getInventory()) && event.getCurrentItem() != null) {
             event.setCancelled(true);
             // if the clicked inventory is not the ChestShop inventory (the player's inventory usually)
@@ -34,78 +30,39 @@ public class OnShopInteract implements Listener {
             if (!data.fakeInv().equals(event.getClickedInventory())) {
                 return;
             }
-            if (!inv.containsAtLeast(event.getCurrentItem(), data.shop().sellAmt())) {
-                ParallelChat.sendParallelMessageTo(player, "Shop is out of stock!");
-                player.closeInventory();
-                return;
-            }
             if (player.getItemOnCursor() != null && !player.getItemOnCursor().getType().isAir()) {
                 ParallelChat.sendParallelMessageTo(player, "Your held mouse item must be empty!");
                 player.closeInventory();
                 return;
             }
-            if (data.shop().buyAmt() > 0) {
-                int slot = player.getInventory().first(Material.DIAMOND);
-                if (slot == -1) {
-                    ParallelChat.sendParallelMessageTo(player, "You do not have enough diamonds left!");
-                    player.closeInventory();
-                    return;
-                }
-                ItemStack diamonds = player.getInventory().getItem(slot);
-                if (diamonds.getAmount() < data.shop().buyAmt()) {
-                    ParallelChat.sendParallelMessageTo(player, "You do not have enough diamonds left!");
-                    player.closeInventory();
-                    return;
-                }
-                ItemStack take = new ItemStack(Material.DIAMOND);
-                take.setAmount(data.shop().buyAmt());
-                diamonds.subtract(data.shop().buyAmt());
-                data.chestInv().addItem(take);
-            }
-            // make a copy of each item
-            ItemStack give = new ItemStack(event.getCurrentItem());
-            int maxStack = give.getMaxStackSize();
-            if (data.shop().sellAmt() <= maxStack) {
-                give.setAmount(data.shop().sellAmt());
-                player.getInventory().addItem(give);
+            // shift-clicking buys as many bundles as the player can afford and carry
+            ShopTrade.Result result = ChestShops.get().buy(player, data, event.getRawSlot(), event.isShiftClick());
+            switch (result.result()) {
+                case SUCCESS -> { }
+                case SHOP_EMPTY -> ParallelChat.sendParallelMessageTo(player, "Shop is out of stock!");
+                case INVENTORY_FULL -> ParallelChat.sendParallelMessageTo(player, "Your inventory is full!");
+                case NO_CURRENCY, INSUFFICIENT_FUNDS -> ParallelChat.sendParallelMessageTo(player,
+                        Component.text("You do not have enough ", NamedTextColor.GREEN).append(ShopTrade.currencyName(data.shop().currency())).append(Component.text(" left!")));
+                case SHOP_FULL -> ParallelChat.sendParallelMessageTo(player, "This chest shop cannot accept any more currency!");
+                default -> ParallelChat.sendParallelMessageTo(player, "Something went wrong with this purchase.");
             }
-            else {
-                // prevent stacking unstackable items
-                int itemsLeft = data.shop().sellAmt();
-                while (itemsLeft > 0) {
-                    give.setAmount(Math.min(itemsLeft, maxStack));
-                    player.getInventory().addItem(give);
-                    itemsLeft -= give.getMaxStackSize();
-                }
-            }
-            int amtLeft = event.getCurrentItem().getAmount() - data.shop().sellAmt();
-            ItemStack update = event.getCurrentItem().subtract(data.shop().sellAmt());
-            data.chestInv().setItem(event.getRawSlot(), update);
-            if (amtLeft < 0) {
-                amtLeft = -amtLeft;
-                while (amtLeft > 0) {
-                    int nextSlot = data.chestInv().first(data.shop().item());
-                    if (nextSlot == -1) {
-                        ParallelUtils.log(Level.SEVERE, "ItemStack was null when it shouldn't be!");
-                        return;
-                    }
-                    ItemStack next = data.chestInv().getItem(nextSlot);
-                    int amt = next.getAmount() - amtLeft;
-                    next.subtract(amtLeft);
-                    data.fakeInv().getItem(nextSlot).subtract(amtLeft);
-                    if (amt > 0)
-                        break;
-                    amtLeft = -amt;
-                }
+            if (result.result() != ShopResult.SUCCESS) {
+                player.closeInventory();
+                return;
             }
+
+            ItemStack give = result.item();
             Component name = give.displayName();
             if (give.hasItemMeta() && give.getItemMeta().hasDisplayName()) {
                 name = give.getItemMeta().displayName();
             }
-            ParallelChat.sendParallelMessageTo(player, Component.text("You bought " + data.shop().sellAmt() + "x ", NamedTextColor.GREEN).append(name));
+            int amount = result.bundles() * data.shop().sellAmt();
+            Component price = ShopTrade.currencyName(data.shop().currency());
+            ParallelChat.sendParallelMessageTo(player, Component.text("You bought " + amount + "x ", NamedTextColor.GREEN).append(name)
+                    .append(Component.text(" for " + result.bundles() * data.shop().buyAmt() + " ", NamedTextColor.GREEN)).append(price));
             OfflinePlayer owner = Bukkit.getOfflinePlayer(data.shop().owner());
             if (owner.isOnline()) {
-                ParallelChat.sendParallelMessageTo(owner.getPlayer(), Component.text(player.getName() + " bought " + data.shop().sellAmt() + "x ", NamedTextColor.GREEN)
+                ParallelChat.sendParallelMessageTo(owner.getPlayer(), Component.text(player.getName() + " bought " + amount + "x ", NamedTextColor.GREEN)
                         .append(name)
                         .append(Component.text(" from your ChestShop!", NamedTextColor.GREEN)));
             }
@@ -146,5 +103,6 @@ public class OnShopInteract implements Listener {
         if (data != null) {
             ChestShops.get().stopShopping(player);
         }
+        ChestShops.get().releaseShoppingInventory(player);
     }
 }
@@ -0,0 +1,24 @@
+package parallelmc.parallelutils.modules.chestshops.events;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+import parallelmc.parallelutils.modules.chestshops.ChestShops;
+
+// marks a shop's cached stock as out of date whenever its chest might have changed
+public class OnShopStockChange implements Listener {
+    @EventHandler(ignoreCancelled = true, priority = EventPriority.MONITOR)
+    public void onMoveItem(InventoryMoveItemEvent event) {
+        // hoppers taking from or filling a shop chest
+        ChestShops.get().markStockStale(event.getSource());
+        ChestShops.get().markStockStale(event.getDestination());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onCloseChest(InventoryCloseEvent event) {
+        // the owner restocking or emptying their shop
+        ChestShops.get().markStockStale(event.getInventory());
+    }
+}
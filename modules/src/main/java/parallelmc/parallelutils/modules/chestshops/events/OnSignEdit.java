@@ -15,8 +15,9 @@ public class OnSignEdit implements Listener {
 		Block block = event.getSign().getBlock();
 
 		Shop shop = ChestShops.get().getShopFromSignPos(block.getLocation());
-		if (shop != null) {
-			// If the sign clicked is a chest shop, cancel the edit
+		if (shop != null && !shop.owner().equals(event.getPlayer().getUniqueId())) {
+			// If the sign clicked is someone else's chest shop, cancel the edit
+			// Owners edit the sign to change the shop's amount and price, see OnSignText
 			event.setCancelled(true);
 		}
 	}
@@ -19,6 +19,8 @@ import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 import parallelmc.parallelutils.modules.chestshops.ChestShops;
 import parallelmc.parallelutils.modules.chestshops.Shop;
+import parallelmc.parallelutils.modules.chestshops.ShopMode;
+import parallelmc.parallelutils.modules.chestshops.ShopTrade;
 import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
 
 import java.util.ArrayList;
@@ -30,23 +32,39 @@ public class OnSignText implements Listener {
     //      ChestShop
     //       X items
     //      X currency
+    //     [currency]
 
     // Plugin will update it to:
     //      ChestShop
     //     Player Name
     //      X items
     //     X currency
+
+    // Writing SellShop on the first line instead makes a shop that buys the item from players
+    // The currency can be named on the last line: empty means diamonds, an item name like "emerald" means that item,
+    // and "offhand" means exactly the item held in the off hand, which is how currencies with names or enchants are picked
+    // The owner can change the amount and price later by editing the sign, keeping the first line as it is and writing
+    // the new amount and price on the next two lines. The item, currency and mode can't be changed
     @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGHEST)
     public void onSignTextSet(SignChangeEvent event) {
         Player player = event.getPlayer();
+        Shop edited = ChestShops.get().getShopFromSignPos(event.getBlock().getLocation());
+        if (edited != null) {
+            editShop(event, player, edited);
+            return;
+        }
         if (player.hasPermission("parallelutils.chestshops.create") || player.isOp()) {
-            List<String> lines = new ArrayList<>();
-            // thanks kyori
-            event.lines().forEach((l) -> lines.add(PlainTextComponentSerializer.plainText().serialize(l)));
-            if (lines.get(0).equals("ChestShop")) {
+            List<String> lines = plainLines(event);
+            if (lines.get(0).equals("ChestShop") || lines.get(0).equals("SellShop")) {
+                ShopMode mode = lines.get(0).equals("ChestShop") ? ShopMode.BUY : ShopMode.SELL;
                 Directional d = (Directional)event.getBlock().getBlockData();
                 Block attached = event.getBlock().getRelative(d.getFacing().getOppositeFace());
                 if (attached.getType() == Material.CHEST || attached.getType() == Material.BARREL) {
+                    if (ChestShops.get().isLoadingShops(attached.getLocation())) {
+                        event.setCancelled(true);
+                        ParallelChat.sendParallelMessageTo(player, "The shops here are still loading, please try again in a moment.");
+                        return;
+                    }
                     Container chest = (Container)attached.getState();
                     Shop existing = ChestShops.get().getShopFromChestPos(chest.getLocation());
                     if (existing != null) {
@@ -79,66 +97,30 @@ public class OnSignText implements Listener {
                         ParallelChat.sendParallelMessageTo(player, "There must be at least one empty slot in the chest.");
                         return;
                     }
-                    if (sell.getType() == Material.DIAMOND || sell.getType() == Material.DIAMOND_BLOCK) {
+                    ItemStack currency = parseCurrency(player, lines.get(3).trim());
+                    if (currency == null) {
                         event.setCancelled(true);
-                        ParallelChat.sendParallelMessageTo(player, "You cannot sell diamonds!");
                         return;
                     }
-                    int sellNum;
-                    try {
-                        sellNum = Integer.parseInt(lines.get(1));
-                        if (sell.hasItemMeta()) {
-                            if (sellNum < 1 || sellNum > sell.getMaxStackSize()) {
-                                event.setCancelled(true);
-                                ParallelChat.sendParallelMessageTo(player, "Invalid sell amount! Must be between 1 and " + sell.getMaxStackSize() + ".");
-                                return;
-                            }
-                        } else {
-                            if (sellNum < 1 || sellNum > sell.getMaxStackSize() * 4) {
-                                event.setCancelled(true);
-                                ParallelChat.sendParallelMessageTo(player, "Invalid sell amount! Must be between 1 and " + sell.getMaxStackSize() * 4 + ".");
-                                return;
-                            }
-                        }
-                    } catch (NumberFormatException e) {
+                    currency = currency.asOne();
+                    if (sell.isSimilar(currency) || (ShopTrade.isDefaultCurrency(currency) && sell.getType() == Material.DIAMOND_BLOCK)) {
                         event.setCancelled(true);
-                        ParallelChat.sendParallelMessageTo(player, "Invalid chest shop format!");
+                        ParallelChat.sendParallelMessageTo(player, "You cannot trade a shop's currency for itself!");
                         return;
                     }
-                    int buyNum = Integer.parseInt(lines.get(2));
-                    if (buyNum < 0 || buyNum > 64) {
+                    int sellNum = parseSellAmount(player, sell, lines.get(1));
+                    if (sellNum == -1) {
                         event.setCancelled(true);
-                        ParallelChat.sendParallelMessageTo(player, "Invalid buy amount! Must be between 0 and 64.");
                         return;
                     }
-                    event.line(0, Component.text("ChestShop"));
-                    event.line(1, Component.text(player.getName()));
-                    Component name = sell.displayName();
-                    if (sell.hasItemMeta() && sell.getItemMeta().hasDisplayName()) {
-                        name = sell.getItemMeta().displayName();
-                    }
-                    // warning can be ignored, compiler doesn't recognize the hasDisplayName check
-                    // we have to do this or else long names don't display at all
-                    String trim = LegacyComponentSerializer.legacyAmpersand().serialize(name);
-                    if (trim.length() > 15) {
-                        trim = trim.substring(0, 12);
-                        if (trim.endsWith("&")) {
-                            trim = trim.substring(0, 11);
-                        }
-                        trim += "...";
-                        event.line(2, Component.text(sellNum + " ").append(LegacyComponentSerializer.legacyAmpersand().deserialize(trim)));
-                    }
-                    else {
-                        // if shorter than 13 characters just use the existing component
-                        event.line(2, Component.text(sellNum + " ").append(name));
-                    }
-                    if (buyNum == 0) {
-                        event.line(3, Component.text("Free"));
-                    }
-                    else {
-                        event.line(3, Component.text(buyNum + " diamonds"));
+                    int buyNum = parseBuyAmount(player, currency, lines.get(2));
+                    if (buyNum == -1) {
+                        event.setCancelled(true);
+                        return;
                     }
-                    ChestShops.get().addShop(player.getUniqueId(), UUID.randomUUID(), attached.getLocation(), event.getBlock().getLocation(), sell.getType(), sellNum, buyNum);
+                    writeShopSign(event, mode, player, sell, sellNum, buyNum, currency);
+                    ChestShops.get().addShop(player.getUniqueId(), UUID.randomUUID(), attached.getLocation(), event.getBlock().getLocation(),
+                            sell.getType(), sellNum, buyNum, currency, mode);
                     ParallelChat.sendParallelMessageTo(player, "Chest shop created!");
                 }
                 else {
@@ -148,4 +130,143 @@ public class OnSignText implements Listener {
             }
         }
     }
+
+    // changes the amount and price of a shop from its edited sign. The sign keeps its old text if anything is wrong
+    private void editShop(SignChangeEvent event, Player player, Shop shop) {
+        event.setCancelled(true);
+        if (!shop.owner().equals(player.getUniqueId()))
+            return;
+        List<String> lines = plainLines(event);
+        String header = shop.mode() == ShopMode.BUY ? "ChestShop" : "SellShop";
+        if (!lines.get(0).equals(header)) {
+            ParallelChat.sendParallelMessageTo(player, "To change this shop, keep " + header + " on the first line and write the new amount and price on the next two.");
+            return;
+        }
+        if (!(shop.chestPos().getBlock().getState() instanceof Container chest)) {
+            return;
+        }
+        // a stack from the chest keeps the item's custom name on the sign
+        Inventory inv = chest.getInventory();
+        int slot = inv.first(shop.item());
+        ItemStack sell = slot == -1 ? new ItemStack(shop.item()) : inv.getItem(slot);
+        int sellNum = parseSellAmount(player, sell, lines.get(1));
+        if (sellNum == -1) {
+            return;
+        }
+        int buyNum = parseBuyAmount(player, shop.currency(), lines.get(2));
+        if (buyNum == -1) {
+            return;
+        }
+        event.setCancelled(false);
+        writeShopSign(event, shop.mode(), player, sell, sellNum, buyNum, shop.currency());
+        ChestShops.get().updateShop(shop, shop.item(), sellNum, buyNum);
+        ParallelChat.sendParallelMessageTo(player, "Chest shop updated!");
+    }
+
+    private List<String> plainLines(SignChangeEvent event) {
+        List<String> lines = new ArrayList<>();
+        // thanks kyori
+        event.lines().forEach((l) -> lines.add(PlainTextComponentSerializer.plainText().serialize(l)));
+        return lines;
+    }
+
+    // works out how many items are traded at once, telling the player what is wrong and returning -1 if it can't be used
+    private int parseSellAmount(Player player, ItemStack sell, String line) {
+        int sellNum;
+        try {
+            sellNum = Integer.parseInt(line);
+        } catch (NumberFormatException e) {
+            ParallelChat.sendParallelMessageTo(player, "Invalid chest shop format!");
+            return -1;
+        }
+        int max = sell.hasItemMeta() ? sell.getMaxStackSize() : sell.getMaxStackSize() * 4;
+        if (sellNum < 1 || sellNum > max) {
+            ParallelChat.sendParallelMessageTo(player, "Invalid sell amount! Must be between 1 and " + max + ".");
+            return -1;
+        }
+        return sellNum;
+    }
+
+    // works out the price, telling the player what is wrong and returning -1 if it can't be used
+    private int parseBuyAmount(Player player, ItemStack currency, String line) {
+        int buyNum;
+        try {
+            buyNum = Integer.parseInt(line);
+        } catch (NumberFormatException e) {
+            ParallelChat.sendParallelMessageTo(player, "Invalid chest shop format!");
+            return -1;
+        }
+        if (buyNum < 0 || buyNum > currency.getMaxStackSize()) {
+            ParallelChat.sendParallelMessageTo(player, "Invalid buy amount! Must be between 0 and " + currency.getMaxStackSize() + ".");
+            return -1;
+        }
+        return buyNum;
+    }
+
+    private void writeShopSign(SignChangeEvent event, ShopMode mode, Player owner, ItemStack sell, int sellNum, int buyNum, ItemStack currency) {
+        event.line(0, Component.text(mode == ShopMode.BUY ? "ChestShop" : "SellShop"));
+        event.line(1, Component.text(owner.getName()));
+        Component name = sell.displayName();
+        if (sell.hasItemMeta() && sell.getItemMeta().hasDisplayName()) {
+            name = sell.getItemMeta().displayName();
+        }
+        event.line(2, Component.text(sellNum + " ").append(trimName(name)));
+        if (buyNum == 0) {
+            event.line(3, Component.text("Free"));
+        }
+        else if (ShopTrade.isDefaultCurrency(currency)) {
+            event.line(3, Component.text(buyNum + " diamonds"));
+        }
+        else {
+            Component currencyName = currency.displayName();
+            if (currency.hasItemMeta() && currency.getItemMeta().hasDisplayName()) {
+                currencyName = currency.getItemMeta().displayName();
+            }
+            event.line(3, Component.text(buyNum + " ").append(trimName(currencyName)));
+        }
+    }
+
+    // works out the currency named on the sign, telling the player what is wrong and returning null if it can't be used
+    private ItemStack parseCurrency(Player player, String line) {
+        if (line.isEmpty()) {
+            return ShopTrade.defaultCurrency();
+        }
+        ItemStack currency;
+        if (line.equalsIgnoreCase("offhand")) {
+            currency = player.getInventory().getItemInOffHand();
+            if (currency.getType().isAir()) {
+                ParallelChat.sendParallelMessageTo(player, "Hold the currency in your off hand to use offhand as the currency!");
+                return null;
+            }
+        }
+        else {
+            Material material = Material.matchMaterial(line.replace(' ', '_'));
+            if (material == null || !material.isItem() || material.isAir()) {
+                ParallelChat.sendParallelMessageTo(player, "Unknown currency: " + line + ". Leave the last line empty to use diamonds.");
+                return null;
+            }
+            currency = new ItemStack(material);
+        }
+        if (currency.getMaxStackSize() == 1) {
+            ParallelChat.sendParallelMessageTo(player, "The currency must be stackable!");
+            return null;
+        }
+        return currency;
+    }
+
+    // warning can be ignored, compiler doesn't recognize the hasDisplayName check
+    // we have to do this or else long names don't display at all
+    private Component trimName(Component name) {
+        String trim = LegacyComponentSerializer.legacyAmpersand().serialize(name);
+        if (trim.length() > 15) {
+            trim = trim.substring(0, 12);
+            if (trim.endsWith("&")) {
+                trim = trim.substring(0, 11);
+            }
+            trim += "...";
+            return LegacyComponentSerializer.legacyAmpersand().deserialize(trim);
+        }
+        // if shorter than 13 characters just use the existing component
+        return name;
+    }
 }
@@ -3,18 +3,20 @@ package parallelmc.parallelutils.modules.effectextender;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.PluginManager;
+import org.bukkit.potion.PotionEffectType;
 import org.jetbrains.annotations.NotNull;
 import parallelmc.parallelutils.Constants;
 import parallelmc.parallelutils.ParallelClassLoader;
 import parallelmc.parallelutils.ParallelModule;
 import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.database.WriteBehindStore;
 import parallelmc.parallelutils.modules.effectextender.commands.ParallelEffectsCommand;
 import parallelmc.parallelutils.modules.effectextender.listeners.EffectListener;
 import parallelmc.parallelutils.modules.effectextender.listeners.JoinLeaveListener;
 
 import java.net.URLClassLoader;
 import java.sql.*;
-import java.util.List;
+import java.util.*;
 import java.util.logging.Level;
 
 /**
@@ -24,6 +26,8 @@ public class EffectExtender extends ParallelModule {
 
     private ParallelUtils puPlugin;
 
+    private WriteBehindStore<UUID, HashMap<PotionEffectType, Integer>> store;
+
     public EffectExtender(ParallelClassLoader classLoader, List<String> dependents) {
         super(classLoader, dependents);
     }
@@ -51,26 +55,47 @@ public class EffectExtender extends ParallelModule {
         }
 
         // create effects table if it doesn't exist
-        try (Connection conn = puPlugin.getDbConn()) {
-            if (conn == null) throw new SQLException("Unable to establish connection!");
-
-            Statement statement = conn.createStatement();
-            statement.setQueryTimeout(15);
-            statement.execute("""
-                            create table if not exists PlayerEffects
-                            (
-                                UUID            varchar(36) not null,
-                                EffectType      varchar(20) not null,
-                                MaxDuration     int         not null
-                            );""");
-            conn.commit();
-            statement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        puPlugin.getDbExecutor().run(getName(), conn -> {
+            try (Statement statement = conn.createStatement()) {
+                statement.setQueryTimeout(15);
+                statement.execute("""
+                                create table if not exists PlayerEffects
+                                (
+                                    UUID            varchar(36) not null,
+                                    EffectType      varchar(20) not null,
+                                    MaxDuration     int         not null
+                                );""");
+            }
+        });
+
+        // each player is stored as several rows, so their old rows are cleared out and replaced rather than upserted
+        this.store = puPlugin.createWriteBehindStore(getName(), (conn, upserts, deletes) -> {
+            try (PreparedStatement delete = conn.prepareStatement("delete from PlayerEffects where UUID = ?");
+                 PreparedStatement insert = conn.prepareStatement("insert into PlayerEffects values (?, ?, ?)")) {
+                delete.setQueryTimeout(60);
+                insert.setQueryTimeout(60);
+                for (UUID uuid : deletes) {
+                    delete.setString(1, uuid.toString());
+                    delete.addBatch();
+                }
+                // double foreach lets goooo
+                for (var player : upserts.entrySet()) {
+                    delete.setString(1, player.getKey().toString());
+                    delete.addBatch();
+                    for (var effect : player.getValue().entrySet()) {
+                        insert.setString(1, player.getKey().toString());
+                        insert.setString(2, effect.getKey().getName());
+                        insert.setInt(3, effect.getValue());
+                        insert.addBatch();
+                    }
+                }
+                delete.executeBatch();
+                insert.executeBatch();
+            }
+        });
 
         manager.registerEvents(new EffectListener(), plugin);
-        manager.registerEvents(new JoinLeaveListener(puPlugin), plugin);
+        manager.registerEvents(new JoinLeaveListener(puPlugin, store), plugin);
 
         puPlugin.addCommand("effects", new ParallelEffectsCommand());
 
@@ -80,36 +105,11 @@ public class EffectExtender extends ParallelModule {
     @Override
     public void onDisable() {
         // move each player's effects from the hashmap into the db
-        try (Connection conn = puPlugin.getDbConn()) {
-            if (conn == null) throw new SQLException("Unable to establish connection!");
-
-            // prepare a statement to send in bulk
-            PreparedStatement statement = conn.prepareStatement("insert into PlayerEffects values (?, ?, ?)");
-            statement.setQueryTimeout(60);
-
-            // double foreach lets goooo
-            EffectListener.playerEffects.forEach((player, effects) -> {
-                effects.forEach((effect, maxDuration) -> {
-                    try {
-                        String uuid = player.getUniqueId().toString();
-                        statement.setString(1, uuid);
-                        statement.setString(2, effect.getName());
-                        statement.setInt(3, maxDuration);
-                        statement.addBatch();
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                    }
-                });
-            });
+        EffectListener.playerEffects.forEach((player, effects) ->
+                store.markDirty(player.getUniqueId(), new HashMap<>(effects)));
+        EffectListener.playerEffects.clear();
 
-            statement.executeBatch();
-
-            conn.commit();
-
-            statement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        store.close(puPlugin.getConfig().getLong("sql.write-behind.shutdown-timeout", 15000));
     }
 
     @Override
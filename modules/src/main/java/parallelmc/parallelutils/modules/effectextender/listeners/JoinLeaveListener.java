@@ -1,6 +1,5 @@
 package parallelmc.parallelutils.modules.effectextender.listeners;
 
-import org.bukkit.Bukkit;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -8,57 +7,71 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.potion.PotionEffectType;
 import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.database.DatabaseExecutor;
+import parallelmc.parallelutils.database.WriteBehindStore;
 
 import java.sql.*;
 import java.util.HashMap;
+import java.util.UUID;
+import java.util.logging.Level;
 
 public class JoinLeaveListener implements Listener {
 
-    private final ParallelUtils puPlugin;
+    private static final String MODULE = "EffectsExtender";
 
-    public JoinLeaveListener(ParallelUtils puPlugin) {
-        this.puPlugin = puPlugin;
+    private final DatabaseExecutor executor;
+    private final WriteBehindStore<UUID, HashMap<PotionEffectType, Integer>> store;
+
+    public JoinLeaveListener(ParallelUtils puPlugin, WriteBehindStore<UUID, HashMap<PotionEffectType, Integer>> store) {
+        this.executor = puPlugin.getDbExecutor();
+        this.store = store;
     }
 
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
-        HashMap<PotionEffectType, Integer> effects = new HashMap<>();
         LivingEntity player = event.getPlayer();
-        String uuid = player.getUniqueId().toString();
-
-        Bukkit.getScheduler().runTaskAsynchronously(puPlugin, new Runnable() {
-            @Override
-            public void run() {
-                try (Connection conn = puPlugin.getDbConn()) {
-                    if (conn == null) throw new SQLException("Unable to establish connection!");
-
-                    Statement statement = conn.createStatement();
-                    statement.setQueryTimeout(10);
-                    ResultSet result = statement.executeQuery(
-                            "select * from PlayerEffects where UUID = '" + uuid + "'");
-
-                    while (result.next()) {
-                        PotionEffectType type = PotionEffectType.getByName(result.getString("EffectType"));
-                        int duration = result.getInt("MaxDuration");
-                        effects.put(type, duration);
-                    }
-
-                    // add player effects to hashmap when they join
-                    if (effects.size() > 0) {
-                        EffectListener.playerEffects.put(player, effects);
-                        // after we put effects into live hashmap we can remove them from the db
-                        statement.execute("delete from PlayerEffects where UUID = '" + uuid + "'");
-                    }
-
-                    conn.commit();
-
-                    statement.close();
+        UUID playerUuid = player.getUniqueId();
+        String uuid = playerUuid.toString();
+
+        // if they rejoined before their effects were written, take them straight back out of the store
+        WriteBehindStore.Pending<HashMap<PotionEffectType, Integer>> pending = store.getPending(playerUuid);
+        if (pending.state() != WriteBehindStore.Pending.State.NONE) {
+            if (pending.state() == WriteBehindStore.Pending.State.CHANGED) {
+                EffectListener.playerEffects.put(player, pending.value());
+            }
+            // replaces the pending write with a delete so nothing is left behind in the db
+            store.markDeleted(playerUuid);
+            return;
+        }
+
+        executor.supply(MODULE, conn -> {
+            HashMap<PotionEffectType, Integer> effects = new HashMap<>();
+            try (PreparedStatement select = conn.prepareStatement("select * from PlayerEffects where UUID = ?");
+                 PreparedStatement delete = conn.prepareStatement("delete from PlayerEffects where UUID = ?")) {
+                select.setQueryTimeout(10);
+                select.setString(1, uuid);
+                ResultSet result = select.executeQuery();
+
+                while (result.next()) {
+                    PotionEffectType type = PotionEffectType.getByName(result.getString("EffectType"));
+                    int duration = result.getInt("MaxDuration");
+                    effects.put(type, duration);
+                }
 
-                } catch (SQLException e) {
-                    e.printStackTrace();
+                // after we put effects into live hashmap we can remove them from the db
+                if (effects.size() > 0) {
+                    delete.setString(1, uuid);
+                    delete.execute();
                 }
             }
-        });
+            return effects;
+        }, effects -> {
+            // add player effects to hashmap when they join
+            // this runs back on the main thread since the effect handlers also touch the map
+            if (effects.size() > 0) {
+                EffectListener.playerEffects.put(player, effects);
+            }
+        }, ex -> ParallelUtils.log(Level.WARNING, "Failed to load effects for " + uuid));
     }
 
     @EventHandler
@@ -69,36 +82,9 @@ public class JoinLeaveListener implements Listener {
         if (!EffectListener.playerEffects.containsKey(player))
             return;
 
-        Bukkit.getScheduler().runTaskAsynchronously(puPlugin, new Runnable() {
-            @Override
-            public void run() {
-                try (Connection conn = puPlugin.getDbConn()) {
-                    if (conn == null) throw new SQLException("Unable to establish connection!");
-
-                    HashMap<PotionEffectType, Integer> effects = EffectListener.playerEffects.get(player);
-                    String uuid = player.getUniqueId().toString();
-                    // prepare a batch of sql statements for each effect
-                    PreparedStatement statement = conn.prepareStatement("insert into PlayerEffects values (?, ?, ?)");
-                    statement.setQueryTimeout(60);
-                    effects.forEach((effect, maxDuration) -> {
-                        // why do I HAVE to handle SQLExceptions
-                        try {
-                            statement.setString(1, uuid);
-                            statement.setString(2, effect.getName());
-                            statement.setInt(3, maxDuration);
-                            statement.addBatch();
-                        } catch (SQLException e) {
-                            e.printStackTrace();
-                        }
-                    });
-                    statement.executeBatch();
-
-                    conn.commit();
-                    statement.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
-            }
-        });
+        // take the effects out now so the live map can't change after we hand off to the database thread
+        // and so onDisable doesn't save them a second time
+        HashMap<PotionEffectType, Integer> effects = EffectListener.playerEffects.remove(player);
+        store.markDirty(player.getUniqueId(), effects);
     }
 }
@@ -1,97 +1,83 @@
 package parallelmc.parallelutils.modules.expstorage;
 
 import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.database.DatabaseExecutor;
 
 import java.sql.*;
+import java.util.concurrent.CompletableFuture;
 
 public class ExpDatabase {
 
-	private final ParallelUtils puPlugin;
+	private static final String MODULE = "ExpStorage";
+
+	private final DatabaseExecutor executor;
 
 	public ExpDatabase(ParallelUtils puPlugin) {
-		this.puPlugin = puPlugin;
+		this.executor = puPlugin.getDbExecutor();
 	}
 
 	/**
 	 * Retrieves a player's stored experience from the database
 	 * @param uuid The player's UUID
-	 * @return The number of stored experience points the player has
+	 * @return A future completed with the number of stored experience points the player has
 	 */
-	public int getExpForPlayer(String uuid) {
-		try (Connection dbConn = puPlugin.getDbConn()){
-			if (dbConn == null) throw new SQLException("Unable to establish connection!");
-			Statement statement = dbConn.createStatement();
-			statement.setQueryTimeout(15);
-			ResultSet result = statement.executeQuery("SELECT * FROM ExpStorage WHERE UUID = '" + uuid +"'");
-			if (result.next()) {
-				int exp = result.getInt("StoredExp");
-				statement.close();
-				return exp;
-			}
-			else {
+	public CompletableFuture<Integer> getExpForPlayer(String uuid) {
+		return executor.supply(MODULE, conn -> {
+			try (PreparedStatement statement = conn.prepareStatement("SELECT StoredExp FROM ExpStorage WHERE UUID = ?")) {
+				statement.setQueryTimeout(15);
+				statement.setString(1, uuid);
+				ResultSet result = statement.executeQuery();
 				// if the player doesn't exist in the db just return 0
-				statement.close();
-				return 0;
+				return result.next() ? result.getInt("StoredExp") : 0;
 			}
-		} catch (SQLException e) {
-			e.printStackTrace();
-			return 0;
-		}
+		});
 	}
 
 	/**
 	 * Stores a player's experience into the database
 	 * @param uuid The player's UUID
 	 * @param exp How much experience to store
+	 * @return A future that completes once the experience is stored
 	 */
-	public boolean storeExpForPlayer(String uuid, int exp) {
-		try (Connection dbConn = puPlugin.getDbConn()){
-			if (dbConn == null) throw new SQLException("Unable to establish connection!");
-
+	public CompletableFuture<Void> storeExpForPlayer(String uuid, int exp) {
+		return executor.run(MODULE, conn -> {
 			// use ON DUPLICATE KEY to simply update the data if the player already exists in the db
 			// https://dev.mysql.com/doc/refman/8.0/en/insert-on-duplicate.html
-			PreparedStatement statement = dbConn.prepareStatement(
-					"INSERT INTO ExpStorage (UUID, StoredExp) VALUES (?, ?) ON DUPLICATE KEY UPDATE StoredExp = StoredExp + ?"
-			);
-			statement.setQueryTimeout(15);
-			statement.setString(1, uuid);
-			statement.setInt(2, exp);
-			statement.setInt(3, exp);
-			statement.execute();
-			dbConn.commit();
-			statement.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-			return false;
-		}
-		return true;
+			try (PreparedStatement statement = conn.prepareStatement(
+					"INSERT INTO ExpStorage (UUID, StoredExp) VALUES (?, ?) ON DUPLICATE KEY UPDATE StoredExp = StoredExp + ?")) {
+				statement.setQueryTimeout(15);
+				statement.setString(1, uuid);
+				statement.setInt(2, exp);
+				statement.setInt(3, exp);
+				statement.execute();
+			}
+		});
 	}
 
 	/**
-	 * Withdraws exp from the database to give to the player
+	 * Withdraws exp from the database to give to the player. The stored amount is checked and taken in one statement,
+	 * so two withdrawals at once can't both take the same experience
 	 * @param uuid The player's UUID
 	 * @param exp How much experience to withdraw
+	 * @return A future completed with true if the experience was withdrawn, or false if the player didn't have enough
 	 */
-	public boolean withdrawExpForPlayer(String uuid, int exp) {
-		try (Connection dbConn = puPlugin.getDbConn()){
-			if (dbConn == null) throw new SQLException("Unable to establish connection!");
+	public CompletableFuture<Boolean> withdrawExpForPlayer(String uuid, int exp) {
+		return executor.supply(MODULE, conn -> {
+			try (PreparedStatement statement = conn.prepareStatement(
+					"UPDATE ExpStorage SET StoredExp = StoredExp - ? WHERE UUID = ? AND StoredExp >= ?")) {
+				statement.setQueryTimeout(15);
+				statement.setInt(1, exp);
+				statement.setString(2, uuid);
+				statement.setInt(3, exp);
+				return statement.executeUpdate() == 1;
+			}
+		});
+	}
 
-			// assume the player already exists in the database
-			// if a player has 0 stored experience and tries to withdraw, it should never get here
-			// see WithdrawExperience.java L28
-			PreparedStatement statement = dbConn.prepareStatement(
-					"UPDATE ExpStorage SET StoredExp = StoredExp - ? WHERE UUID = ?"
-			);
-			statement.setQueryTimeout(15);
-			statement.setInt(1, exp);
-			statement.setString(2, uuid);
-			statement.execute();
-			dbConn.commit();
-			statement.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-			return false;
-		}
-		return true;
+	/**
+	 * @return The executor used for this database, for hopping back onto the main thread
+	 */
+	public DatabaseExecutor getExecutor() {
+		return executor;
 	}
 }
@@ -5,7 +5,6 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
 import parallelmc.parallelutils.ParallelUtils;
 import parallelmc.parallelutils.modules.expstorage.ExpConverter;
@@ -88,23 +87,13 @@ public class DepositExperience implements CommandExecutor {
 
 	private void depositWithCallback(int amount, String uuid, Player player,
 	                                 DepositExpSuccessfulCallback successfulCallback, DepositExpFailCallback failCallback) {
-		new BukkitRunnable() {
-			@Override
-			public void run() {
-				boolean successful = db.storeExpForPlayer(uuid, amount);
-
-				new BukkitRunnable() {
-					@Override
-					public void run() {
-						if (successful) {
-							successfulCallback.successfulDeposit(amount, player);
-						} else {
-							failCallback.failedDeposit(player);
-						}
-					}
-				}.runTask(puPlugin);
+		db.storeExpForPlayer(uuid, amount).whenCompleteAsync((v, ex) -> {
+			if (ex == null) {
+				successfulCallback.successfulDeposit(amount, player);
+			} else {
+				failCallback.failedDeposit(player);
 			}
-		}.runTaskAsynchronously(puPlugin);
+		}, db.getExecutor().mainThread());
 	}
 
 	private interface DepositExpSuccessfulCallback {
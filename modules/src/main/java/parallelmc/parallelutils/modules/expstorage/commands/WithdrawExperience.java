@@ -5,7 +5,6 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
 import parallelmc.parallelutils.ParallelUtils;
 import parallelmc.parallelutils.modules.expstorage.ExpDatabase;
@@ -32,22 +31,13 @@ public class WithdrawExperience implements CommandExecutor {
 			}
 			String uuid = player.getUniqueId().toString();
 
-			int totalExp = db.getExpForPlayer(uuid);
-			if (args.length == 0 || totalExp == 0) {
-				ParallelChat.sendMessageTo(player, "You have " + totalExp + " experience points available to withdraw.");
-				return true;
-			}
-			String amount = args[0].toLowerCase();
-
-			if (amount.equals("all")) {
-				withdrawExp(totalExp, uuid, player);
-			}
-			else {
-				int requestedExperience;
+			// parse the requested amount up front so bad input can still fall back to the plugin.yml usage
+			boolean all = args.length > 0 && args[0].equalsIgnoreCase("all");
+			int requestedExperience = 0;
+			if (args.length > 0 && !all) {
 				try {
-					requestedExperience = Integer.parseInt(amount);
+					requestedExperience = Integer.parseInt(args[0]);
 				} catch (NumberFormatException e) {
-					// use plugin.yml usage
 					return false;
 				}
 
@@ -55,14 +45,34 @@ public class WithdrawExperience implements CommandExecutor {
 					ParallelChat.sendMessageTo(player, "You cannot withdraw zero or negative experience points!");
 					return true;
 				}
+			}
+			int requested = requestedExperience;
 
-				if (totalExp < requestedExperience) {
-					ParallelChat.sendMessageTo(player, "You do not have enough stored experience points to withdraw " + requestedExperience + " points!");
-					return true;
+			// the stored amount lives in the database, so check it off the main thread and finish up back on it
+			db.getExpForPlayer(uuid).whenCompleteAsync((totalExp, ex) -> {
+				if (ex != null) {
+					ParallelChat.sendMessageTo(player, "Failed to look up your stored experience!");
+					return;
 				}
+				if (!player.isOnline()) return;
 
-				withdrawExp(requestedExperience, uuid, player);
-			}
+				if (args.length == 0 || totalExp == 0) {
+					ParallelChat.sendMessageTo(player, "You have " + totalExp + " experience points available to withdraw.");
+					return;
+				}
+
+				if (all) {
+					withdrawExp(totalExp, uuid, player);
+					return;
+				}
+
+				if (totalExp < requested) {
+					ParallelChat.sendMessageTo(player, "You do not have enough stored experience points to withdraw " + requested + " points!");
+					return;
+				}
+
+				withdrawExp(requested, uuid, player);
+			}, db.getExecutor().mainThread());
 			return true;
 		}
 
@@ -86,23 +96,16 @@ public class WithdrawExperience implements CommandExecutor {
 
 	private void depositWithCallback(int amount, String uuid, Player player,
 	                                 WithdrawExpSuccessCallback successfulCallback, WithdrawExpFailCallback failCallback) {
-		new BukkitRunnable() {
-			@Override
-			public void run() {
-				boolean successful = db.withdrawExpForPlayer(uuid, amount);
-
-				new BukkitRunnable() {
-					@Override
-					public void run() {
-						if (successful) {
-							successfulCallback.successfulWithdraw(amount, player);
-						} else {
-							failCallback.failedWithdraw(player);
-						}
-					}
-				}.runTask(puPlugin);
+		// the experience is only given if the database actually took it, since another withdrawal may have taken it first
+		db.withdrawExpForPlayer(uuid, amount).whenCompleteAsync((withdrawn, ex) -> {
+			if (ex != null) {
+				failCallback.failedWithdraw(player);
+			} else if (withdrawn) {
+				successfulCallback.successfulWithdraw(amount, player);
+			} else {
+				ParallelChat.sendMessageTo(player, "You do not have enough stored experience points to withdraw " + amount + " points!");
 			}
-		}.runTaskAsynchronously(puPlugin);
+		}, db.getExecutor().mainThread());
 	}
 
 	private interface WithdrawExpSuccessCallback {
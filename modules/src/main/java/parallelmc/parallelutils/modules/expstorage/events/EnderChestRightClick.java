@@ -1,6 +1,5 @@
 package parallelmc.parallelutils.modules.expstorage.events;
 
-import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -29,13 +28,9 @@ public class EnderChestRightClick implements Listener {
 			if (event.getClickedBlock().getType() == Material.ENDER_CHEST) {
 				Player player = event.getPlayer();
 
-				Bukkit.getScheduler().runTaskAsynchronously(puPlugin, new Runnable() {
-					@Override
-					public void run() {
-						int totalExp = db.getExpForPlayer(player.getUniqueId().toString());
-						ParallelChat.sendMessageTo(player, "You currently have " + totalExp + " stored experience, use /helpexp to learn more.");
-					}
-				});
+				db.getExpForPlayer(player.getUniqueId().toString()).thenAcceptAsync(totalExp ->
+						ParallelChat.sendMessageTo(player, "You currently have " + totalExp + " stored experience, use /helpexp to learn more."),
+						db.getExecutor().mainThread());
 			}
 		}
 	}
@@ -2,7 +2,6 @@ package parallelmc.parallelutils.modules.parallelchat;
 
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.OfflinePlayer;
-import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import parallelmc.parallelutils.ParallelUtils;
 
@@ -36,9 +35,8 @@ public class DNDExpansion extends PlaceholderExpansion {
     @Override
     public String onRequest(OfflinePlayer player, String params) {
         if (params.equals("dnd")) {
-            Player p = player.getPlayer();
-            if (p != null) {
-                if (ParallelChat.dndPlayers.containsKey(p)) {
+            if (player.isOnline()) {
+                if (ParallelChat.get().getDoNotDisturb().isDnd(player.getUniqueId())) {
                     return "§c§lDND";
                 }
                 else return "";
@@ -0,0 +1,173 @@
+package parallelmc.parallelutils.modules.parallelchat;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which players are in Do Not Disturb mode. A player can turn it on themselves with /dnd, or be put in it for a
+ * while by a window, such as while they are running a parkour course or playing a tutorial.
+ *
+ * The online players in DND are kept in a live concurrent map, so chat only has to remove a small precomputed set
+ * from its viewers. That map is what every lookup reads, since chat and PlaceholderAPI can ask from the async chat
+ * thread. Everything else is only read and changed on the main thread
+ */
+public class DoNotDisturbManager {
+
+    private static final Component DND_SUFFIX = Component.text(" DND", NamedTextColor.RED);
+
+    private final Plugin plugin;
+    // window reasons that are allowed to put players in DND, from the config
+    private final Set<String> enabledWindows;
+
+    private final HashSet<UUID> toggled = new HashSet<>();
+    private final HashMap<UUID, HashMap<String, BukkitTask>> windows = new HashMap<>();
+    // tab list names from before a player went into DND
+    private final HashMap<UUID, Component> listNames = new HashMap<>();
+
+    private final ConcurrentHashMap<UUID, Player> inDnd = new ConcurrentHashMap<>();
+
+    /**
+     * @param plugin The plugin timed windows are scheduled under
+     * @param enabledWindows The window reasons that put players in DND
+     */
+    public DoNotDisturbManager(Plugin plugin, Collection<String> enabledWindows) {
+        this.plugin = plugin;
+        this.enabledWindows = new HashSet<>(enabledWindows);
+    }
+
+    /**
+     * @param uuid A player's UUID
+     * @return True if the player is online and in DND for any reason. Safe to call from any thread
+     */
+    public boolean isDnd(UUID uuid) {
+        return inDnd.containsKey(uuid);
+    }
+
+    /**
+     * @param uuid A player's UUID
+     * @return True if the player turned DND on themselves
+     */
+    public boolean isToggled(UUID uuid) {
+        return toggled.contains(uuid);
+    }
+
+    /**
+     * @return Every online player in DND. Safe to read from any thread
+     */
+    public Collection<Player> getDndPlayers() {
+        return Collections.unmodifiableCollection(inDnd.values());
+    }
+
+    /**
+     * Turns a player's own DND on or off
+     * @param player The player
+     * @return True if DND is now on
+     */
+    public boolean toggle(Player player) {
+        UUID uuid = player.getUniqueId();
+        if (!toggled.remove(uuid)) {
+            toggled.add(uuid);
+        }
+        update(player);
+        return toggled.contains(uuid);
+    }
+
+    /**
+     * Puts a player in DND until the window is ended
+     * @param player The player
+     * @param reason What the window is for, such as parkour or tutorial
+     */
+    public void startWindow(Player player, String reason) {
+        startWindow(player, reason, 0);
+    }
+
+    /**
+     * Puts a player in DND for a while. Starting a window that is already open restarts its timer
+     * @param player The player
+     * @param reason What the window is for, such as parkour or tutorial
+     * @param ticks How long the window lasts, or 0 to keep it open until it is ended
+     */
+    public void startWindow(Player player, String reason, long ticks) {
+        if (!enabledWindows.contains(reason))
+            return;
+        UUID uuid = player.getUniqueId();
+        BukkitTask task = ticks > 0 ? plugin.getServer().getScheduler().runTaskLater(plugin, () -> endWindow(player, reason), ticks) : null;
+        BukkitTask old = windows.computeIfAbsent(uuid, k -> new HashMap<>()).put(reason, task);
+        if (old != null) {
+            old.cancel();
+        }
+        update(player);
+    }
+
+    /**
+     * Ends a DND window. The player stays in DND if they have other windows open or turned it on themselves
+     * @param player The player
+     * @param reason The reason the window was started with
+     */
+    public void endWindow(Player player, String reason) {
+        UUID uuid = player.getUniqueId();
+        HashMap<String, BukkitTask> open = windows.get(uuid);
+        if (open == null || !open.containsKey(reason))
+            return;
+        BukkitTask task = open.remove(reason);
+        if (task != null) {
+            task.cancel();
+        }
+        if (open.isEmpty()) {
+            windows.remove(uuid);
+        }
+        update(player);
+    }
+
+    /**
+     * Sets up a player who just joined
+     * @param player The player
+     */
+    public void join(Player player) {
+        update(player);
+    }
+
+    /**
+     * Forgets everything about a player who is leaving, including their own DND
+     * @param player The player
+     */
+    public void quit(Player player) {
+        UUID uuid = player.getUniqueId();
+        toggled.remove(uuid);
+        HashMap<String, BukkitTask> open = windows.remove(uuid);
+        if (open != null) {
+            open.values().stream().filter(Objects::nonNull).forEach(BukkitTask::cancel);
+        }
+        listNames.remove(uuid);
+        inDnd.remove(uuid);
+    }
+
+    // adds or removes a player from the live map and updates their tab list name
+    private void update(Player player) {
+        UUID uuid = player.getUniqueId();
+        if (!player.isOnline()) {
+            inDnd.remove(uuid);
+            return;
+        }
+        if (toggled.contains(uuid) || windows.containsKey(uuid)) {
+            if (inDnd.putIfAbsent(uuid, player) == null) {
+                // save their current tab name
+                listNames.put(uuid, player.playerListName());
+                player.playerListName(player.playerListName().append(DND_SUFFIX));
+            }
+        }
+        else {
+            inDnd.remove(uuid);
+            Component listName = listNames.remove(uuid);
+            if (listName != null) {
+                player.playerListName(listName);
+            }
+        }
+    }
+}
@@ -1,12 +1,9 @@
 package parallelmc.parallelutils.modules.parallelchat;
 
-import me.clip.placeholderapi.PlaceholderAPI;
 import net.kyori.adventure.bossbar.BossBar;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.minimessage.MiniMessage;
-import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
-import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import net.luckperms.api.LuckPermsProvider;
 import org.bukkit.Bukkit;
@@ -23,40 +20,64 @@ import parallelmc.parallelutils.Constants;
 import parallelmc.parallelutils.ParallelClassLoader;
 import parallelmc.parallelutils.ParallelModule;
 import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.database.SchemaTools;
+import parallelmc.parallelutils.database.WriteBehindStore;
+import parallelmc.parallelutils.modules.parallelchat.audience.PermissionAudience;
+import parallelmc.parallelutils.modules.parallelchat.audience.PermissionAudiences;
+import parallelmc.parallelutils.modules.parallelchat.broadcast.AutoBroadcaster;
+import parallelmc.parallelutils.modules.parallelchat.chatrooms.ChatRoomHistory;
 import parallelmc.parallelutils.modules.parallelchat.chatrooms.ChatRoomManager;
 import parallelmc.parallelutils.modules.parallelchat.commands.*;
 import parallelmc.parallelutils.modules.parallelchat.commands.chatrooms.*;
 import parallelmc.parallelutils.modules.parallelchat.emojis.EmojiManager;
 import parallelmc.parallelutils.modules.parallelchat.events.*;
+import parallelmc.parallelutils.modules.parallelchat.filter.WordFilter;
+import parallelmc.parallelutils.modules.parallelchat.format.ChatPrefix;
+import parallelmc.parallelutils.modules.parallelchat.format.ChatPrefixCache;
+import parallelmc.parallelutils.modules.parallelchat.format.ChatTemplate;
 import parallelmc.parallelutils.modules.parallelchat.events.OnChatMessage;
 import parallelmc.parallelutils.modules.parallelchat.commands.ParallelFakeJoin;
 import parallelmc.parallelutils.modules.parallelchat.commands.ParallelFakeLeave;
 import parallelmc.parallelutils.modules.parallelchat.gui.JoinLeaveInventory;
 import parallelmc.parallelutils.modules.parallelchat.gui.JoinLeaveSelectInventory;
+import parallelmc.parallelutils.modules.parallelchat.logging.ChatLogAppender;
 import parallelmc.parallelutils.modules.parallelchat.messages.CustomMessageManager;
+import parallelmc.parallelutils.modules.parallelchat.messages.JoinAnnouncer;
+import parallelmc.parallelutils.modules.parallelchat.pipeline.ChatPipeline;
+import parallelmc.parallelutils.modules.parallelchat.spam.ChatThrottle;
+import parallelmc.parallelutils.modules.parallelchat.spy.SpyIndex;
 import parallelmc.parallelutils.util.GUIManager;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 import java.sql.*;
 import java.util.*;
 import java.util.logging.Level;
 
 public class ParallelChat extends ParallelModule {
 
-    // possibly put ParallelChat settings somewhere else
-    public static HashMap<Player, Component> dndPlayers = new HashMap<>();
+    private DoNotDisturbManager doNotDisturb;
 
     public HashMap<UUID, UUID> playerLastMessaged = new HashMap<>();
 
-    private final HashMap<String, String> groupFormats = new HashMap<>();
+    // used when group formats are missing from the config, mimics the default rank
+    private static final ChatTemplate DEFAULT_TEMPLATE = ChatTemplate.compile("<tag><gray><displayname><donorrank> > <reset><message>");
+
+    private final HashMap<String, ChatTemplate> groupTemplates = new HashMap<>();
     private boolean isUsingDefault = false;
 
+    private ChatPrefixCache prefixCache;
+
+    // the players who can see each privileged channel
+    private final PermissionAudiences audiences = new PermissionAudiences();
+    private final PermissionAudience staffAudience = audiences.create("parallelutils.staffchat");
+    private final PermissionAudience teamAudience = audiences.create("parallelutils.teamchat");
+    private final PermissionAudience loreAudience = audiences.create("parallelutils.lorechat");
+    private final PermissionAudience antiSlurAudience = audiences.create("parallelutils.notify.antislur");
+    // commands that change a player's tag or pronouns, without the slash
+    private final HashSet<String> prefixRefreshCommands = new HashSet<>();
+
     private static final HashSet<UUID> playersInStaffChat = new HashSet<>();
     public static final BossBar staffChatBar = BossBar.bossBar(Component.text("Staff Chat", NamedTextColor.AQUA), 1, BossBar.Color.PURPLE, BossBar.Overlay.PROGRESS);
 
@@ -68,31 +89,42 @@ public class ParallelChat extends ParallelModule {
 
     private final FileConfiguration bannedWordsConfig = new YamlConfiguration();
     public List<String> bannedWords = new ArrayList<>();
+    public List<String> wholeBannedWords = new ArrayList<>();
+    public List<String> allowedWords = new ArrayList<>();
 
-    public List<Component> autoMessages = new ArrayList<>();
-
-    public boolean capsEnabled = false;
-    public int capsMinMsgLength = -1;
-    public int capsPercentage = -1;
+    // rebuilt whenever one of the lists above changes, read from the async chat thread
+    private volatile WordFilter wordFilter = WordFilter.build(List.of(), List.of(), List.of());
 
     public String broadcastMsg = null;
     public String announceMsg = null;
 
     public HashMap<UUID, SocialSpyOptions> socialSpyUsers = new HashMap<>();
 
+    private WriteBehindStore<UUID, SocialSpyOptions> socialSpyStore;
+
+    private final SpyIndex spyIndex = new SpyIndex();
+
+    private ChatThrottle chatThrottle;
+
+    private JoinAnnouncer joinAnnouncer;
+
+    private AutoBroadcaster autoBroadcaster;
+
     public boolean isChatDisabled = false;
 
-    public BufferedWriter chatLogWriter;
-    public BufferedWriter cmdLogWriter;
+    private ChatLogAppender chatLog;
+    private ChatLogAppender commandLog;
 
     public ChatRoomManager chatRoomManager;
 
+    private ChatRoomHistory chatRoomHistory;
+
+    private ChatPipeline chatPipeline;
+
     public EmojiManager emojiManager;
 
     public CustomMessageManager customMessageManager;
 
-    private final Random rand = new Random();
-
     private ParallelUtils puPlugin;
 
     private ChatroomCommands chatroomCommands;
@@ -134,40 +166,61 @@ public class ParallelChat extends ParallelModule {
         // feel free to change it
         Instance = this;
 
-        try (Connection conn = puPlugin.getDbConn()) {
-            if (conn == null) throw new SQLException("Unable to establish connection!");
-            Statement statement = conn.createStatement();
-            statement.setQueryTimeout(15);
-            statement.execute("""
-                    create table if not exists SocialSpy
-                    (
-                        UUID        varchar(36) not null,
-                        SocSpy      tinyint     not null,
-                        CmdSpy      tinyint     not null,
-                        ChatRoomSpy tinyint     not null
-                    );""");
-            conn.commit();
-            statement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        puPlugin.getDbExecutor().run(getName(), conn -> {
+            try (Statement statement = conn.createStatement()) {
+                statement.setQueryTimeout(15);
+                statement.execute("""
+                        create table if not exists SocialSpy
+                        (
+                            UUID        varchar(36) not null,
+                            SocSpy      tinyint     not null,
+                            CmdSpy      tinyint     not null,
+                            ChatRoomSpy tinyint     not null,
+                            constraint SocialSpy_UUID_uindex
+                                unique (UUID)
+                        );""");
+            }
+            // older tables were created without a key, so the upsert never updated anything
+            SchemaTools.ensureUniqueKey(conn, "SocialSpy", "SocialSpy_UUID_uindex", null, "UUID");
+        });
 
         // load existing player config
-        try (Connection conn = puPlugin.getDbConn()) {
-            if (conn == null) throw new SQLException("Unable to establish connection!");
-            Statement statement = conn.createStatement();
-            statement.setQueryTimeout(10);
-            ResultSet results = statement.executeQuery("select * from SocialSpy");
-            while (results.next()) {
-                UUID uuid = UUID.fromString(results.getString("UUID"));
-                boolean socialSpy = results.getBoolean("SocSpy");
-                boolean cmdSpy = results.getBoolean("CmdSpy");
-                boolean chatRoomSpy = results.getBoolean("ChatRoomSpy");
-                socialSpyUsers.put(uuid, new SocialSpyOptions(socialSpy, cmdSpy, chatRoomSpy));
+        puPlugin.getDbExecutor().supply(getName(), conn -> {
+            HashMap<UUID, SocialSpyOptions> loaded = new HashMap<>();
+            try (Statement statement = conn.createStatement()) {
+                statement.setQueryTimeout(10);
+                ResultSet results = statement.executeQuery("select * from SocialSpy");
+                while (results.next()) {
+                    UUID uuid = UUID.fromString(results.getString("UUID"));
+                    boolean socialSpy = results.getBoolean("SocSpy");
+                    boolean cmdSpy = results.getBoolean("CmdSpy");
+                    boolean chatRoomSpy = results.getBoolean("ChatRoomSpy");
+                    loaded.put(uuid, new SocialSpyOptions(socialSpy, cmdSpy, chatRoomSpy));
+                }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+            return loaded;
+        }, loaded -> {
+            loaded.forEach(socialSpyUsers::putIfAbsent);
+            // players can join before the settings finish loading
+            puPlugin.getServer().getOnlinePlayers().forEach(p -> spyIndex.update(p, socialSpyUsers.get(p.getUniqueId())));
+        },
+                ex -> ParallelUtils.log(Level.SEVERE, "ParallelChat: Failed to load social spy settings: " + ex.getMessage()));
+
+        this.socialSpyStore = puPlugin.createWriteBehindStore(getName(), new WriteBehindStore.Mapping<>() {
+            @Override
+            public String upsertSql() {
+                return "INSERT INTO SocialSpy (UUID, SocSpy, CmdSpy, ChatRoomSpy) VALUES (?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE SocSpy = VALUES(SocSpy), CmdSpy = VALUES(CmdSpy), ChatRoomSpy = VALUES(ChatRoomSpy)";
+            }
+
+            @Override
+            public void bindUpsert(PreparedStatement statement, UUID key, SocialSpyOptions value) throws SQLException {
+                statement.setString(1, key.toString());
+                statement.setBoolean(2, value.isSocialSpy());
+                statement.setBoolean(3, value.isCmdSpy());
+                statement.setBoolean(4, value.isChatRoomSpy());
+            }
+        });
 
         if (Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null) {
             new DNDExpansion(this.puPlugin).register();
@@ -181,7 +234,11 @@ public class ParallelChat extends ParallelModule {
         }
 
         this.bannedWords = bannedWordsConfig.getStringList("Banned-Words");
-        ParallelUtils.log(Level.INFO, "ParallelChat: Loaded " + bannedWords.size() + " banned words.");
+        this.wholeBannedWords = bannedWordsConfig.getStringList("Whole-Words");
+        this.allowedWords = bannedWordsConfig.getStringList("Allowed-Words");
+        rebuildWordFilter();
+        ParallelUtils.log(Level.INFO, "ParallelChat: Loaded " + (bannedWords.size() + wholeBannedWords.size()) + " banned words and "
+                + allowedWords.size() + " allowed words.");
 
         ConfigurationSection groups = puPlugin.getConfig().getConfigurationSection("group-formats");
         if (groups == null) {
@@ -193,52 +250,60 @@ public class ParallelChat extends ParallelModule {
             groups.getValues(false).forEach((g, f) ->
             {
                 String format = f.toString();
-                groupFormats.put(g, format);
+                groupTemplates.put(g, ChatTemplate.compile(format));
                 ParallelUtils.log(Level.INFO, "ParallelChat: Loaded chat formatting for group " + g);
             });
         }
 
+        this.prefixCache = new ChatPrefixCache(LuckPermsProvider.get(), puPlugin.getPlaceholderCache(), puPlugin.getConfig().getLong("chat-format.prefix-ttl", 300) * 1000L);
+        this.prefixCache.subscribe(puPlugin);
 
-        this.capsEnabled = puPlugin.getConfig().getBoolean("anti-caps.enabled", false);
-        this.capsMinMsgLength = puPlugin.getConfig().getInt("anti-caps.min-message-length", -1);
-        this.capsPercentage = puPlugin.getConfig().getInt("anti-caps.match-percent", -1);
-        if (capsEnabled) {
-            ParallelUtils.log(Level.INFO, "ParallelChat: Enabling Anti-Caps. (Msg Length: " + capsMinMsgLength + ", Match %: " + capsPercentage + ")");
-        }
+        this.audiences.subscribe(puPlugin, LuckPermsProvider.get());
+        // players already online when the module is enabled by a reload never fire a join event
+        puPlugin.getServer().getOnlinePlayers().forEach(audiences::update);
+
+        this.doNotDisturb = new DoNotDisturbManager(puPlugin, puPlugin.getConfig().getStringList("do-not-disturb.auto-windows"));
+        puPlugin.getServer().getOnlinePlayers().forEach(doNotDisturb::join);
+        puPlugin.getConfig().getStringList("chat-format.refresh-commands").forEach(x -> prefixRefreshCommands.add(x.toLowerCase()));
+
+        // every pattern the chat stages use is compiled here, not per message
+        this.chatThrottle = ChatThrottle.fromConfig(puPlugin.getConfig().getConfigurationSection("chat-throttle"));
+        this.chatPipeline = ChatPipeline.fromConfig(puPlugin.getConfig());
 
         // combine broadcast options into one string
         this.broadcastMsg = puPlugin.getConfig().getString("announcements.broadcast.prefix") + puPlugin.getConfig().getString("announcements.broadcast.chat-color");
         this.announceMsg = String.join("\n", puPlugin.getConfig().getStringList("announcements.announce.message"));
 
-        List<String> messages = puPlugin.getConfig().getStringList("auto-broadcast.messages");
-        long interval = puPlugin.getConfig().getLong("auto-broadcast.interval");
-        String autoPrefix = puPlugin.getConfig().getString("auto-broadcast.prefix");
-        for (String s : messages) {
-            // pre-parse auto broadcast since there are no placeholders
-            this.autoMessages.add(MiniMessage.miniMessage().deserialize("\n" + autoPrefix + s + "\n"));
-        }
-        // Auto-Message
-        puPlugin.getServer().getScheduler().scheduleSyncRepeatingTask(puPlugin, () -> {
-            Component msg = autoMessages.get(rand.nextInt(autoMessages.size()));
-            for (Player p : puPlugin.getServer().getOnlinePlayers()) {
-                p.sendMessage(msg);
-            }
-        }, 0L, interval);
+        this.autoBroadcaster = new AutoBroadcaster(puPlugin, puPlugin.getPlaceholderCache(),
+                AutoBroadcaster.fromConfig(puPlugin.getConfig().getConfigurationSection("auto-broadcast")));
+        this.autoBroadcaster.start();
 
 
+        Path dataFolder = puPlugin.getDataFolder().toPath();
+        Path logArchive = dataFolder.resolve("logs");
+        long maxLogBytes = puPlugin.getConfig().getLong("chat-log.max-file-size", 10) * 1024L * 1024L;
+        long logFlushInterval = puPlugin.getConfig().getLong("chat-log.flush-interval", 1000);
         try {
-            this.chatLogWriter = Files.newBufferedWriter(Path.of(puPlugin.getDataFolder().getAbsolutePath() + "/chat_log.txt"), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
-            this.cmdLogWriter = Files.newBufferedWriter(Path.of(puPlugin.getDataFolder().getAbsolutePath() + "/command_log.txt"), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            this.chatLog = new ChatLogAppender(dataFolder.resolve("chat_log.txt"), logArchive, maxLogBytes, logFlushInterval);
+            this.commandLog = new ChatLogAppender(dataFolder.resolve("command_log.txt"), logArchive, maxLogBytes, logFlushInterval);
         }
         catch (IOException e) {
             ParallelUtils.log(Level.SEVERE, "Failed to open writer to loggers!");
+            e.printStackTrace();
         }
 
-        this.chatRoomManager = new ChatRoomManager(Path.of(puPlugin.getDataFolder().getAbsolutePath() + "/chatrooms.json"));
+        this.chatRoomManager = new ChatRoomManager(Path.of(puPlugin.getDataFolder().getAbsolutePath() + "/chatrooms.json"),
+                puPlugin.getConfig().getInt("chatrooms.compact-after", 200), puPlugin.getConfig().getLong("chatrooms.invite-lifetime", 30) * 20L);
+        this.chatRoomHistory = ChatRoomHistory.fromConfig(puPlugin.getDataFolder().toPath().resolve("chatroom_history"),
+                puPlugin.getConfig().getConfigurationSection("chatroom-history"));
+        this.chatRoomHistory.load(chatRoomManager.getChatRooms().keySet());
 
         this.emojiManager = new EmojiManager();
+        puPlugin.getServer().getOnlinePlayers().forEach(emojiManager::addPlayer);
 
         this.customMessageManager = new CustomMessageManager();
+        this.joinAnnouncer = new JoinAnnouncer(puPlugin, puPlugin.getConfig().getInt("join-messages.batch-threshold", 3),
+                puPlugin.getConfig().getInt("join-messages.shown-names", 2));
 
         manager.registerEvents(new OnBookEdit(), puPlugin);
         manager.registerEvents(new OnChatMessage(), puPlugin);
@@ -262,12 +327,16 @@ public class ParallelChat extends ParallelModule {
         puPlugin.getCommand("colors").setExecutor(new ParallelColors());
         puPlugin.getCommand("formats").setExecutor(new ParallelFormats());
         puPlugin.getCommand("dnd").setExecutor(new ParallelDoNotDisturb());
+        puPlugin.getCommand("reloadbroadcasts").setExecutor(new ParallelReloadBroadcasts());
         puPlugin.getCommand("reloademojis").setExecutor(new ParallelReloadEmojis());
         puPlugin.getCommand("emojis").setExecutor(new ParallelEmojis());
         puPlugin.getCommand("banword").setExecutor(new ParallelBanWord());
         puPlugin.getCommand("allowword").setExecutor(new ParallelAllowWord());
         puPlugin.getCommand("joinmessages").setExecutor(new ParallelJoinMessages());
         puPlugin.getCommand("leavemessages").setExecutor(new ParallelLeaveMessages());
+        puPlugin.getCommand("chatlog").setExecutor(new ParallelChatLog());
+        puPlugin.getCommand("spyfilter").setExecutor(new ParallelSpyFilter());
+        puPlugin.addCommand("chatpipeline", new ParallelChatPipeline());
 
         this.chatroomCommands = new ChatroomCommands();
         puPlugin.getCommand("chatroom").setExecutor(chatroomCommands);
@@ -284,6 +353,7 @@ public class ParallelChat extends ParallelModule {
         addChatRoomCommand("disband", new ParallelDisbandChatroom());
         addChatRoomCommand("help", new ParallelHelpChatrooms());
         addChatRoomCommand("msg", new ParallelMsgChatroom());
+        addChatRoomCommand("history", new ParallelChatroomHistory());
     }
 
     public static ParallelChat get() {
@@ -292,47 +362,37 @@ public class ParallelChat extends ParallelModule {
 
     @Override
     public void onDisable() {
-        try {
-            if (this.chatLogWriter != null) { // PLEASE do null checks or at least make sure that things can't be null
-                this.chatLogWriter.close();
-            }
+        if (this.autoBroadcaster != null) {
+            this.autoBroadcaster.stop();
         }
-        catch (IOException e) {
-            ParallelUtils.log(Level.SEVERE, "Failed to close chat log writer!");
+        if (this.prefixCache != null) {
+            this.prefixCache.close();
         }
+        this.audiences.close();
 
-        // save spy data across shutdowns
-        try (Connection conn = puPlugin.getDbConn()) {
-            if (conn == null) throw new SQLException("Unable to establish connection!");
-            PreparedStatement statement = conn.prepareStatement("INSERT INTO SocialSpy (UUID, SocSpy, CmdSpy) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE SocSpy = ?, CmdSpy = ?");
-            statement.setQueryTimeout(30);
-            this.socialSpyUsers.forEach((u, o) -> {
-                try {
-                    statement.setString(1, u.toString());
-                    statement.setBoolean(2, o.isSocialSpy());
-                    statement.setBoolean(3, o.isCmdSpy());
-                    statement.setBoolean(4, o.isSocialSpy());
-                    statement.setBoolean(5, o.isCmdSpy());
-                    statement.addBatch();
-                } catch (SQLException e) {
-                    e.printStackTrace();
-                }
-            });
-            statement.executeBatch();
-            conn.commit();
-            statement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
+        // write out anything still queued in the logs
+        long logTimeout = puPlugin.getConfig().getLong("chat-log.shutdown-timeout", 5000);
+        if (this.chatLog != null) {
+            this.chatLog.close(logTimeout);
+        }
+        if (this.commandLog != null) {
+            this.commandLog.close(logTimeout);
         }
 
+        // save any spy changes that haven't been written yet
+        socialSpyStore.close(puPlugin.getConfig().getLong("sql.write-behind.shutdown-timeout", 15000));
+
         // save chatrooms
-        chatRoomManager.saveChatroomsToFile();
+        chatRoomManager.saveChatroomsToFile(puPlugin.getConfig().getLong("chatrooms.shutdown-timeout", 5000));
+        chatRoomHistory.close(puPlugin.getConfig().getLong("chatroom-history.shutdown-timeout", 5000));
 
         // save player's custom message selections
         customMessageManager.saveSelectedCustomMessages();
 
         // save banned words list in case any words were added or removed
         bannedWordsConfig.set("Banned-Words", bannedWords);
+        bannedWordsConfig.set("Whole-Words", wholeBannedWords);
+        bannedWordsConfig.set("Allowed-Words", allowedWords);
         try {
             bannedWordsConfig.save(new File(puPlugin.getDataFolder(), "bannedwords.yml"));
         } catch (IOException e) {
@@ -402,13 +462,7 @@ public class ParallelChat extends ParallelModule {
     public static void sendMessageToStaffChat(CommandSender sender, Component message) {
         // TODO: Make this a config option
         Component text = MiniMessage.miniMessage().deserialize("<yellow>[<aqua>Staff-Chat<yellow>] <green>" + sender.getName() + " <gray>> ").append(message.color(NamedTextColor.AQUA));
-        // i know this is ugly
-        // possible todo: dynamically keep track of staff in a list
-        for (Player p : sender.getServer().getOnlinePlayers()) {
-            if (p.hasPermission("parallelutils.staffchat")) {
-                p.sendMessage(text);
-            }
-        }
+        Instance.staffAudience.sendMessage(text);
         ParallelUtils.log(Level.INFO, LegacyComponentSerializer.legacyAmpersand().serialize(text));
     }
 
@@ -419,13 +473,7 @@ public class ParallelChat extends ParallelModule {
      */
     public static void sendMessageToTeamChat(CommandSender sender, Component message) {
         Component text = MiniMessage.miniMessage().deserialize("<gold>[<yellow>Team-Chat<gold>] <green>" + sender.getName() + " <gray>> ").append(message.color(NamedTextColor.YELLOW));
-        // i know this is ugly
-        // possible todo: dynamically keep track of team in a list
-        for (Player p : sender.getServer().getOnlinePlayers()) {
-            if (p.hasPermission("parallelutils.teamchat")) {
-                p.sendMessage(text);
-            }
-        }
+        Instance.teamAudience.sendMessage(text);
         ParallelUtils.log(Level.INFO, LegacyComponentSerializer.legacyAmpersand().serialize(text));
     }
 
@@ -436,13 +484,7 @@ public class ParallelChat extends ParallelModule {
      */
     public static void sendMessageToLoreChat(CommandSender sender, Component message) {
         Component text = MiniMessage.miniMessage().deserialize("<red>[<green>Lore-Chat<red>] <green>" + sender.getName() + " <gray>> ").append(message.color(NamedTextColor.GREEN));
-        // i know this is ugly
-        // possible todo: dynamically keep track of lore staff in a list
-        for (Player p : sender.getServer().getOnlinePlayers()) {
-            if (p.hasPermission("parallelutils.lorechat")) {
-                p.sendMessage(text);
-            }
-        }
+        Instance.loreAudience.sendMessage(text);
         ParallelUtils.log(Level.INFO, LegacyComponentSerializer.legacyAmpersand().serialize(text));
     }
 
@@ -471,48 +513,120 @@ public class ParallelChat extends ParallelModule {
      * @return A Component ready to be sent
      */
     public Component formatForGroup(@NotNull Player source, @NotNull Component displayName, @NotNull Component message) {
-
-        TagResolver placeholders = TagResolver.resolver(
-                Placeholder.component("displayname", displayName.hoverEvent(Component.text(
-                        PlaceholderAPI.setPlaceholders(source, "%pronouns_pronouns%")).asHoverEvent())),
-                Placeholder.component("tag", getTagForPlayer(source)),
-                Placeholder.component("donorrank", getDonorRankForPlayer(source)),
-                Placeholder.component("message", message)
-        );
-
+        ChatPrefix prefix = prefixCache.get(source);
+        ChatTemplate template;
         if (isUsingDefault) {
-            // if default is enabled for whatever reason mimic the default rank
-            Component result = MiniMessage.builder().build().deserialize("<tag><gray><displayname><donorrank> > <reset><message>", placeholders);
-            return result;
+            template = DEFAULT_TEMPLATE;
         }
         else {
-            String group = this.getGroupForPlayer(source);
-            String format = ParallelChat.get().groupFormats.get(group);
-            if (format == null) {
-                ParallelUtils.log(Level.SEVERE, "Error while formatting group! Unknown group name " + group);
+            template = groupTemplates.get(prefix.group());
+            if (template == null) {
+                ParallelUtils.log(Level.SEVERE, "Error while formatting group! Unknown group name " + prefix.group());
                 return Component.empty();
             }
-            else {
-                Component result = MiniMessage.builder().build().deserialize(format, placeholders);
-                return result;
-            }
         }
+        return template.render(displayName.hoverEvent(prefix.pronouns().asHoverEvent()), prefix.tag(), prefix.donorRank(), message);
     }
 
-    private Component getTagForPlayer(Player player) {
-        String formatted = PlaceholderAPI.setPlaceholders(player, "%deluxetags_tag%").replaceAll("§", "&");
-        return LegacyComponentSerializer.legacyAmpersand().deserialize(formatted);
+    /**
+     * @param player An online player
+     * @return The player's group, tag, donor rank, and pronouns, from the cache if they are still fresh
+     */
+    public ChatPrefix getChatPrefix(Player player) {
+        return prefixCache.get(player);
     }
 
-    private Component getDonorRankForPlayer(Player player) {
-        String formatted = PlaceholderAPI.setPlaceholders(player, "%luckperms_suffix_element_highest_on_track_donortrack%").replaceAll("§", "&");
-        return LegacyComponentSerializer.legacyAmpersand().deserialize(formatted);
+    /**
+     * Drops a player's cached tag, donor rank, and pronouns so they are looked up again on their next message
+     * @param uuid The player's UUID
+     */
+    public void invalidateChatPrefix(UUID uuid) {
+        prefixCache.invalidate(uuid);
+    }
+
+    /**
+     * @param command A command without its slash or arguments, in lowercase
+     * @return True if the command can change a player's tag or pronouns
+     */
+    public boolean isPrefixRefreshCommand(String command) {
+        return prefixRefreshCommands.contains(command);
     }
 
-    private String getGroupForPlayer(Player player) {
-        return LuckPermsProvider.get().getPlayerAdapter(Player.class).getUser(player).getPrimaryGroup();
+    /**
+     * Sets a player's spy options and queues them to be saved
+     * @param uuid The player's UUID
+     * @param options The player's new spy options
+     */
+    public void setSocialSpyOptions(UUID uuid, SocialSpyOptions options) {
+        socialSpyUsers.put(uuid, options);
+        Player player = puPlugin.getServer().getPlayer(uuid);
+        if (player != null) {
+            spyIndex.update(player, options);
+        }
+        // the options object is mutable, so hand the store its own copy
+        socialSpyStore.markDirty(uuid, new SocialSpyOptions(options.isSocialSpy(), options.isCmdSpy(), options.isChatRoomSpy()));
     }
 
+    /**
+     * Rebuilds the banned word filter from the banned, whole word, and allowed word lists.
+     * Call this after changing any of them
+     */
+    public void rebuildWordFilter() {
+        this.wordFilter = WordFilter.build(bannedWords, wholeBannedWords, allowedWords);
+    }
+
+    public WordFilter getWordFilter() { return wordFilter; }
+
+    /**
+     * @return The online spies, used to send spy messages
+     */
+    public SpyIndex getSpyIndex() { return spyIndex; }
+
+    /**
+     * @return Every online player who is notified when someone says a banned word
+     */
+    public PermissionAudience getAntiSlurAudience() { return antiSlurAudience; }
+
+    /**
+     * @return The rate limits and repeat check for public chat
+     */
+    public ChatThrottle getChatThrottle() { return chatThrottle; }
+
+    /**
+     * @return The messages sent in every chatroom
+     */
+    public ChatRoomHistory getChatRoomHistory() { return chatRoomHistory; }
+
+    /**
+     * @return Sends join messages, combining them when lots of players join at once
+     */
+    public JoinAnnouncer getJoinAnnouncer() { return joinAnnouncer; }
+
+    /**
+     * @return Sends the auto-broadcast messages
+     */
+    public AutoBroadcaster getAutoBroadcaster() { return autoBroadcaster; }
+
+    /**
+     * @return Who is in Do Not Disturb mode
+     */
+    public DoNotDisturbManager getDoNotDisturb() { return doNotDisturb; }
+
+    /**
+     * @return The privileged chat audiences, to update when a player joins or leaves
+     */
+    public PermissionAudiences getAudiences() { return audiences; }
+
+    /**
+     * @return The log every public chat message is written to, or null if it couldn't be opened
+     */
+    public ChatLogAppender getChatLog() { return chatLog; }
+
+    /**
+     * @return The log every command is written to, or null if it couldn't be opened
+     */
+    public ChatLogAppender getCommandLog() { return commandLog; }
+
     public void setChatDisabled(boolean value) {
         this.isChatDisabled = value;
     }
@@ -584,6 +698,8 @@ public class ParallelChat extends ParallelModule {
 
     public HashSet<UUID> getLoreChat() { return playersInLoreChat; }
 
+    public ChatPipeline getChatPipeline() { return chatPipeline; }
+
     public ParallelUtils getPlugin() { return puPlugin; }
 
 }
@@ -0,0 +1,72 @@
+package parallelmc.parallelutils.modules.parallelchat.audience;
+
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.audience.ForwardingAudience;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every online player with a permission, kept up to date as players join, leave, and have their permissions changed.
+ * Sending to this audience never checks any permissions. Members are stored in a concurrent set so the audience can
+ * be used from the async chat thread
+ */
+public class PermissionAudience implements ForwardingAudience {
+
+    private final String permission;
+    private final Set<Player> members = ConcurrentHashMap.newKeySet();
+
+    public PermissionAudience(String permission) {
+        this.permission = permission;
+    }
+
+    /**
+     * @return The permission members of this audience have
+     */
+    public String getPermission() {
+        return permission;
+    }
+
+    /**
+     * Adds or removes a player depending on whether they currently have the permission
+     * @param player The player to check
+     */
+    public void update(Player player) {
+        if (player.isOnline() && player.hasPermission(permission)) {
+            members.add(player);
+        }
+        else {
+            members.remove(player);
+        }
+    }
+
+    /**
+     * Removes a player, such as when they leave
+     * @param player The player to remove
+     */
+    public void remove(Player player) {
+        members.remove(player);
+    }
+
+    /**
+     * @param player A player
+     * @return True if the player is in this audience
+     */
+    public boolean contains(Player player) {
+        return members.contains(player);
+    }
+
+    /**
+     * @return The number of players in this audience
+     */
+    public int size() {
+        return members.size();
+    }
+
+    @Override
+    public @NotNull Iterable<? extends Audience> audiences() {
+        return members;
+    }
+}
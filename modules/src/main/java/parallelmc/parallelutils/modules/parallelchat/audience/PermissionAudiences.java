@@ -0,0 +1,80 @@
+package parallelmc.parallelutils.modules.parallelchat.audience;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a {@link PermissionAudience} for each privileged chat channel. Players are checked once when they join and
+ * again whenever LuckPerms recalculates their permissions, rather than every time a message is sent
+ */
+public class PermissionAudiences {
+
+    private final List<PermissionAudience> audiences = new ArrayList<>();
+
+    private EventSubscription<UserDataRecalculateEvent> subscription;
+
+    /**
+     * Creates an audience for a permission. Audiences should all be created before any players are tracked
+     * @param permission The permission the audience's members have
+     * @return The new audience
+     */
+    public PermissionAudience create(String permission) {
+        PermissionAudience audience = new PermissionAudience(permission);
+        audiences.add(audience);
+        return audience;
+    }
+
+    /**
+     * Checks a player against every audience
+     * @param player The player to check
+     */
+    public void update(Player player) {
+        for (PermissionAudience audience : audiences) {
+            audience.update(player);
+        }
+    }
+
+    /**
+     * Removes a player from every audience
+     * @param player The player to remove
+     */
+    public void remove(Player player) {
+        for (PermissionAudience audience : audiences) {
+            audience.remove(player);
+        }
+    }
+
+    /**
+     * Starts rechecking players when LuckPerms recalculates their permissions
+     * @param plugin The plugin to register the listener and tasks under
+     * @param luckPerms The LuckPerms API
+     */
+    public void subscribe(Plugin plugin, LuckPerms luckPerms) {
+        subscription = luckPerms.getEventBus().subscribe(plugin, UserDataRecalculateEvent.class, e -> {
+            // the event can fire off the main thread, so the permission check is done back on it
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                Player player = Bukkit.getPlayer(e.getUser().getUniqueId());
+                if (player != null) {
+                    update(player);
+                }
+            });
+        });
+    }
+
+    /**
+     * Stops listening for LuckPerms changes
+     */
+    public void close() {
+        if (subscription != null) {
+            subscription.close();
+            subscription = null;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package parallelmc.parallelutils.modules.parallelchat.broadcast;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.util.PlaceholderCache;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+/**
+ * Sends a message from the auto-broadcast pools every interval. A pool is picked by weight from the pools that have
+ * at least one player to show them to, then a message is picked from it, skipping messages that were already shown
+ * within the skip-recent window when there is anything else to show.
+ *
+ * Every message is parsed when the config is loaded. Reloading parses the new config first and then swaps it in all
+ * at once, so a broadcast never sees half of the old config and half of the new one
+ */
+public class AutoBroadcaster {
+
+    /**
+     * Everything loaded from the config
+     * @param pools The broadcast pools
+     * @param interval How often a message is sent, in ticks
+     * @param skipRecentMillis How long a message is skipped for after it is shown, in milliseconds
+     */
+    public record Settings(List<BroadcastPool> pools, long interval, long skipRecentMillis) {
+
+        /**
+         * @return How many messages there are across every pool
+         */
+        public int messageCount() {
+            return pools.stream().mapToInt(x -> x.messages().size()).sum();
+        }
+    }
+
+    private final Plugin plugin;
+    private final PlaceholderCache placeholders;
+    private final Random rand = new Random();
+
+    private final AtomicReference<Settings> settings;
+
+    // only touched on the main thread
+    private final HashMap<String, Long> lastShown = new HashMap<>();
+    private BukkitTask task;
+
+    /**
+     * @param plugin The plugin the broadcast task runs under
+     * @param placeholders The cache placeholders in messages are looked up through
+     * @param settings The pools to start with
+     */
+    public AutoBroadcaster(Plugin plugin, PlaceholderCache placeholders, Settings settings) {
+        this.plugin = plugin;
+        this.placeholders = placeholders;
+        this.settings = new AtomicReference<>(settings);
+    }
+
+    /**
+     * Parses the auto-broadcast section of the config. The messages list is loaded as a pool shown to everyone, and
+     * each entry under pools is loaded as its own pool
+     * @param section The config section, or null for no broadcasts
+     * @return The parsed settings
+     */
+    public static Settings fromConfig(@Nullable ConfigurationSection section) {
+        if (section == null) {
+            return new Settings(List.of(), 0, 0);
+        }
+        String prefix = section.getString("prefix", "");
+        List<BroadcastPool> pools = new ArrayList<>();
+
+        List<String> messages = section.getStringList("messages");
+        if (!messages.isEmpty()) {
+            pools.add(new BroadcastPool("default", section.getInt("weight", 1), Set.of(), null, compile(prefix, messages)));
+        }
+
+        ConfigurationSection poolSection = section.getConfigurationSection("pools");
+        if (poolSection != null) {
+            for (String name : poolSection.getKeys(false)) {
+                ConfigurationSection pool = poolSection.getConfigurationSection(name);
+                if (pool == null) {
+                    ParallelUtils.log(Level.WARNING, "ParallelChat: Auto-broadcast pool " + name + " is invalid, skipping!");
+                    continue;
+                }
+                int weight = pool.getInt("weight", 1);
+                List<String> poolMessages = pool.getStringList("messages");
+                if (weight <= 0 || poolMessages.isEmpty()) {
+                    ParallelUtils.log(Level.WARNING, "ParallelChat: Auto-broadcast pool " + name + " has no weight or no messages, skipping!");
+                    continue;
+                }
+                pools.add(new BroadcastPool(name, weight, Set.copyOf(pool.getStringList("worlds")), pool.getString("permission"),
+                        compile(pool.getString("prefix", prefix), poolMessages)));
+            }
+        }
+        return new Settings(List.copyOf(pools), section.getLong("interval"), section.getLong("skip-recent", 0) * 1000L);
+    }
+
+    private static List<BroadcastPool.Message> compile(String prefix, List<String> messages) {
+        return messages.stream().map(x -> BroadcastPool.Message.compile("\n" + prefix + x + "\n")).toList();
+    }
+
+    /**
+     * Starts sending broadcasts, with the first one sent straight away
+     */
+    public void start() {
+        long interval = settings.get().interval();
+        if (interval <= 0) {
+            return;
+        }
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::broadcast, 0L, interval);
+    }
+
+    /**
+     * Stops sending broadcasts
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Swaps in new settings. The task is only restarted if the interval changed, so reloading doesn't reset the timer
+     * @param next The new settings, already parsed
+     */
+    public void reload(Settings next) {
+        Settings previous = settings.getAndSet(next);
+        if (previous.interval() != next.interval() || task == null) {
+            stop();
+            start();
+        }
+    }
+
+    /**
+     * @return The settings in use
+     */
+    public Settings getSettings() {
+        return settings.get();
+    }
+
+    /**
+     * Sends one broadcast right now
+     */
+    public void broadcast() {
+        Settings current = settings.get();
+        if (current.pools().isEmpty())
+            return;
+
+        // work out who sees each pool, leaving out pools with nobody to show them to
+        Collection<? extends Player> online = plugin.getServer().getOnlinePlayers();
+        List<BroadcastPool> eligible = new ArrayList<>();
+        List<List<Player>> viewers = new ArrayList<>();
+        int totalWeight = 0;
+        for (BroadcastPool pool : current.pools()) {
+            List<Player> shownTo = new ArrayList<>();
+            for (Player p : online) {
+                if (pool.isShownTo(p))
+                    shownTo.add(p);
+            }
+            if (shownTo.isEmpty())
+                continue;
+            eligible.add(pool);
+            viewers.add(shownTo);
+            totalWeight += pool.weight();
+        }
+        if (eligible.isEmpty())
+            return;
+
+        int roll = rand.nextInt(totalWeight);
+        int picked = 0;
+        while (roll >= eligible.get(picked).weight()) {
+            roll -= eligible.get(picked).weight();
+            picked++;
+        }
+
+        BroadcastPool.Message message = pickMessage(eligible.get(picked), current.skipRecentMillis());
+        message.send(viewers.get(picked), placeholders);
+    }
+
+    // picks a message that hasn't been shown recently, or the one shown longest ago if they all have
+    private BroadcastPool.Message pickMessage(BroadcastPool pool, long skipRecentMillis) {
+        long now = System.currentTimeMillis();
+        lastShown.values().removeIf(x -> now - x >= skipRecentMillis);
+
+        List<BroadcastPool.Message> fresh = new ArrayList<>();
+        BroadcastPool.Message oldest = null;
+        long oldestShown = Long.MAX_VALUE;
+        for (BroadcastPool.Message message : pool.messages()) {
+            Long shown = lastShown.get(message.format());
+            if (shown == null) {
+                fresh.add(message);
+            }
+            else if (shown < oldestShown) {
+                oldest = message;
+                oldestShown = shown;
+            }
+        }
+        BroadcastPool.Message message = fresh.isEmpty() ? oldest : fresh.get(rand.nextInt(fresh.size()));
+        if (skipRecentMillis > 0) {
+            lastShown.put(message.format(), now);
+        }
+        return message;
+    }
+}
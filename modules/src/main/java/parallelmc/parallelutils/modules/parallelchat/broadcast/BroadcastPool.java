@@ -0,0 +1,74 @@
+package parallelmc.parallelutils.modules.parallelchat.broadcast;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.bukkit.entity.Player;
+import parallelmc.parallelutils.util.PlaceholderCache;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A group of auto-broadcast messages that share an audience. Each time a broadcast is sent one pool is picked,
+ * weighted by its weight, and one of its messages is sent to the players it is shown to.
+ *
+ * Pools are immutable once built, so a reload builds new ones and swaps them in
+ * @param name The name of the pool in the config
+ * @param weight How likely the pool is to be picked compared to the others
+ * @param worlds The worlds the pool is shown in, or empty for every world
+ * @param permission The permission needed to see the pool, or null for everyone
+ * @param messages The pool's messages, already parsed
+ */
+public record BroadcastPool(String name, int weight, Set<String> worlds, @Nullable String permission, List<Message> messages) {
+
+    /**
+     * A single message. Messages without placeholders are parsed once when they are loaded. Messages with
+     * placeholders are parsed for each viewer when they are sent, since the text is different for everyone
+     * @param compiled The parsed message, or null if it has placeholders
+     * @param format The MiniMessage text, including the prefix
+     */
+    public record Message(@Nullable Component compiled, String format) {
+
+        /**
+         * Parses a message if it doesn't need to be parsed per viewer
+         * @param format The MiniMessage text, including the prefix
+         * @return The message
+         */
+        public static Message compile(String format) {
+            if (format.indexOf('%') == -1)
+                return new Message(MiniMessage.miniMessage().deserialize(format), format);
+            return new Message(null, format);
+        }
+
+        /**
+         * Sends the message to every viewer
+         * @param viewers The players to send to
+         * @param placeholders The cache placeholders are looked up through
+         */
+        public void send(List<Player> viewers, PlaceholderCache placeholders) {
+            if (compiled != null) {
+                viewers.forEach(p -> p.sendMessage(compiled));
+                return;
+            }
+            // most placeholders come out the same for a lot of players, so each result is only parsed once
+            Map<String, Component> parsed = new HashMap<>();
+            for (Player p : viewers) {
+                String text = placeholders.setPlaceholders(p, format);
+                p.sendMessage(parsed.computeIfAbsent(text, MiniMessage.miniMessage()::deserialize));
+            }
+        }
+    }
+
+    /**
+     * @param player The player
+     * @return True if the player is in one of the pool's worlds and has its permission
+     */
+    public boolean isShownTo(Player player) {
+        if (!worlds.isEmpty() && !worlds.contains(player.getWorld().getName()))
+            return false;
+        return permission == null || player.hasPermission(permission);
+    }
+}
@@ -85,19 +85,11 @@ public class ChatRoom {
                p.sendMessage(text);
            }
         });
+        ParallelChat.get().getChatRoomHistory().record(name, text);
         if (!sender.hasPermission("parallelutils.bypass.chatroomspy")) {
             Component chatroomSpy = MiniMessage.miniMessage().deserialize("<yellow>[<aqua>ChatRoom-Spy<yellow>] ").append(text);
             // ChatRoom Spy
-            ParallelChat.get().socialSpyUsers.forEach((u, o) -> {
-                if (u.equals(sender.getUniqueId())) return;
-                if (o.isChatRoomSpy()) {
-                    // this kinda sucks but not much can be done
-                    Player spyUser = sender.getServer().getPlayer(u);
-                    if (spyUser != null) {
-                        spyUser.sendMessage(chatroomSpy);
-                    }
-                }
-            });
+            ParallelChat.get().getSpyIndex().sendChatRoomSpy(sender, name, chatroomSpy);
         }
     }
 
@@ -109,17 +101,10 @@ public class ChatRoom {
                 p.sendMessage(text);
             }
         });
+        ParallelChat.get().getChatRoomHistory().record(name, text);
         Component chatroomSpy = MiniMessage.miniMessage().deserialize("<yellow>[<aqua>ChatRoom-Spy<yellow>] ").append(text);
         // ChatRoom Spy
-        ParallelChat.get().socialSpyUsers.forEach((u, o) -> {
-            if (o.isChatRoomSpy()) {
-                // this kinda sucks but not much can be done
-                Player spyUser = ParallelChat.get().getPlugin().getServer().getPlayer(u);
-                if (spyUser != null) {
-                    spyUser.sendMessage(chatroomSpy);
-                }
-            }
-        });
+        ParallelChat.get().getSpyIndex().sendChatRoomSpy(null, name, chatroomSpy);
     }
 
     private String getPrefix(Player player) {
@@ -0,0 +1,441 @@
+package parallelmc.parallelutils.modules.parallelchat.chatrooms;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
+import org.bukkit.configuration.ConfigurationSection;
+import parallelmc.parallelutils.ParallelUtils;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the messages sent in every chatroom. Each room has its own folder of append-only segment files, named after
+ * the time their first message was sent, and a ring buffer of its last few messages so they can be shown without
+ * touching the disk.
+ *
+ * Messages can be recorded from any thread. Writing, reading older pages and deleting old segments all happen in
+ * order on a single background thread, so none of them ever hold up a message being sent
+ */
+public class ChatRoomHistory {
+
+    /**
+     * A message sent in a chatroom
+     * @param time When the message was sent, in epoch milliseconds
+     * @param message The message exactly as members saw it
+     */
+    public record Entry(long time, Component message) { }
+
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path folder;
+    private final int ringSize;
+    private final int segmentMessages;
+    private final int defaultRetentionDays;
+    private final Map<String, Integer> roomRetentionDays;
+
+    private final ConcurrentHashMap<String, RoomLog> rooms = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+
+    // the ring is guarded by the room's lock, the writer is only touched on the history thread
+    private static class RoomLog {
+        final String room;
+        final Entry[] ring;
+        int head = 0;
+        int size = 0;
+
+        BufferedWriter writer;
+        int segmentCount;
+
+        RoomLog(String room, int ringSize) {
+            this.room = room;
+            this.ring = new Entry[ringSize];
+        }
+
+        synchronized void add(Entry entry) {
+            if (ring.length == 0)
+                return;
+            ring[head] = entry;
+            head = (head + 1) % ring.length;
+            size = Math.min(size + 1, ring.length);
+        }
+
+        // newest first
+        synchronized List<Entry> recent(int count, long cutoff) {
+            List<Entry> out = new ArrayList<>(Math.min(count, size));
+            for (int i = 1; i <= Math.min(count, size); i++) {
+                Entry e = ring[Math.floorMod(head - i, ring.length)];
+                if (e.time() < cutoff)
+                    break;
+                out.add(e);
+            }
+            return out;
+        }
+
+        // puts messages read from disk, newest first, behind the ones recorded since they started being read
+        synchronized void addOlder(List<Entry> older) {
+            List<Entry> newer = recent(size, 0);
+            Arrays.fill(ring, null);
+            head = 0;
+            size = 0;
+            for (int i = older.size() - 1; i >= 0; i--) {
+                add(older.get(i));
+            }
+            for (int i = newer.size() - 1; i >= 0; i--) {
+                add(newer.get(i));
+            }
+        }
+
+        synchronized int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Opens the history folder and starts the background thread
+     * @param folder The folder every room's history is kept in
+     * @param ringSize How many messages of each room are kept in memory
+     * @param segmentMessages How many messages go in a segment before a new one is started
+     * @param defaultRetentionDays How long messages are kept, in days. 0 keeps them forever
+     * @param roomRetentionDays How long messages are kept in individual rooms, by room name
+     */
+    public ChatRoomHistory(Path folder, int ringSize, int segmentMessages, int defaultRetentionDays, Map<String, Integer> roomRetentionDays) {
+        this.folder = folder;
+        this.ringSize = Math.max(ringSize, 0);
+        this.segmentMessages = Math.max(segmentMessages, 1);
+        this.defaultRetentionDays = defaultRetentionDays;
+        this.roomRetentionDays = Map.copyOf(roomRetentionDays);
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ParallelChat-ChatRoomHistory");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Files.createDirectories(folder);
+        }
+        catch (IOException e) {
+            ParallelUtils.log(Level.SEVERE, "ParallelChat: Failed to create the chatroom history folder!\n" + e.getMessage());
+        }
+        // old segments are cleaned up once an hour, and once soon after startup
+        executor.scheduleWithFixedDelay(this::compact, 1, 60, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Reads the history settings from the chatroom-history section of the config
+     * @param folder The folder every room's history is kept in
+     * @param section The section, or null to use the defaults
+     * @return The new history
+     */
+    public static ChatRoomHistory fromConfig(Path folder, @Nullable ConfigurationSection section) {
+        if (section == null)
+            return new ChatRoomHistory(folder, 50, 500, 30, Map.of());
+        HashMap<String, Integer> rooms = new HashMap<>();
+        ConfigurationSection roomSection = section.getConfigurationSection("room-retention-days");
+        if (roomSection != null) {
+            roomSection.getKeys(false).forEach(x -> rooms.put(x, roomSection.getInt(x)));
+        }
+        return new ChatRoomHistory(folder, section.getInt("memory-messages", 50), section.getInt("segment-messages", 500),
+                section.getInt("retention-days", 30), rooms);
+    }
+
+    /**
+     * Loads the last few messages of every room from disk into memory in the background. Only the newest segments of
+     * each room are read, and messages recorded while they are being read are kept in front of them
+     * @param roomNames The rooms that exist
+     */
+    public void load(Collection<String> roomNames) {
+        List<String> names = List.copyOf(roomNames);
+        // queued ahead of any writes, so each room's newest segment is known before anything is added to it
+        submit(() -> names.forEach(this::loadRoom));
+    }
+
+    /**
+     * Records a message sent in a chatroom. The message is in memory straight away and written to disk in the background
+     * @param room The name of the chatroom
+     * @param message The message exactly as members saw it
+     */
+    public void record(String room, Component message) {
+        Entry entry = new Entry(System.currentTimeMillis(), message);
+        RoomLog log = log(room);
+        log.add(entry);
+        submit(() -> write(log, entry));
+    }
+
+    /**
+     * Gets a room's latest messages from memory
+     * @param room The name of the chatroom
+     * @param count The most messages to get
+     * @return The messages, oldest first
+     */
+    public List<Entry> getRecent(String room, int count) {
+        RoomLog log = rooms.get(room);
+        if (log == null)
+            return List.of();
+        List<Entry> recent = log.recent(count, cutoff(room));
+        Collections.reverse(recent);
+        return recent;
+    }
+
+    /**
+     * Gets a page of a room's history. Pages are counted back from the newest message, so page 1 is the latest.
+     * Pages that are still in memory complete straight away, older pages are read from disk in the background
+     * @param room The name of the chatroom
+     * @param page The page, starting at 1
+     * @param pageSize How many messages are on a page
+     * @return A future completed with the messages on the page, oldest first
+     */
+    public CompletableFuture<List<Entry>> getPage(String room, int page, int pageSize) {
+        int skip = (page - 1) * pageSize;
+        RoomLog log = rooms.get(room);
+        if (log != null && skip + pageSize <= log.size()) {
+            List<Entry> recent = log.recent(skip + pageSize, cutoff(room));
+            List<Entry> out = new ArrayList<>(recent.subList(Math.min(skip, recent.size()), recent.size()));
+            Collections.reverse(out);
+            return CompletableFuture.completedFuture(out);
+        }
+        CompletableFuture<List<Entry>> future = new CompletableFuture<>();
+        // queued behind any writes that haven't happened yet, so the disk matches what is in memory
+        submit(() -> {
+            try {
+                future.complete(readPage(room, skip, pageSize));
+            }
+            catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Deletes all of a room's history, for when it is disbanded
+     * @param room The name of the chatroom
+     */
+    public void delete(String room) {
+        RoomLog log = rooms.remove(room);
+        submit(() -> {
+            closeWriter(log);
+            try (Stream<Path> files = Files.list(roomFolder(room))) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+                Files.deleteIfExists(roomFolder(room));
+            }
+            catch (IOException e) {
+                ParallelUtils.log(Level.WARNING, "ParallelChat: Failed to delete the history of chatroom " + room + "\n" + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Writes everything still queued and closes every segment
+     * @param timeoutMillis How long to wait for the queue to drain, in milliseconds
+     */
+    public void close(long timeoutMillis) {
+        submit(() -> rooms.values().forEach(this::closeWriter));
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                ParallelUtils.log(Level.WARNING, "ParallelChat: Timed out writing chatroom history, some messages were lost");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loadRoom(String room) {
+        RoomLog log = log(room);
+        List<Entry> newest = new ArrayList<>();
+        try {
+            List<Path> segments = segments(room);
+            for (int i = segments.size() - 1; i >= 0; i--) {
+                // the newest segment is always read, to know how full it is
+                if (i < segments.size() - 1 && newest.size() >= ringSize)
+                    break;
+                List<Entry> entries = readSegment(segments.get(i));
+                if (i == segments.size() - 1) {
+                    log.segmentCount = entries.size();
+                }
+                for (int j = entries.size() - 1; j >= 0 && newest.size() < ringSize; j--) {
+                    newest.add(entries.get(j));
+                }
+            }
+        }
+        catch (IOException e) {
+            ParallelUtils.log(Level.WARNING, "ParallelChat: Failed to load the history of chatroom " + room + "\n" + e.getMessage());
+        }
+        log.addOlder(newest);
+    }
+
+    private RoomLog log(String room) {
+        return rooms.computeIfAbsent(room, k -> new RoomLog(k, ringSize));
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException ignored) {
+            // the history has been closed
+        }
+    }
+
+    private long cutoff(String room) {
+        int days = roomRetentionDays.getOrDefault(room, defaultRetentionDays);
+        return days <= 0 ? 0 : System.currentTimeMillis() - days * DAY_MILLIS;
+    }
+
+    private void write(RoomLog log, Entry entry) {
+        try {
+            if (log.writer == null || log.segmentCount >= segmentMessages) {
+                closeWriter(log);
+                Path roomFolder = roomFolder(log.room);
+                Files.createDirectories(roomFolder);
+                List<Path> segments = segments(log.room);
+                Path segment;
+                if (log.writer == null && !segments.isEmpty() && log.segmentCount < segmentMessages) {
+                    // carry on with the newest segment after a restart
+                    segment = segments.get(segments.size() - 1);
+                }
+                else {
+                    // segments are named after their first message, moved along if one already started that millisecond
+                    long start = entry.time();
+                    while (Files.exists(roomFolder.resolve(start + SEGMENT_SUFFIX))) {
+                        start++;
+                    }
+                    segment = roomFolder.resolve(start + SEGMENT_SUFFIX);
+                    log.segmentCount = 0;
+                }
+                log.writer = Files.newBufferedWriter(segment, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            log.writer.write(entry.time() + "\t" + GsonComponentSerializer.gson().serialize(entry.message()));
+            log.writer.newLine();
+            log.writer.flush();
+            log.segmentCount++;
+        }
+        catch (IOException e) {
+            ParallelUtils.log(Level.WARNING, "ParallelChat: Failed to write to the history of chatroom " + log.room + "\n" + e.getMessage());
+        }
+    }
+
+    private void closeWriter(@Nullable RoomLog log) {
+        if (log == null || log.writer == null)
+            return;
+        try {
+            log.writer.close();
+        }
+        catch (IOException e) {
+            ParallelUtils.log(Level.WARNING, "ParallelChat: Failed to close the history of chatroom " + log.room);
+        }
+        log.writer = null;
+    }
+
+    // reads backwards through the segments, newest first, until the page is full
+    private List<Entry> readPage(String room, int skip, int pageSize) throws IOException {
+        long cutoff = cutoff(room);
+        List<Path> segments = segments(room);
+        List<Entry> out = new ArrayList<>(pageSize);
+        int seen = 0;
+        for (int i = segments.size() - 1; i >= 0 && out.size() < pageSize; i--) {
+            List<Entry> entries = readSegment(segments.get(i));
+            for (int j = entries.size() - 1; j >= 0 && out.size() < pageSize; j--) {
+                Entry e = entries.get(j);
+                if (e.time() < cutoff)
+                    return reversed(out);
+                if (seen++ >= skip)
+                    out.add(e);
+            }
+        }
+        return reversed(out);
+    }
+
+    private static List<Entry> reversed(List<Entry> list) {
+        Collections.reverse(list);
+        return list;
+    }
+
+    private List<Entry> readSegment(Path segment) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0)
+                    continue;
+                try {
+                    entries.add(new Entry(Long.parseLong(line.substring(0, tab)), GsonComponentSerializer.gson().deserialize(line.substring(tab + 1))));
+                }
+                catch (RuntimeException e) {
+                    // a line cut short by a crash is skipped rather than losing the whole segment
+                }
+            }
+        }
+        return entries;
+    }
+
+    // a room's segments, oldest first
+    private List<Path> segments(String room) throws IOException {
+        Path roomFolder = roomFolder(room);
+        if (!Files.isDirectory(roomFolder))
+            return List.of();
+        try (Stream<Path> files = Files.list(roomFolder)) {
+            return files.filter(x -> x.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(ChatRoomHistory::segmentStart))
+                    .toList();
+        }
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        }
+        catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // deletes every segment whose newest message is past the room's retention. A segment's messages are all older
+    // than the start of the segment after it, so the files never have to be opened
+    private void compact() {
+        for (String room : rooms.keySet()) {
+            long cutoff = cutoff(room);
+            if (cutoff == 0)
+                continue;
+            try {
+                List<Path> segments = segments(room);
+                // the newest segment is the one being written to, so it is never deleted
+                for (int i = 0; i < segments.size() - 1; i++) {
+                    if (segmentStart(segments.get(i + 1)) > cutoff)
+                        break;
+                    Files.deleteIfExists(segments.get(i));
+                }
+            }
+            catch (IOException e) {
+                ParallelUtils.log(Level.WARNING, "ParallelChat: Failed to clean up the history of chatroom " + room + "\n" + e.getMessage());
+            }
+        }
+    }
+
+    // room names can contain anything, so anything other than letters, digits, - and _ is escaped
+    private Path roomFolder(String room) {
+        StringBuilder name = new StringBuilder();
+        for (char c : room.toCharArray()) {
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_')
+                name.append(c);
+            else
+                name.append('%').append(String.format("%04x", (int)c));
+        }
+        return folder.resolve(name.toString());
+    }
+}
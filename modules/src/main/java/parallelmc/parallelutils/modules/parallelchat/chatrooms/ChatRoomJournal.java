@@ -0,0 +1,185 @@
+package parallelmc.parallelutils.modules.parallelchat.chatrooms;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import parallelmc.parallelutils.ParallelUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * An append-only log of every change made to the chatrooms, kept next to the chatrooms.json snapshot.
+ * Each change is one line of JSON and is written as soon as it happens, so a crash loses nothing that was already
+ * written. Once enough changes have built up, the snapshot is rewritten and the journal is started again.
+ *
+ * Everything is written in order on a single background thread. The snapshot is written to a temporary file first and
+ * moved over the old one, so there is always a complete snapshot on disk. Changes are safe to replay more than once,
+ * in case the server stops between a new snapshot being moved into place and the journal being cleared
+ */
+public class ChatRoomJournal {
+
+    private final Path snapshot;
+    private final Path journal;
+    private final int compactAfter;
+
+    private final ExecutorService executor;
+
+    // only touched on the journal thread
+    private BufferedWriter writer;
+
+    // changes written since the last snapshot, only touched on the main thread
+    private int pending = 0;
+
+    /**
+     * @param snapshot The snapshot of every chatroom
+     * @param journal The journal of changes made since the snapshot
+     * @param compactAfter How many changes are journaled before the snapshot is rewritten
+     */
+    public ChatRoomJournal(Path snapshot, Path journal, int compactAfter) {
+        this.snapshot = snapshot;
+        this.journal = journal;
+        this.compactAfter = Math.max(compactAfter, 1);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "ParallelChat-ChatRoomJournal");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads every change in the journal. A line cut short by a crash is skipped
+     * @param apply Called with each change, in the order they were made
+     * @return How many changes were read
+     */
+    public int replay(Consumer<JSONObject> apply) {
+        if (!Files.exists(journal))
+            return 0;
+        int count = 0;
+        JSONParser parser = new JSONParser();
+        try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank())
+                    continue;
+                try {
+                    apply.accept((JSONObject)parser.parse(line));
+                    count++;
+                }
+                catch (ParseException | RuntimeException e) {
+                    ParallelUtils.log(Level.WARNING, "ParallelChat: Skipping a broken line in the chatroom journal");
+                }
+            }
+        }
+        catch (IOException e) {
+            ParallelUtils.log(Level.SEVERE, "Failed to read the chatroom journal!\n" + e.getMessage());
+        }
+        pending = count;
+        return count;
+    }
+
+    /**
+     * Writes a change to the journal in the background
+     * @param change The change
+     */
+    public void append(JSONObject change) {
+        String line = change.toJSONString();
+        pending++;
+        submit(() -> {
+            try {
+                if (writer == null) {
+                    writer = Files.newBufferedWriter(journal, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                }
+                writer.write(line);
+                writer.newLine();
+                writer.flush();
+            }
+            catch (IOException e) {
+                ParallelUtils.log(Level.SEVERE, "Failed to write to the chatroom journal!\n" + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @return True once enough changes have been journaled that the snapshot should be rewritten
+     */
+    public boolean shouldCompact() {
+        return pending >= compactAfter;
+    }
+
+    /**
+     * Replaces the snapshot and clears the journal in the background. The snapshot must be taken on the main thread
+     * right before this is called, so it holds every change already queued and none queued after
+     * @param json Every chatroom, as it is right now
+     */
+    public void compact(String json) {
+        pending = 0;
+        submit(() -> {
+            Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+            try {
+                Files.writeString(temp, json, StandardCharsets.UTF_8);
+                try {
+                    Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+                }
+                // everything in the journal is in the snapshot now
+                if (writer != null) {
+                    writer.close();
+                    writer = null;
+                }
+                Files.deleteIfExists(journal);
+            }
+            catch (IOException e) {
+                // the journal is kept, so nothing is lost if the snapshot couldn't be written
+                ParallelUtils.log(Level.SEVERE, "Failed to save chat rooms!\n" + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Waits for everything queued to be written, then closes the journal
+     * @param timeoutMillis How long to wait, in milliseconds
+     */
+    public void close(long timeoutMillis) {
+        submit(() -> {
+            try {
+                if (writer != null) {
+                    writer.close();
+                    writer = null;
+                }
+            }
+            catch (IOException e) {
+                ParallelUtils.log(Level.WARNING, "ParallelChat: Failed to close the chatroom journal");
+            }
+        });
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                ParallelUtils.log(Level.WARNING, "ParallelChat: Timed out saving chatrooms, the journal will be replayed on the next start");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        }
+        catch (RejectedExecutionException e) {
+            ParallelUtils.log(Level.WARNING, "ParallelChat: A chatroom change was made after the journal was closed");
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package parallelmc.parallelutils.modules.parallelchat.chatrooms;
 
+import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.entity.Player;
 import org.json.simple.JSONArray;
@@ -8,11 +9,13 @@ import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import parallelmc.parallelutils.ParallelUtils;
 import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+import parallelmc.parallelutils.util.ExpiringMap;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -25,16 +28,36 @@ public class ChatRoomManager {
     private final HashMap<UUID, String> hasChatroomActive = new HashMap<>();
 
     // list of players waiting to accept an invite
-    private final HashMap<UUID, String> pendingInvites = new HashMap<>();
+    private final ExpiringMap<UUID, String> pendingInvites;
+    private final long inviteLifetime;
 
     private final Path jsonPath;
+    private final ChatRoomJournal journal;
 
-    public ChatRoomManager(Path jsonPath) {
+    /**
+     * Loads the chatrooms from the last snapshot, then replays every change journaled since
+     * @param jsonPath The snapshot file
+     * @param compactAfter How many changes are journaled before the snapshot is rewritten
+     * @param inviteLifetime How long invites last, in ticks
+     */
+    public ChatRoomManager(Path jsonPath, int compactAfter, long inviteLifetime) {
         this.jsonPath = jsonPath;
+        this.pendingInvites = ParallelChat.get().getPlugin().createExpiringMap();
+        this.inviteLifetime = inviteLifetime;
+        this.journal = new ChatRoomJournal(jsonPath, jsonPath.resolveSibling("chatrooms.journal"), compactAfter);
         if (!jsonPath.toFile().exists()) {
             ParallelUtils.log(Level.WARNING, "ChatRooms JSON file does not exist, skipping loading.");
-            return;
         }
+        else {
+            loadSnapshot();
+        }
+        int changes = journal.replay(this::apply);
+        if (changes > 0) {
+            ParallelUtils.log(Level.INFO, "Replayed " + changes + " chatroom changes from the journal.");
+        }
+    }
+
+    private void loadSnapshot() {
         String data;
         try {
             data = Files.readString(jsonPath);
@@ -64,11 +87,62 @@ public class ChatRoomManager {
         } catch (ParseException e) {
             ParallelUtils.log(Level.SEVERE, "Failed to parse chat room data!\n" + e.getMessage());
         }
+    }
+
+    // applies a journaled change. Applying a change twice leaves the chatrooms the same as applying it once
+    private void apply(JSONObject change) {
+        String name = (String)change.get("name");
+        switch ((String)change.get("op")) {
+            case "create" -> {
+                if (chatRooms.containsKey(name)) return;
+                UUID owner = UUID.fromString((String)change.get("owner"));
+                chatRooms.put(name, new ChatRoom(owner, name, (String)change.get("chatColor"), (Boolean)change.get("isPrivate")));
+                playersInChatrooms.put(owner, name);
+            }
+            case "member" -> {
+                ChatRoom c = chatRooms.get(name);
+                if (c == null) return;
+                UUID uuid = UUID.fromString((String)change.get("uuid"));
+                c.getMembers().put(uuid, Math.toIntExact((Long)change.get("rank")));
+                playersInChatrooms.put(uuid, name);
+            }
+            case "remove" -> {
+                ChatRoom c = chatRooms.get(name);
+                if (c == null) return;
+                UUID uuid = UUID.fromString((String)change.get("uuid"));
+                c.getMembers().remove(uuid);
+                playersInChatrooms.remove(uuid, name);
+            }
+            case "disband" -> {
+                ChatRoom c = chatRooms.remove(name);
+                if (c == null) return;
+                c.getMembers().keySet().forEach(u -> playersInChatrooms.remove(u, name));
+            }
+            default -> ParallelUtils.log(Level.WARNING, "ParallelChat: Unknown chatroom journal change " + change.get("op"));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void journal(String op, String name, UUID uuid, int rank) {
+        JSONObject change = new JSONObject();
+        change.put("op", op);
+        change.put("name", name);
+        if (uuid != null) {
+            change.put("uuid", uuid.toString());
+            change.put("rank", rank);
+        }
+        record(change);
+    }
 
+    private void record(JSONObject change) {
+        journal.append(change);
+        if (journal.shouldCompact()) {
+            journal.compact(toJson());
+        }
     }
 
     @SuppressWarnings("unchecked")
-    public void saveChatroomsToFile() {
+    private String toJson() {
         JSONArray json = new JSONArray();
         for (Map.Entry<String, ChatRoom> e : chatRooms.entrySet()) {
             ChatRoom c = e.getValue();
@@ -87,18 +161,32 @@ public class ChatRoomManager {
             entry.put("members", members);
             json.add(entry);
         }
-        try {
-            Files.writeString(jsonPath, json.toJSONString());
-            ParallelUtils.log(Level.INFO, "Saved " + chatRooms.size() + " chatrooms.");
-        } catch (IOException e) {
-            ParallelUtils.log(Level.SEVERE, "Failed to save chat rooms!\n" + e.getMessage());
-        }
+        return json.toJSONString();
     }
 
+    /**
+     * Writes a fresh snapshot and waits for it, along with anything still queued, to be written
+     * @param timeoutMillis How long to wait, in milliseconds
+     */
+    public void saveChatroomsToFile(long timeoutMillis) {
+        pendingInvites.clear();
+        journal.compact(toJson());
+        journal.close(timeoutMillis);
+        ParallelUtils.log(Level.INFO, "Saved " + chatRooms.size() + " chatrooms.");
+    }
 
+
+    @SuppressWarnings("unchecked")
     public void addChatRoom(Player owner, String name, String color, boolean isPrivate) {
         this.chatRooms.put(name, new ChatRoom(owner.getUniqueId(), name, color, isPrivate));
         this.playersInChatrooms.put(owner.getUniqueId(), name);
+        JSONObject change = new JSONObject();
+        change.put("op", "create");
+        change.put("name", name);
+        change.put("owner", owner.getUniqueId().toString());
+        change.put("chatColor", color);
+        change.put("isPrivate", isPrivate);
+        record(change);
     }
 
     public void removeChatRoom(String name) {
@@ -118,8 +206,28 @@ public class ChatRoomManager {
     }
 
     public void addPlayerToChatroom(Player player, String name) {
+        // catch the player up on what was said before they joined
+        replayHistory(player, name);
         this.playersInChatrooms.put(player.getUniqueId(), name);
         chatRooms.get(name).addMember(player);
+        journal("member", name, player.getUniqueId(), ChatRoom.MEMBER);
+    }
+
+    /**
+     * Shows a player the last few messages of a chatroom, straight from memory
+     * @param player The player
+     * @param name The name of the chatroom
+     */
+    public void replayHistory(Player player, String name) {
+        int count = ParallelChat.get().getPlugin().getConfig().getInt("chatroom-history.replay-messages", 10);
+        List<ChatRoomHistory.Entry> recent = ParallelChat.get().getChatRoomHistory().getRecent(name, count);
+        if (recent.isEmpty())
+            return;
+        Component out = Component.text("Recent messages in " + name + ":", NamedTextColor.GRAY);
+        for (ChatRoomHistory.Entry e : recent) {
+            out = out.append(Component.newline()).append(e.message());
+        }
+        player.sendMessage(out);
     }
 
     public void removePlayerFromChatroom(Player player) {
@@ -128,6 +236,7 @@ public class ChatRoomManager {
         this.playersInChatrooms.remove(player.getUniqueId());
         this.hasChatroomActive.remove(player.getUniqueId());
         player.hideBossBar(c.getBossBar());
+        journal("remove", c.getName(), player.getUniqueId(), 0);
     }
 
     public void kickPlayerFromChatroom(Player player, Player moderator) {
@@ -136,24 +245,45 @@ public class ChatRoomManager {
         this.playersInChatrooms.remove(player.getUniqueId());
         this.hasChatroomActive.remove(player.getUniqueId());
         player.hideBossBar(c.getBossBar());
+        journal("remove", c.getName(), player.getUniqueId(), 0);
+    }
+
+    public void promotePlayerInChatroom(ChatRoom c, Player player) {
+        c.promoteMember(player);
+        journal("member", c.getName(), player.getUniqueId(), ChatRoom.MODERATOR);
+    }
+
+    public void demotePlayerInChatroom(ChatRoom c, Player player) {
+        c.demoteMember(player);
+        journal("member", c.getName(), player.getUniqueId(), ChatRoom.MEMBER);
     }
 
     public void invitePlayerToChatroom(Player player, Player moderator) {
         ChatRoom c = getPlayerChatRoom(moderator);
-        this.pendingInvites.put(player.getUniqueId(), c.getName());
+        UUID moderatorId = moderator.getUniqueId();
+        this.pendingInvites.put(player.getUniqueId(), c.getName(), inviteLifetime, (u, name) -> {
+            Player invitee = player.getServer().getPlayer(u);
+            if (invitee != null)
+                ParallelChat.sendParallelMessageTo(invitee, "Chatroom invite to " + name + " expired.");
+            Player inviter = player.getServer().getPlayer(moderatorId);
+            if (inviter != null)
+                ParallelChat.sendParallelMessageTo(inviter, "Chatroom invite for " + player.getName() + " expired.");
+        });
         ParallelChat.sendParallelMessageTo(player, "You have been invited to the chatroom " + c.getName() + " by " + moderator.getName() + ". Type /cr accept to join!");
-        player.getServer().getScheduler().runTaskLater(ParallelChat.get().getPlugin(), () -> {
-            if (hasPendingInvite(player)) {
-                this.pendingInvites.remove(player.getUniqueId());
-                ParallelChat.sendParallelMessageTo(player, "Chatroom invite expired.");
-                ParallelChat.sendParallelMessageTo(moderator, "Chatroom invite expired.");
-            }
-        }, 600L);
     }
 
     public void acceptChatroomInvite(Player player) {
-        addPlayerToChatroom(player, this.pendingInvites.get(player.getUniqueId()));
-        this.pendingInvites.remove(player.getUniqueId());
+        // taking the invite cancels its expiry, so it can't expire halfway through being accepted
+        String name = this.pendingInvites.remove(player.getUniqueId());
+        if (name == null) {
+            ParallelChat.sendParallelMessageTo(player, "You do not have any pending chatroom invites.");
+            return;
+        }
+        if (!chatRooms.containsKey(name)) {
+            ParallelChat.sendParallelMessageTo(player, "That chatroom no longer exists.");
+            return;
+        }
+        addPlayerToChatroom(player, name);
     }
 
     public void disbandChatroom(ChatRoom c) {
@@ -167,6 +297,8 @@ public class ChatRoomManager {
                 p.hideBossBar(c.getBossBar());
         });
         removeChatRoom(c.getName());
+        journal("disband", c.getName(), null, 0);
+        ParallelChat.get().getChatRoomHistory().delete(c.getName());
     }
 
     public boolean hasPendingInvite(Player player) {
@@ -18,13 +18,21 @@ public class ParallelAllowWord implements CommandExecutor {
                 return true;
             }
         }
+        ParallelChat chat = ParallelChat.get();
         // since we allow the same words with different capitalization we don't have to use equalsIgnoreCase here
-        if (ParallelChat.get().bannedWords.stream().noneMatch(x -> x.equals(args[0]))) {
+        if (chat.bannedWords.remove(args[0]) || chat.wholeBannedWords.remove(args[0])) {
+            chat.rebuildWordFilter();
+            commandSender.sendMessage("Removed '" + args[0] + "' from the banned words list.");
+            return true;
+        }
+        // not banned itself, so allow it even when it contains a banned word
+        if (chat.allowedWords.contains(args[0])) {
             commandSender.sendMessage("The word '" + args[0] + "' is already allowed.");
             return true;
         }
-        ParallelChat.get().bannedWords.remove(args[0]);
-        commandSender.sendMessage("Removed '" + args[0] + "' from the banned words list.");
+        chat.allowedWords.add(args[0]);
+        chat.rebuildWordFilter();
+        commandSender.sendMessage("Added '" + args[0] + "' to the allowed words list.");
         return true;
     }
-}
\ No newline at end of file
+}
@@ -7,6 +7,8 @@ import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
 
+import java.util.List;
+
 public class ParallelBanWord implements CommandExecutor {
     @Override
     public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String label, String[] args) {
@@ -18,13 +20,17 @@ public class ParallelBanWord implements CommandExecutor {
                 return true;
             }
         }
+        // whole words only match on their own, so "ass" can be banned without also banning "class"
+        boolean whole = args.length >= 2 && args[1].equalsIgnoreCase("whole");
+        List<String> list = whole ? ParallelChat.get().wholeBannedWords : ParallelChat.get().bannedWords;
         // since we allow the same words with different capitalization we don't have to use equalsIgnoreCase here
-        if (ParallelChat.get().bannedWords.stream().anyMatch(x -> x.equals(args[0]))) {
+        if (list.stream().anyMatch(x -> x.equals(args[0]))) {
             commandSender.sendMessage("The banned words list already contains the word '" + args[0] + "'");
             return true;
         }
-        ParallelChat.get().bannedWords.add(args[0]);
-        commandSender.sendMessage("Added '" + args[0] + "' to the banned words list.");
+        list.add(args[0]);
+        ParallelChat.get().rebuildWordFilter();
+        commandSender.sendMessage("Added '" + args[0] + "' to the banned words list" + (whole ? " as a whole word." : "."));
         return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,98 @@
+package parallelmc.parallelutils.modules.parallelchat.commands;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+import parallelmc.parallelutils.modules.parallelchat.logging.ChatLogAppender;
+import parallelmc.parallelutils.modules.parallelchat.logging.ChatLogSearch;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ParallelChatLog implements CommandExecutor {
+
+    private static final int MAX_RESULTS = 15;
+
+    // how far back to search, such as 30m, 12h, or 7d
+    private static final Pattern DURATION = Pattern.compile("(\\d+)([mhd])");
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String label, String[] args) {
+        if (commandSender instanceof Player) {
+            if (!commandSender.hasPermission("parallelutils.chatlog")) {
+                return true;
+            }
+        }
+        if (args.length < 3 || !(args[0].equalsIgnoreCase("search") || args[0].equalsIgnoreCase("commands"))) {
+            return false;
+        }
+        ChatLogAppender log = args[0].equalsIgnoreCase("search") ? ParallelChat.get().getChatLog() : ParallelChat.get().getCommandLog();
+        if (log == null) {
+            commandSender.sendMessage(Component.text("That log isn't open.", NamedTextColor.RED));
+            return true;
+        }
+
+        String player = args[1];
+        // the last argument is only read as a time if there is still some text left to search for
+        LocalDateTime since = args.length > 3 ? parseSince(args[args.length - 1]) : null;
+        int textEnd = since == null ? args.length : args.length - 1;
+        String text = String.join(" ", Arrays.copyOfRange(args, 2, textEnd));
+
+        commandSender.sendMessage(Component.text("Searching the " + log.getName() + " log...", NamedTextColor.GREEN));
+        ParallelUtils plugin = ParallelChat.get().getPlugin();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                List<String> found = ChatLogSearch.search(log, player, text, since, MAX_RESULTS);
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (found.isEmpty()) {
+                        commandSender.sendMessage(Component.text("No matching lines found.", NamedTextColor.GREEN));
+                        return;
+                    }
+                    commandSender.sendMessage(Component.text("Showing the last " + found.size() + " matching lines:", NamedTextColor.GREEN));
+                    found.forEach(commandSender::sendMessage);
+                });
+            }
+            catch (IOException e) {
+                ParallelUtils.log(Level.SEVERE, "ParallelChat: Failed to search the " + log.getName() + " log!");
+                e.printStackTrace();
+                Bukkit.getScheduler().runTask(plugin, () ->
+                        commandSender.sendMessage(Component.text("Failed to search the log, check the console.", NamedTextColor.RED)));
+            }
+        });
+        return true;
+    }
+
+    // accepts a duration such as 12h, or a date such as 2023-06-01
+    private static LocalDateTime parseSince(String arg) {
+        Matcher matcher = DURATION.matcher(arg.toLowerCase());
+        if (matcher.matches()) {
+            long amount = Long.parseLong(matcher.group(1));
+            LocalDateTime now = LocalDateTime.now();
+            return switch (matcher.group(2)) {
+                case "m" -> now.minusMinutes(amount);
+                case "h" -> now.minusHours(amount);
+                default -> now.minusDays(amount);
+            };
+        }
+        try {
+            return LocalDate.parse(arg).atStartOfDay();
+        }
+        catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
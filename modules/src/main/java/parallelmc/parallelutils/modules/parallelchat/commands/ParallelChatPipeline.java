@@ -0,0 +1,55 @@
+package parallelmc.parallelutils.modules.parallelchat.commands;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.jetbrains.annotations.NotNull;
+import parallelmc.parallelutils.commands.ParallelCommand;
+import parallelmc.parallelutils.commands.permissions.ParallelPermission;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+import parallelmc.parallelutils.modules.parallelchat.pipeline.ChatPipeline;
+
+import java.util.List;
+
+/**
+ * Shows how long each stage of the chat pipeline takes
+ * Usage: /pu chatpipeline [reset]
+ */
+public class ParallelChatPipeline extends ParallelCommand {
+
+    public ParallelChatPipeline() {
+        super("chatpipeline", "Shows how long each chat stage takes per message", new ParallelPermission("parallelutils.chatpipeline"));
+    }
+
+    @Override
+    public boolean execute(@NotNull CommandSender sender, @NotNull Command command, @NotNull String[] args) {
+        if (!hasPermissions(sender)) return true;
+
+        ChatPipeline pipeline = ParallelChat.get().getChatPipeline();
+        if (args.length >= 2 && args[1].equalsIgnoreCase("reset")) {
+            pipeline.resetTimings();
+            sender.sendMessage(Component.text("Chat pipeline timings reset", NamedTextColor.GREEN));
+            return true;
+        }
+
+        TextComponent.Builder builder = Component.text()
+                .append(Component.text("--------- ", NamedTextColor.YELLOW))
+                .append(Component.text("Chat Pipeline"))
+                .append(Component.text(" --------------------", NamedTextColor.YELLOW));
+        for (ChatPipeline.StageTiming timing : pipeline.getTimings()) {
+            builder.append(Component.newline())
+                    .append(Component.text(timing.name() + ": ", NamedTextColor.GREEN))
+                    .append(Component.text(timing.averageNanos() / 1000D + "µs avg", NamedTextColor.WHITE))
+                    .append(Component.text(" (" + timing.calls() + " runs, " + timing.skipped() + " skipped, " + timing.stopped() + " stopped)", NamedTextColor.GRAY));
+        }
+        sender.sendMessage(builder.build());
+        return true;
+    }
+
+    @Override
+    public List<String> getTabComplete(@NotNull CommandSender sender, @NotNull String[] args) {
+        return List.of("reset");
+    }
+}
@@ -21,17 +21,17 @@ public class ParallelChatRoomSpy implements CommandExecutor {
                     SocialSpyOptions options = ParallelChat.get().socialSpyUsers.get(uuid);
                     if (options.isChatRoomSpy()) {
                         options.setChatRoomSpy(false);
-                        ParallelChat.get().socialSpyUsers.put(uuid, options);
+                        ParallelChat.get().setSocialSpyOptions(uuid, options);
                         ParallelChat.sendParallelMessageTo(sender, "<red>Disabled ChatRoom Spy");
                     }
                     else {
                         options.setChatRoomSpy(true);
-                        ParallelChat.get().socialSpyUsers.put(uuid, options);
+                        ParallelChat.get().setSocialSpyOptions(uuid, options);
                         ParallelChat.sendParallelMessageTo(sender, "Enabled ChatRoom Spy");
                     }
                 }
                 else {
-                    ParallelChat.get().socialSpyUsers.put(uuid, new SocialSpyOptions(false,false, true));
+                    ParallelChat.get().setSocialSpyOptions(uuid, new SocialSpyOptions(false,false, true));
                     ParallelChat.sendParallelMessageTo(sender, "Enabled ChatRoom Spy");
                 }
             }
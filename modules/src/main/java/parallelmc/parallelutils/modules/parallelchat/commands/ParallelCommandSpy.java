@@ -20,17 +20,17 @@ public class ParallelCommandSpy implements CommandExecutor {
                     SocialSpyOptions options = ParallelChat.get().socialSpyUsers.get(uuid);
                     if (options.isCmdSpy()) {
                         options.setCmdSpy(false);
-                        ParallelChat.get().socialSpyUsers.put(uuid, options);
+                        ParallelChat.get().setSocialSpyOptions(uuid, options);
                         ParallelChat.sendParallelMessageTo(sender, "<red>Disabled Command Spy");
                     }
                     else {
                         options.setCmdSpy(true);
-                        ParallelChat.get().socialSpyUsers.put(uuid, options);
+                        ParallelChat.get().setSocialSpyOptions(uuid, options);
                         ParallelChat.sendParallelMessageTo(sender, "Enabled Command Spy");
                     }
                 }
                 else {
-                    ParallelChat.get().socialSpyUsers.put(uuid, new SocialSpyOptions(false, true, false));
+                    ParallelChat.get().setSocialSpyOptions(uuid, new SocialSpyOptions(false, true, false));
                     ParallelChat.sendParallelMessageTo(sender, "Enabled Command Spy");
                 }
             }
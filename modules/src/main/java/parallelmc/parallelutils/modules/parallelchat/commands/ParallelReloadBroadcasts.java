@@ -0,0 +1,35 @@
+package parallelmc.parallelutils.modules.parallelchat.commands;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+import parallelmc.parallelutils.modules.parallelchat.broadcast.AutoBroadcaster;
+
+import java.io.File;
+import java.util.logging.Level;
+
+public class ParallelReloadBroadcasts implements CommandExecutor {
+    @Override
+    public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String label, String[] args) {
+        if (commandSender.hasPermission("parallelutils.reloadbroadcasts")) {
+            // only the auto-broadcast section is read again, the rest of the config is left alone
+            File file = new File(ParallelChat.get().getPlugin().getDataFolder(), "config.yml");
+            YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+            AutoBroadcaster.Settings settings = AutoBroadcaster.fromConfig(config.getConfigurationSection("auto-broadcast"));
+            ParallelChat.get().getAutoBroadcaster().reload(settings);
+
+            String result = "Loaded " + settings.messageCount() + " broadcasts in " + settings.pools().size() + " pools.";
+            if (commandSender instanceof Player player) {
+                ParallelChat.sendParallelMessageTo(player, result);
+            } else {
+                ParallelUtils.log(Level.WARNING, result);
+            }
+        }
+        return true;
+    }
+}
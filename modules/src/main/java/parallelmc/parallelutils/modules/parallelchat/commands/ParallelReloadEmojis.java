@@ -19,6 +19,7 @@ public class ParallelReloadEmojis implements CommandExecutor {
             if (ParallelChat.get().emojiManager.loadEmojis()) {
                 HashMap<String, Emoji> e = ParallelChat.get().emojiManager.getEmojis();
                 if (e != null) {
+                    commandSender.getServer().getOnlinePlayers().forEach(ParallelChat.get().emojiManager::updateCompletions);
                     int emojis = e.size();
                     if (commandSender instanceof Player player) {
                         ParallelChat.sendParallelMessageTo(player, "Loaded " + emojis + " emojis.");
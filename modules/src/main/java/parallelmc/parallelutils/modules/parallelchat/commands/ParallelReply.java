@@ -35,16 +35,7 @@ public class ParallelReply implements CommandExecutor {
             UUID senderUUID = sender.getUniqueId();
             if (!sender.hasPermission("parallelutils.bypass.socialspy")) {
                 // Social Spy
-                ParallelChat.get().socialSpyUsers.forEach((u, o) -> {
-                    if (u.equals(senderUUID)) return;
-                    if (o.isSocialSpy()) {
-                        // this kinda sucks but not much can be done
-                        Player spyUser = sender.getServer().getPlayer(u);
-                        if (spyUser != null) {
-                            spyUser.sendMessage(socialSpy);
-                        }
-                    }
-                });
+                ParallelChat.get().getSpyIndex().sendSocialSpy(sender, recipient, socialSpy);
             }
 
             ParallelChat.get().playerLastMessaged.put(senderUUID, recipient.getUniqueId());
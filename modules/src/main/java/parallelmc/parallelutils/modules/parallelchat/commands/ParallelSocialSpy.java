@@ -22,17 +22,17 @@ public class ParallelSocialSpy implements CommandExecutor {
                     SocialSpyOptions options = ParallelChat.get().socialSpyUsers.get(uuid);
                     if (options.isSocialSpy()) {
                         options.setSocialSpy(false);
-                        ParallelChat.get().socialSpyUsers.put(uuid, options);
+                        ParallelChat.get().setSocialSpyOptions(uuid, options);
                         ParallelChat.sendParallelMessageTo(sender, "<red>Disabled Social Spy");
                     }
                     else {
                         options.setSocialSpy(true);
-                        ParallelChat.get().socialSpyUsers.put(uuid, options);
+                        ParallelChat.get().setSocialSpyOptions(uuid, options);
                         ParallelChat.sendParallelMessageTo(sender, "Enabled Social Spy");
                     }
                 }
                 else {
-                    ParallelChat.get().socialSpyUsers.put(uuid, new SocialSpyOptions(true, false, false));
+                    ParallelChat.get().setSocialSpyOptions(uuid, new SocialSpyOptions(true, false, false));
                     ParallelChat.sendParallelMessageTo(sender, "Enabled Social Spy");
                 }
             }
@@ -0,0 +1,78 @@
+package parallelmc.parallelutils.modules.parallelchat.commands;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+import parallelmc.parallelutils.modules.parallelchat.spy.SpyFilter;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Narrows what a spy sees down to certain players, chatrooms, or commands. Running the same filter again removes it
+ * Usage: /spyfilter [player|chatroom|command|clear] [value]
+ */
+public class ParallelSpyFilter implements CommandExecutor {
+    @Override
+    public boolean onCommand(@NotNull CommandSender commandSender, @NotNull Command command, @NotNull String label, String[] args) {
+        if (!(commandSender instanceof Player player)) {
+            return true;
+        }
+        SpyFilter filter = ParallelChat.get().getSpyIndex().getFilter(player.getUniqueId());
+        if (args.length == 0) {
+            if (filter.isEmpty()) {
+                ParallelChat.sendParallelMessageTo(player, "You have no spy filters, so you see everything.");
+                return true;
+            }
+            String players = filter.getPlayers().stream().map(x -> {
+                String name = Bukkit.getOfflinePlayer(x).getName();
+                return name == null ? x.toString() : name;
+            }).collect(Collectors.joining(", "));
+            ParallelChat.sendParallelMessageTo(player, "Players: " + (players.isEmpty() ? "any" : players) +
+                    "\nChatrooms: " + (filter.getChatrooms().isEmpty() ? "any" : String.join(", ", filter.getChatrooms())) +
+                    "\nCommands: " + (filter.getCommands().isEmpty() ? "any" : String.join(", ", filter.getCommands())));
+            return true;
+        }
+        if (args[0].equalsIgnoreCase("clear")) {
+            ParallelChat.get().getSpyIndex().clearFilter(player.getUniqueId());
+            ParallelChat.sendParallelMessageTo(player, "Cleared your spy filters.");
+            return true;
+        }
+        if (args.length < 2) {
+            return false;
+        }
+        String value = args[1].toLowerCase();
+        switch (args[0].toLowerCase()) {
+            case "player" -> {
+                OfflinePlayer target = Bukkit.getOfflinePlayerIfCached(args[1]);
+                if (target == null) {
+                    ParallelChat.sendParallelMessageTo(player, "<red>Cannot find player " + args[1]);
+                    return true;
+                }
+                toggle(player, filter.getPlayers(), target.getUniqueId(), args[1]);
+            }
+            case "chatroom" -> toggle(player, filter.getChatrooms(), value, value);
+            // commands are matched by label, so a leading slash is ignored
+            case "command" -> toggle(player, filter.getCommands(), value.startsWith("/") ? value.substring(1) : value, value);
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> void toggle(Player player, Set<T> set, T value, String name) {
+        if (set.remove(value)) {
+            ParallelChat.sendParallelMessageTo(player, "<red>Removed " + name + " from your spy filters");
+        }
+        else {
+            set.add(value);
+            ParallelChat.sendParallelMessageTo(player, "Added " + name + " to your spy filters");
+        }
+    }
+}
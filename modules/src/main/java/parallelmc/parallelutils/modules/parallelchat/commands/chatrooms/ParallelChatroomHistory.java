@@ -0,0 +1,79 @@
+package parallelmc.parallelutils.modules.parallelchat.commands.chatrooms;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.command.Command;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+import parallelmc.parallelutils.modules.parallelchat.chatrooms.ChatRoom;
+import parallelmc.parallelutils.modules.parallelchat.chatrooms.ChatRoomHistory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ParallelChatroomHistory extends ChatroomCommand {
+
+    private final String USAGE = "/cr history [page]";
+
+    private static final int PAGE_SIZE = 10;
+
+    public ParallelChatroomHistory() {
+        super("history", "Shows earlier chatroom messages.");
+    }
+
+    @Override
+    public boolean execute(@NotNull Player player, @NotNull Command command, String[] args) {
+        if (args.length > 2) {
+            player.sendMessage(USAGE);
+            return false;
+        }
+        if (!ParallelChat.get().chatRoomManager.isPlayerInChatroom(player)) {
+            ParallelChat.sendParallelMessageTo(player, "You are not in a chatroom!");
+            return true;
+        }
+        int page = 1;
+        if (args.length == 2) {
+            try {
+                page = Integer.parseInt(args[1]);
+            }
+            catch (NumberFormatException e) {
+                player.sendMessage(USAGE);
+                return false;
+            }
+            if (page < 1) {
+                player.sendMessage(USAGE);
+                return false;
+            }
+        }
+        ChatRoom c = ParallelChat.get().chatRoomManager.getPlayerChatRoom(player);
+        final int shownPage = page;
+        // older pages are read from disk, so the reply comes back on the main thread once they are loaded
+        ParallelChat.get().getChatRoomHistory().getPage(c.getName(), page, PAGE_SIZE).whenComplete((entries, ex) ->
+                player.getServer().getScheduler().runTask(ParallelChat.get().getPlugin(), () -> {
+                    if (!player.isOnline())
+                        return;
+                    if (ex != null) {
+                        ParallelChat.sendParallelMessageTo(player, "Failed to load the chatroom history.");
+                        return;
+                    }
+                    if (entries.isEmpty()) {
+                        ParallelChat.sendParallelMessageTo(player, shownPage == 1 ? "Nothing has been said in this chatroom yet." : "There are no messages on that page.");
+                        return;
+                    }
+                    Component out = Component.text("--------- ", NamedTextColor.YELLOW)
+                            .append(Component.text(c.getName() + " History (" + shownPage + ")", NamedTextColor.WHITE))
+                            .append(Component.text(" ---------", NamedTextColor.YELLOW));
+                    for (ChatRoomHistory.Entry e : entries) {
+                        out = out.append(Component.newline()).append(e.message());
+                    }
+                    player.sendMessage(out);
+                }));
+        return true;
+    }
+
+    @Override
+    public List<String> getTabComplete(@NotNull Player player, @NotNull String[] args) {
+        return new ArrayList<>();
+    }
+}
@@ -27,7 +27,7 @@ public class ParallelCreateChatroom extends ChatroomCommand {
             ParallelChat.sendParallelMessageTo(player, "Chat room name must be 16 characters or less!");
             return true;
         }
-        if (ParallelChat.get().bannedWords.contains(args[1])) {
+        if (ParallelChat.get().getWordFilter().findBanned(args[1]) != null) {
             ParallelChat.sendParallelMessageTo(player, "Invalid chatroom name.");
             return true;
         }
@@ -50,7 +50,7 @@ public class ParallelDemoteMember  extends ChatroomCommand {
             ParallelChat.sendParallelMessageTo(player, args[1] + " is already a member!");
             return true;
         }
-        c.demoteMember(demote);
+        ParallelChat.get().chatRoomManager.demotePlayerInChatroom(c, demote);
         return true;
     }
 
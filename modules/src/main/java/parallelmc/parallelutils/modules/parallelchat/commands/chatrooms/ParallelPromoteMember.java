@@ -50,7 +50,7 @@ public class ParallelPromoteMember extends ChatroomCommand {
             ParallelChat.sendParallelMessageTo(player, args[1] + " is already a moderator!");
             return true;
         }
-        c.promoteMember(promote);
+        ParallelChat.get().chatRoomManager.promotePlayerInChatroom(c, promote);
         return true;
     }
 
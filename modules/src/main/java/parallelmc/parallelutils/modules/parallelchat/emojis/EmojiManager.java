@@ -2,13 +2,17 @@ package parallelmc.parallelutils.modules.parallelchat.emojis;
 
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
 import parallelmc.parallelutils.ParallelUtils;
 import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
 
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 /*
@@ -26,7 +30,13 @@ import java.util.logging.Level;
  */
 
 public class EmojiManager {
-    private final HashMap<String, Emoji> emojis = new HashMap<>();
+    // replaced as a whole on reload, since the chat thread reads these while they are being rebuilt
+    private volatile HashMap<String, Emoji> emojis = new HashMap<>();
+    private volatile TokenTrie<Emoji> emojiTrie = TokenTrie.build(Map.of(), false);
+
+    // names of online players, only changed on the main thread
+    private volatile TokenTrie<Player> nameTrie = TokenTrie.build(Map.of(), true);
+
     public EmojiManager() {
         loadEmojis();
     }
@@ -50,6 +60,7 @@ public class EmojiManager {
             ParallelUtils.log(Level.SEVERE, "Failed to load emojis.yml\n" + e);
             return false;
         }
+        HashMap<String, Emoji> loaded = new HashMap<>();
         for (String key : emoteConfig.getKeys(false)) {
             String id = emoteConfig.getString(key + ".id");
             String replacement = emoteConfig.getString(key + ".replacement");
@@ -57,9 +68,11 @@ public class EmojiManager {
                 ParallelUtils.log(Level.WARNING, "Invalid format for emoji key " + key + ", skipping!");
                 continue;
             }
-            emojis.put(id, new Emoji(key, id, replacement));
+            loaded.put(id, new Emoji(key, id, replacement));
         }
-        ParallelUtils.log(Level.WARNING, "Loaded " + emojis.size() + " emojis.");
+        this.emojis = loaded;
+        this.emojiTrie = TokenTrie.build(loaded, false);
+        ParallelUtils.log(Level.WARNING, "Loaded " + loaded.size() + " emojis.");
         return true;
     }
 
@@ -72,4 +85,60 @@ public class EmojiManager {
      */
     @Nullable
     public Emoji getEmojis(String id) { return emojis.get(id); }
+
+    /**
+     * @return The trie of emoji ids, for finding emojis in chat
+     */
+    public TokenTrie<Emoji> getEmojiTrie() { return emojiTrie; }
+
+    /**
+     * @return The trie of online player names, ignoring case, for finding mentions in chat
+     */
+    public TokenTrie<Player> getNameTrie() { return nameTrie; }
+
+    /**
+     * Lists the emoji ids a player can use that start with a prefix
+     * @param player The player
+     * @param prefix The start of an emoji id, such as ":sm"
+     * @param limit The most ids to return
+     * @return The matching emoji ids, shortest first
+     */
+    public List<String> completeEmoji(Player player, String prefix, int limit) {
+        TokenTrie<Emoji> trie = emojiTrie;
+        List<String> out = new ArrayList<>();
+        for (String id : trie.complete(prefix, trie.size())) {
+            Emoji emoji = emojis.get(id);
+            if (emoji != null && player.hasPermission("parallelutils.emoji." + emoji.name())) {
+                out.add(id);
+                if (out.size() >= limit)
+                    break;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Adds a player who just joined to the name trie, and gives them the emojis they can use as chat completions
+     * @param player The player
+     */
+    public void addPlayer(Player player) {
+        nameTrie = nameTrie.with(player.getName(), player);
+        updateCompletions(player);
+    }
+
+    /**
+     * Removes a player who is leaving from the name trie
+     * @param player The player
+     */
+    public void removePlayer(Player player) {
+        nameTrie = nameTrie.without(player.getName());
+    }
+
+    /**
+     * Sends a player the emoji ids they can use, so typing one in chat can be tab completed
+     * @param player The player
+     */
+    public void updateCompletions(Player player) {
+        player.setCustomChatCompletions(completeEmoji(player, "", Integer.MAX_VALUE));
+    }
 }
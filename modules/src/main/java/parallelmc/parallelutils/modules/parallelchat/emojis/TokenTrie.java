@@ -0,0 +1,250 @@
+package parallelmc.parallelutils.modules.parallelchat.emojis;
+
+import it.unimi.dsi.fastutil.chars.Char2ObjectOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A prefix tree used to find emoji ids and player names in chat in a single pass over the message.
+ * A trie is never changed after it is built, so it can be read from the async chat thread while a new one is built.
+ * Adding or removing a single key makes a new trie that only copies the nodes along that key's path
+ * @param <V> The type of value stored under each key
+ */
+public class TokenTrie<V> {
+
+    /**
+     * A key found in some text
+     * @param length How many characters of the text the key covers
+     * @param key The key as it was inserted
+     * @param value The value stored under the key
+     */
+    public record Match<V>(int length, String key, V value) { }
+
+    private static class Node<V> {
+        final Char2ObjectOpenHashMap<Node<V>> children;
+        // set when a key ends at this node
+        String key;
+        V value;
+        // the shortest key at or below this node, used to complete partial names
+        String shortestKey;
+        V shortestValue;
+
+        Node() {
+            children = new Char2ObjectOpenHashMap<>(2);
+        }
+
+        Node(Node<V> from) {
+            children = new Char2ObjectOpenHashMap<>(from.children);
+            key = from.key;
+            value = from.value;
+        }
+    }
+
+    private final Node<V> root;
+    private final boolean ignoreCase;
+    private int size;
+
+    private TokenTrie(boolean ignoreCase) {
+        this(new Node<>(), ignoreCase, 0);
+    }
+
+    private TokenTrie(Node<V> root, boolean ignoreCase, int size) {
+        this.root = root;
+        this.ignoreCase = ignoreCase;
+        this.size = size;
+    }
+
+    /**
+     * Builds a trie
+     * @param entries The keys and their values
+     * @param ignoreCase True to match keys regardless of case
+     * @return The new trie
+     */
+    public static <V> TokenTrie<V> build(Map<String, V> entries, boolean ignoreCase) {
+        TokenTrie<V> trie = new TokenTrie<>(ignoreCase);
+        entries.forEach(trie::insert);
+        return trie;
+    }
+
+    /**
+     * Makes a copy of the trie with a key added, or with its value replaced if the trie already has it
+     * @param key The key
+     * @param value The value to store under the key, which can't be null
+     * @return The new trie. This trie is not changed
+     */
+    public TokenTrie<V> with(String key, V value) {
+        if (key.isEmpty())
+            return this;
+        Node<V> newRoot = copyPath(root, key, 0, value);
+        return new TokenTrie<>(newRoot, ignoreCase, get(key) == null ? size + 1 : size);
+    }
+
+    /**
+     * Makes a copy of the trie with a key removed
+     * @param key The key
+     * @return The new trie, or this trie if it doesn't have the key. This trie is not changed
+     */
+    public TokenTrie<V> without(String key) {
+        if (get(key) == null)
+            return this;
+        Node<V> newRoot = copyPath(root, key, 0, null);
+        return new TokenTrie<>(newRoot == null ? new Node<>() : newRoot, ignoreCase, size - 1);
+    }
+
+    /**
+     * @param key The key
+     * @return The value stored under the key, or null if the trie doesn't have it
+     */
+    @Nullable
+    public V get(String key) {
+        Node<V> node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(fold(key.charAt(i)));
+        }
+        return node == null || node.key == null ? null : node.value;
+    }
+
+    /**
+     * @return The number of keys in the trie
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the longest key that starts at a position in some text
+     * @param text The text to search
+     * @param start Where the key has to start
+     * @return The longest match, or null if no key starts there
+     */
+    @Nullable
+    public Match<V> longestMatch(CharSequence text, int start) {
+        Node<V> node = root;
+        Match<V> best = null;
+        for (int i = start; i < text.length(); i++) {
+            node = node.children.get(fold(text.charAt(i)));
+            if (node == null)
+                break;
+            if (node.key != null)
+                best = new Match<>(i - start + 1, node.key, node.value);
+        }
+        return best;
+    }
+
+    /**
+     * Finds the key a word refers to. A word that is a whole key matches that key, and a word that is only the start
+     * of some keys matches the shortest of them
+     * @param text The text to search
+     * @param start Where the word starts
+     * @param end Where the word ends, exclusive
+     * @return The match covering the whole word, or null if the word doesn't start any key
+     */
+    @Nullable
+    public Match<V> completeWord(CharSequence text, int start, int end) {
+        if (end <= start)
+            return null;
+        Node<V> node = root;
+        for (int i = start; i < end; i++) {
+            node = node.children.get(fold(text.charAt(i)));
+            if (node == null)
+                return null;
+        }
+        if (node.key != null)
+            return new Match<>(end - start, node.key, node.value);
+        return new Match<>(end - start, node.shortestKey, node.shortestValue);
+    }
+
+    /**
+     * Lists keys starting with a prefix, shortest first
+     * @param prefix The prefix
+     * @param limit The most keys to return
+     * @return The matching keys
+     */
+    public List<String> complete(String prefix, int limit) {
+        Node<V> node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(fold(prefix.charAt(i)));
+        }
+        List<String> out = new ArrayList<>();
+        if (node != null) {
+            // breadth first, so shorter keys come first
+            ArrayList<Node<V>> level = new ArrayList<>(List.of(node));
+            while (!level.isEmpty() && out.size() < limit) {
+                ArrayList<Node<V>> next = new ArrayList<>();
+                for (Node<V> n : level) {
+                    if (n.key != null && out.size() < limit)
+                        out.add(n.key);
+                    next.addAll(n.children.values());
+                }
+                level = next;
+            }
+        }
+        return out;
+    }
+
+    private void insert(String key, V value) {
+        if (key.isEmpty())
+            return;
+        Node<V> node = root;
+        updateShortest(node, key, value);
+        for (int i = 0; i < key.length(); i++) {
+            char c = fold(key.charAt(i));
+            Node<V> child = node.children.get(c);
+            if (child == null) {
+                child = new Node<>();
+                node.children.put(c, child);
+            }
+            node = child;
+            updateShortest(node, key, value);
+        }
+        if (node.key == null)
+            size++;
+        node.key = key;
+        node.value = value;
+    }
+
+    // copies the nodes from a node down to where the key ends, sets or removes the key there, and works out the
+    // shortest keys again on the way back up. Returns null if the copy would have no keys at or below it
+    @Nullable
+    private Node<V> copyPath(@Nullable Node<V> node, String key, int depth, @Nullable V value) {
+        if (node == null && value == null)
+            return null;
+        Node<V> copy = node == null ? new Node<>() : new Node<>(node);
+        if (depth == key.length()) {
+            copy.key = value == null ? null : key;
+            copy.value = value;
+        }
+        else {
+            char c = fold(key.charAt(depth));
+            Node<V> child = copyPath(copy.children.get(c), key, depth + 1, value);
+            if (child == null)
+                copy.children.remove(c);
+            else
+                copy.children.put(c, child);
+        }
+        if (copy.key == null && copy.children.isEmpty())
+            return null;
+        copy.shortestKey = copy.key;
+        copy.shortestValue = copy.value;
+        for (Node<V> child : copy.children.values()) {
+            updateShortest(copy, child.shortestKey, child.shortestValue);
+        }
+        return copy;
+    }
+
+    // ties go to the key that sorts first, so the same keys always complete the same way
+    private static <V> void updateShortest(Node<V> node, String key, V value) {
+        if (node.shortestKey == null || key.length() < node.shortestKey.length()
+                || (key.length() == node.shortestKey.length() && key.compareTo(node.shortestKey) < 0)) {
+            node.shortestKey = key;
+            node.shortestValue = value;
+        }
+    }
+
+    private char fold(char c) {
+        return ignoreCase ? Character.toLowerCase(c) : c;
+    }
+}
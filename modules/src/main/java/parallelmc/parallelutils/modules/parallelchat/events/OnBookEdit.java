@@ -2,19 +2,31 @@ package parallelmc.parallelutils.modules.parallelchat.events;
 
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerEditBookEvent;
 import org.bukkit.inventory.meta.BookMeta;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+import parallelmc.parallelutils.modules.parallelchat.filter.WordFilter;
 
 public class OnBookEdit implements Listener {
     @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGHEST)
     public void onBookEdit(PlayerEditBookEvent event) {
         Player player = event.getPlayer();
         BookMeta bookMeta = event.getNewBookMeta();
-        // TODO: Add antiswear stuff once it's not jank
+        if (bookMeta.hasPages() && !player.hasPermission("parallelutils.bypass.antislur")) {
+            WordFilter filter = ParallelChat.get().getWordFilter();
+            for (Component page : bookMeta.pages()) {
+                if (filter.findBanned(PlainTextComponentSerializer.plainText().serialize(page)) != null) {
+                    event.setCancelled(true);
+                    ParallelChat.sendParallelMessageTo(player, "Please do not write that in books.");
+                    return;
+                }
+            }
+        }
         if (bookMeta.hasPages()) {
             for (int i = 1; i <= bookMeta.getPageCount(); i++) {
                 Component newText = bookMeta.page(i); // Book pages are 1-indexed
@@ -7,20 +7,23 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
-import parallelmc.parallelutils.ParallelUtils;
 import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+import parallelmc.parallelutils.modules.parallelchat.logging.ChatLogAppender;
 
-import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.UUID;
-import java.util.logging.Level;
 
 public class OnCommand implements Listener {
     @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGHEST)
     public void onCommand(PlayerCommandPreprocessEvent event) {
         Player player = event.getPlayer();
 
+        // tags and pronouns are cached for chat, so look them up again once the command has run
+        String label = event.getMessage().substring(1).split(" ", 2)[0].toLowerCase();
+        if (ParallelChat.get().isPrefixRefreshCommand(label)) {
+            UUID uuid = player.getUniqueId();
+            player.getServer().getScheduler().runTask(ParallelChat.get().getPlugin(), () -> ParallelChat.get().invalidateChatPrefix(uuid));
+        }
+
         // if the command sender bypasses then do nothing
         if (player.hasPermission("parallelutils.bypass.commandspy")) {
             return;
@@ -28,29 +31,12 @@ public class OnCommand implements Listener {
 
         // Command Spy
         Component cmdSpy = MiniMessage.miniMessage().deserialize("<yellow>[<aqua>Command-Spy:<yellow>] <dark_gray>" + player.getName() + ": <aqua>" + event.getMessage());
-        UUID senderUUID = player.getUniqueId();
-        ParallelChat.get().socialSpyUsers.forEach((u, o) -> {
-            if (u.equals(senderUUID)) return;
-            if (o.isCmdSpy()) {
-                // this kinda sucks but not much can be done
-                Player spyUser = player.getServer().getPlayer(u);
-                if (spyUser != null) {
-                    spyUser.sendMessage(cmdSpy);
-                }
-            }
-        });
+        ParallelChat.get().getSpyIndex().sendCommandSpy(player, label, cmdSpy);
 
         // Command Logger
-        DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss");
-        LocalDateTime now = LocalDateTime.now();
-        try {
-            ParallelChat.get().cmdLogWriter.write("[" + timeFormatter.format(now) + "]: " + player.getName() + "> " + event.getMessage());
-        }
-        catch (IOException e) {
-            ParallelUtils.log(Level.SEVERE, "Failed to log command!");
-        }
-        catch (NullPointerException e) {
-            ParallelUtils.log(Level.SEVERE, "Failed to log chat message! chatLogWriter was null!");
+        ChatLogAppender log = ParallelChat.get().getCommandLog();
+        if (log != null) {
+            log.append(player.getName(), event.getMessage());
         }
     }
 }
@@ -1,10 +1,8 @@
 package parallelmc.parallelutils.modules.parallelchat.events;
 
+import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.minimessage.MiniMessage;
-import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
-import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
 import org.bukkit.Bukkit;
 import org.bukkit.Server;
 import org.bukkit.entity.Player;
@@ -13,13 +11,27 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.metadata.MetadataValue;
 import parallelmc.parallelutils.ParallelUtils;
 import parallelmc.parallelutils.modules.discordintegration.JoinQuitSuppressorListener;
 import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
-import parallelmc.parallelutils.modules.parallelchat.messages.CustomMessageSelection;
+import parallelmc.parallelutils.modules.parallelchat.chatrooms.ChatRoom;
+import parallelmc.parallelutils.modules.parallelchat.messages.PlayerTemplate;
 
 public class OnJoinLeave implements Listener {
 
+    private static final PlayerTemplate WELCOME_NEW = PlayerTemplate.parse("\n<dark_aqua><strikethrough>⎯⎯⎯⎯</strikethrough> Welcome to <white><bold>Parallel</bold><dark_aqua>, <player>! <strikethrough>⎯⎯⎯⎯");
+
+    private static final Component WELCOME_INFO = MiniMessage.miniMessage().deserialize("""
+                <blue>{Discord} <gray>https://discord.parallelmc.org
+                <blue>{Voting} <gray>Vote for the server each day using /vote!
+                <blue>{Resource Pack} <gray>Use our resource pack to see our custom items!""");
+
+    private static final PlayerTemplate WELCOME_BACK = PlayerTemplate.parse("""
+                <dark_aqua><strikethrough>⎯⎯⎯⎯</strikethrough> Welcome back to <white><bold>Parallel</bold><dark_aqua>, <player>! <strikethrough>⎯⎯⎯⎯</strikethrough>
+                <blue>{Discord} <gray>https://discord.parallelmc.org
+                <blue>{Voting} <gray>Vote for the server each day using /vote!""");
+
     private final ParallelUtils puPlugin;
 
     public OnJoinLeave(ParallelUtils puPlugin) {
@@ -33,113 +45,74 @@ public class OnJoinLeave implements Listener {
         ParallelChat.get().removeFromStaffChat(player);
         ParallelChat.get().removeFromLoreChat(player);
         ParallelChat.get().chatRoomManager.removeActiveChatroom(player);
-
-        boolean canSend = true;
+        ParallelChat.get().invalidateChatPrefix(player.getUniqueId());
+        ParallelChat.get().getAudiences().remove(player);
+        ParallelChat.get().getSpyIndex().remove(player);
+        ParallelChat.get().getDoNotDisturb().quit(player);
+        ParallelChat.get().getChatThrottle().remove(player.getUniqueId());
+        ParallelChat.get().emojiManager.removePlayer(player);
 
         event.quitMessage(null);
 
-        String customMsg = ParallelChat.get().customMessageManager.getLeaveMessageForPlayer(player);
-
-        Component leave;
-        if (customMsg == null)
-            leave = MiniMessage.miniMessage().deserialize("<yellow><player> left the game", TagResolver.resolver(Placeholder.parsed("player", player.getName())));
-        else
-            leave = Component.text(customMsg, NamedTextColor.YELLOW);
-
-        if (puPlugin.getModule("DiscordIntegration") != null) {
-            synchronized (JoinQuitSuppressorListener.hiddenUsersLock) { // NOTE: This MIGHT cause lag problems. It shouldn't, but beware
-                if (JoinQuitSuppressorListener.hiddenUsers.contains(player.getName().strip())) {
-                    event.quitMessage(null); // This might need to change, but it needs to be tested
-                    canSend = false;
-                }
-            }
-        } else {
-            // if you find a better way of doing this feel free to replace
-            for (Player p : player.getServer().getOnlinePlayers()) {
-                if (!p.canSee(player)) {
-                    // if ANYONE can't see the player, don't show the message
-                    return;
-                }
-            }
-        }
-
-        if (canSend) {
-            for (Player p : player.getServer().getOnlinePlayers()) {
-                p.sendMessage(leave);
-            }
-        }
+        if (isHidden(player))
+            return;
+        Audience.audience(player.getServer().getOnlinePlayers()).sendMessage(ParallelChat.get().customMessageManager.getLeaveMessageForPlayer(player));
     }
 
     @EventHandler(ignoreCancelled = true, priority = EventPriority.HIGH)
     public void onPlayerJoin(PlayerJoinEvent event) {
-        // TODO: Refactor this function please. It's a mess
         Player player = event.getPlayer();
         Server server = player.getServer();
         event.joinMessage(null);
+        ParallelChat.get().getAudiences().update(player);
+        ParallelChat.get().getSpyIndex().update(player, ParallelChat.get().socialSpyUsers.get(player.getUniqueId()));
+        ParallelChat.get().getDoNotDisturb().join(player);
+        ChatRoom chatRoom = ParallelChat.get().chatRoomManager.getPlayerChatRoom(player);
+        if (chatRoom != null) {
+            ParallelChat.get().chatRoomManager.replayHistory(player, chatRoom.getName());
+        }
+        ParallelChat.get().emojiManager.addPlayer(player);
 
-        String customMsg = ParallelChat.get().customMessageManager.getJoinMessageForPlayer(player);
-
-        boolean canSend = true;
+        Component join = ParallelChat.get().customMessageManager.getJoinMessageForPlayer(player);
 
-        Component join;
-        if (customMsg == null)
-            join = MiniMessage.miniMessage().deserialize("<yellow><player> joined the game", TagResolver.resolver(Placeholder.parsed("player", player.getName())));
-        else
-            join = Component.text(customMsg, NamedTextColor.YELLOW);
-        
         if (!player.hasPlayedBefore()) {
-            Component welcome = MiniMessage.miniMessage().deserialize("\n<dark_aqua><strikethrough>⎯⎯⎯⎯</strikethrough> Welcome to <white><bold>Parallel</bold><dark_aqua>, <player>! <strikethrough>⎯⎯⎯⎯", TagResolver.resolver(Placeholder.parsed("player", player.getName())));
-
-            join = join.append(welcome);
-            for (Player p : server.getOnlinePlayers()) {
-                p.sendMessage(join);
-            }
+            // new players are always announced straight away, along with the welcome
+            Audience.audience(server.getOnlinePlayers()).sendMessage(join.append(WELCOME_NEW.render(player.getName())));
             // private welcome info
-            Component info = MiniMessage.miniMessage().deserialize("""
-                <blue>{Discord} <gray>https://discord.parallelmc.org
-                <blue>{Voting} <gray>Vote for the server each day using /vote!
-                <blue>{Resource Pack} <gray>Use our resource pack to see our custom items!""");
-            player.sendMessage(info);
+            player.sendMessage(WELCOME_INFO);
             player.getServer().dispatchCommand(server.getConsoleSender(), "ibooks give rules " + player.getName());
         }
         else {
-
-            if (puPlugin.getModule("DiscordIntegration") != null) {
-                synchronized (JoinQuitSuppressorListener.hiddenUsersLock) { // NOTE: This MIGHT cause lag problems. It shouldn't, but beware
-                    if (JoinQuitSuppressorListener.hiddenUsers.contains(player.getName().strip())) {
-                        event.joinMessage(null); // This might need to change, but it needs to be tested
-                        canSend = false;
-
-
-                        if (Bukkit.getPluginManager().isPluginEnabled("Essentials")) {
-                            return;
-                        }
-                    }
-                }
-            } else {
-                for (Player p : player.getServer().getOnlinePlayers()) {
-                    if (!p.canSee(player)) {
-                        // if ANYONE can't see the player, don't show the message
-                        return;
-                    }
+            if (isHidden(player)) {
+                if (puPlugin.getModule("DiscordIntegration") == null || Bukkit.getPluginManager().isPluginEnabled("Essentials")) {
+                    return;
                 }
             }
-
-            if (canSend) {
-                for (Player p : player.getServer().getOnlinePlayers()) {
-                    p.sendMessage(join);
-                }
+            else {
+                ParallelChat.get().getJoinAnnouncer().announce(player.getName(), join);
             }
 
             // private welcome info
-            Component info = MiniMessage.miniMessage().deserialize("""
-                <dark_aqua><strikethrough>⎯⎯⎯⎯</strikethrough> Welcome back to <white><bold>Parallel</bold><dark_aqua>, <player>! <strikethrough>⎯⎯⎯⎯</strikethrough>
-                <blue>{Discord} <gray>https://discord.parallelmc.org
-                <blue>{Voting} <gray>Vote for the server each day using /vote!""", TagResolver.resolver(Placeholder.parsed("player", player.getName())));
-
-            player.sendMessage(info);
+            player.sendMessage(WELCOME_BACK.render(player.getName()));
         }
+    }
 
-
+    // players hidden by Discord Integration, or from anyone online, don't get join or leave messages.
+    // Vanish plugins that mark their players with metadata are caught without asking every online player
+    private boolean isHidden(Player player) {
+        if (puPlugin.getModule("DiscordIntegration") != null) {
+            synchronized (JoinQuitSuppressorListener.hiddenUsersLock) {
+                return JoinQuitSuppressorListener.hiddenUsers.contains(player.getName().strip());
+            }
+        }
+        for (MetadataValue value : player.getMetadata("vanished")) {
+            if (value.asBoolean())
+                return true;
+        }
+        for (Player p : player.getServer().getOnlinePlayers()) {
+            if (!p.canSee(player))
+                return true;
+        }
+        return false;
     }
 }
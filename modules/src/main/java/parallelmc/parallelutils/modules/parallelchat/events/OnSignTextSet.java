@@ -17,8 +17,7 @@ public class OnSignTextSet implements Listener {
         if (!player.hasPermission("parallelutils.bypass.antislur")) {
             // fuck u paper im not iterating through components
             String text = String.join("\n", event.getLines());
-            text = text.toLowerCase().replace(" ", "");
-            if (ParallelChat.get().bannedWords.stream().anyMatch(text::contains)) {
+            if (ParallelChat.get().getWordFilter().findBanned(text) != null) {
                 event.setCancelled(true);
                 ParallelChat.sendParallelMessageTo(player, "Please do not say that on signs.");
             }
@@ -0,0 +1,386 @@
+package parallelmc.parallelutils.modules.parallelchat.filter;
+
+import it.unimi.dsi.fastutil.chars.Char2IntOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finds banned words in text with a single Aho-Corasick automaton, built once from the banned word lists.
+ *
+ * Both the entries and the text are normalized first: color codes and accents are removed, homoglyphs are mapped to
+ * plain letters, leetspeak is mapped to letters inside words that also have real letters in them, separators between
+ * letters are dropped, letters spaced out one at a time are joined, and repeated letters are collapsed. Each letter
+ * remembers how many times it was repeated, so "asss" still matches "ass" but "was" does not.
+ *
+ * The filter never changes after it is built, so it is safe to use from the async chat thread.
+ */
+public class WordFilter {
+
+    public enum EntryType {
+        // matches anywhere, even inside other words, but never across the space between two words
+        SUBSTRING,
+        // only matches a whole word
+        WHOLE_WORD,
+        // never matches, but hides any banned match that falls inside it. For example "class" hides "ass"
+        ALLOW
+    }
+
+    private record Entry(String word, EntryType type, int length, int[] minRuns, boolean[] wordStart) { }
+
+    // the normalized form of a piece of text, one slot per letter
+    private record Normalized(char[] chars, int[] runs, boolean[] wordStart, int length) { }
+
+    private static final int[] NO_OUTPUTS = new int[0];
+
+    private final ArrayList<Entry> entries = new ArrayList<>();
+    private final ArrayList<Char2IntOpenHashMap> next = new ArrayList<>();
+    // per-node output lists, only used while building
+    private final ArrayList<ArrayList<Integer>> building = new ArrayList<>();
+    private int[] fail;
+    private int[][] outputs;
+    private boolean hasAllowed = false;
+
+    private WordFilter() {
+        addNode();
+    }
+
+    /**
+     * Builds a filter from the banned word lists
+     * @param substrings Words banned anywhere in a message
+     * @param wholeWords Words banned only on their own
+     * @param allowed Words that contain a banned word but are fine to say
+     * @return The new filter
+     */
+    public static WordFilter build(Collection<String> substrings, Collection<String> wholeWords, Collection<String> allowed) {
+        WordFilter filter = new WordFilter();
+        substrings.forEach(x -> filter.insert(x, EntryType.SUBSTRING));
+        wholeWords.forEach(x -> filter.insert(x, EntryType.WHOLE_WORD));
+        allowed.forEach(x -> filter.insert(x, EntryType.ALLOW));
+        filter.link();
+        return filter;
+    }
+
+    /**
+     * Looks for a banned word in some text
+     * @param text The text to check. May contain legacy color codes
+     * @return The banned word that was found, as it was written in the list, or null if the text is clean
+     */
+    @Nullable
+    public String findBanned(String text) {
+        Normalized norm = normalize(text, true);
+        // banned matches are only collected when there are allow entries that might cancel them out
+        List<int[]> banned = hasAllowed ? new ArrayList<>() : null;
+        List<int[]> allowedSpans = hasAllowed ? new ArrayList<>() : null;
+
+        int state = 0;
+        for (int i = 0; i < norm.length(); i++) {
+            char c = norm.chars()[i];
+            int to = next.get(state).get(c);
+            while (to == -1 && state != 0) {
+                state = fail[state];
+                to = next.get(state).get(c);
+            }
+            state = to == -1 ? 0 : to;
+
+            for (int e : outputs[state]) {
+                Entry entry = entries.get(e);
+                int start = i - entry.length() + 1;
+                if (!matches(entry, norm, start, i))
+                    continue;
+                if (entry.type() == EntryType.ALLOW) {
+                    allowedSpans.add(new int[] { start, i });
+                }
+                else if (banned == null) {
+                    return entry.word();
+                }
+                else {
+                    banned.add(new int[] { start, i, e });
+                }
+            }
+        }
+
+        if (banned == null)
+            return null;
+        outer:
+        for (int[] match : banned) {
+            for (int[] span : allowedSpans) {
+                if (span[0] <= match[0] && match[1] <= span[1])
+                    continue outer;
+            }
+            return entries.get(match[2]).word();
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of entries in the filter, including allowed words
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean matches(Entry entry, Normalized norm, int start, int end) {
+        if (start < 0)
+            return false;
+        for (int k = 0; k < entry.length(); k++) {
+            if (norm.runs()[start + k] < entry.minRuns()[k])
+                return false;
+            // a match can't run across a space into the next word, so "who eats" doesn't contain "hoe".
+            // Letters spaced out one at a time were joined into one word when the text was normalized
+            if (k > 0 && norm.wordStart()[start + k] && !entry.wordStart()[k])
+                return false;
+        }
+        if (entry.type() == EntryType.WHOLE_WORD) {
+            return norm.wordStart()[start] && (end + 1 == norm.length() || norm.wordStart()[end + 1]);
+        }
+        return true;
+    }
+
+    private void insert(String word, EntryType type) {
+        Normalized norm = normalize(word, false);
+        if (norm.length() == 0)
+            return;
+        int state = 0;
+        for (int i = 0; i < norm.length(); i++) {
+            char c = norm.chars()[i];
+            int to = next.get(state).get(c);
+            if (to == -1) {
+                to = addNode();
+                next.get(state).put(c, to);
+            }
+            state = to;
+        }
+        int[] minRuns = new int[norm.length()];
+        for (int i = 0; i < norm.length(); i++) {
+            // a doubled letter in an entry has to be doubled in the text as well, any longer run counts the same
+            minRuns[i] = Math.min(norm.runs()[i], 2);
+        }
+        entries.add(new Entry(word, type, norm.length(), minRuns, norm.wordStart()));
+        if (type == EntryType.ALLOW)
+            hasAllowed = true;
+        // outputs are stored per node while building, then merged along the failure links in link()
+        nodeOutputs(state).add(entries.size() - 1);
+    }
+
+    private ArrayList<Integer> nodeOutputs(int node) {
+        while (building.size() <= node) {
+            building.add(null);
+        }
+        ArrayList<Integer> list = building.get(node);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            building.set(node, list);
+        }
+        return list;
+    }
+
+    private int addNode() {
+        Char2IntOpenHashMap map = new Char2IntOpenHashMap(4);
+        map.defaultReturnValue(-1);
+        next.add(map);
+        return next.size() - 1;
+    }
+
+    // computes failure links breadth first, and gives every node the outputs of the nodes its failure links lead to
+    private void link() {
+        int size = next.size();
+        fail = new int[size];
+        outputs = new int[size][];
+        outputs[0] = toArray(0);
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (var child : next.get(0).char2IntEntrySet()) {
+            fail[child.getIntValue()] = 0;
+            queue.add(child.getIntValue());
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            int[] own = toArray(node);
+            int[] inherited = outputs[fail[node]];
+            if (inherited.length == 0) {
+                outputs[node] = own;
+            }
+            else {
+                int[] merged = new int[own.length + inherited.length];
+                System.arraycopy(own, 0, merged, 0, own.length);
+                System.arraycopy(inherited, 0, merged, own.length, inherited.length);
+                outputs[node] = merged;
+            }
+
+            for (var child : next.get(node).char2IntEntrySet()) {
+                char c = child.getCharKey();
+                int target = child.getIntValue();
+                int f = fail[node];
+                int to = next.get(f).get(c);
+                while (to == -1 && f != 0) {
+                    f = fail[f];
+                    to = next.get(f).get(c);
+                }
+                fail[target] = to == -1 ? 0 : to;
+                queue.add(target);
+            }
+        }
+        building.clear();
+    }
+
+    private int[] toArray(int node) {
+        if (node >= building.size() || building.get(node) == null)
+            return NO_OUTPUTS;
+        return building.get(node).stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Normalizes text for matching
+     * @param text The text to normalize
+     * @param joinSpaced True to join letters that were spaced out one at a time, such as "a s s"
+     * @return The normalized text
+     */
+    private static Normalized normalize(String text, boolean joinSpaced) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        // strip color codes and accents first, so they can't split up a word or count as letters below
+        StringBuilder clean = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            // skip legacy color codes so they can't be used to split up a word
+            if ((c == '&' || c == '§') && i + 1 < decomposed.length()) {
+                char code = Character.toLowerCase(decomposed.charAt(i + 1));
+                if (code == '#' && i + 7 < decomposed.length()) {
+                    i += 7;
+                    continue;
+                }
+                if ((code >= '0' && code <= '9') || (code >= 'a' && code <= 'f') || (code >= 'k' && code <= 'o') || code == 'r') {
+                    i++;
+                    continue;
+                }
+            }
+            if (Character.getType(c) == Character.NON_SPACING_MARK)
+                continue;
+            clean.append(c);
+        }
+
+        int len = clean.length();
+        boolean[] leet = leetTokens(clean);
+        char[] chars = new char[len];
+        boolean[] wordStart = new boolean[len];
+        int n = 0;
+        boolean boundary = true;
+        for (int i = 0; i < len; i++) {
+            char c = clean.charAt(i);
+            char mapped;
+            if (!leet[i]) {
+                // numbers and prices on their own are left alone, so "455" is never read as "ass"
+                mapped = Character.toLowerCase(c);
+            }
+            else {
+                // these are usually just punctuation, so only read them as letters when a letter follows
+                boolean beforeLetter = i + 1 < len && Character.isLetterOrDigit(clean.charAt(i + 1));
+                mapped = (c == '!' || c == '|' || c == '+') && !beforeLetter ? c : fold(Character.toLowerCase(c));
+            }
+            if (Character.isLetterOrDigit(mapped)) {
+                chars[n] = mapped;
+                wordStart[n] = boundary;
+                boundary = false;
+                n++;
+            }
+            else if (Character.isWhitespace(c)) {
+                boundary = true;
+            }
+            // anything else is a separator like . or - and is dropped without ending the word
+        }
+
+        if (joinSpaced) {
+            joinSpacedLetters(wordStart, n);
+        }
+
+        // collapse repeated letters within a word, remembering how many there were
+        char[] outChars = new char[n];
+        int[] runs = new int[n];
+        boolean[] outStart = new boolean[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m > 0 && !wordStart[i] && outChars[m - 1] == chars[i]) {
+                runs[m - 1]++;
+                continue;
+            }
+            outChars[m] = chars[i];
+            runs[m] = 1;
+            outStart[m] = wordStart[i];
+            m++;
+        }
+        return new Normalized(outChars, runs, outStart, m);
+    }
+
+    // marks every character that is in a run of non-whitespace containing at least one real letter.
+    // Leetspeak is only read inside those, since a word spelled entirely with digits and symbols is just a number
+    private static boolean[] leetTokens(CharSequence text) {
+        int len = text.length();
+        boolean[] leet = new boolean[len];
+        int start = 0;
+        while (start < len) {
+            if (Character.isWhitespace(text.charAt(start))) {
+                start++;
+                continue;
+            }
+            int end = start;
+            boolean hasLetter = false;
+            while (end < len && !Character.isWhitespace(text.charAt(end))) {
+                hasLetter |= Character.isLetter(text.charAt(end));
+                end++;
+            }
+            if (hasLetter) {
+                Arrays.fill(leet, start, end, true);
+            }
+            start = end;
+        }
+        return leet;
+    }
+
+    // three or more single letter words in a row are treated as one word
+    private static void joinSpacedLetters(boolean[] wordStart, int n) {
+        int i = 0;
+        while (i < n) {
+            int j = i;
+            // find a run of words that are exactly one letter long
+            while (j < n && wordStart[j] && (j + 1 == n || wordStart[j + 1])) {
+                j++;
+            }
+            if (j - i >= 3) {
+                for (int k = i + 1; k < j; k++) {
+                    wordStart[k] = false;
+                }
+            }
+            i = Math.max(j, i + 1);
+        }
+    }
+
+    // maps leetspeak and characters that look like latin letters to the letter they imitate
+    // the escapes are greek and cyrillic lookalikes
+    private static char fold(char c) {
+        return switch (c) {
+            case '0', '\u03bf', '\u043e' -> 'o';
+            case '1', '!', '|', '\u03b9', '\u0456' -> 'i';
+            case '3', '\u20ac', '\u0435' -> 'e';
+            case '4', '@', '\u03b1', '\u0430' -> 'a';
+            case '5', '$', '\u0455' -> 's';
+            case '7', '+', '\u03c4', '\u0442' -> 't';
+            case '8', '\u0432' -> 'b';
+            case '9' -> 'g';
+            case '\u03c1', '\u0440' -> 'p';
+            case '\u0441' -> 'c';
+            case '\u0443' -> 'y';
+            case '\u0445' -> 'x';
+            case '\u03ba', '\u043a' -> 'k';
+            case '\u043c' -> 'm';
+            case '\u043d' -> 'h';
+            case '\u03bd' -> 'v';
+            case '\u0458' -> 'j';
+            default -> c;
+        };
+    }
+}
@@ -0,0 +1,13 @@
+package parallelmc.parallelutils.modules.parallelchat.format;
+
+import net.kyori.adventure.text.Component;
+
+/**
+ * The parts of a player's chat format that only change when their rank, tag, or pronouns change
+ * @param group The player's primary LuckPerms group
+ * @param pronouns The hover text shown over the player's name
+ * @param tag The player's DeluxeTags tag
+ * @param donorRank The player's donor rank suffix
+ * @param resolvedAt When the prefix was resolved, in milliseconds
+ */
+public record ChatPrefix(String group, Component pronouns, Component tag, Component donorRank, long resolvedAt) { }
@@ -0,0 +1,112 @@
+package parallelmc.parallelutils.modules.parallelchat.format;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import parallelmc.parallelutils.util.PlaceholderCache;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches each online player's resolved chat prefix so placeholders are only looked up when something has changed.
+ * Entries are dropped when LuckPerms recalculates the player's data, when they run a command that changes their tag
+ * or pronouns, and when they leave. DeluxeTags and the pronouns plugin don't have events to listen to, so entries also
+ * expire after a while in case they are changed some other way
+ *
+ * The cache is read from the async chat thread, so it is safe to use from any thread
+ */
+public class ChatPrefixCache {
+
+    private static final String PRONOUNS = "%pronouns_pronouns%";
+    private static final String TAG = "%deluxetags_tag%";
+    private static final String DONOR_RANK = "%luckperms_suffix_element_highest_on_track_donortrack%";
+
+    private final ConcurrentHashMap<UUID, ChatPrefix> prefixes = new ConcurrentHashMap<>();
+
+    private final LuckPerms luckPerms;
+    private final PlaceholderCache placeholders;
+    private final long ttlMillis;
+    private EventSubscription<UserDataRecalculateEvent> subscription;
+
+    /**
+     * @param luckPerms The LuckPerms API
+     * @param placeholders The shared placeholder cache
+     * @param ttlMillis How long a prefix is kept before it is resolved again. 0 or less keeps it until invalidated
+     */
+    public ChatPrefixCache(LuckPerms luckPerms, PlaceholderCache placeholders, long ttlMillis) {
+        this.luckPerms = luckPerms;
+        this.placeholders = placeholders;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Starts listening for LuckPerms changes
+     * @param plugin The plugin to register the listener under
+     */
+    public void subscribe(Plugin plugin) {
+        subscription = luckPerms.getEventBus().subscribe(plugin, UserDataRecalculateEvent.class,
+                e -> invalidate(e.getUser().getUniqueId()));
+    }
+
+    /**
+     * Stops listening for LuckPerms changes and clears the cache
+     */
+    public void close() {
+        if (subscription != null) {
+            subscription.close();
+            subscription = null;
+        }
+        prefixes.clear();
+    }
+
+    /**
+     * Gets a player's prefix, resolving it if it isn't cached or has expired
+     * @param player The player
+     * @return The player's prefix
+     */
+    public ChatPrefix get(Player player) {
+        ChatPrefix prefix = prefixes.get(player.getUniqueId());
+        long now = System.currentTimeMillis();
+        if (prefix != null && (ttlMillis <= 0 || now - prefix.resolvedAt() < ttlMillis))
+            return prefix;
+        prefix = resolve(player, now);
+        prefixes.put(player.getUniqueId(), prefix);
+        return prefix;
+    }
+
+    /**
+     * Drops a player's cached prefix so it is resolved again on their next message
+     * @param uuid The player's UUID
+     */
+    public void invalidate(UUID uuid) {
+        prefixes.remove(uuid);
+        // the placeholders behind the prefix are cached too, and would otherwise hand back the old values
+        placeholders.invalidate(uuid, PRONOUNS);
+        placeholders.invalidate(uuid, TAG);
+        placeholders.invalidate(uuid, DONOR_RANK);
+    }
+
+    /**
+     * Drops every cached prefix
+     */
+    public void invalidateAll() {
+        prefixes.clear();
+    }
+
+    private ChatPrefix resolve(Player player, long now) {
+        String group = luckPerms.getPlayerAdapter(Player.class).getUser(player).getPrimaryGroup();
+        Component pronouns = Component.text(placeholders.get(player, PRONOUNS));
+        Component tag = legacy(placeholders.get(player, TAG));
+        Component donorRank = legacy(placeholders.get(player, DONOR_RANK));
+        return new ChatPrefix(group, pronouns, tag, donorRank, now);
+    }
+
+    private static Component legacy(String formatted) {
+        return LegacyComponentSerializer.legacyAmpersand().deserialize(formatted.replace('§', '&'));
+    }
+}
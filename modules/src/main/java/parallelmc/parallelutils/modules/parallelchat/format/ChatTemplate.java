@@ -0,0 +1,97 @@
+package parallelmc.parallelutils.modules.parallelchat.format;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A group chat format parsed once into a component tree with empty slots for the per-message parts.
+ * Rendering fills the slots in without parsing any MiniMessage, and gives the same result as parsing the format with
+ * the values as placeholders
+ */
+public class ChatTemplate {
+
+    public enum Slot {
+        DISPLAYNAME("displayname"),
+        TAG("tag"),
+        DONORRANK("donorrank"),
+        MESSAGE("message");
+
+        private final String tag;
+        // a private use character that will never show up in a real format
+        private final String marker;
+
+        Slot(String tag) {
+            this.tag = tag;
+            this.marker = String.valueOf((char)(0xE000 + ordinal()));
+        }
+    }
+
+    private static final Slot[] SLOTS = Slot.values();
+
+    // the default post processor compacts the result, which could merge a slot into the text next to it
+    private static final MiniMessage PARSER = MiniMessage.builder().postProcessor(c -> c).build();
+
+    private final Component compiled;
+
+    private ChatTemplate(Component compiled) {
+        this.compiled = compiled;
+    }
+
+    /**
+     * Parses a group format
+     * @param format The MiniMessage format, using the displayname, tag, donorrank, and message placeholders
+     * @return The compiled template
+     */
+    public static ChatTemplate compile(String format) {
+        TagResolver.Builder resolver = TagResolver.builder();
+        for (Slot slot : SLOTS) {
+            resolver.resolver(Placeholder.component(slot.tag, Component.text(slot.marker)));
+        }
+        return new ChatTemplate(PARSER.deserialize(format, resolver.build()));
+    }
+
+    /**
+     * Fills in the template
+     * @param displayName The player's display name
+     * @param tag The player's tag
+     * @param donorRank The player's donor rank
+     * @param message The chat message
+     * @return The formatted message
+     */
+    public Component render(Component displayName, Component tag, Component donorRank, Component message) {
+        Component[] values = new Component[SLOTS.length];
+        values[Slot.DISPLAYNAME.ordinal()] = displayName;
+        values[Slot.TAG.ordinal()] = tag;
+        values[Slot.DONORRANK.ordinal()] = donorRank;
+        values[Slot.MESSAGE.ordinal()] = message;
+        return fill(compiled, values);
+    }
+
+    // swaps each slot marker for its value, only copying the parts of the tree that contain a slot
+    private static Component fill(Component component, Component[] values) {
+        if (component instanceof TextComponent text && text.content().length() == 1 && text.children().isEmpty()) {
+            int slot = text.content().charAt(0) - 0xE000;
+            if (slot >= 0 && slot < values.length)
+                return values[slot];
+        }
+        List<Component> children = component.children();
+        List<Component> filled = null;
+        for (int i = 0; i < children.size(); i++) {
+            Component child = children.get(i);
+            Component replaced = fill(child, values);
+            if (replaced != child && filled == null) {
+                filled = new ArrayList<>(children.subList(0, i));
+            }
+            if (filled != null) {
+                filled.add(replaced);
+            }
+        }
+        return filled == null ? component : component.children(filled);
+    }
+}
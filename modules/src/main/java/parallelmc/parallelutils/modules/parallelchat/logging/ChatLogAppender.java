@@ -0,0 +1,211 @@
+package parallelmc.parallelutils.modules.parallelchat.logging;
+
+import parallelmc.parallelutils.ParallelUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Appends lines to a log file from any thread without blocking. Lines are put on a lock-free queue and written by a
+ * single background thread, which flushes every interval.
+ *
+ * The active file is rotated into the archive folder when the day changes or when it grows past the size limit, and
+ * rotated files are gzipped. Archived files are named {@code <name>-<date>-<n>.txt.gz} so they can be searched in order
+ */
+public class ChatLogAppender {
+
+    public static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss");
+
+    private final String name;
+    private final Path file;
+    private final Path archive;
+    private final long maxBytes;
+    private final long flushNanos;
+
+    private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private BufferedWriter writer;
+    private LocalDate fileDate;
+    private long fileBytes;
+
+    /**
+     * Opens the log and starts its writer thread
+     * @param file The active log file
+     * @param archive The folder rotated files are moved to
+     * @param maxBytes The size the active file is rotated at. 0 or less only rotates daily
+     * @param flushMillis How often queued lines are written and flushed, in milliseconds
+     * @throws IOException If the log file can't be opened
+     */
+    public ChatLogAppender(Path file, Path archive, long maxBytes, long flushMillis) throws IOException {
+        String fileName = file.getFileName().toString();
+        this.name = fileName.endsWith(".txt") ? fileName.substring(0, fileName.length() - 4) : fileName;
+        this.file = file;
+        this.archive = archive;
+        this.maxBytes = maxBytes;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(flushMillis, 50));
+
+        Files.createDirectories(archive);
+        // a log left over from an earlier day is archived before anything new is written to it
+        if (Files.exists(file) && Files.size(file) > 0) {
+            LocalDate modified = dateOf(Files.getLastModifiedTime(file));
+            if (modified.isBefore(LocalDate.now())) {
+                archive(modified);
+            }
+        }
+        open();
+
+        this.thread = new Thread(this::run, "ParallelChat-" + name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues a line to be logged, stamped with the current time
+     * @param source Who the line came from
+     * @param text The text to log
+     */
+    public void append(String source, String text) {
+        if (!running) return;
+        queue.add("[" + TIME_FORMAT.format(LocalDateTime.now()) + "]: " + source + "> " + text);
+    }
+
+    /**
+     * @return The name of the log, which archived files start with
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The active log file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return The folder rotated files are moved to
+     */
+    public Path getArchive() {
+        return archive;
+    }
+
+    /**
+     * Stops the writer thread once everything queued has been written, then closes the file
+     * @param timeoutMillis How long to wait for the queue to drain, in milliseconds
+     */
+    public void close(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(timeoutMillis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            ParallelUtils.log(Level.WARNING, "ParallelChat: Timed out writing the " + name + " log, " + queue.size() + " lines were lost");
+        }
+    }
+
+    private void run() {
+        while (running) {
+            LockSupport.parkNanos(this, flushNanos);
+            drain();
+        }
+        // anything queued before close() was called still gets written
+        drain();
+        if (writer == null)
+            return;
+        try {
+            writer.close();
+        }
+        catch (IOException e) {
+            ParallelUtils.log(Level.SEVERE, "ParallelChat: Failed to close the " + name + " log!");
+        }
+    }
+
+    private void drain() {
+        String line = queue.poll();
+        if (line == null) return;
+        try {
+            while (line != null) {
+                rotateIfNeeded();
+                writer.write(line);
+                writer.newLine();
+                // close enough for rotation, multi-byte characters are rare in chat
+                fileBytes += line.length() + 1;
+                line = queue.poll();
+            }
+            writer.flush();
+        }
+        catch (IOException e) {
+            ParallelUtils.log(Level.SEVERE, "ParallelChat: Failed to write to the " + name + " log!");
+            e.printStackTrace();
+        }
+    }
+
+    private void rotateIfNeeded() throws IOException {
+        LocalDate today = LocalDate.now();
+        if (writer != null && today.equals(fileDate) && (maxBytes <= 0 || fileBytes < maxBytes))
+            return;
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            try {
+                archive(fileDate);
+            }
+            catch (IOException e) {
+                // carry on in the active file, rotating is tried again once another max-file-size has been written
+                ParallelUtils.log(Level.SEVERE, "ParallelChat: Failed to archive the " + name + " log!\n" + e.getMessage());
+                open();
+                fileBytes = 0;
+                return;
+            }
+        }
+        // if the file can't be opened the writer is left null, so opening it is tried again on the next write
+        open();
+    }
+
+    private void open() throws IOException {
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileDate = LocalDate.now();
+        fileBytes = Files.size(file);
+    }
+
+    // moves the active file into the archive and compresses it
+    private void archive(LocalDate date) throws IOException {
+        int n = 1;
+        Path target;
+        do {
+            target = archive.resolve(name + "-" + date + "-" + n + ".txt.gz");
+            n++;
+        } while (Files.exists(target));
+
+        Path temp = archive.resolve(target.getFileName() + ".tmp");
+        try (InputStream in = Files.newInputStream(file);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+            in.transferTo(out);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(file);
+    }
+
+    private static LocalDate dateOf(FileTime time) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(time.toMillis()), ZoneId.systemDefault());
+    }
+}
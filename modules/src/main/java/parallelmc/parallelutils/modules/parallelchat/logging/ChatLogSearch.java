@@ -0,0 +1,115 @@
+package parallelmc.parallelutils.modules.parallelchat.logging;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Searches a log and its archived files one line at a time, so even large logs are never loaded into memory
+ */
+public class ChatLogSearch {
+
+    /**
+     * Finds the most recent lines from a player that contain some text
+     * @param log The log to search
+     * @param player The name of the player, ignoring case
+     * @param text The text to look for, ignoring case
+     * @param since Only lines logged at or after this time are returned, or null to search everything
+     * @param limit The most lines to return
+     * @return The matching lines, oldest first
+     * @throws IOException If a log file can't be read
+     */
+    public static List<String> search(ChatLogAppender log, String player, String text, @Nullable LocalDateTime since, int limit) throws IOException {
+        String prefix = "]: " + player.toLowerCase() + "> ";
+        String needle = text.toLowerCase();
+        ArrayDeque<String> found = new ArrayDeque<>(limit);
+
+        for (Path file : filesToSearch(log, since == null ? null : since.toLocalDate())) {
+            boolean gzipped = file.getFileName().toString().endsWith(".gz");
+            try (InputStream raw = Files.newInputStream(file);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(gzipped ? new GZIPInputStream(raw) : raw, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String lower = line.toLowerCase();
+                    int at = lower.indexOf(prefix);
+                    if (at == -1 || lower.indexOf(needle, at + prefix.length()) == -1)
+                        continue;
+                    if (since != null && !loggedSince(line, since))
+                        continue;
+                    if (found.size() == limit)
+                        found.removeFirst();
+                    found.addLast(line);
+                }
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    // archived files oldest first, skipping days before the given date, then the active file
+    private static List<Path> filesToSearch(ChatLogAppender log, @Nullable LocalDate since) throws IOException {
+        String start = log.getName() + "-";
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> archived = Files.list(log.getArchive())) {
+            archived.filter(x -> {
+                String name = x.getFileName().toString();
+                if (!name.startsWith(start) || !name.endsWith(".txt.gz"))
+                    return false;
+                LocalDate date = archiveDate(name, start.length());
+                return date != null && (since == null || !date.isBefore(since));
+            }).forEach(files::add);
+        }
+        files.sort(Comparator.comparing((Path x) -> archiveDate(x.getFileName().toString(), start.length()))
+                .thenComparingInt(x -> archiveIndex(x.getFileName().toString())));
+        if (Files.exists(log.getFile())) {
+            files.add(log.getFile());
+        }
+        return files;
+    }
+
+    // archived files are named <name>-<yyyy-MM-dd>-<n>.txt.gz
+    @Nullable
+    private static LocalDate archiveDate(String fileName, int offset) {
+        if (fileName.length() < offset + 10)
+            return null;
+        try {
+            return LocalDate.parse(fileName.substring(offset, offset + 10));
+        }
+        catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static int archiveIndex(String fileName) {
+        int end = fileName.length() - ".txt.gz".length();
+        int start = fileName.lastIndexOf('-', end) + 1;
+        try {
+            return Integer.parseInt(fileName.substring(start, end));
+        }
+        catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // lines start with [MM/dd/yyyy HH:mm:ss]
+    private static boolean loggedSince(String line, LocalDateTime since) {
+        if (line.length() < 21 || line.charAt(0) != '[')
+            return false;
+        try {
+            return !LocalDateTime.parse(line.substring(1, 20), ChatLogAppender.TIME_FORMAT).isBefore(since);
+        }
+        catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
@@ -15,6 +15,8 @@ package parallelmc.parallelutils.modules.parallelchat.messages;
  * Rank is the rank required to select the custom message
  */
 
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
@@ -36,6 +38,9 @@ import java.util.UUID;
 import java.util.logging.Level;
 
 public class CustomMessageManager {
+    private static final PlayerTemplate DEFAULT_JOIN = PlayerTemplate.parse("<yellow><player> joined the game");
+    private static final PlayerTemplate DEFAULT_LEAVE = PlayerTemplate.parse("<yellow><player> left the game");
+
     private final HashMap<String, JoinLeaveMessage> customJoinLeaveMessages = new HashMap<>();
     private final HashMap<UUID, CustomMessageSelection> selectedCustomMessages = new HashMap<>();
     public CustomMessageManager() {
@@ -76,7 +81,8 @@ public class CustomMessageManager {
                 ParallelUtils.log(Level.WARNING, "Invalid or missing value(s) in join/leave message " + key + ", skipping!");
                 continue;
             }
-            customJoinLeaveMessages.put(key, new JoinLeaveMessage(name, event, text, rank));
+            // parsed now so that nothing has to be parsed when a player joins or leaves
+            customJoinLeaveMessages.put(key, new JoinLeaveMessage(name, event, text, rank, PlayerTemplate.plain(text, "PLAYER", NamedTextColor.YELLOW)));
         }
         ParallelUtils.log(Level.WARNING, "Loaded " + customJoinLeaveMessages.size() + " custom join/leave messages.");
     }
@@ -182,28 +188,24 @@ public class CustomMessageManager {
             selectedCustomMessages.remove(uuid);
     }
 
-    @Nullable
-    public String getJoinMessageForPlayer(Player player) {
+    /**
+     * @param player The player joining
+     * @return The player's custom join message, or the default one if they haven't picked one
+     */
+    public Component getJoinMessageForPlayer(Player player) {
         CustomMessageSelection sel = selectedCustomMessages.get(player.getUniqueId());
-        if (sel == null)
-            return null;
-        JoinLeaveMessage msg = customJoinLeaveMessages.get(sel.getJoinMessage());
-        if (msg == null) {
-            return null;
-        }
-        return msg.text().replace("PLAYER", player.getName());
+        JoinLeaveMessage msg = sel == null ? null : customJoinLeaveMessages.get(sel.getJoinMessage());
+        return (msg == null ? DEFAULT_JOIN : msg.template()).render(player.getName());
     }
 
-    @Nullable
-    public String getLeaveMessageForPlayer(Player player) {
+    /**
+     * @param player The player leaving
+     * @return The player's custom leave message, or the default one if they haven't picked one
+     */
+    public Component getLeaveMessageForPlayer(Player player) {
         CustomMessageSelection sel = selectedCustomMessages.get(player.getUniqueId());
-        if (sel == null)
-            return null;
-        JoinLeaveMessage msg = customJoinLeaveMessages.get(sel.getLeaveMessage());
-        if (msg == null) {
-            return null;
-        }
-        return msg.text().replace("PLAYER", player.getName());
+        JoinLeaveMessage msg = sel == null ? null : customJoinLeaveMessages.get(sel.getLeaveMessage());
+        return (msg == null ? DEFAULT_LEAVE : msg.template()).render(player.getName());
     }
 
     @Nullable
@@ -0,0 +1,81 @@
+package parallelmc.parallelutils.modules.parallelchat.messages;
+
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the join messages of everyone who joins during a tick and sends them together at the end of it.
+ * A few joins are still announced one by one, but once more than the threshold join in the same tick they are
+ * announced as a single line, so a join storm after a restart doesn't send every player hundreds of messages.
+ *
+ * Only used on the main thread
+ */
+public class JoinAnnouncer {
+
+    private record Join(String name, Component message) { }
+
+    private final Plugin plugin;
+    private final int threshold;
+    private final int shownNames;
+
+    private final List<Join> pending = new ArrayList<>();
+    private boolean scheduled = false;
+
+    /**
+     * @param plugin The plugin the flush task runs under
+     * @param threshold The most joins in one tick that are still announced one by one
+     * @param shownNames How many names are listed in a combined announcement before the rest are counted
+     */
+    public JoinAnnouncer(Plugin plugin, int threshold, int shownNames) {
+        this.plugin = plugin;
+        this.threshold = Math.max(threshold, 1);
+        this.shownNames = Math.max(shownNames, 1);
+    }
+
+    /**
+     * Queues a join message to be sent at the end of the tick
+     * @param name The name of the player who joined
+     * @param message Their join message
+     */
+    public void announce(String name, Component message) {
+        pending.add(new Join(name, message));
+        if (!scheduled) {
+            scheduled = true;
+            plugin.getServer().getScheduler().runTask(plugin, this::flush);
+        }
+    }
+
+    private void flush() {
+        scheduled = false;
+        if (pending.isEmpty())
+            return;
+        Audience everyone = Audience.audience(plugin.getServer().getOnlinePlayers());
+        if (pending.size() <= threshold) {
+            pending.forEach(x -> everyone.sendMessage(x.message()));
+        }
+        else {
+            everyone.sendMessage(Component.text(summarize(), NamedTextColor.YELLOW));
+        }
+        pending.clear();
+    }
+
+    // "A, B and 12 others joined the game"
+    private String summarize() {
+        int shown = Math.min(shownNames, pending.size());
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < shown; i++) {
+            if (i > 0)
+                sb.append(i == pending.size() - 1 ? " and " : ", ");
+            sb.append(pending.get(i).name());
+        }
+        int others = pending.size() - shown;
+        if (others > 0)
+            sb.append(" and ").append(others).append(others == 1 ? " other" : " others");
+        return sb.append(" joined the game").toString();
+    }
+}
@@ -1,3 +1,3 @@
 package parallelmc.parallelutils.modules.parallelchat.messages;
 
-public record JoinLeaveMessage(String name, String event, String text, String requiredRank) {}
+public record JoinLeaveMessage(String name, String event, String text, String requiredRank, PlayerTemplate template) {}
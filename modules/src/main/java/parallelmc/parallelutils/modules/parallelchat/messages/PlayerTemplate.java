@@ -0,0 +1,88 @@
+package parallelmc.parallelutils.modules.parallelchat.messages;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.TextColor;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message about a player, such as a join or leave message, parsed once with an empty slot for the player's name.
+ * Rendering only fills the slot in, so nothing is parsed when a player joins or leaves
+ */
+public class PlayerTemplate {
+
+    // a private use character that will never show up in a real message
+    private static final String MARKER = "\uE000";
+
+    // the default post processor compacts the result, which could merge the slot into the text next to it
+    private static final MiniMessage PARSER = MiniMessage.builder().postProcessor(c -> c).build();
+
+    private final Component compiled;
+
+    private PlayerTemplate(Component compiled) {
+        this.compiled = compiled;
+    }
+
+    /**
+     * Parses a MiniMessage message
+     * @param format The message, using the player placeholder for the player's name
+     * @return The compiled template
+     */
+    public static PlayerTemplate parse(String format) {
+        return new PlayerTemplate(PARSER.deserialize(format, Placeholder.component("player", Component.text(MARKER))));
+    }
+
+    /**
+     * Builds a template from plain text, like the custom messages in joinleave.yml
+     * @param text The message
+     * @param token The word that is replaced with the player's name, such as PLAYER
+     * @param color The color of the whole message
+     * @return The compiled template
+     */
+    public static PlayerTemplate plain(String text, String token, TextColor color) {
+        TextComponent.Builder builder = Component.text().color(color);
+        int start = 0;
+        int found;
+        while ((found = text.indexOf(token, start)) != -1) {
+            if (found > start)
+                builder.append(Component.text(text.substring(start, found)));
+            builder.append(Component.text(MARKER));
+            start = found + token.length();
+        }
+        if (start < text.length())
+            builder.append(Component.text(text.substring(start)));
+        return new PlayerTemplate(builder.build());
+    }
+
+    /**
+     * Fills in the player's name
+     * @param name The player's name
+     * @return The message
+     */
+    public Component render(String name) {
+        return fill(compiled, Component.text(name));
+    }
+
+    // swaps each marker for the name, only copying the parts of the tree that contain one
+    private static Component fill(Component component, Component name) {
+        if (component instanceof TextComponent text && text.content().equals(MARKER) && text.children().isEmpty())
+            return name;
+        List<Component> children = component.children();
+        List<Component> filled = null;
+        for (int i = 0; i < children.size(); i++) {
+            Component child = children.get(i);
+            Component replaced = fill(child, name);
+            if (replaced != child && filled == null) {
+                filled = new ArrayList<>(children.subList(0, i));
+            }
+            if (filled != null) {
+                filled.add(replaced);
+            }
+        }
+        return filled == null ? component : component.children(filled);
+    }
+}
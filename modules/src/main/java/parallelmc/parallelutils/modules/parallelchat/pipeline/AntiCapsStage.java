@@ -0,0 +1,43 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+/**
+ * Lowercases messages that are mostly capital letters
+ */
+public class AntiCapsStage implements ChatStage {
+
+    private final int minLength;
+    private final int percentage;
+
+    public AntiCapsStage(int minLength, int percentage) {
+        this.minLength = minLength;
+        this.percentage = percentage;
+    }
+
+    @Override
+    public String name() {
+        return "anti-caps";
+    }
+
+    @Override
+    public String bypassPermission() {
+        return "parallelutils.bypass.anticaps";
+    }
+
+    @Override
+    public boolean process(ChatContext context) {
+        String text = context.getText();
+        if (text.length() < minLength)
+            return true;
+        int caps = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z')
+                caps++;
+        }
+        if (((double)caps / text.length()) * 100D >= percentage) {
+            // mentions and emojis are already their own tokens, so only the words themselves are changed
+            context.mapText(String::toLowerCase);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.bukkit.entity.Player;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+import parallelmc.parallelutils.modules.parallelchat.filter.WordFilter;
+
+import java.util.function.Supplier;
+
+/**
+ * Blocks messages containing a banned word and tells staff what was said
+ */
+public class BannedWordStage implements ChatStage {
+
+    private final Supplier<WordFilter> filter;
+
+    /**
+     * @param filter Gets the current word filter, which is replaced whenever the banned word lists change
+     */
+    public BannedWordStage(Supplier<WordFilter> filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public String name() {
+        return "banned-words";
+    }
+
+    @Override
+    public String bypassPermission() {
+        return "parallelutils.bypass.antislur";
+    }
+
+    @Override
+    public boolean process(ChatContext context) {
+        String match = filter.get().findBanned(context.getText());
+        if (match == null)
+            return true;
+        Player player = context.getPlayer();
+        context.cancel();
+        ParallelChat.sendParallelMessageTo(player, "Please do not say that in chat.");
+        Component slurMsg = MiniMessage.miniMessage().deserialize("<gray>").append(player.displayName())
+                .append(Component.text(" [Anti-Swear]: "))
+                .append(context.getMessage())
+                .append(Component.text(" | Match: " + match));
+        ParallelChat.get().getAntiSlurAudience().sendMessage(slurMsg);
+        return false;
+    }
+}
@@ -0,0 +1,46 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import org.bukkit.entity.Player;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+
+import java.util.UUID;
+
+/**
+ * Sends messages from players who are talking in staff chat, team chat, lore chat, or a chatroom to that channel
+ * instead of public chat
+ */
+public class ChatChannelStage implements ChatStage {
+
+    @Override
+    public String name() {
+        return "channels";
+    }
+
+    @Override
+    public boolean process(ChatContext context) {
+        Player player = context.getPlayer();
+        UUID uuid = player.getUniqueId();
+        ParallelChat chat = ParallelChat.get();
+        if (chat.getStaffChat().contains(uuid)) {
+            context.cancel();
+            ParallelChat.sendMessageToStaffChat(player, context.getMessage());
+            return false;
+        }
+        if (chat.getTeamChat().contains(uuid)) {
+            context.cancel();
+            ParallelChat.sendMessageToTeamChat(player, context.getMessage());
+            return false;
+        }
+        if (chat.getLoreChat().contains(uuid)) {
+            context.cancel();
+            ParallelChat.sendMessageToLoreChat(player, context.getMessage());
+            return false;
+        }
+        if (chat.chatRoomManager.hasChatroomActive(player)) {
+            context.cancel();
+            chat.chatRoomManager.getPlayerChatRoom(player).sendMessage(player, context.getMessage());
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,194 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A chat message on its way through the {@link ChatPipeline}.
+ * The message is kept as a list of tokens so stages only ever look at text that no earlier stage has claimed,
+ * and it is only turned into a component when something needs one
+ */
+public class ChatContext {
+
+    private final Player player;
+    private final ArrayList<ChatToken> tokens = new ArrayList<>();
+    private final ArrayList<Player> mentioned = new ArrayList<>();
+
+    private Component message = null;
+    private boolean cancelled = false;
+
+    /**
+     * @param player The player who sent the message
+     * @param text The message as legacy ampersand text
+     */
+    public ChatContext(Player player, String text) {
+        this.player = player;
+        tokens.add(ChatToken.text(text));
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public List<ChatToken> getTokens() {
+        return Collections.unmodifiableList(tokens);
+    }
+
+    /**
+     * @return The message as the player typed it, after any changes made to its text
+     */
+    public String getText() {
+        if (tokens.size() == 1) {
+            return tokens.get(0).text();
+        }
+        StringBuilder sb = new StringBuilder();
+        for (ChatToken token : tokens) {
+            sb.append(token.text());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The message as it should appear in chat
+     */
+    public Component getMessage() {
+        if (message == null) {
+            if (tokens.size() == 1) {
+                message = tokens.get(0).toComponent();
+            }
+            else {
+                // colors and formats typed before a mention, emoji or item carry on in the text after it
+                TextComponent.Builder builder = Component.text();
+                String style = "";
+                for (ChatToken token : tokens) {
+                    if (token.type() == ChatToken.Type.TEXT) {
+                        builder.append(token.toComponent(style));
+                        style = ChatToken.styleAfter(style, token.text());
+                    }
+                    else {
+                        builder.append(token.toComponent());
+                    }
+                }
+                message = builder.build();
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Changes the text of every text token
+     * @param change The change to make
+     */
+    public void mapText(UnaryOperator<String> change) {
+        for (int i = 0; i < tokens.size(); i++) {
+            ChatToken token = tokens.get(i);
+            if (token.type() == ChatToken.Type.TEXT) {
+                tokens.set(i, ChatToken.text(change.apply(token.text())));
+            }
+        }
+        message = null;
+    }
+
+    /**
+     * Splits the text tokens around every match of a pattern, replacing each match with a new token
+     * @param pattern The pattern to look for
+     * @param replace Makes the token for a match, or returns null to leave the match as text
+     * @param once True to stop after the first replacement
+     * @return How many matches were replaced
+     */
+    public int splitText(Pattern pattern, Function<MatchResult, ChatToken> replace, boolean once) {
+        int replaced = 0;
+        ArrayList<ChatToken> out = new ArrayList<>(tokens.size() + 2);
+        for (ChatToken token : tokens) {
+            if (token.type() != ChatToken.Type.TEXT || (once && replaced > 0)) {
+                out.add(token);
+                continue;
+            }
+            String text = token.text();
+            Matcher matcher = pattern.matcher(text);
+            int last = 0;
+            while (matcher.find()) {
+                ChatToken r = replace.apply(matcher);
+                if (r == null) continue;
+                if (matcher.start() > last) {
+                    out.add(ChatToken.text(text.substring(last, matcher.start())));
+                }
+                out.add(r);
+                last = matcher.end();
+                replaced++;
+                if (once) break;
+            }
+            if (last == 0) {
+                out.add(token);
+            }
+            else if (last < text.length()) {
+                out.add(ChatToken.text(text.substring(last)));
+            }
+        }
+        if (replaced > 0) {
+            tokens.clear();
+            tokens.addAll(out);
+            message = null;
+        }
+        return replaced;
+    }
+
+    /**
+     * Splits every text token with a tokenizer that finds all of its tokens in one pass
+     * @param tokenizer Splits the text of a token into new tokens, or returns null to leave it alone
+     * @return True if any token was split
+     */
+    public boolean splitText(Function<String, List<ChatToken>> tokenizer) {
+        ArrayList<ChatToken> out = null;
+        for (int i = 0; i < tokens.size(); i++) {
+            ChatToken token = tokens.get(i);
+            List<ChatToken> split = token.type() == ChatToken.Type.TEXT ? tokenizer.apply(token.text()) : null;
+            if (split != null && out == null) {
+                out = new ArrayList<>(tokens.subList(0, i));
+            }
+            if (out != null) {
+                if (split != null) {
+                    out.addAll(split);
+                }
+                else {
+                    out.add(token);
+                }
+            }
+        }
+        if (out == null)
+            return false;
+        tokens.clear();
+        tokens.addAll(out);
+        message = null;
+        return true;
+    }
+
+    public List<Player> getMentioned() {
+        return mentioned;
+    }
+
+    public void addMentioned(Player player) {
+        mentioned.add(player);
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Stops the message from being sent to public chat
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+}
@@ -0,0 +1,24 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+import parallelmc.parallelutils.modules.parallelchat.logging.ChatLogAppender;
+
+/**
+ * Writes every message to the chat log, no matter what happens to it afterwards
+ */
+public class ChatLogStage implements ChatStage {
+
+    @Override
+    public String name() {
+        return "log";
+    }
+
+    @Override
+    public boolean process(ChatContext context) {
+        ChatLogAppender log = ParallelChat.get().getChatLog();
+        if (log != null) {
+            log.append(context.getPlayer().getName(), context.getText());
+        }
+        return true;
+    }
+}
@@ -0,0 +1,151 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * The ordered list of stages every public chat message goes through.
+ * The pipeline is built once from the config, and keeps a running count and total time for each stage
+ */
+public class ChatPipeline {
+
+    /**
+     * How often a stage has run and how long it took
+     * @param name The name of the stage
+     * @param calls How many messages the stage has processed
+     * @param skipped How many messages skipped the stage by permission
+     * @param stopped How many messages the stage stopped
+     * @param totalNanos The total time spent in the stage
+     */
+    public record StageTiming(String name, long calls, long skipped, long stopped, long totalNanos) {
+        public long averageNanos() {
+            return calls == 0 ? 0 : totalNanos / calls;
+        }
+    }
+
+    private final ChatStage[] stages;
+    private final LongAdder[] calls;
+    private final LongAdder[] skipped;
+    private final LongAdder[] stopped;
+    private final LongAdder[] nanos;
+
+    public ChatPipeline(List<ChatStage> stages) {
+        this.stages = stages.toArray(new ChatStage[0]);
+        this.calls = new LongAdder[this.stages.length];
+        this.skipped = new LongAdder[this.stages.length];
+        this.stopped = new LongAdder[this.stages.length];
+        this.nanos = new LongAdder[this.stages.length];
+        for (int i = 0; i < this.stages.length; i++) {
+            calls[i] = new LongAdder();
+            skipped[i] = new LongAdder();
+            stopped[i] = new LongAdder();
+            nanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Builds the standard chat pipeline, leaving out any stage listed in chat-pipeline.disabled-stages
+     * @param config The plugin config
+     * @return The new pipeline
+     */
+    public static ChatPipeline fromConfig(FileConfiguration config) {
+        HashSet<String> disabled = new HashSet<>(config.getStringList("chat-pipeline.disabled-stages"));
+
+        List<ChatStage> all = new ArrayList<>();
+        // spam is dropped before anything else has been done with it
+        all.add(new RateLimitStage());
+        all.add(new DuplicateStage());
+        all.addAll(formattingStages());
+        all.add(new ChatLogStage());
+        // mentions and emojis are found together in one pass, but can still be turned off separately
+        if (!disabled.contains("mentions") || !disabled.contains("emojis")) {
+            all.add(new MentionEmojiStage(
+                    disabled.contains("mentions") ? null : () -> ParallelChat.get().emojiManager.getNameTrie(),
+                    disabled.contains("emojis") ? null : () -> ParallelChat.get().emojiManager.getEmojiTrie()));
+        }
+        all.add(new ChatChannelStage());
+        all.add(new MuteChatStage());
+        all.add(new BannedWordStage(() -> ParallelChat.get().getWordFilter()));
+        if (config.getBoolean("anti-caps.enabled", false)) {
+            int minLength = config.getInt("anti-caps.min-message-length", -1);
+            int percentage = config.getInt("anti-caps.match-percent", -1);
+            all.add(new AntiCapsStage(minLength, percentage));
+            ParallelUtils.log(Level.INFO, "ParallelChat: Enabling Anti-Caps. (Msg Length: " + minLength + ", Match %: " + percentage + ")");
+        }
+        all.add(new ItemStage());
+
+        List<ChatStage> stages = all.stream().filter(x -> !disabled.contains(x.name())).toList();
+        if (!disabled.isEmpty()) {
+            ParallelUtils.log(Level.INFO, "ParallelChat: Disabled chat stages " + String.join(", ", disabled));
+        }
+        return new ChatPipeline(stages);
+    }
+
+    /**
+     * @return The stages that strip each kind of formatting a player doesn't have permission for, in the order they run
+     */
+    public static List<ChatStage> formattingStages() {
+        return List.of(
+                new StripFormattingStage("colors", "&[0-9a-f]", "parallelutils.chat.colors"),
+                new StripFormattingStage("hex", "&#(.{6})", "parallelutils.chat.hex"),
+                new StripFormattingStage("formats", "&[l-or]", "parallelutils.chat.formats"),
+                new StripFormattingStage("magic", "&k", "parallelutils.chat.magic"));
+    }
+
+    /**
+     * Runs a message through every stage, stopping early if a stage says to
+     * @param context The message
+     * @return True if the message made it through every stage
+     */
+    public boolean run(ChatContext context) {
+        Player player = context.getPlayer();
+        for (int i = 0; i < stages.length; i++) {
+            ChatStage stage = stages[i];
+            String bypass = stage.bypassPermission();
+            if (bypass != null && player.hasPermission(bypass)) {
+                skipped[i].increment();
+                continue;
+            }
+            long start = System.nanoTime();
+            boolean next = stage.process(context);
+            nanos[i].add(System.nanoTime() - start);
+            calls[i].increment();
+            if (!next) {
+                stopped[i].increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The timings of every stage, in the order they run
+     */
+    public List<StageTiming> getTimings() {
+        List<StageTiming> out = new ArrayList<>(stages.length);
+        for (int i = 0; i < stages.length; i++) {
+            out.add(new StageTiming(stages[i].name(), calls[i].sum(), skipped[i].sum(), stopped[i].sum(), nanos[i].sum()));
+        }
+        return out;
+    }
+
+    /**
+     * Clears the timings of every stage
+     */
+    public void resetTimings() {
+        for (int i = 0; i < stages.length; i++) {
+            calls[i].reset();
+            skipped[i].reset();
+            stopped[i].reset();
+            nanos[i].reset();
+        }
+    }
+}
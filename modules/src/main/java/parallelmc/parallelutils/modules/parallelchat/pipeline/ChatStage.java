@@ -0,0 +1,30 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import javax.annotation.Nullable;
+
+/**
+ * A single step of the {@link ChatPipeline}. Stages are built once when the config is loaded and are called from
+ * the async chat thread, so they must not keep any per-message state of their own
+ */
+public interface ChatStage {
+
+    /**
+     * @return The name used to turn the stage off in the config and to show its timings
+     */
+    String name();
+
+    /**
+     * @return A permission that lets a player skip this stage, or null if nobody skips it
+     */
+    @Nullable
+    default String bypassPermission() {
+        return null;
+    }
+
+    /**
+     * Runs the stage on a message
+     * @param context The message
+     * @return False to stop the pipeline here, for example because the message was cancelled or sent somewhere else
+     */
+    boolean process(ChatContext context);
+}
@@ -0,0 +1,100 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import parallelmc.parallelutils.modules.parallelchat.emojis.Emoji;
+
+/**
+ * One piece of a chat message. Text tokens are still legacy text and can be split further by later stages,
+ * every other token is final
+ * @param type What kind of token this is
+ * @param text The text the token was made from, as the player typed it
+ * @param value The player, emoji, or item the token stands for. Null for text tokens
+ */
+public record ChatToken(Type type, String text, Object value) {
+
+    public enum Type {
+        TEXT,
+        MENTION,
+        EMOJI,
+        ITEM
+    }
+
+    private static final LegacyComponentSerializer LEGACY = LegacyComponentSerializer.legacyAmpersand();
+
+    public static ChatToken text(String text) {
+        return new ChatToken(Type.TEXT, text, null);
+    }
+
+    public static ChatToken mention(String text, Player player) {
+        return new ChatToken(Type.MENTION, text, player);
+    }
+
+    public static ChatToken emoji(Emoji emoji) {
+        return new ChatToken(Type.EMOJI, emoji.id(), emoji);
+    }
+
+    public static ChatToken item(String text, ItemStack item) {
+        return new ChatToken(Type.ITEM, text, item);
+    }
+
+    /**
+     * @return The token as it should appear in chat
+     */
+    public Component toComponent() {
+        return toComponent("");
+    }
+
+    /**
+     * @param style The legacy codes left in effect by the text before this token, which a text token starts with
+     * @return The token as it should appear in chat
+     */
+    public Component toComponent(String style) {
+        return switch (type) {
+            case TEXT -> LEGACY.deserialize(style.isEmpty() ? text : style + text);
+            case MENTION -> Component.text(text, NamedTextColor.YELLOW);
+            case EMOJI -> {
+                Emoji emoji = (Emoji)value;
+                yield Component.text(emoji.replacement()).hoverEvent(Component.text(emoji.id()).asHoverEvent());
+            }
+            case ITEM -> {
+                ItemStack item = (ItemStack)value;
+                yield Component.text()
+                        .append(item.displayName().hoverEvent(item.asHoverEvent()))
+                        .append(Component.text(" x" + item.getAmount(), item.displayName().color()))
+                        .build();
+            }
+        };
+    }
+
+    /**
+     * Finds the legacy codes still in effect at the end of some text. A color clears the formats before it,
+     * and a reset clears everything
+     * @param style The codes in effect at the start of the text
+     * @param text The text
+     * @return The codes in effect at the end of the text
+     */
+    public static String styleAfter(String style, String text) {
+        int i = text.indexOf('&');
+        if (i < 0)
+            return style;
+        StringBuilder sb = new StringBuilder(style);
+        for (; i >= 0 && i < text.length() - 1; i = text.indexOf('&', i + 1)) {
+            char code = Character.toLowerCase(text.charAt(i + 1));
+            if ((code >= '0' && code <= '9') || (code >= 'a' && code <= 'f')) {
+                sb.setLength(0);
+                sb.append('&').append(code);
+            }
+            else if (code >= 'k' && code <= 'o') {
+                sb.append('&').append(code);
+            }
+            else if (code == 'r') {
+                sb.setLength(0);
+            }
+        }
+        return sb.toString();
+    }
+}
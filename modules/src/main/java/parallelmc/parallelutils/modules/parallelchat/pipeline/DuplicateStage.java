@@ -0,0 +1,30 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import org.bukkit.entity.Player;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+
+/**
+ * Drops messages that a player has just sent, even if the case, colors or punctuation were changed
+ */
+public class DuplicateStage implements ChatStage {
+
+    @Override
+    public String name() {
+        return "duplicates";
+    }
+
+    @Override
+    public String bypassPermission() {
+        return "parallelutils.bypass.spam";
+    }
+
+    @Override
+    public boolean process(ChatContext context) {
+        Player player = context.getPlayer();
+        if (!ParallelChat.get().getChatThrottle().isRepeat(player.getUniqueId(), context.getText()))
+            return true;
+        ParallelChat.sendParallelMessageTo(player, "Please don't repeat the same message.");
+        context.cancel();
+        return false;
+    }
+}
@@ -0,0 +1,27 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.regex.Pattern;
+
+/**
+ * Replaces the first [item] in a message with the item in the player's main hand
+ */
+public class ItemStage implements ChatStage {
+
+    private static final Pattern ITEM = Pattern.compile("\\[item]");
+
+    @Override
+    public String name() {
+        return "item";
+    }
+
+    @Override
+    public boolean process(ChatContext context) {
+        ItemStack item = context.getPlayer().getInventory().getItemInMainHand();
+        if (item.getType().isAir())
+            return true;
+        context.splitText(ITEM, match -> ChatToken.item(match.group(), item.clone()), true);
+        return true;
+    }
+}
@@ -0,0 +1,102 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import org.bukkit.Sound;
+import org.bukkit.entity.Player;
+import parallelmc.parallelutils.modules.parallelchat.emojis.Emoji;
+import parallelmc.parallelutils.modules.parallelchat.emojis.EmojiManager;
+import parallelmc.parallelutils.modules.parallelchat.emojis.TokenTrie;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Finds @mentions of online players and :emoji: ids in a single pass over the message, using the name and emoji
+ * tries kept by the {@link EmojiManager}. Mentioned players are highlighted and pinged, and emojis are only replaced
+ * for players with permission to use them
+ */
+public class MentionEmojiStage implements ChatStage {
+
+    private final Supplier<TokenTrie<Player>> names;
+    private final Supplier<TokenTrie<Emoji>> emojis;
+
+    /**
+     * The tries are asked for on every message, since they are replaced whenever players join or emojis are reloaded
+     * @param names Gets the current trie of online player names, or null to not look for mentions
+     * @param emojis Gets the current trie of emoji ids, or null to not look for emojis
+     */
+    public MentionEmojiStage(@Nullable Supplier<TokenTrie<Player>> names, @Nullable Supplier<TokenTrie<Emoji>> emojis) {
+        this.names = names;
+        this.emojis = emojis;
+    }
+
+    @Override
+    public String name() {
+        return "mentions-emojis";
+    }
+
+    @Override
+    public boolean process(ChatContext context) {
+        // read once so the whole message is checked against the same tries
+        TokenTrie<Player> nameTrie = names == null ? null : names.get();
+        TokenTrie<Emoji> emojiTrie = emojis == null ? null : emojis.get();
+        context.splitText(text -> tokenize(context, text, nameTrie, emojiTrie));
+        return true;
+    }
+
+    private static List<ChatToken> tokenize(ChatContext context, String text, TokenTrie<Player> names, TokenTrie<Emoji> emojiIds) {
+        List<ChatToken> out = null;
+        int last = 0;
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            ChatToken token = null;
+            int length = 0;
+            if (c == '@' && names != null) {
+                // a mention covers the whole name-like word after the @, like Bukkit.getPlayer it may be the start of a name
+                int end = i + 1;
+                while (end < text.length() && isNameChar(text.charAt(end))) {
+                    end++;
+                }
+                TokenTrie.Match<Player> match = names.completeWord(text, i + 1, end);
+                if (match != null && match.value().isOnline()) {
+                    Player mentioned = match.value();
+                    length = end - i;
+                    token = ChatToken.mention(text.substring(i, end), mentioned);
+                    mentioned.playSound(mentioned.getLocation(), Sound.BLOCK_NOTE_BLOCK_PLING, 1f, 1f);
+                    context.addMentioned(mentioned);
+                }
+            }
+            else if (c == ':' && emojiIds != null) {
+                TokenTrie.Match<Emoji> match = emojiIds.longestMatch(text, i);
+                if (match != null && context.getPlayer().hasPermission("parallelutils.emoji." + match.value().name())) {
+                    length = match.length();
+                    token = ChatToken.emoji(match.value());
+                }
+            }
+
+            if (token == null) {
+                i++;
+                continue;
+            }
+            if (out == null) {
+                out = new ArrayList<>();
+            }
+            if (i > last) {
+                out.add(ChatToken.text(text.substring(last, i)));
+            }
+            out.add(token);
+            i += length;
+            last = i;
+        }
+        if (out != null && last < text.length()) {
+            out.add(ChatToken.text(text.substring(last)));
+        }
+        return out;
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
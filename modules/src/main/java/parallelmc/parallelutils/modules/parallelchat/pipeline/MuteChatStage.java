@@ -0,0 +1,28 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+
+/**
+ * Stops public chat while it is muted
+ */
+public class MuteChatStage implements ChatStage {
+
+    @Override
+    public String name() {
+        return "mute";
+    }
+
+    @Override
+    public String bypassPermission() {
+        return "parallelutils.bypass.mutechat";
+    }
+
+    @Override
+    public boolean process(ChatContext context) {
+        if (!ParallelChat.get().isChatDisabled)
+            return true;
+        ParallelChat.sendParallelMessageTo(context.getPlayer(), "Nobody hears you! The chat is currently muted.");
+        context.cancel();
+        return false;
+    }
+}
@@ -0,0 +1,31 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import org.bukkit.entity.Player;
+import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
+
+/**
+ * Drops messages from players who are chatting faster than their group's rate limit allows
+ */
+public class RateLimitStage implements ChatStage {
+
+    @Override
+    public String name() {
+        return "rate-limit";
+    }
+
+    @Override
+    public String bypassPermission() {
+        return "parallelutils.bypass.spam";
+    }
+
+    @Override
+    public boolean process(ChatContext context) {
+        Player player = context.getPlayer();
+        String group = ParallelChat.get().getChatPrefix(player).group();
+        if (ParallelChat.get().getChatThrottle().tryAcquire(player.getUniqueId(), group))
+            return true;
+        ParallelChat.sendParallelMessageTo(player, "You are sending messages too quickly!");
+        context.cancel();
+        return false;
+    }
+}
@@ -0,0 +1,35 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import java.util.regex.Pattern;
+
+/**
+ * Removes a kind of legacy formatting code from messages sent by players without permission to use it
+ */
+public class StripFormattingStage implements ChatStage {
+
+    private final String name;
+    private final Pattern pattern;
+    private final String permission;
+
+    public StripFormattingStage(String name, String regex, String permission) {
+        this.name = name;
+        this.pattern = Pattern.compile(regex);
+        this.permission = permission;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String bypassPermission() {
+        return permission;
+    }
+
+    @Override
+    public boolean process(ChatContext context) {
+        context.mapText(x -> pattern.matcher(x).replaceAll(""));
+        return true;
+    }
+}
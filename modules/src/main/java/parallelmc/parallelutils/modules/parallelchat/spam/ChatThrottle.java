@@ -0,0 +1,177 @@
+package parallelmc.parallelutils.modules.parallelchat.spam;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player chat throttling. Each player has a token bucket that refills over time, sized by their permission group,
+ * and remembers hashes of their last few messages so repeats of the same message can be dropped.
+ *
+ * Checked from the async chat thread before any formatting, so a burst of spam costs as little as possible
+ */
+public class ChatThrottle {
+
+    /**
+     * How fast a group is allowed to chat
+     * @param burst How many messages can be sent at once before throttling starts
+     * @param perSecond How many messages are given back every second
+     */
+    public record RateLimit(double burst, double perSecond) { }
+
+    private static final RateLimit DEFAULT_LIMIT = new RateLimit(5, 1);
+
+    private final RateLimit defaultLimit;
+    private final Map<String, RateLimit> groupLimits;
+    private final int history;
+    private final long repeatWindowNanos;
+
+    private final ConcurrentHashMap<UUID, PlayerState> players = new ConcurrentHashMap<>();
+
+    // everything is only touched while holding the state's lock
+    private static class PlayerState {
+        double tokens;
+        long lastRefill;
+        final long[] hashes;
+        final long[] sentAt;
+        int next = 0;
+
+        PlayerState(double tokens, long now, int history) {
+            this.tokens = tokens;
+            this.lastRefill = now;
+            this.hashes = new long[history];
+            this.sentAt = new long[history];
+        }
+    }
+
+    /**
+     * @param defaultLimit The limit for players whose group has no limit of its own
+     * @param groupLimits Limits for individual permission groups
+     * @param history How many of a player's last messages are checked for repeats
+     * @param repeatWindowMillis How long a message counts as recent, or 0 to only go by history
+     */
+    public ChatThrottle(RateLimit defaultLimit, Map<String, RateLimit> groupLimits, int history, long repeatWindowMillis) {
+        this.defaultLimit = defaultLimit;
+        this.groupLimits = Map.copyOf(groupLimits);
+        this.history = Math.max(0, history);
+        this.repeatWindowNanos = repeatWindowMillis * 1_000_000L;
+    }
+
+    /**
+     * Reads the throttle from the chat-throttle section of the config
+     * @param section The section, or null to use the defaults
+     * @return The new throttle
+     */
+    public static ChatThrottle fromConfig(@Nullable ConfigurationSection section) {
+        if (section == null)
+            return new ChatThrottle(DEFAULT_LIMIT, Map.of(), 3, 30000);
+        RateLimit defaultLimit = readLimit(section.getConfigurationSection("default"), DEFAULT_LIMIT);
+        HashMap<String, RateLimit> groups = new HashMap<>();
+        ConfigurationSection groupSection = section.getConfigurationSection("groups");
+        if (groupSection != null) {
+            for (String group : groupSection.getKeys(false)) {
+                groups.put(group, readLimit(groupSection.getConfigurationSection(group), defaultLimit));
+            }
+        }
+        return new ChatThrottle(defaultLimit, groups, section.getInt("duplicate-history", 3),
+                section.getLong("duplicate-window", 30) * 1000L);
+    }
+
+    private static RateLimit readLimit(@Nullable ConfigurationSection section, RateLimit fallback) {
+        if (section == null)
+            return fallback;
+        return new RateLimit(section.getDouble("burst", fallback.burst()), section.getDouble("per-second", fallback.perSecond()));
+    }
+
+    /**
+     * Takes a token from a player's bucket
+     * @param uuid The player's UUID
+     * @param group The player's permission group, used to pick their limit
+     * @return True if the player is allowed to send a message right now
+     */
+    public boolean tryAcquire(UUID uuid, @Nullable String group) {
+        RateLimit limit = group == null ? defaultLimit : groupLimits.getOrDefault(group, defaultLimit);
+        long now = System.nanoTime();
+        PlayerState state = players.computeIfAbsent(uuid, k -> new PlayerState(limit.burst(), now, history));
+        synchronized (state) {
+            // the bucket is refilled lazily, so idle players cost nothing
+            double refill = (now - state.lastRefill) / 1_000_000_000D * limit.perSecond();
+            state.tokens = Math.min(limit.burst(), state.tokens + refill);
+            state.lastRefill = now;
+            if (state.tokens < 1)
+                return false;
+            state.tokens--;
+            return true;
+        }
+    }
+
+    /**
+     * Checks a message against the player's last few messages, and remembers it if it is new
+     * @param uuid The player's UUID
+     * @param text The message
+     * @return True if the player recently sent the same message
+     */
+    public boolean isRepeat(UUID uuid, String text) {
+        if (history == 0)
+            return false;
+        long hash = hash(text);
+        // a message with nothing left after normalizing, such as "...", can't be compared
+        if (hash == 0)
+            return false;
+        long now = System.nanoTime();
+        PlayerState state = players.computeIfAbsent(uuid, k -> new PlayerState(defaultLimit.burst(), now, history));
+        synchronized (state) {
+            for (int i = 0; i < history; i++) {
+                if (state.hashes[i] == hash && (repeatWindowNanos <= 0 || now - state.sentAt[i] < repeatWindowNanos))
+                    return true;
+            }
+            state.hashes[state.next] = hash;
+            state.sentAt[state.next] = now;
+            state.next = (state.next + 1) % history;
+            return false;
+        }
+    }
+
+    /**
+     * Forgets a player, for when they leave
+     * @param uuid The player's UUID
+     */
+    public void remove(UUID uuid) {
+        players.remove(uuid);
+    }
+
+    /**
+     * Hashes the normalized form of a message, so changing the case, the colors, the punctuation or how long a letter
+     * is held down doesn't make it a different message
+     * @param text The message
+     * @return The hash, or 0 if there was nothing to hash
+     */
+    static long hash(String text) {
+        // 64 bit FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        boolean empty = true;
+        char last = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            // legacy color codes, including hex colors
+            if ((c == '&' || c == '§') && i + 1 < text.length()) {
+                i += text.charAt(i + 1) == '#' && i + 7 < text.length() ? 7 : 1;
+                continue;
+            }
+            if (!Character.isLetterOrDigit(c))
+                continue;
+            c = Character.toLowerCase(c);
+            if (c == last)
+                continue;
+            last = c;
+            empty = false;
+            hash ^= c;
+            hash *= 0x100000001b3L;
+        }
+        return empty ? 0 : hash;
+    }
+}
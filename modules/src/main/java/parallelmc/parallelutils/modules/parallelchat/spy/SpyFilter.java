@@ -0,0 +1,47 @@
+package parallelmc.parallelutils.modules.parallelchat.spy;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Narrows down what a spy sees. Each kind of filter that is empty lets everything through, so a spy without any
+ * filters sees everything, the same as before filters existed
+ */
+public class SpyFilter {
+
+    // players whose messages, chatroom messages, and commands are shown
+    private final Set<UUID> players = ConcurrentHashMap.newKeySet();
+    // lowercase chatroom names
+    private final Set<String> chatrooms = ConcurrentHashMap.newKeySet();
+    // lowercase command labels without the slash
+    private final Set<String> commands = ConcurrentHashMap.newKeySet();
+
+    public Set<UUID> getPlayers() {
+        return players;
+    }
+
+    public Set<String> getChatrooms() {
+        return chatrooms;
+    }
+
+    public Set<String> getCommands() {
+        return commands;
+    }
+
+    public boolean isEmpty() {
+        return players.isEmpty() && chatrooms.isEmpty() && commands.isEmpty();
+    }
+
+    boolean allowsPlayer(UUID uuid) {
+        return players.isEmpty() || players.contains(uuid);
+    }
+
+    boolean allowsChatroom(String name) {
+        return chatrooms.isEmpty() || chatrooms.contains(name.toLowerCase());
+    }
+
+    boolean allowsCommand(String label) {
+        return commands.isEmpty() || commands.contains(label);
+    }
+}
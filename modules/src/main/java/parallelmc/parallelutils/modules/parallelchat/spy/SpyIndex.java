@@ -0,0 +1,129 @@
+package parallelmc.parallelutils.modules.parallelchat.spy;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.Nullable;
+import parallelmc.parallelutils.modules.parallelchat.SocialSpyOptions;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The online players with each kind of spy turned on, so a spy message only goes through the spies that are actually
+ * online instead of every saved spy setting. Players are added when they join or turn a spy on, and removed when they
+ * leave or turn it off.
+ *
+ * Chatroom messages can come from the async chat thread, so every set here is concurrent
+ */
+public class SpyIndex {
+
+    private final Set<Player> socialSpies = ConcurrentHashMap.newKeySet();
+    private final Set<Player> commandSpies = ConcurrentHashMap.newKeySet();
+    private final Set<Player> chatRoomSpies = ConcurrentHashMap.newKeySet();
+
+    // filters are only kept for the current session
+    private final ConcurrentHashMap<UUID, SpyFilter> filters = new ConcurrentHashMap<>();
+
+    /**
+     * Puts an online player into the sets matching their spy options
+     * @param player The player
+     * @param options The player's spy options, or null if they have none
+     */
+    public void update(Player player, @Nullable SocialSpyOptions options) {
+        set(socialSpies, player, options != null && options.isSocialSpy());
+        set(commandSpies, player, options != null && options.isCmdSpy());
+        set(chatRoomSpies, player, options != null && options.isChatRoomSpy());
+    }
+
+    /**
+     * Removes a player from every set, such as when they leave
+     * @param player The player
+     */
+    public void remove(Player player) {
+        socialSpies.remove(player);
+        commandSpies.remove(player);
+        chatRoomSpies.remove(player);
+        filters.remove(player.getUniqueId());
+    }
+
+    /**
+     * @param uuid A spy's UUID
+     * @return The spy's filter, created empty if they don't have one
+     */
+    public SpyFilter getFilter(UUID uuid) {
+        return filters.computeIfAbsent(uuid, k -> new SpyFilter());
+    }
+
+    /**
+     * Removes all of a spy's filters
+     * @param uuid The spy's UUID
+     */
+    public void clearFilter(UUID uuid) {
+        filters.remove(uuid);
+    }
+
+    /**
+     * Sends a private message to social spies
+     * @param sender The player who sent the message
+     * @param recipient The player who received it
+     * @param message The spy message, built once for every spy
+     */
+    public void sendSocialSpy(Player sender, Player recipient, Component message) {
+        UUID senderId = sender.getUniqueId();
+        UUID recipientId = recipient.getUniqueId();
+        for (Player spy : socialSpies) {
+            if (spy.getUniqueId().equals(senderId))
+                continue;
+            SpyFilter filter = filters.get(spy.getUniqueId());
+            if (filter == null || filter.allowsPlayer(senderId) || filter.allowsPlayer(recipientId)) {
+                spy.sendMessage(message);
+            }
+        }
+    }
+
+    /**
+     * Sends a command to command spies
+     * @param sender The player who ran the command
+     * @param label The command's label in lowercase, without the slash
+     * @param message The spy message, built once for every spy
+     */
+    public void sendCommandSpy(Player sender, String label, Component message) {
+        UUID senderId = sender.getUniqueId();
+        for (Player spy : commandSpies) {
+            if (spy.getUniqueId().equals(senderId))
+                continue;
+            SpyFilter filter = filters.get(spy.getUniqueId());
+            if (filter == null || (filter.allowsPlayer(senderId) && filter.allowsCommand(label))) {
+                spy.sendMessage(message);
+            }
+        }
+    }
+
+    /**
+     * Sends a chatroom message to chatroom spies
+     * @param sender The player who sent the message, or null for chatroom announcements
+     * @param chatroom The name of the chatroom
+     * @param message The spy message, built once for every spy
+     */
+    public void sendChatRoomSpy(@Nullable Player sender, String chatroom, Component message) {
+        UUID senderId = sender == null ? null : sender.getUniqueId();
+        for (Player spy : chatRoomSpies) {
+            if (spy.getUniqueId().equals(senderId))
+                continue;
+            SpyFilter filter = filters.get(spy.getUniqueId());
+            if (filter == null || ((senderId == null || filter.allowsPlayer(senderId)) && filter.allowsChatroom(chatroom))) {
+                spy.sendMessage(message);
+            }
+        }
+    }
+
+    private static void set(Set<Player> spies, Player player, boolean enabled) {
+        if (enabled) {
+            spies.add(player);
+        }
+        else {
+            spies.remove(player);
+        }
+    }
+}
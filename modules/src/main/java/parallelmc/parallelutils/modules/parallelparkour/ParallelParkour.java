@@ -17,6 +17,8 @@ import parallelmc.parallelutils.Constants;
 import parallelmc.parallelutils.ParallelClassLoader;
 import parallelmc.parallelutils.ParallelModule;
 import parallelmc.parallelutils.ParallelUtils;
+import parallelmc.parallelutils.database.SchemaTools;
+import parallelmc.parallelutils.database.WriteBehindStore;
 import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
 import parallelmc.parallelutils.modules.parallelparkour.commands.ParallelCreateCourse;
 import parallelmc.parallelutils.modules.parallelparkour.commands.ParallelDeleteCourse;
@@ -45,6 +47,10 @@ public class ParallelParkour extends ParallelModule {
     private final HashMap<UUID, ParkourLayout> creatingParkour = new HashMap<>();
     private final HashMap<UUID, List<ParkourTime>> leaderboardCache = new HashMap<>();
 
+    private record CourseKey(UUID player, String course) { }
+
+    private WriteBehindStore<CourseKey, Long> leaderboardStore;
+
     private static Path jsonPath;
 
     public ParallelParkour(ParallelClassLoader classLoader, List<String> dependents) { super(classLoader, dependents); }
@@ -77,26 +83,40 @@ public class ParallelParkour extends ParallelModule {
             return;
         }
 
-        try (Connection conn = puPlugin.getDbConn()) {
-            if (conn == null) throw new SQLException("Unable to establish connection!");
-            Statement statement = conn.createStatement();
-            statement.setQueryTimeout(15);
-            statement.execute("""
-                    create table if not exists Leaderboard
-                    (
-                        Id          int          not null auto_increment,
-                        UUID        varchar(36)  not null,
-                        Course      varchar(256) not null,
-                        Time        bigint       not null,
-                        constraint Leaderboard_Id_uindex
-                            unique (Id),
-                        PRIMARY KEY (Id)
-                    );""");
-            conn.commit();
-            statement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        puPlugin.getDbExecutor().run(getName(), conn -> {
+            try (Statement statement = conn.createStatement()) {
+                statement.setQueryTimeout(15);
+                statement.execute("""
+                        create table if not exists Leaderboard
+                        (
+                            Id          int          not null auto_increment,
+                            UUID        varchar(36)  not null,
+                            Course      varchar(256) not null,
+                            Time        bigint       not null,
+                            constraint Leaderboard_Id_uindex
+                                unique (Id),
+                            constraint Leaderboard_UUID_Course_uindex
+                                unique (UUID, Course),
+                            PRIMARY KEY (Id)
+                        );""");
+            }
+            // older tables allowed duplicate rows per course, keep only the best time of each
+            SchemaTools.ensureUniqueKey(conn, "Leaderboard", "Leaderboard_UUID_Course_uindex", "Time ASC", "UUID", "Course");
+        });
+
+        this.leaderboardStore = puPlugin.createWriteBehindStore(getName(), new WriteBehindStore.Mapping<>() {
+            @Override
+            public String upsertSql() {
+                return "INSERT INTO Leaderboard (UUID, Course, Time) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE Time = VALUES(Time)";
+            }
+
+            @Override
+            public void bindUpsert(PreparedStatement statement, CourseKey key, Long value) throws SQLException {
+                statement.setString(1, key.player().toString());
+                statement.setString(2, key.course());
+                statement.setLong(3, value);
+            }
+        });
 
         manager.registerEvents(new OnPlayerInteract(), puPlugin);
         manager.registerEvents(new OnBlockPlace(), puPlugin);
@@ -117,7 +137,8 @@ public class ParallelParkour extends ParallelModule {
 
     @Override
     public void onDisable() {
-        uploadLeaderboardCache();
+        // write any times that haven't been saved yet
+        leaderboardStore.close(puPlugin.getConfig().getLong("sql.write-behind.shutdown-timeout", 15000));
         saveParkourToFile();
     }
 
@@ -132,64 +153,26 @@ public class ParallelParkour extends ParallelModule {
     }
 
     private void cacheLeaderboard() {
-        try (Connection dbConn = puPlugin.getDbConn()) {
-            if (dbConn == null) throw new SQLException("Unable to establish connection!");
-            Statement statement = dbConn.createStatement();
-            statement.setQueryTimeout(60);
-            ResultSet result = statement.executeQuery("SELECT * FROM Leaderboard");
-            while (result.next()) {
-                UUID uuid = UUID.fromString(result.getString("UUID"));
-                ParkourTime time = new ParkourTime(uuid, result.getString("Course"), result.getLong("Time"));
-                if (leaderboardCache.containsKey(uuid)) {
-                    leaderboardCache.get(uuid).add(time);
+        puPlugin.getDbExecutor().supply(getName(), dbConn -> {
+            List<ParkourTime> times = new ArrayList<>();
+            try (Statement statement = dbConn.createStatement()) {
+                statement.setQueryTimeout(60);
+                ResultSet result = statement.executeQuery("SELECT * FROM Leaderboard");
+                while (result.next()) {
+                    UUID uuid = UUID.fromString(result.getString("UUID"));
+                    times.add(new ParkourTime(uuid, result.getString("Course"), result.getLong("Time")));
                 }
-                else {
-                    ArrayList<ParkourTime> ls = new ArrayList<>();
+            }
+            return times;
+        }, times -> {
+            // keep any times set while the leaderboard was loading
+            for (ParkourTime time : times) {
+                List<ParkourTime> ls = leaderboardCache.computeIfAbsent(time.player(), k -> new ArrayList<>());
+                if (ls.stream().noneMatch(x -> x.course().equals(time.course()))) {
                     ls.add(time);
-                    leaderboardCache.put(uuid, ls);
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void uploadLeaderboardCache() {
-        try (Connection dbConn = puPlugin.getDbConn()) {
-            if (dbConn == null) throw new SQLException("Unable to establish connection!");
-            PreparedStatement statement = dbConn.prepareStatement("""
-                    IF EXISTS (SELECT 1 FROM Leaderboard WHERE UUID = ? AND Course = ?) THEN
-                        UPDATE Leaderboard SET Time = ? WHERE UUID = ? AND Course = ?;
-                    ELSE
-                        INSERT INTO Leaderboard (UUID, Course, Time) VALUES (?, ?, ?);
-                    END IF;""");
-            statement.setQueryTimeout(60);
-            leaderboardCache.forEach((u, v) -> {
-                v.forEach((t) -> {
-                    try {
-                        String p = t.player().toString();
-                        String c = t.course();
-                        long l = t.time();
-                        statement.setString(1, p);
-                        statement.setString(2, c);
-                        statement.setLong(3, l);
-                        statement.setString(4, p);
-                        statement.setString(5, c);
-                        statement.setString(6, p);
-                        statement.setString(7, c);
-                        statement.setLong(8, l);
-                        statement.addBatch();
-                    } catch (SQLException e) {
-                        e.printStackTrace();
-                    }
-                });
-            });
-            statement.executeBatch();
-            dbConn.commit();
-            statement.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        }, ex -> ParallelUtils.log(Level.SEVERE, "Failed to load parkour leaderboard: " + ex.getMessage()));
     }
 
     public List<ParkourTime> getTopTimesFor(String course, int amount) {
@@ -231,6 +214,7 @@ public class ParallelParkour extends ParallelModule {
                 .collect(Collectors.toList());
         times.add(new ParkourTime(player.getUniqueId(), pp.getLayout().name(), pp.getFinishTime()));
         leaderboardCache.put(uuid, times);
+        leaderboardStore.markDirty(new CourseKey(uuid, pp.getLayout().name()), pp.getFinishTime());
         List<ParkourTime> leaderboard = getTopTimesFor(pp.getLayout().name(), 1);
         if (leaderboard.size() > 0) {
             ParkourTime best = leaderboard.get(0);
@@ -282,10 +266,12 @@ public class ParallelParkour extends ParallelModule {
 
     public void startParkourFor(Player player, ParkourLayout layout) {
         playersInParkour.put(player.getUniqueId(), new ParkourPlayer(player, layout));
+        setDoNotDisturb(player, true);
     }
 
     public void endParkourFor(Player player) {
         playersInParkour.remove(player.getUniqueId());
+        setDoNotDisturb(player, false);
     }
 
     public void cancelParkourRunFor(Player player) {
@@ -297,6 +283,18 @@ public class ParallelParkour extends ParallelModule {
         }
         pp.cancel(null);
         playersInParkour.remove(uuid);
+        setDoNotDisturb(player, false);
+    }
+
+    // players running a course aren't shown chat, as long as ParallelChat is loaded
+    private void setDoNotDisturb(Player player, boolean inParkour) {
+        ParallelChat chat = ParallelChat.get();
+        if (chat == null || chat.getDoNotDisturb() == null)
+            return;
+        if (inParkour)
+            chat.getDoNotDisturb().startWindow(player, "parkour");
+        else
+            chat.getDoNotDisturb().endWindow(player, "parkour");
     }
 
     public void loadParkourFromFile() {
@@ -24,6 +24,7 @@ import parallelmc.parallelutils.modules.parallelchat.ParallelChat;
 import parallelmc.parallelutils.modules.paralleltowns.commands.*;
 import parallelmc.parallelutils.events.OnMenuInteract;
 import parallelmc.parallelutils.modules.paralleltowns.gui.*;
+import parallelmc.parallelutils.util.ExpiringMap;
 import parallelmc.parallelutils.util.GUIInventory;
 import parallelmc.parallelutils.util.GUIManager;
 
@@ -47,7 +48,9 @@ public class ParallelTowns extends ParallelModule {
 
     private final HashMap<UUID, String> playersInTown = new HashMap<>();
 
-    private final HashMap<UUID, String> pendingInvites = new HashMap<>();
+    private ExpiringMap<UUID, String> pendingInvites;
+
+    private long inviteLifetime;
 
     private static ParallelTowns Instance;
 
@@ -75,6 +78,9 @@ public class ParallelTowns extends ParallelModule {
             return;
         }
 
+        pendingInvites = puPlugin.createExpiringMap();
+        inviteLifetime = puPlugin.getConfig().getLong("towns.invite-lifetime", 30) * 20L;
+
         townCommands = new TownCommands();
         puPlugin.getCommand("town").setExecutor(townCommands);
         townCommands.addCommand("gui", new ParallelTownGUI());
@@ -94,6 +100,7 @@ public class ParallelTowns extends ParallelModule {
 
     @Override
     public void onDisable() {
+        pendingInvites.clear();
         saveTownsToFile();
     }
 
@@ -147,24 +154,30 @@ public class ParallelTowns extends ParallelModule {
 
     public void invitePlayerToTown(Player inviter, Player invitee) {
         Town town = getPlayerTown(inviter);
-        this.pendingInvites.put(invitee.getUniqueId(), town.getName());
+        UUID inviterId = inviter.getUniqueId();
+        this.pendingInvites.put(invitee.getUniqueId(), town.getName(), inviteLifetime, (u, name) -> {
+            Player invited = Bukkit.getPlayer(u);
+            if (invited != null)
+                ParallelChat.sendParallelMessageTo(invited, "Town invitation to " + name + " has expired.");
+            Player sender = Bukkit.getPlayer(inviterId);
+            if (sender != null)
+                ParallelChat.sendParallelMessageTo(sender, "Town invitation for " + invitee.getName() + " has expired.");
+        });
         ParallelChat.sendParallelMessageTo(invitee, "You have been invited to join the town " + town.getName() + " by " + inviter.getName() + ". Type \"/town accept\" to accept!");
-        inviter.getServer().getScheduler().runTaskLater(puPlugin, () -> {
-            if (hasPendingInvite(invitee)) {
-                this.pendingInvites.remove(invitee.getUniqueId());
-                ParallelChat.sendParallelMessageTo(invitee, "Town invitation has expired.");
-                ParallelChat.sendParallelMessageTo(inviter, "Town invitation has expired.");
-            }
-        }, 600L);
     }
 
     public void acceptTownInvite(Player player) {
-        addPlayerToTown(player, towns.get(this.pendingInvites.get(player.getUniqueId())));
-        this.pendingInvites.remove(player.getUniqueId());
+        // taking the invite cancels its expiry, so it can't expire halfway through being accepted
+        Town town = towns.get(this.pendingInvites.remove(player.getUniqueId()));
+        if (town == null) {
+            ParallelChat.sendParallelMessageTo(player, "That town no longer exists.");
+            return;
+        }
+        addPlayerToTown(player, town);
     }
 
     public boolean hasPendingInvite(Player player) {
-        return pendingInvites.get(player.getUniqueId()) != null;
+        return pendingInvites.containsKey(player.getUniqueId());
     }
 
     public void deleteTown(String townName) {
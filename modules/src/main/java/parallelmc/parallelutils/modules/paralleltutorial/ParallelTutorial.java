@@ -229,6 +229,7 @@ public class ParallelTutorial extends ParallelModule {
 
     public void RunTutorialFor(@NotNull Player player, @NotNull String tutorial, boolean debug) {
         final World world = player.getWorld();
+        setDoNotDisturb(player, true);
         // TIL entities can't be spawned in async runnables
         Bukkit.getScheduler().runTaskAsynchronously(puPlugin, new Runnable() {
             Vector lookAt = null;
@@ -423,6 +424,7 @@ public class ParallelTutorial extends ParallelModule {
                     player.setFlySpeed(0.1F);
                     startPoints.remove(player);
                     runningTutorials.remove(player);
+                    setDoNotDisturb(player, false);
                     this.cancel();
                 }
             }
@@ -441,6 +443,17 @@ public class ParallelTutorial extends ParallelModule {
         }
     }
 
+    // players in a tutorial aren't shown chat, as long as ParallelChat is loaded
+    private void setDoNotDisturb(Player player, boolean inTutorial) {
+        ParallelChat chat = ParallelChat.get();
+        if (chat == null || chat.getDoNotDisturb() == null)
+            return;
+        if (inTutorial)
+            chat.getDoNotDisturb().startWindow(player, "tutorial");
+        else
+            chat.getDoNotDisturb().endWindow(player, "tutorial");
+    }
+
     public void handleDisconnectedPlayer(Player player, boolean debug) {
         if (debug) ParallelUtils.log(Level.WARNING, "Ending tutorial...");
         ArmorStand stand = armorStands.get(player);
@@ -451,6 +464,7 @@ public class ParallelTutorial extends ParallelModule {
             armorStands.remove(player);
         }
         runningTutorials.remove(player);
+        setDoNotDisturb(player, false);
         if (debug) {
             ParallelUtils.log(Level.WARNING, "Checking status of armor stand in a few ticks...");
             new BukkitRunnable() {
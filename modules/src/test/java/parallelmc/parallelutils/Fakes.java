@@ -0,0 +1,271 @@
+package parallelmc.parallelutils;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.Container;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemFactory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.plugin.Plugin;
+import parallelmc.parallelutils.database.ConnectionPool;
+import parallelmc.parallelutils.database.DatabaseExecutor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.*;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Stand-ins for the server objects that tests and benchmarks need, so they can run without a server.
+ * Each one is a proxy that answers the methods it is given and returns null, false or zero for everything else.
+ * Equality is always identity, like the real objects where it matters, such as inventories used as map keys
+ */
+public final class Fakes {
+
+    private static final int PLAYER_STORAGE_SIZE = 36;
+
+    private Fakes() { }
+
+    /**
+     * Makes a proxy of an interface
+     * @param type The interface
+     * @param answers What each method returns, by method name, given the call's arguments
+     * @return The proxy
+     */
+    public static <T> T proxy(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        Object proxy = Proxy.newProxyInstance(Fakes.class.getClassLoader(), new Class<?>[] { type }, (self, method, args) -> {
+            Object[] a = args == null ? new Object[0] : args;
+            switch (method.getName()) {
+                case "equals" -> { return self == a[0]; }
+                case "hashCode" -> { return System.identityHashCode(self); }
+                case "toString" -> { return "Fake" + type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(self)); }
+            }
+            Function<Object[], Object> answer = answers.get(method.getName());
+            return answer != null ? answer.apply(a) : defaultValue(method.getReturnType());
+        });
+        return type.cast(proxy);
+    }
+
+    /**
+     * Installs a server that can create inventories and treats every item as having no meta. Items are compared the
+     * way the real server compares plain items, by type, so this is enough for code that moves plain items around.
+     * Installing it more than once does nothing
+     */
+    public static synchronized void installServer() {
+        if (Bukkit.getServer() != null)
+            return;
+        ItemFactory items = proxy(ItemFactory.class, Map.of(
+                "equals", a -> Objects.equals(a[0], a[1]),
+                "isApplicable", a -> true));
+        Logger logger = Logger.getLogger("Fakes");
+        Bukkit.setServer(proxy(Server.class, Map.of(
+                "getLogger", a -> logger,
+                "getName", a -> "Fakes",
+                "getVersion", a -> "test",
+                "getBukkitVersion", a -> "test",
+                "getItemFactory", a -> items,
+                "getOnlinePlayers", a -> List.of(),
+                "createInventory", a -> inventory(a[1] instanceof InventoryType type ? type.getDefaultSize() : (Integer) a[1]))));
+    }
+
+    /**
+     * Makes a database executor whose connections accept every statement and return no rows, for code that writes
+     * to the database as a side effect
+     * @return The executor
+     */
+    public static DatabaseExecutor databaseExecutor() {
+        ResultSet empty = proxy(ResultSet.class, Map.of());
+        Map<String, Function<Object[], Object>> statementAnswers = Map.of(
+                "executeQuery", a -> empty,
+                "getResultSet", a -> empty,
+                "getGeneratedKeys", a -> empty,
+                "executeBatch", a -> new int[0]);
+        Connection connection = proxy(Connection.class, Map.of(
+                "createStatement", a -> proxy(Statement.class, statementAnswers),
+                "prepareStatement", a -> proxy(PreparedStatement.class, statementAnswers),
+                "isValid", a -> true));
+        DataSource source = proxy(DataSource.class, Map.of("getConnection", a -> connection));
+        ConnectionPool pool = new ConnectionPool(source, 0, 1, 60000, 30000, 0, 1000);
+        return new DatabaseExecutor(proxy(Plugin.class, Map.of("getName", a -> "Fakes")), pool, 1, 1000);
+    }
+
+    /**
+     * Makes a world
+     * @param name The world's name. Its UID is made from it, so the same name always has the same UID
+     * @return The world
+     */
+    public static World world(String name) {
+        UUID uid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        return proxy(World.class, Map.of(
+                "getName", a -> name,
+                "getUID", a -> uid));
+    }
+
+    /**
+     * Makes an online player with an empty inventory and no permissions
+     * @param name The player's name. Their UUID is made from it, so the same name always has the same UUID
+     * @return The player
+     */
+    public static Player player(String name) {
+        return player(name, Set.of());
+    }
+
+    /**
+     * Makes an online player with an empty inventory
+     * @param name The player's name. Their UUID is made from it, so the same name always has the same UUID
+     * @param permissions The permissions the player has
+     * @return The player
+     */
+    public static Player player(String name, Set<String> permissions) {
+        UUID uuid = UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8));
+        PlayerInventory inventory = playerInventory();
+        Component displayName = Component.text(name);
+        return proxy(Player.class, Map.of(
+                "getName", a -> name,
+                "getUniqueId", a -> uuid,
+                "isOnline", a -> true,
+                "hasPermission", a -> a[0] instanceof String p && permissions.contains(p),
+                "getInventory", a -> inventory,
+                "displayName", a -> displayName,
+                "playerListName", a -> displayName));
+    }
+
+    /**
+     * Makes an empty inventory, such as a chest's
+     * @param size The number of slots
+     * @return The inventory
+     */
+    public static Inventory inventory(int size) {
+        return proxy(Inventory.class, inventoryAnswers(new ItemStack[size]));
+    }
+
+    /**
+     * Makes a chest or barrel around an inventory
+     * @param inventory The container's inventory
+     * @return The container
+     */
+    public static Container container(Inventory inventory) {
+        return proxy(Container.class, Map.of(
+                "getInventory", a -> inventory,
+                "getSnapshotInventory", a -> inventory));
+    }
+
+    private static PlayerInventory playerInventory() {
+        ItemStack[] slots = new ItemStack[PLAYER_STORAGE_SIZE];
+        HashMap<String, Function<Object[], Object>> answers = inventoryAnswers(slots);
+        answers.put("getStorageContents", a -> slots.clone());
+        answers.put("setStorageContents", a -> {
+            ItemStack[] items = (ItemStack[]) a[0];
+            Arrays.fill(slots, null);
+            System.arraycopy(items, 0, slots, 0, Math.min(items.length, slots.length));
+            return null;
+        });
+        answers.put("getItemInMainHand", a -> slots[0] == null ? new ItemStack(Material.AIR) : slots[0]);
+        answers.put("getItemInOffHand", a -> new ItemStack(Material.AIR));
+        return proxy(PlayerInventory.class, answers);
+    }
+
+    private static HashMap<String, Function<Object[], Object>> inventoryAnswers(ItemStack[] slots) {
+        HashMap<String, Function<Object[], Object>> answers = new HashMap<>();
+        answers.put("getSize", a -> slots.length);
+        answers.put("getContents", a -> slots.clone());
+        answers.put("getStorageContents", a -> slots.clone());
+        answers.put("getItem", a -> slots[(Integer) a[0]]);
+        answers.put("setItem", a -> {
+            ItemStack item = (ItemStack) a[1];
+            slots[(Integer) a[0]] = item == null || item.getType().isAir() ? null : item;
+            return null;
+        });
+        answers.put("setContents", a -> {
+            ItemStack[] items = (ItemStack[]) a[0];
+            Arrays.fill(slots, null);
+            System.arraycopy(items, 0, slots, 0, Math.min(items.length, slots.length));
+            return null;
+        });
+        answers.put("clear", a -> {
+            if (a.length == 0)
+                Arrays.fill(slots, null);
+            else
+                slots[(Integer) a[0]] = null;
+            return null;
+        });
+        answers.put("firstEmpty", a -> {
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] == null)
+                    return i;
+            }
+            return -1;
+        });
+        answers.put("addItem", a -> addItems(slots, (ItemStack[]) a[0]));
+        answers.put("all", a -> {
+            HashMap<Integer, ItemStack> found = new HashMap<>();
+            for (int i = 0; i < slots.length; i++) {
+                if (slots[i] != null && (a[0] instanceof Material m ? slots[i].getType() == m : slots[i].equals(a[0])))
+                    found.put(i, slots[i]);
+            }
+            return found;
+        });
+        answers.put("getViewers", a -> List.of());
+        return answers;
+    }
+
+    // fills matching stacks first and then empty slots, returning what didn't fit like the real inventory does
+    private static HashMap<Integer, ItemStack> addItems(ItemStack[] slots, ItemStack[] items) {
+        HashMap<Integer, ItemStack> leftover = new HashMap<>();
+        for (int i = 0; i < items.length; i++) {
+            ItemStack item = items[i];
+            int left = item.getAmount();
+            int max = item.getMaxStackSize();
+            for (int s = 0; s < slots.length && left > 0; s++) {
+                if (slots[s] != null && slots[s].isSimilar(item) && slots[s].getAmount() < max) {
+                    int moved = Math.min(left, max - slots[s].getAmount());
+                    slots[s] = slots[s].asQuantity(slots[s].getAmount() + moved);
+                    left -= moved;
+                }
+            }
+            for (int s = 0; s < slots.length && left > 0; s++) {
+                if (slots[s] == null) {
+                    int moved = Math.min(left, max);
+                    slots[s] = item.asQuantity(moved);
+                    left -= moved;
+                }
+            }
+            if (left > 0) {
+                leftover.put(i, item.asQuantity(left));
+            }
+        }
+        return leftover;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class)
+            return null;
+        if (type == boolean.class)
+            return false;
+        if (type == char.class)
+            return '\0';
+        if (type == long.class)
+            return 0L;
+        if (type == float.class)
+            return 0f;
+        if (type == double.class)
+            return 0d;
+        if (type == byte.class)
+            return (byte) 0;
+        if (type == short.class)
+            return (short) 0;
+        return 0;
+    }
+}
@@ -0,0 +1,148 @@
+package parallelmc.parallelutils.modules.chestshops;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Container;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import parallelmc.parallelutils.Fakes;
+import parallelmc.parallelutils.database.DatabaseExecutor;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the lookups from inventories and shops back to shopping sessions and previews are cleaned up however a
+ * session ends. Each step is done the way the module's event handlers do it
+ */
+public class ChestShopsTest {
+
+    private static DatabaseExecutor executor;
+
+    private ChestShops chestShops;
+    private World world;
+    private UUID owner;
+    private Shop shop;
+    private Container chest;
+
+    @BeforeAll
+    public static void installServer() {
+        Fakes.installServer();
+        executor = Fakes.databaseExecutor();
+    }
+
+    @BeforeEach
+    public void setup() {
+        chestShops = new ChestShops(new ShopDatabase(executor));
+        world = Fakes.world("world");
+        owner = UUID.randomUUID();
+        Location chestPos = new Location(world, 10, 64, 10);
+        chestShops.addShop(owner, UUID.randomUUID(), chestPos, new Location(world, 10, 64, 11), Material.TORCH, 16, 2,
+                new ItemStack(Material.DIAMOND), ShopMode.BUY);
+        shop = chestShops.getShopFromChestPos(chestPos);
+
+        Inventory inv = Fakes.inventory(27);
+        for (int slot = 0; slot < 27; slot += 2) {
+            inv.setItem(slot, new ItemStack(Material.TORCH, 64));
+        }
+        chest = Fakes.container(inv);
+    }
+
+    @Test
+    public void quitWhileShoppingEndsTheSession() {
+        Player player = buyer("Shopper");
+        assertEquals(ShopResult.SUCCESS, chestShops.attemptPurchase(player, shop, chest));
+        Inventory shopping = chestShops.getShoppingData(player).fakeInv();
+        assertTrue(chestShops.shopInventoryExists(shopping));
+        assertTrue(chestShops.isPlayerUsingShop(shop));
+
+        // OnShopInteract.onLeaveWhileShopping
+        chestShops.stopShopping(player);
+        chestShops.releaseShoppingInventory(player);
+
+        assertNull(chestShops.getShoppingData(player));
+        assertFalse(chestShops.shopInventoryExists(shopping));
+        assertFalse(chestShops.isPlayerUsingShop(shop));
+
+        // coming back gets a new shopping inventory rather than the one from before they left
+        assertEquals(ShopResult.SUCCESS, chestShops.attemptPurchase(player, shop, chest));
+        assertNotSame(shopping, chestShops.getShoppingData(player).fakeInv());
+    }
+
+    @Test
+    public void quitWhilePreviewingEndsThePreview() {
+        Player player = buyer("Previewer");
+        chestShops.openShopPreview(player, shop, chest.getInventory());
+        Inventory preview = chestShops.getPreviewInventory(player);
+        assertNotNull(preview);
+        assertTrue(chestShops.previewInventoryExists(preview));
+
+        // OnPreviewInteract.onLeaveWhilePreviewing
+        chestShops.closeShopPreview(player);
+
+        assertNull(chestShops.getPreviewInventory(player));
+        assertFalse(chestShops.previewInventoryExists(preview));
+    }
+
+    @Test
+    public void closeAfterShopRemovedEndsTheSession() {
+        Player player = buyer("Shopper");
+        assertEquals(ShopResult.SUCCESS, chestShops.attemptPurchase(player, shop, chest));
+        Inventory shopping = chestShops.getShoppingData(player).fakeInv();
+
+        // OnClickBlock removes a shop whose chest is gone without waiting for its shoppers
+        chestShops.removeShop(owner, shop.chestPos());
+        assertNull(chestShops.getShopFromChestPos(shop.chestPos()));
+        assertTrue(chestShops.isPlayerUsingShop(shop));
+
+        // OnShopInteract.onCloseShop
+        chestShops.stopShopping(player);
+
+        assertNull(chestShops.getShoppingData(player));
+        assertFalse(chestShops.shopInventoryExists(shopping));
+        assertFalse(chestShops.isPlayerUsingShop(shop));
+
+        // a new shop in the same place starts out unused
+        chestShops.addShop(owner, UUID.randomUUID(), shop.chestPos(), shop.signPos(), Material.TORCH, 16, 2,
+                new ItemStack(Material.DIAMOND), ShopMode.BUY);
+        Shop replacement = chestShops.getShopFromChestPos(shop.chestPos());
+        assertNotEquals(shop.id(), replacement.id());
+        assertFalse(chestShops.isPlayerUsingShop(replacement));
+    }
+
+    @Test
+    public void twoShoppersOnOneShop() {
+        Player first = buyer("First");
+        Player second = buyer("Second");
+        assertEquals(ShopResult.SUCCESS, chestShops.attemptPurchase(first, shop, chest));
+        assertEquals(ShopResult.SUCCESS, chestShops.attemptPurchase(second, shop, chest));
+        Inventory firstShopping = chestShops.getShoppingData(first).fakeInv();
+        Inventory secondShopping = chestShops.getShoppingData(second).fakeInv();
+        assertNotSame(firstShopping, secondShopping);
+        assertTrue(chestShops.shopInventoryExists(firstShopping));
+        assertTrue(chestShops.shopInventoryExists(secondShopping));
+
+        chestShops.stopShopping(first);
+
+        assertFalse(chestShops.shopInventoryExists(firstShopping));
+        assertTrue(chestShops.shopInventoryExists(secondShopping));
+        assertTrue(chestShops.isPlayerUsingShop(shop));
+
+        chestShops.stopShopping(second);
+
+        assertFalse(chestShops.shopInventoryExists(secondShopping));
+        assertFalse(chestShops.isPlayerUsingShop(shop));
+    }
+
+    private static Player buyer(String name) {
+        Player player = Fakes.player(name);
+        player.getInventory().setItem(0, new ItemStack(Material.DIAMOND, 64));
+        return player;
+    }
+}
@@ -0,0 +1,40 @@
+package parallelmc.parallelutils.modules.parallelchat.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WordFilterTest {
+
+    private final WordFilter filter = WordFilter.build(List.of("hoe", "tit", "bad"), List.of("ass"), List.of("class"));
+
+    @Test
+    public void substringDoesNotMatchAcrossWords() {
+        assertNull(filter.findBanned("who eats pie"));
+        assertNull(filter.findBanned("it it"));
+        assertNull(filter.findBanned("the ba d guy"));
+    }
+
+    @Test
+    public void substringMatchesInsideWords() {
+        assertEquals("hoe", filter.findBanned("what a shoe"));
+        assertEquals("tit", filter.findBanned("you are a t.i.t"));
+        assertEquals("bad", filter.findBanned("that was BAAAD"));
+    }
+
+    @Test
+    public void spacedOutLettersStillMatch() {
+        assertEquals("bad", filter.findBanned("you are b a d"));
+        assertEquals("tit", filter.findBanned("t i t"));
+        assertEquals("ass", filter.findBanned("what an a s s"));
+    }
+
+    @Test
+    public void wholeWordsAndAllowedWords() {
+        assertEquals("ass", filter.findBanned("you ass"));
+        assertNull(filter.findBanned("a class act"));
+        assertNull(filter.findBanned("the grass is green"));
+    }
+}
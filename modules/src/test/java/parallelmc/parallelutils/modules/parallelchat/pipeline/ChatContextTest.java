@@ -0,0 +1,72 @@
+package parallelmc.parallelutils.modules.parallelchat.pipeline;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.format.TextDecoration;
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.Test;
+import parallelmc.parallelutils.Fakes;
+
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChatContextTest {
+
+    private static final Pattern MENTION = Pattern.compile("@Bob");
+
+    private final Player sender = Fakes.player("Sender");
+    private final Player bob = Fakes.player("Bob");
+
+    @Test
+    public void colorContinuesPastMention() {
+        Component message = mention("&chello @Bob how are you");
+        assertEquals(NamedTextColor.RED, styleOf(message, "hello ").color());
+        assertEquals(NamedTextColor.YELLOW, styleOf(message, "@Bob").color());
+        assertEquals(NamedTextColor.RED, styleOf(message, " how are you").color());
+    }
+
+    @Test
+    public void formatsContinueUntilNextColor() {
+        Component message = mention("&c&lhi @Bob there &9blue");
+        Style there = styleOf(message, " there ");
+        assertEquals(NamedTextColor.RED, there.color());
+        assertTrue(there.hasDecoration(TextDecoration.BOLD));
+        Style blue = styleOf(message, "blue");
+        assertEquals(NamedTextColor.BLUE, blue.color());
+        assertFalse(blue.hasDecoration(TextDecoration.BOLD));
+    }
+
+    @Test
+    public void resetStopsColor() {
+        Component message = mention("&cred&r plain @Bob after");
+        assertNull(styleOf(message, " after").color());
+    }
+
+    private Component mention(String text) {
+        ChatContext context = new ChatContext(sender, text);
+        context.splitText(MENTION, m -> ChatToken.mention(m.group(), bob), false);
+        return context.getMessage();
+    }
+
+    // the style a piece of text is shown with, including what it inherits from its parents
+    private static Style styleOf(Component component, String content) {
+        Style style = find(component, content, Style.empty());
+        assertNotNull(style, "\"" + content + "\" is not in the message");
+        return style;
+    }
+
+    private static Style find(Component component, String content, Style inherited) {
+        Style style = component.style().merge(inherited, Style.Merge.Strategy.IF_ABSENT_ON_TARGET);
+        if (component instanceof TextComponent text && text.content().equals(content))
+            return style;
+        for (Component child : component.children()) {
+            Style found = find(child, content, style);
+            if (found != null)
+                return found;
+        }
+        return null;
+    }
+}